@@ -10,6 +10,8 @@ import players.rhea.utils.RHEAParams;
 import utils.*;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static utils.Types.VISUALS;
 
@@ -29,6 +31,7 @@ public class Run {
         System.out.println("\t\t 3 SimplePlayer");
         System.out.println("\t\t 4 RHEA 200 itereations, shift buffer, pop size 1, random init, length: 12");
         System.out.println("\t\t 5 MCTS 200 iterations, length: 12");
+        System.out.println("\t [arg index = 8] (Optional) Number of games played in parallel. Default: 1.");
     }
 
     public static void main(String[] args) {
@@ -37,7 +40,7 @@ public class Run {
         if(args.length == 0)
             args = new String[]{"0", "1", "1", "-1", "2", "3", "4", "5"};
 
-        if(args.length != 8) {
+        if(args.length != 8 && args.length != 9) {
             printHelp();
             return;
         }
@@ -83,57 +86,12 @@ public class Run {
 
             for(int i = 4; i <= 7; ++i) {
                 int agentType = Integer.parseInt(args[i]);
-                Player p = null;
-
-
-                switch(agentType) {
-                    case 0:
-                        p = new DoNothingPlayer(playerID++);
-                        playerStr[i-4] = "DoNothing";
-                        break;
-                    case 1:
-                        p = new RandomPlayer(seed, playerID++);
-                        playerStr[i-4] = "Random";
-                        break;
-                    case 2:
-                        p = new OSLAPlayer(seed, playerID++);
-                        playerStr[i-4] = "OSLA";
-                        break;
-                    case 3:
-                        p = new SimplePlayer(seed, playerID++);
-                        playerStr[i-4] = "RuleBased";
-                        break;
-                    case 4:
-                        RHEAParams rheaParams = new RHEAParams();
-                        rheaParams.budget_type = Constants.ITERATION_BUDGET;
-                        rheaParams.iteration_budget = 200;
-                        rheaParams.individual_length = 12;
-                        rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
-                        rheaParams.mutation_rate = 0.5;
-
-                        p = new RHEAPlayer(seed, playerID++, rheaParams);
-                        playerStr[i-4] = "RHEA";
-                        break;
-                    case 5:
-                        MCTSParams mctsParams = new MCTSParams();
-                        mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
-                        mctsParams.num_iterations = 200;
-                        mctsParams.rollout_depth = 12;
-
-                        mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
-                        p = new MCTSPlayer(seed, playerID++, mctsParams);
-                        playerStr[i-4] = "MCTS";
-                        break;
-                    case 6:
-                        p = new MyMCTSPlayer(seed, playerID++);
-                        playerStr[i-4] = "MyMCTS";
-                        break;
-                    case 7:
-                        p = new EMCTSPlayer(seed, playerID++);
-                        playerStr[i-4] = "EMCTS";
-                        break;
-                    default:
-                        System.out.println("WARNING: Invalid agent ID: " + agentType );
+                Player p = createPlayer(agentType, seed, playerID);
+                if (p == null) {
+                    System.out.println("WARNING: Invalid agent ID: " + agentType );
+                } else {
+                    playerStr[i-4] = AGENT_NAMES[agentType];
+                    playerID++;
                 }
 
                 players.add(p);
@@ -161,13 +119,60 @@ public class Run {
             }
             System.out.println("]");
 
-            runGames(game, seeds, N, false);
+            int numWorkers = args.length > 8 ? Integer.parseInt(args[8]) : 1;
+            runGames(game, seeds, N, false, numWorkers);
         } catch(Exception e) {
             e.printStackTrace();
             printHelp();
         }
     }
 
+    // Names of the agent types, by the number given in the arguments (see printHelp()).
+    static final String[] AGENT_NAMES = new String[]{"DoNothing", "Random", "OSLA", "RuleBased", "RHEA", "MCTS",
+            "MyMCTS", "EMCTS"};
+
+    /**
+     * Creates a player of one of the agent types of the arguments (see printHelp()).
+     * @param agentType - number of the agent type.
+     * @param seed - random seed of the player.
+     * @param playerID - ID of the player (tile key of its avatar).
+     * @return the player, or null if the agent type is not valid.
+     */
+    static Player createPlayer(int agentType, long seed, int playerID) {
+        switch(agentType) {
+            case 0:
+                return new DoNothingPlayer(playerID);
+            case 1:
+                return new RandomPlayer(seed, playerID);
+            case 2:
+                return new OSLAPlayer(seed, playerID);
+            case 3:
+                return new SimplePlayer(seed, playerID);
+            case 4:
+                RHEAParams rheaParams = new RHEAParams();
+                rheaParams.budget_type = Constants.ITERATION_BUDGET;
+                rheaParams.iteration_budget = 200;
+                rheaParams.individual_length = 12;
+                rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
+                rheaParams.mutation_rate = 0.5;
+                return new RHEAPlayer(seed, playerID, rheaParams);
+            case 5:
+                MCTSParams mctsParams = new MCTSParams();
+                mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
+                mctsParams.num_iterations = 200;
+                mctsParams.rollout_depth = 12;
+
+                mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
+                return new MCTSPlayer(seed, playerID, mctsParams);
+            case 6:
+                return new MyMCTSPlayer(seed, playerID);
+            case 7:
+                return new EMCTSPlayer(seed, playerID);
+            default:
+                return null;
+        }
+    }
+
     /**
      * Runs 1 game.
      * @param g - game to run
@@ -197,6 +202,9 @@ public class Run {
         int[] lossCount = new int[numPlayers];
 
         int[] overtimeCount = new int[numPlayers];
+        PlayerMetrics[] metrics = new PlayerMetrics[numPlayers];
+        for (int pIdx = 0; pIdx < numPlayers; pIdx++)
+            metrics[pIdx] = new PlayerMetrics();
 
         int numSeeds = seeds.length;
         int totalNgames = numSeeds * repetitions;
@@ -238,10 +246,121 @@ public class Run {
                 for(int j = 0; j < overtimes.length; ++j)
                     overtimeCount[j] += overtimes[j];
 
+                PlayerMetrics[] gameMetrics = g.getPlayerMetrics();
+                for (int pIdx = 0; pIdx < numPlayers; pIdx++)
+                    metrics[pIdx].add(gameMetrics[pIdx]);
+
             }
         }
 
         //Done, show stats
+        printResults(g, totalNgames, winCount, tieCount, lossCount, overtimeCount, metrics);
+    }
+
+    /**
+     * Plays the same games as runGames(g, seeds, repetitions, useSeparateThreads), spread over a pool of worker
+     * threads. Each worker plays its games on its own copy of g, with copies of the players (Player.copy()).
+     * @param numWorkers - number of games played at the same time. With 1 or less, games are run sequentially.
+     */
+    public static void runGames(Game g, long seeds[], int repetitions, boolean useSeparateThreads, int numWorkers) {
+        if (numWorkers <= 1) {
+            runGames(g, seeds, repetitions, useSeparateThreads);
+            return;
+        }
+
+        int numPlayers = g.getPlayers().size();
+        int[] winCount = new int[numPlayers];
+        int[] tieCount = new int[numPlayers];
+        int[] lossCount = new int[numPlayers];
+
+        int[] overtimeCount = new int[numPlayers];
+        PlayerMetrics[] metrics = new PlayerMetrics[numPlayers];
+        for (int pIdx = 0; pIdx < numPlayers; pIdx++)
+            metrics[pIdx] = new PlayerMetrics();
+
+        int totalNgames = seeds.length * repetitions;
+        AtomicInteger nextGame = new AtomicInteger();
+        // Games that ended and are counted in the results. A game that throws is left out.
+        int[] completedGames = new int[1];
+        // Player seeds are drawn from this and the index of each game, so games started in the same millisecond
+        // still get different ones.
+        long baseSeed = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+        ArrayList<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < numWorkers; w++) {
+            Game workerGame = g.copy();
+            workers.add(executor.submit(() -> {
+                // Workers take the next game to play until all have been played
+                for (int k = nextGame.getAndIncrement(); k < totalNgames; k = nextGame.getAndIncrement()) {
+                    long seed = seeds[k / repetitions];
+                    long playerSeed = new Random(baseSeed + k).nextLong();
+
+                    workerGame.reset(seed);
+                    workerGame.setRepetition(k % repetitions);
+
+                    // Set random seed for players and reset them
+                    ArrayList<Player> players = workerGame.getPlayers();
+                    for (int p = 0; p < workerGame.nPlayers(); p++) {
+                        players.get(p).reset(playerSeed, p + Types.TILETYPE.AGENT0.getKey());
+                    }
+                    Types.RESULT[] results = workerGame.run(useSeparateThreads);
+                    int[] overtimes = workerGame.getPlayerOvertimes();
+
+                    synchronized (winCount) {
+                        completedGames[0]++;
+                        for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
+                            switch (results[pIdx]) {
+                                case WIN:
+                                    winCount[pIdx]++;
+                                    break;
+                                case TIE:
+                                    tieCount[pIdx]++;
+                                    break;
+                                case LOSS:
+                                    lossCount[pIdx]++;
+                                    break;
+                            }
+                        }
+                        for (int j = 0; j < overtimes.length; ++j)
+                            overtimeCount[j] += overtimes[j];
+
+                        PlayerMetrics[] gameMetrics = workerGame.getPlayerMetrics();
+                        for (int pIdx = 0; pIdx < numPlayers; pIdx++)
+                            metrics[pIdx].add(gameMetrics[pIdx]);
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                return;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+
+        //Done, show stats of the games that ended
+        synchronized (winCount) {
+            if (completedGames[0] < totalNgames) {
+                System.out.println("WARNING: " + (totalNgames - completedGames[0]) + " of " + totalNgames
+                        + " games did not complete and are not counted.");
+            }
+            if (completedGames[0] > 0) {
+                printResults(g, completedGames[0], winCount, tieCount, lossCount, overtimeCount, metrics);
+            }
+        }
+    }
+
+    private static void printResults(Game g, int totalNgames, int[] winCount, int[] tieCount, int[] lossCount,
+                                     int[] overtimeCount, PlayerMetrics[] metrics) {
+        int numPlayers = g.getPlayers().size();
         System.out.println("N \tWin \tTie \tLoss \tPlayer (overtime average)");
         for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
             String player = g.getPlayers().get(pIdx).getClass().toString().replaceFirst("class ", "");
@@ -253,5 +372,12 @@ public class Run {
 
             System.out.println(totalNgames + "\t" + winPerc + "%\t" + tiePerc + "%\t" + lossPerc + "%\t" + player + " (" + overtimesAvg + ")" );
         }
+
+        // Where the time of each player goes, averaged over all its decisions
+        System.out.println(PlayerMetrics.header() + " \tPlayer");
+        for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
+            String player = g.getPlayers().get(pIdx).getClass().toString().replaceFirst("class ", "");
+            System.out.println(metrics[pIdx] + " \t" + player);
+        }
     }
 }
@@ -0,0 +1,175 @@
+import core.Game;
+import core.GameState;
+import players.Player;
+import utils.SelfPlayData;
+import utils.Types;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless self-play: plays many games at the same time and records the observation, action and final result of
+ * every player at every tick, in the chunked columnar format of SelfPlayData. Each game of a run is played with
+ * seeds drawn from the seed of the run and the index of the game. A run stopped before the end is resumed by
+ * starting it again with the same arguments: games already in the checkpoint of the output folder are skipped. A
+ * run is extended the same way, with a larger number of games.
+ */
+public class SelfPlay {
+
+    private static final int DEFAULT_CHUNK_ROWS = 65536;
+    // Spreads the seeds of the random number generators of consecutive games.
+    private static final long GAME_SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private static void printHelp()
+    {
+        System.out.println("Usage: java SelfPlay [args]");
+        System.out.println("\t [arg index = 0] Game Mode. 0: FFA; 1: TEAM");
+        System.out.println("\t [arg index = 1] Number of games.");
+        System.out.println("\t [arg index = 2] Vision Range [VR]. (0, 1, 2 for PO; -1 for Full Observability)");
+        System.out.println("\t [arg index = 3-6] Agents, numbered as in Run.");
+        System.out.println("\t [arg index = 7] (Optional) Number of games played in parallel. Default: number of processors.");
+        System.out.println("\t [arg index = 8] (Optional) Output folder. Default: " + SelfPlayData.SELFPLAY_PATH);
+        System.out.println("\t [arg index = 9] (Optional) Rows per chunk file. Default: " + DEFAULT_CHUNK_ROWS);
+        System.out.println("\t [arg index = 10] (Optional) Seed of the run. Default: 0.");
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 7 || args.length > 11) {
+            printHelp();
+            return;
+        }
+
+        try {
+            Types.GAME_MODE gMode = Integer.parseInt(args[0]) == 1 ? Types.GAME_MODE.TEAM : Types.GAME_MODE.FFA;
+            int numGames = Integer.parseInt(args[1]);
+            Types.DEFAULT_VISION_RANGE = Integer.parseInt(args[2]);
+            int numWorkers = args.length > 7 ? Integer.parseInt(args[7]) : Runtime.getRuntime().availableProcessors();
+            File folder = new File(args.length > 8 ? args[8] : SelfPlayData.SELFPLAY_PATH);
+            int chunkRows = args.length > 9 ? Integer.parseInt(args[9]) : DEFAULT_CHUNK_ROWS;
+            long runSeed = args.length > 10 ? Long.parseLong(args[10]) : 0;
+
+            // Nothing but the data is written, and nothing is shown
+            Types.VISUALS = false;
+            Types.LOGGING_STATISTICS = false;
+            Game.LOG_GAME = false;
+            Game.PRINT_RESULTS = false;
+            // Actions aren't replaced by STOP when a decision is slow, e.g. while the JIT warms up, so each game only
+            // depends on its seeds and the same games are played when a run is resumed.
+            Types.CHECK_DECISION_TIME = false;
+
+            ArrayList<Player> players = new ArrayList<>();
+            for (int i = 3; i <= 6; i++) {
+                int agentType = Integer.parseInt(args[i]);
+                Player p = Run.createPlayer(agentType, 0, Types.TILETYPE.AGENT0.getKey() + i - 3);
+                if (p == null) {
+                    System.out.println("Invalid agent ID: " + agentType);
+                    printHelp();
+                    return;
+                }
+                players.add(p);
+            }
+            Game game = new Game(0, Types.BOARD_SIZE, gMode, "selfplay", Types.FM_TYPE.PACKED);
+            game.setPlayers(players);
+
+            SelfPlayData.Writer writer = new SelfPlayData.Writer(folder, Types.BOARD_SIZE, chunkRows);
+            long start = System.nanoTime();
+            long rows = writer.getRowsWritten();
+            try (SelfPlayData.Writer w = writer) {
+                if (w.getGamesWritten() > 0) {
+                    System.out.println("Resuming " + folder + ": " + w.getGamesWritten() + " games in "
+                            + w.getChunks() + " chunks.");
+                }
+                play(game, numGames, runSeed, numWorkers, w);
+            }
+
+            // The last chunk is written when the writer is closed
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("%d games, %d rows in %d chunks. %.1f rows/s.",
+                    writer.getGamesWritten(), writer.getRowsWritten(), writer.getChunks(),
+                    (writer.getRowsWritten() - rows) / seconds));
+        } catch (Exception e) {
+            e.printStackTrace();
+            printHelp();
+        }
+    }
+
+    /**
+     * Plays the games of a run that are not in the writer yet, spread over a pool of worker threads. Each worker
+     * plays its games on its own copy of g, and adds their rows to the writer when each game ends.
+     * @param g - game with the players of the run.
+     * @param numGames - number of games of the run.
+     * @param runSeed - seed of the run, from which the board and player seeds of each game are drawn.
+     * @param numWorkers - number of games played at the same time.
+     * @param writer - output of the rows.
+     */
+    static void play(Game g, int numGames, long runSeed, int numWorkers, SelfPlayData.Writer writer)
+            throws IOException, InterruptedException {
+        AtomicInteger nextGame = new AtomicInteger();
+        AtomicInteger reportedChunks = new AtomicInteger(writer.getChunks());
+        int size = g.getGameState().getBoard().length;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numWorkers));
+        ArrayList<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < Math.max(1, numWorkers); w++) {
+            Game workerGame = g.copy();
+            SelfPlayData.Columns rows = new SelfPlayData.Columns(size);
+            int[] gameIdx = new int[1];
+            workerGame.setTickListener((state, actions) -> {
+                for (int p = 0; p < actions.length; p++) {
+                    GameState obs = state.copy(p);
+                    if (obs.winner() == Types.RESULT.INCOMPLETE) {
+                        rows.add(gameIdx[0], obs, p, actions[p]);
+                    }
+                }
+            });
+
+            workers.add(executor.submit(() -> {
+                // Workers take the next game to play until all have been played
+                for (int k = nextGame.getAndIncrement(); k < numGames; k = nextGame.getAndIncrement()) {
+                    if (writer.hasGame(k)) continue;
+
+                    Random rnd = new Random(runSeed + GAME_SEED_STEP * k);
+                    long seed = rnd.nextInt(100000);
+                    long playerSeed = rnd.nextLong();
+
+                    workerGame.reset(seed);
+                    ArrayList<Player> players = workerGame.getPlayers();
+                    for (int p = 0; p < workerGame.nPlayers(); p++) {
+                        players.get(p).reset(playerSeed, p + Types.TILETYPE.AGENT0.getKey());
+                    }
+                    gameIdx[0] = k;
+                    rows.clear();
+                    rows.setResults(workerGame.run(false));
+                    writer.addGame(k, rows);
+
+                    int chunks = writer.getChunks();
+                    int reported = reportedChunks.get();
+                    if (chunks > reported && reportedChunks.compareAndSet(reported, chunks)) {
+                        System.out.println("Chunk " + (chunks - 1) + " written: " + writer.getGamesWritten()
+                                + " games, " + writer.getRowsWritten() + " rows.");
+                    }
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+}
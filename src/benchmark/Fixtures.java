@@ -0,0 +1,112 @@
+package benchmark;
+
+import core.GameState;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * Game states used as benchmark inputs. Boards come from LevelGenerator.makeBoard at the seeds of the paper's
+ * experiments, and are played forward with seeded random actions to reach each phase of the game. The same
+ * actions are used for both forward model implementations, so they get identical states.
+ */
+public class Fixtures {
+
+    /**
+     * Level generation seeds used in the paper's experiments (see Run).
+     */
+    public static final long[] PAPER_SEEDS = new long[] {93988, 19067, 64416, 83884, 55636, 27599, 44350, 87872,
+            40815, 11772, 58367, 17546, 75375, 75772, 58237, 30464, 27180, 23643, 67054, 19508};
+
+    public enum Phase {
+        EARLY,      // First tick, board full of wood.
+        MID,        // Several bombs ticking and flames on the board.
+        COLLAPSE    // Board collapsing from the edges (Types.COLLAPSE_START).
+    }
+
+    private static final int MAX_ATTEMPTS = 200;
+    private static final int MID_MIN_TICK = 20;
+    private static final int MID_MAX_TICK = 200;
+    private static final int MID_MIN_BOMBS = 3;
+
+    /**
+     * Creates the fixture of a phase for every paper seed.
+     */
+    public static GameState[] create(Phase phase, Types.FM_TYPE fmType) {
+        GameState[] states = new GameState[PAPER_SEEDS.length];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = create(phase, PAPER_SEEDS[i], fmType);
+        }
+        return states;
+    }
+
+    /**
+     * Creates the fixture of a phase for one level seed.
+     */
+    public static GameState create(Phase phase, long seed, Types.FM_TYPE fmType) {
+        if (phase == Phase.EARLY) {
+            return new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, fmType);
+        }
+
+        // Random actions don't always reach the phase with enough agents alive, so play until one game does.
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, fmType);
+            Random rnd = new Random(seed * 31 + attempt);
+            GameState found = phase == Phase.MID ? playToMidGame(gs, rnd) : playToCollapse(gs, rnd);
+            if (found != null) {
+                return found;
+            }
+        }
+        throw new IllegalStateException("No " + phase + " state found for seed " + seed);
+    }
+
+    /**
+     * Plays with frequent bombs until there are MID_MIN_BOMBS bombs on the board.
+     */
+    private static GameState playToMidGame(GameState gs, Random rnd) {
+        while (!gs.isTerminal() && gs.getTick() < MID_MAX_TICK) {
+            gs.next(randomActions(rnd, true));
+            if (gs.getTick() >= MID_MIN_TICK && countBombs(gs) >= MID_MIN_BOMBS && !gs.isTerminal()) {
+                return gs;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Plays without bombs (so agents survive) until a few ticks into the collapse.
+     */
+    private static GameState playToCollapse(GameState gs, Random rnd) {
+        int target = Types.COLLAPSE_START + 5;
+        while (!gs.isTerminal() && gs.getTick() < target) {
+            gs.next(randomActions(rnd, false));
+        }
+        return gs.isTerminal() ? null : gs;
+    }
+
+    /**
+     * Random actions for all players.
+     * @param bombs whether ACTION_BOMB can be picked; if so, it's picked more often than other actions.
+     */
+    static Types.ACTIONS[] randomActions(Random rnd, boolean bombs) {
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        for (int i = 0; i < actions.length; i++) {
+            if (bombs && rnd.nextInt(4) == 0) {
+                actions[i] = Types.ACTIONS.ACTION_BOMB;
+            } else {
+                actions[i] = Types.ACTIONS.all().get(rnd.nextInt(Types.NUM_ACTIONS - 1));
+            }
+        }
+        return actions;
+    }
+
+    static int countBombs(GameState gs) {
+        int n = 0;
+        for (int[] row : gs.getBombLife()) {
+            for (int life : row) {
+                if (life > 0) n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Minimal microbenchmark harness: runs an operation in a loop for a few timed iterations after a warm-up, and
+ * reports its throughput and the memory it allocates per call.
+ *
+ * Results are written to a volatile field, so operations aren't optimised away. Allocation is
+ * read from the HotSpot per-thread allocation counter, and reported as -1 on JVMs that don't have it.
+ */
+public class Harness {
+
+    /**
+     * Operation to benchmark. The value returned is consumed by the harness.
+     */
+    public interface Op {
+        Object run();
+    }
+
+    /**
+     * Throughput and allocation of one benchmark.
+     */
+    public static class Result {
+        public final double opsPerSec;
+        public final double opsPerSecError;
+        public final double bytesPerOp;
+
+        Result(double opsPerSec, double opsPerSecError, double bytesPerOp) {
+            this.opsPerSec = opsPerSec;
+            this.opsPerSecError = opsPerSecError;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    // Values returned by the operations end up here.
+    private volatile Object sink;
+
+    /**
+     * @param warmupIterations untimed iterations run first, so the code under test is compiled.
+     * @param iterations timed iterations.
+     * @param iterationMillis duration of each iteration.
+     */
+    public Harness(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1000000L;
+    }
+
+    public Result measure(Op op) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+
+        double[] opsPerSec = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = iteration(op);
+            long elapsed = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytes;
+            totalOps += ops;
+            opsPerSec[i] = ops * 1e9 / elapsed;
+        }
+
+        double mean = 0;
+        for (double v : opsPerSec) mean += v;
+        mean /= iterations;
+        double var = 0;
+        for (double v : opsPerSec) var += (v - mean) * (v - mean);
+        double error = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0;
+
+        double bytesPerOp = allocatedBytes() < 0 ? -1 : (double) totalBytes / totalOps;
+        return new Result(mean, error, bytesPerOp);
+    }
+
+    /**
+     * Runs the operation until the iteration time is up.
+     * @return number of calls made.
+     */
+    private long iteration(Op op) {
+        long end = System.nanoTime() + iterationNanos;
+        long ops = 0;
+        do {
+            sink = op.run();
+            ops++;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,315 @@
+package benchmark;
+
+import core.ForwardModelBatch;
+import core.GameState;
+import core.ObservationParser;
+import objects.Avatar;
+import objects.Bomb;
+import objects.GameObject;
+import players.heuristics.AdvancedHeuristic;
+import players.heuristics.CustomHeuristic;
+import players.mcts.MCTSParams;
+import players.mcts.MCTSPlayer;
+import utils.Types;
+import utils.Utils;
+import utils.Vector2d;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Benchmarks of the forward model, state copies, heuristics and MCTS searches, on the early-game, mid-game and
+ * collapse fixtures of all paper seeds. Each call works on the next fixture in turn, so results average over the 20
+ * boards.
+ *
+ * Usage: java benchmark.RunBenchmarks [filter] [iterations] [iteration ms]
+ *   filter: only run benchmarks whose name contains this text ("all" for every benchmark).
+ */
+public class RunBenchmarks {
+
+    // Ticks simulated from a fixture before starting again from the next one.
+    private static final int TICKS_PER_RESTORE = 10;
+    // Ticks between the root state of a heuristic and the state it evaluates.
+    private static final int HEURISTIC_LOOKAHEAD = 5;
+    private static final int NUM_ACTION_SETS = 1024;
+    // Lanes of the batched forward model benchmark.
+    private static final int BATCH_LANES = 16;
+    private static final int MCTS_ITERATIONS = 200;
+
+    private static final String HEADER = String.format("%-32s %-9s %-7s %14s %12s %12s",
+            "Benchmark", "Phase", "FM", "ops/s", "error", "B/op");
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 && !args[0].equals("all") ? args[0] : "";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long iterationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        Types.VISUALS = false;
+        Harness harness = new Harness(3, iterations, iterationMillis);
+        Random rnd = new Random(42);
+        Types.ACTIONS[][] actionSets = new Types.ACTIONS[NUM_ACTION_SETS][];
+        for (int i = 0; i < NUM_ACTION_SETS; i++) {
+            actionSets[i] = Fixtures.randomActions(rnd, true);
+        }
+
+        System.out.println(HEADER);
+        for (Fixtures.Phase phase : Fixtures.Phase.values()) {
+            for (Types.FM_TYPE fmType : Types.FM_TYPE.values()) {
+                GameState[] states = Fixtures.create(phase, fmType);
+                run(harness, filter, "GameState.copy", phase, fmType, copy(states));
+                run(harness, filter, "GameState.copyInto", phase, fmType, copyInto(states));
+                run(harness, filter, "ForwardModel.next", phase, fmType, next(states, actionSets));
+                run(harness, filter, "ForwardModelBatch.step/lane", phase, fmType, BATCH_LANES,
+                        batchStep(states, actionSets));
+            }
+
+            // Heuristics and utilities only read the state, so they're run on one implementation.
+            GameState[] states = Fixtures.create(phase, Types.FM_TYPE.OBJECT);
+            run(harness, filter, "CustomHeuristic.evaluateState", phase, null,
+                    customHeuristic(states, actionSets));
+            run(harness, filter, "AdvancedHeuristic.evaluateState", phase, null,
+                    advancedHeuristic(states, actionSets));
+            run(harness, filter, "Utils.isStuckAdvanced", phase, null, isStuckAdvanced(states));
+            run(harness, filter, "MCTSPlayer.act(objects)", phase, null, mctsAct(states, false));
+            run(harness, filter, "MCTSPlayer.act(flat)", phase, null, mctsAct(states, true));
+
+            // Parsing Python observations sets the vision range they are played with, which would change the
+            // observations of the following benchmarks.
+            int visionRange = Types.DEFAULT_VISION_RANGE;
+            String[] messages = messages(states);
+            run(harness, filter, "GameState(String)", phase, null, parseGson(messages));
+            run(harness, filter, "ObservationParser.parse", phase, null, parse(messages));
+            run(harness, filter, "ObservationParser.parse(binary)", phase, null, parseBinary(states));
+            Types.DEFAULT_VISION_RANGE = visionRange;
+        }
+    }
+
+    private static void run(Harness harness, String filter, String name, Fixtures.Phase phase,
+                            Types.FM_TYPE fmType, Harness.Op op) {
+        run(harness, filter, name, phase, fmType, 1, op);
+    }
+
+    /**
+     * Runs a benchmark whose calls each do the work of opsPerCall operations, and reports it per operation.
+     */
+    private static void run(Harness harness, String filter, String name, Fixtures.Phase phase,
+                            Types.FM_TYPE fmType, int opsPerCall, Harness.Op op) {
+        if (!name.contains(filter)) return;
+        Harness.Result r = harness.measure(op);
+        System.out.println(String.format("%-32s %-9s %-7s %14.1f %12.1f %12.1f", name, phase,
+                fmType == null ? "-" : fmType, r.opsPerSec * opsPerCall, r.opsPerSecError * opsPerCall,
+                r.bytesPerOp / opsPerCall));
+    }
+
+    private static Harness.Op copy(GameState[] states) {
+        int[] next = new int[1];
+        return () -> states[next[0]++ % states.length].copy();
+    }
+
+    private static Harness.Op copyInto(GameState[] states) {
+        GameState target = states[0].copy();
+        int[] next = new int[1];
+        return () -> {
+            states[next[0]++ % states.length].copyInto(target);
+            return target;
+        };
+    }
+
+    /**
+     * One tick of the forward model per call. The state is restored from the next fixture every
+     * TICKS_PER_RESTORE ticks (or when the game ends), so the cost of one copyInto is spread over those ticks.
+     */
+    private static Harness.Op next(GameState[] states, Types.ACTIONS[][] actionSets) {
+        GameState work = states[0].copy();
+        int[] counters = new int[3]; // fixture, ticks since restore, action set
+        return () -> {
+            if (counters[1] == 0 || work.isTerminal()) {
+                states[counters[0]++ % states.length].copyInto(work);
+                counters[1] = TICKS_PER_RESTORE;
+            }
+            counters[1]--;
+            work.next(actionSets[counters[2]++ % actionSets.length]);
+            return work;
+        };
+    }
+
+    /**
+     * One tick of BATCH_LANES states per call, stepped by a ForwardModelBatch. Lanes are restored as in next(), so
+     * the throughput per lane compares with the scalar ForwardModel.next benchmark.
+     */
+    private static Harness.Op batchStep(GameState[] states, Types.ACTIONS[][] actionSets) {
+        ForwardModelBatch batch = new ForwardModelBatch(BATCH_LANES);
+        Types.ACTIONS[][] actions = new Types.ACTIONS[BATCH_LANES][];
+        int[] ticksLeft = new int[BATCH_LANES];
+        int[] counters = new int[2]; // fixture, action set
+        for (int k = 0; k < BATCH_LANES; k++) {
+            batch.set(k, states[counters[0]++ % states.length]);
+            ticksLeft[k] = TICKS_PER_RESTORE;
+        }
+        return () -> {
+            for (int k = 0; k < BATCH_LANES; k++) {
+                if (ticksLeft[k] == 0 || batch.isDone(k)) {
+                    batch.set(k, states[counters[0]++ % states.length]);
+                    ticksLeft[k] = TICKS_PER_RESTORE;
+                }
+                ticksLeft[k]--;
+                actions[k] = actionSets[counters[1]++ % actionSets.length];
+            }
+            return batch.step(BATCH_LANES, actions);
+        };
+    }
+
+    private static Harness.Op customHeuristic(GameState[] states, Types.ACTIONS[][] actionSets) {
+        GameState[] roots = observations(states);
+        CustomHeuristic[] heuristics = new CustomHeuristic[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            heuristics[i] = new CustomHeuristic(roots[i]);
+        }
+        GameState[] evaluated = lookAhead(roots, actionSets);
+        int[] next = new int[1];
+        return () -> {
+            int i = next[0]++ % roots.length;
+            return heuristics[i].evaluateState(evaluated[i]);
+        };
+    }
+
+    private static Harness.Op advancedHeuristic(GameState[] states, Types.ACTIONS[][] actionSets) {
+        GameState[] roots = observations(states);
+        AdvancedHeuristic[] heuristics = new AdvancedHeuristic[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            heuristics[i] = new AdvancedHeuristic(roots[i]);
+        }
+        GameState[] evaluated = lookAhead(roots, actionSets);
+        int[] next = new int[1];
+        return () -> {
+            int i = next[0]++ % roots.length;
+            return heuristics[i].evaluateState(evaluated[i]);
+        };
+    }
+
+    private static Harness.Op isStuckAdvanced(GameState[] states) {
+        GameState[] observations = observations(states);
+        Types.TILETYPE[][][] boards = new Types.TILETYPE[observations.length][][];
+        ArrayList<ArrayList<GameObject>> bombs = new ArrayList<>();
+        Avatar[] avatars = new Avatar[observations.length];
+        for (int i = 0; i < observations.length; i++) {
+            GameState gs = observations[i];
+            boards[i] = gs.getBoard();
+            bombs.add(bombsOf(gs));
+            avatars[i] = new Avatar(gs.getPlayerId(), gs.getGameMode());
+            avatars[i].setPosition(gs.getPosition());
+        }
+        int[] next = new int[1];
+        return () -> {
+            int i = next[0]++ % observations.length;
+            return Utils.isStuckAdvanced(boards[i], bombs.get(i), avatars[i]);
+        };
+    }
+
+    /**
+     * One search of MCTS_ITERATIONS iterations per call, with the tree stored as objects or in flat arrays.
+     */
+    private static Harness.Op mctsAct(GameState[] states, boolean flat) {
+        MCTSParams params = new MCTSParams();
+        params.stop_type = params.STOP_ITERATIONS;
+        params.num_iterations = MCTS_ITERATIONS;
+        params.tree_storage = flat ? params.TREE_FLAT : params.TREE_OBJECTS;
+        MCTSPlayer player = new MCTSPlayer(42, Types.TILETYPE.AGENT0.getKey(), params);
+        GameState[] observations = observations(states);
+        int[] next = new int[1];
+        return () -> player.act(observations[next[0]++ % observations.length]);
+    }
+
+    private static Harness.Op parseGson(String[] messages) {
+        int[] next = new int[1];
+        return () -> new GameState(messages[next[0]++ % messages.length]);
+    }
+
+    private static Harness.Op parse(String[] messages) {
+        ObservationParser parser = new ObservationParser();
+        int[] next = new int[1];
+        return () -> parser.parse(messages[next[0]++ % messages.length]);
+    }
+
+    private static Harness.Op parseBinary(GameState[] states) {
+        ArrayList<ByteBuffer> buffers = new ArrayList<>();
+        for (GameState gs : observations(states)) {
+            Vector2d p = gs.getPosition();
+            if (gs.getBoard()[p.y][p.x].getKey() == gs.getPlayerId()) {
+                ByteBuffer buf = ByteBuffer.allocate(ObservationParser.binarySize(gs.getBoard().length));
+                ObservationParser.toBytes(gs, buf);
+                buf.flip();
+                buffers.add(buf);
+            }
+        }
+        ObservationParser parser = new ObservationParser();
+        int[] next = new int[1];
+        return () -> {
+            ByteBuffer buf = buffers.get(next[0]++ % buffers.size());
+            buf.rewind();
+            return parser.parse(buf);
+        };
+    }
+
+    /**
+     * Messages a Python client would send for the observations of the states, skipping agents on bombs (which the
+     * parsers can't find on the board).
+     */
+    private static String[] messages(GameState[] states) {
+        ArrayList<String> messages = new ArrayList<>();
+        for (GameState gs : observations(states)) {
+            Vector2d p = gs.getPosition();
+            if (gs.getBoard()[p.y][p.x].getKey() == gs.getPlayerId())
+                messages.add(ObservationParser.toMessage(gs));
+        }
+        return messages.toArray(new String[0]);
+    }
+
+    /**
+     * Observation of each state by its first agent still playing, as given to players.
+     */
+    private static GameState[] observations(GameState[] states) {
+        GameState[] observations = new GameState[states.length];
+        for (int i = 0; i < states.length; i++) {
+            for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+                GameState obs = states[i].copy(p);
+                if (obs.winner() == Types.RESULT.INCOMPLETE) {
+                    observations[i] = obs;
+                    break;
+                }
+            }
+        }
+        return observations;
+    }
+
+    /**
+     * States HEURISTIC_LOOKAHEAD ticks after the given ones, as evaluated at the end of a rollout.
+     */
+    private static GameState[] lookAhead(GameState[] states, Types.ACTIONS[][] actionSets) {
+        GameState[] ahead = new GameState[states.length];
+        for (int i = 0; i < states.length; i++) {
+            ahead[i] = states[i].copy();
+            for (int t = 0; t < HEURISTIC_LOOKAHEAD && !ahead[i].isTerminal(); t++) {
+                ahead[i].next(actionSets[(i * HEURISTIC_LOOKAHEAD + t) % actionSets.length]);
+            }
+        }
+        return ahead;
+    }
+
+    private static ArrayList<GameObject> bombsOf(GameState gs) {
+        ArrayList<GameObject> bombs = new ArrayList<>();
+        int[][] life = gs.getBombLife();
+        int[][] blast = gs.getBombBlastStrength();
+        for (int y = 0; y < life.length; y++) {
+            for (int x = 0; x < life[y].length; x++) {
+                if (life[y][x] > 0) {
+                    Bomb bomb = new Bomb(blast[y][x], life[y][x], -1);
+                    bomb.setPosition(new Vector2d(x, y));
+                    bombs.add(bomb);
+                }
+            }
+        }
+        return bombs;
+    }
+}
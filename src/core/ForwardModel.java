@@ -5,9 +5,11 @@ import objects.Bomb;
 import objects.Flame;
 import objects.GameObject;
 import utils.EventsStatistics;
+import utils.FlameMask;
 import utils.LevelGenerator;
 import utils.Types;
 import utils.Vector2d;
+import utils.Zobrist;
 
 import java.util.*;
 
@@ -16,6 +18,9 @@ import static utils.Utils.*;
 
 public class ForwardModel {
 
+    // values() copies its array on every call, so tile types are looked up here when building a board.
+    private static final Types.TILETYPE[] TILE_TYPES = Types.TILETYPE.values();
+
     // Board of the game, with all objects distributed in a 2D array of size 'this.size x this.size'
     private Types.TILETYPE[][] board;
 
@@ -54,6 +59,16 @@ public class ForwardModel {
     private EventsStatistics es;
     private boolean[] isAgentStuck;
 
+    // Zobrist key of the board and hidden power-ups, updated on every change of a cell.
+    private long tilesHash;
+    private TILETYPE[] rowSnapshot, columnSnapshot;
+
+    // Number of flames on each cell (indexed y * size + x) while a step is resolved.
+    private int[] flameCount;
+
+    // Upcoming flames, filled once per tick to check whether agents are stuck for the event statistics.
+    private FlameMask stuckMask;
+
     /**
      * Creates a forward model object.
      * @param size Size of the board.
@@ -140,7 +155,7 @@ public class ForwardModel {
         // Reduce power-ups and board arrays
         for (int x = 0; x < size; x++) {
             for (int y = 0; y < size; y++) {
-                Types.TILETYPE type = utils.Types.TILETYPE.values()[intBoard[y][x]];
+                Types.TILETYPE type = TILE_TYPES[intBoard[y][x]];
                 if (type == Types.TILETYPE.BOMB){
                     addBomb(x, y, bombBlastStrength[y][x], bombLife[y][x], -1, true);
                 } else if (type == Types.TILETYPE.FLAMES){
@@ -155,6 +170,21 @@ public class ForwardModel {
                 }
             }
         }
+        tilesHash = computeTilesHash();
+    }
+
+    /**
+     * Creates an empty forward model of the given implementation. Call init() to generate a board.
+     * @param size Size of the board.
+     * @param game_mode game mode being played.
+     * @param fmType implementation of the forward model.
+     * @return the new forward model.
+     */
+    static ForwardModel create(int size, Types.GAME_MODE game_mode, FM_TYPE fmType) {
+        if (fmType == FM_TYPE.PACKED) {
+            return new PackedForwardModel(size, game_mode);
+        }
+        return new ForwardModel(size, game_mode);
     }
 
     /**
@@ -167,9 +197,9 @@ public class ForwardModel {
     /**
      * Executes "saveToTextFile" method of EventsStatistics class, only works for the true model.
      */
-    void saveEventsStatistics(String gameIdStr, long seed) {
+    void saveEventsStatistics(String gameIdStr, long seed, int rep) {
         if (trueModel && LOGGING_STATISTICS && es != null)
-            es.saveToTextFile(gameIdStr, seed);
+            es.saveToTextFile(gameIdStr, seed, rep);
     }
 
     /**
@@ -218,6 +248,7 @@ public class ForwardModel {
             generateBoard(seed);
         else
             generateBoard(intBoard, seed);
+        tilesHash = computeTilesHash();
 
         if(trueModel && LOGGING_STATISTICS){
             tick = 0;
@@ -244,6 +275,66 @@ public class ForwardModel {
     ArrayList<GameObject> getAliveAgents() {
         return aliveAgents;
     }
+    Types.TILETYPE[][] getPowerups() {
+        return powerups;
+    }
+    ArrayList<GameObject> getBombs() {
+        return bombs;
+    }
+    ArrayList<GameObject> getFlames() {
+        return flames;
+    }
+
+    /**
+     * Sets a cell of the board or of the hidden power-ups, updating the Zobrist key of the tiles.
+     * @param grid board or powerups.
+     */
+    private void setCell(Types.TILETYPE[][] grid, int x, int y, Types.TILETYPE type) {
+        int cell = y * size + x;
+        if (grid == powerups) {
+            tilesHash ^= Zobrist.powerUp(cell, grid[y][x]) ^ Zobrist.powerUp(cell, type);
+        } else {
+            tilesHash ^= Zobrist.tile(cell, grid[y][x]) ^ Zobrist.tile(cell, type);
+        }
+        grid[y][x] = type;
+    }
+
+    /**
+     * Computes from scratch the Zobrist key of the board and hidden power-ups.
+     */
+    private long computeTilesHash() {
+        long hash = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                hash ^= Zobrist.tile(y * size + x, board[y][x]) ^ Zobrist.powerUp(y * size + x, powerups[y][x]);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 64-bit Zobrist hash of this model. The key of the board and hidden power-ups is kept up to date as the
+     * model changes; bombs, flames and agents change on every tick, so their keys are added in here. Their keys
+     * are summed rather than XORed, so that two identical flames on the same cell don't cancel each other out.
+     * @return the hash of this model.
+     */
+    long hash64() {
+        long hash = tilesHash;
+        for (GameObject o : bombs) {
+            Bomb b = (Bomb) o;
+            hash += Zobrist.bomb(b.getPosition().y * size + b.getPosition().x, b.getLife(), b.getBlastStrength());
+        }
+        for (GameObject f : flames) {
+            hash += Zobrist.flame(f.getPosition().y * size + f.getPosition().x, f.getLife());
+        }
+        for (int i = 0; i < agents.length; i++) {
+            Avatar a = (Avatar) agents[i];
+            Vector2d pos = a.getPosition();
+            int cell = pos == null ? -1 : pos.y * size + pos.x;
+            hash += Zobrist.agent(i, cell, a.getAmmo(), a.getBlastStrength(), a.canKick(), a.getWinner());
+        }
+        return hash;
+    }
 
     /**
      * Creates a copy of this model
@@ -256,6 +347,102 @@ public class ForwardModel {
         return copy;
     }
 
+    /**
+     * Copies this model into another one, as copy(-1) would, but reusing the arrays, lists and game objects of the
+     * target instead of allocating new ones. Anything obtained from the target before this call may be overwritten.
+     * @param target model to overwrite.
+     * @return false if the target can't be reused (different implementation or board size), true otherwise.
+     */
+    boolean copyInto(ForwardModel target) {
+        if (target.getClass() != getClass() || target.size != size)
+            return false;
+
+        target.game_mode = game_mode;
+        target.trueModel = false;
+        target.es = null;
+
+        target.board = copyInto(board, target.board);
+        target.powerups = copyInto(powerups, target.powerups);
+        target.tilesHash = tilesHash;
+
+        // Agents keep their index, so each one is copied into its counterpart.
+        if (target.agents == null) {
+            target.agents = deepCopy(agents);
+        } else {
+            for (int i = 0; i < agents.length; i++) {
+                agents[i].copyInto(target.agents[i]);
+            }
+        }
+        if (target.aliveAgents == null) {
+            target.aliveAgents = new ArrayList<>();
+        }
+        target.aliveAgents.clear();
+        for (GameObject a : target.agents) {
+            if (((Avatar) a).getWinner() == Types.RESULT.INCOMPLETE) {
+                target.aliveAgents.add(a);
+            }
+        }
+
+        // Flames and bombs are copied as in reduce(): flame life is reset, bombs lose their velocity and owner.
+        target.flames = copyInto(flames, target.flames);
+        for (GameObject f : target.flames) {
+            f.setLife(FLAME_LIFE);
+        }
+        target.bombs = copyInto(bombs, target.bombs);
+        for (GameObject b : target.bombs) {
+            ((Bomb) b).getVelocity().zero();
+            ((Bomb) b).setPlayerIdx(-1);
+        }
+
+        // Observation grids are rebuilt from the bombs
+        if (target.bombBlastStrength == null) {
+            target.bombBlastStrength = new int[size][size];
+            target.bombLife = new int[size][size];
+        }
+        for (int y = 0; y < size; y++) {
+            Arrays.fill(target.bombBlastStrength[y], 0);
+            Arrays.fill(target.bombLife[y], 0);
+        }
+        for (GameObject bombObject : target.bombs) {
+            Bomb bomb = (Bomb) bombObject;
+            Vector2d position = bomb.getPosition();
+            target.bombBlastStrength[position.y][position.x] = bomb.getBlastStrength();
+            target.bombLife[position.y][position.x] = bomb.getLife();
+        }
+        return true;
+    }
+
+    private static Types.TILETYPE[][] copyInto(Types.TILETYPE[][] source, Types.TILETYPE[][] target) {
+        if (target == null) {
+            target = new Types.TILETYPE[source.length][source.length];
+        }
+        for (int i = 0; i < source.length; i++) {
+            System.arraycopy(source[i], 0, target[i], 0, source[i].length);
+        }
+        return target;
+    }
+
+    /**
+     * Copies a list of bombs or flames, reusing the objects already in the target list.
+     */
+    private static ArrayList<GameObject> copyInto(ArrayList<GameObject> source, ArrayList<GameObject> target) {
+        if (target == null) {
+            target = new ArrayList<>(source.size());
+        }
+        while (target.size() > source.size()) {
+            target.remove(target.size() - 1);
+        }
+        for (int i = 0; i < source.size(); i++) {
+            GameObject o = source.get(i);
+            if (i < target.size()) {
+                o.copyInto(target.get(i));
+            } else {
+                target.add(o.copy());
+            }
+        }
+        return target;
+    }
+
     /**
      * ROLLS the MODEL FORWARD, applying the actions received as parameters,
      * and executing all passive events
@@ -343,8 +530,8 @@ public class ForwardModel {
             }
         }
 
-        // 10. Explode bombs
-        HashMap<Vector2d, Integer> flameOccupancy = handleBombExplosions();
+        // 10. Explode bombs. flameCount keeps the number of flames per cell, including those dead this tick.
+        handleBombExplosions();
 
         // 11. Resolve flame on death effects
         for (GameObject f : deadFlames) {
@@ -354,11 +541,11 @@ public class ForwardModel {
 
                 // If there is a power-up at that position, add it to the board
                 if (powerups[y][x] != null) {
-                    board[y][x] = powerups[y][x];
-                    powerups[y][x] = null;
+                    setCell(board, x, y, powerups[y][x]);
+                    setCell(powerups, x, y, null);
                     // If no power-up, add a passage to the board
                 } else {
-                    board[y][x] = Types.TILETYPE.PASSAGE;
+                    setCell(board, x, y, Types.TILETYPE.PASSAGE);
                 }
             }
         }
@@ -371,12 +558,12 @@ public class ForwardModel {
             int y = f.getDesiredCoordinate().y;
             if (board[y][x] != Types.TILETYPE.FLAMES) {
                 f.setPosition(f.getDesiredCoordinate());
-                board[y][x] = f.getType();
+                setCell(board, x, y, f.getType());
             }
         }
 
         // 13. Kill agents on flames. Otherwise, update position on board.
-        ArrayList<GameObject> deadAgentsThisTick = handleAgentKilling(flameOccupancy);
+        ArrayList<GameObject> deadAgentsThisTick = handleAgentKilling();
 
         // 14. Check for terminated agents
         if(deadAgentsThisTick.size() > 0) {
@@ -423,9 +610,13 @@ public class ForwardModel {
 
         // 17. Logging
         if(trueModel && LOGGING_STATISTICS) {
+            if (stuckMask == null) {
+                stuckMask = new FlameMask(size);
+            }
+            fillFlameMask(stuckMask);
             for (GameObject p : aliveAgents) {
                 int agentID = p.getType().getKey() - 10;
-                boolean isStuck = isStuckAdvanced(board, bombs, ((Avatar) p)); //isStuck(board, ((Avatar) p));
+                boolean isStuck = stuckMask.isTrapped(p.getPosition().x, p.getPosition().y, board); //isStuck(board, ((Avatar) p));
                 /*
                 if (!isAgentStuck[agentID] && isStuck){
                     String eventString = tick + " | [" + agentID + "] got stuck at ("
@@ -476,7 +667,7 @@ public class ForwardModel {
                 collapsedAgents.add(go);
             }
         }
-        board[y][x] = Types.TILETYPE.RIGID;
+        setCell(board, x, y, Types.TILETYPE.RIGID);
     }
 
     /**
@@ -543,26 +734,31 @@ public class ForwardModel {
     }
 
     /**
-     * Handles bomb explosions, creating the flame objects that destroy things.
-     * @return the set of positions occupied by flames.
+     * Handles bomb explosions, creating the flame objects that destroy things. Explosions chain in passes over the
+     * bombs, as bombs reached by flames explode too. A pass only starts from the first bomb reached by flames after
+     * its turn in the previous one, as no bomb before it can explode.
+     * Leaves in flameCount the number of flames on each cell.
      */
-    private HashMap<Vector2d, Integer> handleBombExplosions()
+    private void handleBombExplosions()
     {
-        boolean newExplosions = true;
-
-        // Get positions of flames
-        HashMap<Vector2d, Integer> flameOccupancy = checkOccupancy(flames);
-
-        while (newExplosions) {
-            // Use this flag to chain explosions. If new flames are added, then we need to check all bombs again
-            newExplosions = false;
+        if (flameCount == null) {
+            flameCount = new int[size * size];
+        } else {
+            Arrays.fill(flameCount, 0);
+        }
+        for (GameObject f : flames) {
+            flameCount[f.getDesiredCoordinate().y * size + f.getDesiredCoordinate().x]++;
+        }
 
+        int from = 0;
+        while (from < bombs.size()) {
             ArrayList<GameObject> deadBombs = new ArrayList<>();
-            for (GameObject b : bombs) {
+            for (int i = from; i < bombs.size(); i++) {
+                GameObject b = bombs.get(i);
 
                 // Force this bomb to explode if there is a flame at this position.
-                boolean forceExplosion = false;
-                if (flameOccupancy.get(b.getPosition()) != null) forceExplosion = true;
+                Vector2d bombPos = b.getPosition();
+                boolean forceExplosion = flameCount[bombPos.y * size + bombPos.x] > 0;
 
                 // Find the flame owners who triggered the explosion
                 if(trueModel && LOGGING_STATISTICS) {
@@ -592,11 +788,17 @@ public class ForwardModel {
                 // TODO: Wood removals happen here, but within Bomb class, what's the best way of doing this? (to count them)
 
                 // This bomb will explode and create new flames if life reached 0, or forced to explode
-                ArrayList<GameObject> newFlames = ((Bomb) b).explode(forceExplosion, board, powerups);
-                if (newFlames != null && newFlames.size() > 0) {
-
-                    flames.addAll(newFlames);
-                    newExplosions = true;
+                // The bomb writes its flames into the board directly: keep its row and column to update the hash.
+                if (b.getLife() != 0 && !forceExplosion) continue;
+                snapshotCross(bombPos.x, bombPos.y);
+                int first = flames.size();
+                if (((Bomb) b).explode(forceExplosion, board, flames, flameCount) > 0) {
+                    for (int f = first; f < flames.size(); f++) {
+                        int fx = flames.get(f).getPosition().x;
+                        int fy = flames.get(f).getPosition().y;
+                        TILETYPE previous = fy == bombPos.y ? rowSnapshot[fx] : columnSnapshot[fy];
+                        tilesHash ^= Zobrist.tile(fy * size + fx, previous) ^ Zobrist.tile(fy * size + fx, board[fy][fx]);
+                    }
 
                     // Remove this bomb from the list of bombs
                     deadBombs.add(b);
@@ -606,33 +808,56 @@ public class ForwardModel {
                     if (pIdx >= 0) {
                         ((Avatar)agents[pIdx]).addAmmo();
                     }
-
-                    // Add new flame positions to the map
-                    HashMap<Vector2d, Integer> newOccupancy = checkOccupancy(newFlames);
-                    for (Map.Entry<Vector2d, Integer> e : newOccupancy.entrySet()) {
-                        flameOccupancy.merge(e.getKey(), e.getValue(), (a, b1) -> b1 + a);
-                    }
                 }
             }
+            if (deadBombs.isEmpty()) break;
             bombs.removeAll(deadBombs);
+
+            // Bombs left on a flame were reached after their turn in this pass, and explode in the next one.
+            from = bombs.size();
+            for (int i = 0; i < bombs.size(); i++) {
+                Vector2d bombPos = bombs.get(i).getPosition();
+                if (flameCount[bombPos.y * size + bombPos.x] > 0) {
+                    from = i;
+                    break;
+                }
+            }
         }
+    }
+
+    /**
+     * Fills a flame mask with the flames bombs will create next tick.
+     */
+    void fillFlameMask(FlameMask mask) {
+        mask.fill(board, bombs);
+    }
 
-        return flameOccupancy;
+    /**
+     * Keeps a copy of the row and the column of the board crossing (x, y), as they were before an explosion there.
+     */
+    private void snapshotCross(int x, int y) {
+        if (rowSnapshot == null) {
+            rowSnapshot = new TILETYPE[size];
+            columnSnapshot = new TILETYPE[size];
+        }
+        System.arraycopy(board[y], 0, rowSnapshot, 0, size);
+        for (int i = 0; i < size; i++) {
+            columnSnapshot[i] = board[i][x];
+        }
     }
 
     /**
-     * Handles killing agents with flames in the board.
-     * @param flameOccupancy location of the flames on this tick.
+     * Handles killing agents with flames in the board (flameCount).
      * @return list of agents killed on this tick
      */
-    private ArrayList<GameObject> handleAgentKilling(HashMap<Vector2d, Integer> flameOccupancy)
+    private ArrayList<GameObject> handleAgentKilling()
     {
         ArrayList<GameObject> deadAgentsThisTick = new ArrayList<>();
         for (GameObject p : aliveAgents) {
             Vector2d nextPos = p.getDesiredCoordinate();
             Vector2d currPos = p.getPosition();
 
-            if (nextPos != null && currPos != null && flameOccupancy.containsKey(nextPos)) {
+            if (nextPos != null && currPos != null && flameCount[nextPos.y * size + nextPos.x] > 0) {
                 // This agent was killed by a flame, remove from list
                 p.setLife(0);
                 deadAgentsThisTick.add(p);
@@ -666,7 +891,7 @@ public class ForwardModel {
 
                 if (board[currPos.y][currPos.x] != Types.TILETYPE.BOMB
                         && board[currPos.y][currPos.x] != Types.TILETYPE.FLAMES) {
-                    board[currPos.y][currPos.x] = Types.TILETYPE.PASSAGE;
+                    setCell(board, currPos.x, currPos.y, Types.TILETYPE.PASSAGE);
                 }
             } else {
                 move(p);
@@ -714,7 +939,7 @@ public class ForwardModel {
                         // Check if next is a powerup, we should put it back in the powerup array before removing it from
                         // the board (unless it's an avatar collecting it).
                         if (!agentTypes.contains(o.getType()) && powerUpTypes.contains(nextType)) {
-                            powerups[nextPos.y][nextPos.x] = board[nextPos.y][nextPos.x];
+                            setCell(powerups, nextPos.x, nextPos.y, board[nextPos.y][nextPos.x]);
                         }
                     }
 
@@ -723,17 +948,17 @@ public class ForwardModel {
                     // Replace with passage if there isn't a power-up there that should be added back in
                     if (canOverwrite(currentPos, board, illegalOverwriteTypes)) {
                         if (powerups[currentPos.y][currentPos.x] != null) {
-                            board[currentPos.y][currentPos.x] = powerups[currentPos.y][currentPos.x];
-                            powerups[currentPos.y][currentPos.x] = null;
+                            setCell(board, currentPos.x, currentPos.y, powerups[currentPos.y][currentPos.x]);
+                            setCell(powerups, currentPos.x, currentPos.y, null);
                         } else {
-                            board[currentPos.y][currentPos.x] = Types.TILETYPE.PASSAGE;
+                            setCell(board, currentPos.x, currentPos.y, Types.TILETYPE.PASSAGE);
                         }
                     }
                 }
             }
 
             // Update next position. The order is bombs, avatars, so avatars would overwrite bombs.
-            board[nextPos.y][nextPos.x] = o.getType();
+            setCell(board, nextPos.x, nextPos.y, o.getType());
         }
     }
 
@@ -867,7 +1092,7 @@ public class ForwardModel {
                 board[i] = new Types.TILETYPE[size];
 
                 for (int j = 0; j < intBoard[i].length; j++) {
-                    Types.TILETYPE type = utils.Types.TILETYPE.values()[intBoard[i][j]];
+                    Types.TILETYPE type = TILE_TYPES[intBoard[i][j]];
                     if (type == Types.TILETYPE.BOMB) {
                         addBomb(j, i, DEFAULT_BOMB_BLAST, BOMB_LIFE, -1, true);
                     } else if (type == Types.TILETYPE.FLAMES) {
@@ -888,7 +1113,7 @@ public class ForwardModel {
             for (int i = 0; i < intBoard.length; i++) {
                 powerups[i] = new Types.TILETYPE[size];
                 for (int j = 0; j < intBoard[i].length; j++) {
-                    Types.TILETYPE type = utils.Types.TILETYPE.values()[intBoard[i][j]];
+                    Types.TILETYPE type = TILE_TYPES[intBoard[i][j]];
                     addPowerUp(j, i, type, false);
                 }
             }
@@ -903,7 +1128,7 @@ public class ForwardModel {
         setDesiredCoordinate(bomb, new Vector2d(x, y), board);
         bombs.add(bomb);
         if (addToBoard) {
-            board[y][x] = Types.TILETYPE.BOMB;
+            setCell(board, x, y, Types.TILETYPE.BOMB);
         }
     }
 
@@ -913,7 +1138,7 @@ public class ForwardModel {
         setDesiredCoordinate(flame, new Vector2d(x, y), board);
         flame.setPosition(flame.getDesiredCoordinate());
         flames.add(flame);
-        board[y][x] = Types.TILETYPE.FLAMES;
+        setCell(board, x, y, Types.TILETYPE.FLAMES);
     }
 
     void addPowerUp(int x, int y, Types.TILETYPE type, boolean visible) {
@@ -935,7 +1160,7 @@ public class ForwardModel {
         ((Avatar)agent).setWinner(Types.RESULT.INCOMPLETE);
         agent.setPosition(new Vector2d(x, y));
         setDesiredCoordinate(agent, new Vector2d(x, y), board);
-        board[y][x] = agent.getType();
+        setCell(board, x, y, agent.getType());
     }
 
     void removePowerUp(int x, int y, Types.TILETYPE type) {
@@ -950,12 +1175,12 @@ public class ForwardModel {
         GameObject object = new GameObject(type);
         object.setPosition(new Vector2d(x, y));
         setDesiredCoordinate(object, new Vector2d(x, y), targetArray);
-        targetArray[y][x] = type;
+        setCell(targetArray, x, y, type);
     }
 
     private void removeObject(int x, int y, Types.TILETYPE type, Types.TILETYPE[][] targetArray, boolean onlyBoard) {
         Vector2d pos = new Vector2d(x, y);
-        targetArray[y][x] = TILETYPE.PASSAGE;
+        setCell(targetArray, x, y, TILETYPE.PASSAGE);
 
         if (!onlyBoard) {
             if (type == TILETYPE.BOMB) {
@@ -975,7 +1200,7 @@ public class ForwardModel {
                 ((Avatar)ob).setWinner(RESULT.LOSS);
                 aliveAgents.remove(ob);
             } else if (TILETYPE.getPowerUpTypes().contains(type)) {
-                powerups[y][x] = null;
+                setCell(powerups, x, y, null);
             }
         }
     }
@@ -1033,6 +1258,7 @@ public class ForwardModel {
 
     @Override
     public String toString(){
+        Types.TILETYPE[][] board = getBoard();
         StringBuilder stringBuilder = new StringBuilder();
         for (int i = 0; i < board.length+2; i++) {
             stringBuilder.append("*");
@@ -1124,6 +1350,8 @@ public class ForwardModel {
             }
         }
 
+        copy.tilesHash = range == -1 ? tilesHash : copy.computeTilesHash();
+
         // Reduce arraylists of flames and bombs
         // Reset flames life if playerIdx > -1, players don't know this information
         _reduceHiddenList(flames, copy.flames, avatarPosition, range);
@@ -0,0 +1,86 @@
+package core;
+
+import utils.Types;
+
+/**
+ * Steps a number of independent game states (lanes) together, as rollouts and population evaluations do. Lanes are
+ * filled by copying states into game states owned by the batch, so once every lane has been used no step or refill
+ * allocates new states, and packed lanes also refill their observation grids in place (see PackedForwardModel).
+ * The arrays returned by the getters of a lane are therefore only valid until the lane is stepped or set again.
+ *
+ * The rules of the game are resolved per lane, exactly as GameState.next() does: lanes stepped in a batch go
+ * through the same games as copies of their states stepped one by one.
+ */
+public class ForwardModelBatch {
+
+    private final GameState[] lanes;
+
+    // Lanes that reached a terminal state, and are skipped by step() until they're set again.
+    private final boolean[] done;
+
+    /**
+     * @param capacity maximum number of lanes stepped together.
+     */
+    public ForwardModelBatch(int capacity) {
+        lanes = new GameState[capacity];
+        done = new boolean[capacity];
+    }
+
+    /**
+     * @return maximum number of lanes stepped together.
+     */
+    public int capacity() {
+        return lanes.length;
+    }
+
+    /**
+     * Copies a game state into a lane, overwriting its previous state.
+     * @param lane index of the lane.
+     * @param gs state to copy, which is not modified by the batch.
+     */
+    public void set(int lane, GameState gs) {
+        if (lanes[lane] == null) {
+            lanes[lane] = gs.copy();
+        } else {
+            gs.copyInto(lanes[lane]);
+        }
+        if (lanes[lane].model instanceof PackedForwardModel) {
+            ((PackedForwardModel) lanes[lane].model).reuseGrids = true;
+        }
+        done[lane] = lanes[lane].isTerminal();
+    }
+
+    /**
+     * @param lane index of the lane.
+     * @return current state of the lane, owned by the batch.
+     */
+    public GameState get(int lane) {
+        return lanes[lane];
+    }
+
+    /**
+     * @param lane index of the lane.
+     * @return true if the lane reached a terminal state and isn't stepped anymore.
+     */
+    public boolean isDone(int lane) {
+        return done[lane];
+    }
+
+    /**
+     * Advances the first n lanes by one tick. Lanes in a terminal state are left as they are.
+     * @param n number of lanes to step, all of which must have been set.
+     * @param actions actions of all players for each lane. Entries of terminal lanes are ignored and may be null.
+     * @return number of lanes stepped.
+     */
+    public int step(int n, Types.ACTIONS[][] actions) {
+        int stepped = 0;
+        for (int i = 0; i < n; i++) {
+            if (done[i]) continue;
+            GameState lane = lanes[i];
+            lane.next(actions[i]);
+            done[i] = lane.isTerminal();
+            stepped++;
+        }
+        return stepped;
+    }
+}
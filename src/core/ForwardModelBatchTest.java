@@ -0,0 +1,88 @@
+package core;
+
+import objects.GameObject;
+import org.junit.jupiter.api.Test;
+import utils.Types;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForwardModelBatchTest {
+
+    private static final int LANES = 6;
+
+    @Test
+    void lanesPlaySameGamesAsStates() {
+        for (Types.FM_TYPE fmType : Types.FM_TYPE.values()) {
+            ForwardModelBatch batch = new ForwardModelBatch(LANES);
+            GameState[] states = new GameState[LANES];
+            for (int k = 0; k < LANES; k++) {
+                states[k] = new GameState(k, Types.BOARD_SIZE, Types.GAME_MODE.FFA, fmType);
+                batch.set(k, states[k]);
+            }
+
+            Random rnd = new Random(7);
+            Types.ACTIONS[][] actions = new Types.ACTIONS[LANES][Types.NUM_PLAYERS];
+            for (int t = 0; t < Types.MAX_GAME_TICKS; t++) {
+                int active = 0;
+                for (int k = 0; k < LANES; k++) {
+                    for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                        // Bias towards bombs, so lanes end at different ticks
+                        int a = rnd.nextInt(Types.NUM_ACTIONS + 2);
+                        actions[k][i] = Types.ACTIONS.all().get(Math.min(a, Types.NUM_ACTIONS - 1));
+                    }
+                    if (!states[k].isTerminal()) {
+                        states[k].next(actions[k]);
+                        active++;
+                    }
+                }
+                assertEquals(active, batch.step(LANES, actions));
+
+                for (int k = 0; k < LANES; k++) {
+                    String msg = fmType + ", lane " + k + ", tick " + t;
+                    GameState lane = batch.get(k);
+                    assertEquals(states[k].getTick(), lane.getTick(), msg);
+                    assertEquals(states[k].isTerminal(), batch.isDone(k), msg);
+                    assertTrue(Arrays.deepEquals(states[k].getBoard(), lane.getBoard()), msg);
+                    assertTrue(Arrays.deepEquals(states[k].getBombBlastStrength(), lane.getBombBlastStrength()), msg);
+                    assertTrue(Arrays.deepEquals(states[k].getBombLife(), lane.getBombLife()), msg);
+                    assertTrue(GameObject.arrayEquals(states[k].getAgents(), lane.getAgents()), msg);
+                }
+                if (active == 0) break;
+
+                // Rollouts restart lanes from other states
+                if (rnd.nextInt(20) == 0) {
+                    int k = rnd.nextInt(LANES);
+                    states[k] = states[(k + 1) % LANES].copy();
+                    batch.set(k, states[k]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void lanesDontChangeSetStates() {
+        GameState gs = new GameState(3, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.PACKED);
+        int[][] bombLife = gs.getBombLife();
+        ForwardModelBatch batch = new ForwardModelBatch(1);
+        Types.ACTIONS[][] actions = new Types.ACTIONS[1][Types.NUM_PLAYERS];
+        Arrays.fill(actions[0], Types.ACTIONS.ACTION_BOMB);
+        for (int t = 0; t < 3; t++) {
+            batch.set(0, gs);
+            batch.step(1, actions);
+            assertEquals(0, gs.getTick());
+            assertSame(bombLife, gs.getBombLife());
+            for (int[] row : bombLife) {
+                for (int life : row) {
+                    assertEquals(0, life);
+                }
+            }
+        }
+        // The grids of the state copied into the lane are refilled in place by every step.
+        int[][] laneLife = batch.get(0).getBombLife();
+        batch.step(1, actions);
+        assertSame(laneLife, batch.get(0).getBombLife());
+    }
+}
@@ -86,6 +86,13 @@ class ForwardModelTest {
             new int[]{0,0,0,0,0,0,0,0,0,0,0},
     };
 
+    /**
+     * Creates the forward model the tests run on. Overridden to run this suite on other implementations.
+     */
+    ForwardModel createModel(long seed, int[][] intBoard, Types.GAME_MODE gameMode) {
+        return new ForwardModel(seed, intBoard, gameMode);
+    }
+
     private Game testNFrames(int n, int[][] intBoard, Types.ACTIONS[] actions, Types.GAME_MODE gameMode){
         return testNFrames(n, intBoard, actions, gameMode, true);
     }
@@ -95,7 +102,7 @@ class ForwardModelTest {
     }
 
     private Game testNFrames(int n, int[][] intBoard, Types.ACTIONS[] actions1, Types.ACTIONS[] actions2, Types.GAME_MODE gameMode, boolean canKick){
-        ForwardModel model = new ForwardModel(seed, intBoard, gameMode);
+        ForwardModel model = createModel(seed, intBoard, gameMode);
 
         Queue<Types.ACTIONS> actionsQueue1 = new ArrayDeque<>();
         actionsQueue1.addAll(Arrays.asList(actions1));
@@ -3,10 +3,14 @@ package core;
 import objects.Avatar;
 import objects.GameObject;
 import players.Player;
+import players.PlayerMetrics;
 import players.SimonSaysPlayer;
 import utils.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static utils.Types.*;
 import static utils.Types.VISUALS;
@@ -38,13 +42,29 @@ public class Game {
     // String that identifies this game (for logging purposes)
     private String gameIdStr;
 
+    // Implementation of the forward model used when the game is reset.
+    private Types.FM_TYPE fmType = Types.FM_TYPE.OBJECT;
+
+    // Repetition of this game with the same seed, used to name log files. -1 to use GameLog.REP and
+    // EventsStatistics.REP instead.
+    private int repetition = -1;
+
     // Log flags
     public static boolean LOG_GAME = false;
     public static boolean LOG_GAME_JSON = false; // If the game is being logged, should it be saved to json
+    public static boolean LOG_GAME_BINARY = false; // If the game is being logged, should it be streamed in binary
+
+    // Binary log being written while the game runs (LOG_GAME_BINARY)
+    private BinaryGameLog.Writer binaryLog;
+
+    // Print the results of each game when it ends. Headless runs of many games turn it off.
+    public static boolean PRINT_RESULTS = true;
+
+    // Receives every tick played, if set.
+    private TickListener tickListener;
 
-    // Variables for multi-threaded run 
-    private Actor[] actors = new Actor[NUM_PLAYERS];
-    private Thread[] threads = new Thread[NUM_PLAYERS];
+    // Variables for multi-threaded run: one thread per player, kept for the whole game.
+    private ExecutorService[] actorThreads = new ExecutorService[NUM_PLAYERS];
 
     //Counts how many time a player did overtime
     private int[] playerOvertimes = new int[NUM_PLAYERS];
@@ -63,6 +83,22 @@ public class Game {
         reset(seed);
     }
 
+    /**
+     * Constructor of the game, choosing the implementation of the forward model.
+     * @param seed Seed for the game (used only for board generation)
+     * @param size Size of the board.
+     * @param gameMode Mode of this game.
+     * @param fmType Implementation of the forward model.
+     */
+    public Game(long seed, int size, Types.GAME_MODE gameMode, String gameIdStr, Types.FM_TYPE fmType) {
+        this.gameMode = gameMode;
+        this.seed = seed;
+        this.size = size;
+        this.gameIdStr = gameIdStr;
+        this.fmType = fmType;
+        reset(seed);
+    }
+
     /**
      * Optional game constructor
      * @param seed Seed for the game
@@ -113,9 +149,10 @@ public class Game {
     public void reset(long seed)
     {
         this.seed = seed;
-        this.gs = new GameState(seed, size, gameMode, true);
+        this.gs = new GameState(seed, size, gameMode, true, fmType);
         this.gs.model.setTrueModel();
         this.gs.init();
+        Arrays.fill(playerOvertimes, 0);
         updateAssignedGameStates();
     }
 
@@ -128,9 +165,10 @@ public class Game {
         if (!sameBoard) {
             this.seed = System.currentTimeMillis();
         }
-        this.gs = new GameState(seed, size, gameMode, true);
+        this.gs = new GameState(seed, size, gameMode, true, fmType);
         this.gs.model.setTrueModel();
         this.gs.init();
+        Arrays.fill(playerOvertimes, 0);
         updateAssignedGameStates();
     }
 
@@ -139,6 +177,9 @@ public class Game {
      */
     public Game copy() {
         Game copy = new Game(gs);
+        copy.fmType = fmType;
+        copy.gameIdStr = gameIdStr;
+        copy.repetition = repetition;
         ArrayList<Player> copyPlayers = new ArrayList<>(this.players.size());
         for (Player player : players) {
             copyPlayers.add(player.copy());
@@ -154,6 +195,15 @@ public class Game {
         return copy;
     }
 
+    /**
+     * Sets the repetition number of this game, used to name the game and events logs. This avoids setting
+     * GameLog.REP and EventsStatistics.REP, which are shared by all games.
+     * @param repetition repetition of the game with the current seed.
+     */
+    public void setRepetition(int repetition) {
+        this.repetition = repetition;
+    }
+
     /**
      * Sets the players of the game and initializes the array to hold their game states.
      * @param players Players of the game.
@@ -202,13 +252,22 @@ public class Game {
 
         boolean firstEnd = true;
         Types.RESULT[] results = null;
-        if (LOG_GAME)
+        if (LOG_GAME) {
             gameLog = new GameLog(seed, size, gameMode);
+            if (LOG_GAME_BINARY)
+                openBinaryLog();
+        }
 
         if (separateThreads) {
             createActors();
         }
 
+        // Metrics are reported per game
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            players.get(i).getMetrics().reset();
+            gameStateObservations[i].setMetrics(players.get(i).getMetrics());
+        }
+
         while(!isEnded() || VISUALS && wi != null && !wi.windowClosed && !isEnded()) {
             // Loop while window is still open, even if the game ended.
             // If not playing with visuals, loop while the game's not ended.
@@ -243,8 +302,10 @@ public class Game {
 
         // Save logged game
         if (LOG_GAME) {
-            if (LOG_GAME_JSON) {
-                gameLog.serializeJSON(gameIdStr);
+            if (binaryLog != null) {
+                closeBinaryLog();
+            } else if (LOG_GAME_JSON) {
+                gameLog.serializeJSON(gameIdStr, repetition == -1 ? GameLog.REP : repetition);
             } else {
                 gameLog.serialize();
             }
@@ -283,9 +344,21 @@ public class Game {
             actions = getAvatarActions();
         }
 
+        if (tickListener != null) {
+            tickListener.onTick(gs, actions);
+        }
+
         // Log actions
         if (LOG_GAME) {
             gameLog.addActions(actions);
+            if (binaryLog != null) {
+                try {
+                    binaryLog.append(actions);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    closeBinaryLog();
+                }
+            }
         }
 
         // Advance the game state
@@ -312,9 +385,11 @@ public class Game {
 
                 ElapsedCpuTimer ect = new ElapsedCpuTimer();
                 ect.setMaxTimeMillis(Types.DECISION_TIME_LIMIT);
+                long start = System.nanoTime();
 
                 actions[i] = p.act(gameStateObservations[i]);
 
+                p.getMetrics().addDecision(System.nanoTime() - start, ect.elapsedNanos());
                 long elapsedTime = ect.elapsedMillis();
                 if(CHECK_DECISION_TIME && elapsedTime > DECISION_TIME_LIMIT)
                 {
@@ -335,51 +410,88 @@ public class Game {
 
     /**
      * Get player actions, 1 for each avatar still in the game, using separate threads. Called at every frame.
+     * If Types.CHECK_DECISION_TIME is set, players that haven't decided DECISION_TIME_LIMIT ms (wall-clock time)
+     * after starting to act execute ACTION_STOP. Their late decision is cancelled (interrupting act()) and its
+     * action discarded. A player whose thread is still busy with a late decision that ignores the interrupt can't
+     * start the next one in time, and also executes ACTION_STOP.
      */
     private Types.ACTIONS[] getAvatarActionsInSeparateThreads() throws InterruptedException {
-        //
         Types.ACTIONS[] actions = new Types.ACTIONS[NUM_PLAYERS];
+        Actor[] actors = new Actor[NUM_PLAYERS];
+        List<Future<Types.ACTIONS>> futures = new ArrayList<>(NUM_PLAYERS);
         for (int i = 0; i < NUM_PLAYERS; i++) {
             Player p = players.get(i);
 
             // Check if this player is still playing
             if (gameStateObservations[i].winner() == Types.RESULT.INCOMPLETE) {
-                actors[i].player = p;
-                threads[i] = new Thread(actors[i]);
-                threads[i].start();
+                actors[i] = new Actor(p, gameStateObservations[i]);
+                futures.add(actorThreads[i].submit(actors[i]));
             } else {
-                threads[i] = null;
                 // This player is dead and action will be ignored
                 actions[i] = Types.ACTIONS.ACTION_STOP;
+                futures.add(null);
             }
         }
 
-        killThreads();
-
+        long limit = TimeUnit.MILLISECONDS.toNanos(DECISION_TIME_LIMIT);
         for (int i = 0; i < NUM_PLAYERS; i++) {
-            if (threads[i] != null)
-                actions[i] = actors[i].getValue();
+            Future<Types.ACTIONS> future = futures.get(i);
+            if (future == null)
+                continue;
+            try {
+                if (CHECK_DECISION_TIME) {
+                    // The time limit counts from the start of act(), which may wait for a late decision to end.
+                    if (!actors[i].started.await(limit, TimeUnit.NANOSECONDS))
+                        throw new TimeoutException();
+                    actions[i] = future.get(actors[i].startNanos + limit - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } else {
+                    actions[i] = future.get();
+                }
+            } catch (TimeoutException e) {
+                if(VERBOSE)
+                    System.out.println("Player " + players.get(i).getPlayerID() + " used more time than allowed (" + DECISION_TIME_LIMIT + "ms). Executing action STOP.");
+                future.cancel(true);
+                actions[i] = ACTIONS.ACTION_STOP;
+                playerOvertimes[i]++;
+            } catch (CancellationException e) {
+                actions[i] = ACTIONS.ACTION_STOP;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                actions[i] = ACTIONS.ACTION_STOP;
+            }
         }
 
         return actions;
     }
 
     /**
-     * Creates actor objects for the players.
+     * Starts the threads the players act on, one per player.
      */
     public void createActors() {
-        for (int i = 0; i < NUM_PLAYERS; i++)
-            actors[i] = new Actor();
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            final String name = "actor-" + i;
+            actorThreads[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
     }
 
     /**
-     * Kills all threads.
-     * @throws InterruptedException if threads could not be killed
+     * Kills all threads. Players still deciding get DECISION_TIME_LIMIT ms to finish before moving on.
+     * @throws InterruptedException if interrupted while waiting for the threads.
      */
     private void killThreads() throws InterruptedException {
         for (int i = 0; i < NUM_PLAYERS; i++) {
-            if (threads[i] != null && threads[i].isAlive())
-                threads[i].join();
+            if (actorThreads[i] != null)
+                actorThreads[i].shutdown();
+        }
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            if (actorThreads[i] != null) {
+                actorThreads[i].awaitTermination(DECISION_TIME_LIMIT, TimeUnit.MILLISECONDS);
+                actorThreads[i] = null;
+            }
         }
     }
 
@@ -392,6 +504,8 @@ public class Game {
         }
         for (int i = 0; i < NUM_PLAYERS; i++) {
             gameStateObservations[i] = getGameState(i);
+            if (players != null)
+                gameStateObservations[i].setMetrics(players.get(i).getMetrics());
         }
     }
 
@@ -444,20 +558,21 @@ public class Game {
         }
 
         if (LOGGING_STATISTICS)
-            gs.model.saveEventsStatistics(gameIdStr, seed);
+            gs.model.saveEventsStatistics(gameIdStr, seed, repetition == -1 ? EventsStatistics.REP : repetition);
 
 //        if (VERBOSE) {
 //        System.out.println("GameOver: " + Arrays.toString(results));
 //        System.out.println(Arrays.toString(results));
 
-        System.out.print("[");
-        for(int i = 0; i < results.length; ++i)
-        {
-            System.out.print(results[i] + (" (" + playerOvertimes[i] + ")"));
-            if(i == results.length-1)
-                System.out.println("]");
-            else
-                System.out.print(", ");
+        // Printed in one go, so the lines of games played at the same time don't get mixed up.
+        if (PRINT_RESULTS) {
+            StringBuilder sb = new StringBuilder("[");
+            for(int i = 0; i < results.length; ++i)
+            {
+                sb.append(results[i]).append(" (").append(playerOvertimes[i]).append(")");
+                sb.append(i == results.length-1 ? "]" : ", ");
+            }
+            System.out.println(sb);
         }
 
 //        }
@@ -565,7 +680,9 @@ public class Game {
      */
     public static Game getLastReplayGame(){
         GameLog lastLog;
-        if (Game.LOG_GAME_JSON) {
+        if (Game.LOG_GAME_BINARY) {
+            lastLog = BinaryGameLog.readLast(new File(BinaryGameLog.BINARY_GAMELOGS_PATH));
+        } else if (Game.LOG_GAME_JSON) {
             lastLog = GameLog.deserializeLastJSON();
         } else {
             lastLog = GameLog.deserializeLast();
@@ -578,6 +695,42 @@ public class Game {
         return logToGame(gameLog);
     }
 
+    /**
+     * Returns the game stored in a binary log (see BinaryGameLog), with SimonSays players executing the logged
+     * action sequences.
+     * @param logFile - binary log file.
+     * @return - the logged game, or null if the log couldn't be read.
+     */
+    public static Game getReplayGame(File logFile){
+        try {
+            return logToGame(BinaryGameLog.read(logFile));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Creates the binary log file of this game and writes its header.
+     */
+    private void openBinaryLog() {
+        File file = BinaryGameLog.logFile(gameIdStr, seed, repetition == -1 ? GameLog.REP : repetition, size, gameMode);
+        try {
+            binaryLog = new BinaryGameLog.Writer(file, seed, size, gameMode, NUM_PLAYERS);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeBinaryLog() {
+        try {
+            binaryLog.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        binaryLog = null;
+    }
+
     private static Game logToGame(GameLog log){
         Game game = null;
         if (log != null) {
@@ -617,25 +770,62 @@ public class Game {
     public int[] getPlayerOvertimes() {return playerOvertimes;}
 
     /**
-     * Actor class for running multi-threaded games. Each player is an Actor.
+     * Sets the listener that receives every tick of the games run, or null for none. Not copied by copy().
+     * @param tickListener listener of this game.
      */
-    public class Actor implements Runnable {
-
-        private volatile  Types.ACTIONS action;
-        public Player player;
-        public GameState gamestate;
+    public void setTickListener(TickListener tickListener) {
+        this.tickListener = tickListener;
+    }
 
-        Actor() {
-//            this.player = player;
-//            this.gamestate = gamestate;
+    /**
+     * @return the metrics of each player in the last game run, in player order.
+     */
+    public PlayerMetrics[] getPlayerMetrics() {
+        PlayerMetrics[] metrics = new PlayerMetrics[players.size()];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = players.get(i).getMetrics();
         }
+        return metrics;
+    }
 
-        @Override
-        public void run() {
-            action = player.act(this.gamestate);
+    /**
+     * Receives the ticks of a game as they're played, e.g. to record training data.
+     */
+    public interface TickListener {
+        /**
+         * Called once per tick, after the players decided their actions and before they're executed.
+         * @param state true state of the game, which must not be modified. It may be copied, e.g. with
+         *              state.copy(playerIdx) for the observation of a player.
+         * @param actions actions of all players, STOP for those already out of the game.
+         */
+        void onTick(GameState state, Types.ACTIONS[] actions);
+    }
+
+    /**
+     * Actor class for running multi-threaded games: one player deciding its action on its observation.
+     */
+    public static class Actor implements Callable<Types.ACTIONS> {
+
+        private final Player player;
+        private final GameState gamestate;
+
+        // Counted down when the player starts to act, at startNanos (System.nanoTime()).
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile long startNanos;
+
+        Actor(Player player, GameState gamestate) {
+            this.player = player;
+            this.gamestate = gamestate;
         }
 
-        public Types.ACTIONS getValue() {
+        @Override
+        public Types.ACTIONS call() {
+            ElapsedCpuTimer ect = new ElapsedCpuTimer();
+            long start = System.nanoTime();
+            startNanos = start;
+            started.countDown();
+            Types.ACTIONS action = player.act(this.gamestate);
+            player.getMetrics().addDecision(System.nanoTime() - start, ect.elapsedNanos());
             return action;
         }
     }
@@ -3,8 +3,11 @@ package core;
 import com.google.gson.*;
 import objects.Avatar;
 import objects.GameObject;
+import players.PlayerMetrics;
+import utils.FlameMask;
 import utils.Types;
 import utils.Vector2d;
+import utils.Zobrist;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -43,6 +46,13 @@ public class GameState {
     // Game mode being played
     Types.GAME_MODE gameMode;
 
+    // Metrics of the player this state was handed to, shared by all copies of it. Null for the game's own state.
+    private PlayerMetrics metrics;
+
+    // Upcoming flames for isTrapped(), filled on the first query after the state changes.
+    private FlameMask flameMask;
+    private boolean flameMaskValid;
+
     /**
      * Constructor, first thing to call. Creates a GameState object with some information.
      * @param seed - random seed to be used in generating the board.
@@ -51,12 +61,24 @@ public class GameState {
      * @param newFM - indicates if a new ForwardModel should be created at this point or not
      */
     protected GameState(long seed, int size, Types.GAME_MODE gameMode, boolean newFM) {
+        this(seed, size, gameMode, newFM, FM_TYPE.OBJECT);
+    }
+
+    /**
+     * Constructor, first thing to call. Creates a GameState object with some information.
+     * @param seed - random seed to be used in generating the board.
+     * @param size - size of the board.
+     * @param gameMode - game mode being played.
+     * @param newFM - indicates if a new ForwardModel should be created at this point or not
+     * @param fmType - implementation of the forward model to create.
+     */
+    protected GameState(long seed, int size, Types.GAME_MODE gameMode, boolean newFM, FM_TYPE fmType) {
         this.seed = seed;
         this.size = size;
         this.gameMode = gameMode;
 
         if (newFM) {
-            model = new ForwardModel(size, gameMode);
+            model = ForwardModel.create(size, gameMode, fmType);
         }
         if (gameMode.equals(Types.GAME_MODE.TEAM_RADIO)){
             this.message = new int[NUM_PLAYERS][MESSAGE_LENGTH];
@@ -79,6 +101,18 @@ public class GameState {
         }
     }
 
+    /**
+     * Optional game state constructor, choosing the forward model implementation.
+     * @param seed - random seed for board generation
+     * @param size - size of the board
+     * @param gameMode - game mode being played
+     * @param fmType - implementation of the forward model to use.
+     */
+    public GameState(long seed, int size, Types.GAME_MODE gameMode, FM_TYPE fmType) {
+        this(seed, size, gameMode, true, fmType);
+        model.init(seed, size, gameMode, null, null);
+    }
+
     /**
      * Constructor which creates a new GameState object.
      * Provides a forward model directly.
@@ -144,7 +178,7 @@ public class GameState {
      * player Idx is retained, while the model is not further reduced.
      * @return a copy of this state
      */
-    GameState copy(int playerIdx) {
+    public GameState copy(int playerIdx) {
         // Determine this copy's player idx. If either received playerIdx or this.playerIdx is >= 0, keep that one.
         // Otherwise, keep original playerIdx
         int copyIdx = this.playerIdx;
@@ -155,6 +189,9 @@ public class GameState {
         GameState copy = new GameState(seed, size, gameMode, false);
         copy.model = model.copy(playerIdx);  // Use given playerIdx to reduce state (-1 in copies of copies)
         copy.tick = tick;
+        copy.metrics = metrics;
+        if (metrics != null)
+            metrics.countCopy();
 
         // Use this copy's player idx as determined earlier to update copy playerIdx and its assigned avatar.
         copy.playerIdx = copyIdx;
@@ -168,6 +205,87 @@ public class GameState {
         return copy;
     }
 
+    /**
+     * Copies this game state into another one, as copy() would, reusing the target's arrays and game objects
+     * instead of allocating new ones. The target's previous content, including anything handed out by its
+     * getters, is overwritten.
+     * @param target game state to overwrite.
+     */
+    public void copyInto(GameState target) {
+        target.seed = seed;
+        target.size = size;
+        target.gameMode = gameMode;
+        target.tick = tick;
+        target.metrics = metrics;
+        target.flameMaskValid = false;
+        if (metrics != null)
+            metrics.countCopy();
+
+        if (target.model == null || !model.copyInto(target.model)) {
+            target.model = model.copy(-1);
+        }
+
+        target.playerIdx = playerIdx;
+        if (playerIdx >= 0) {
+            target.avatar = (Avatar) target.model.getAgents()[playerIdx];
+        } else {
+            target.avatar = null;
+        }
+
+        if (gameMode.equals(Types.GAME_MODE.TEAM_RADIO)) {
+            if (target.message == null) {
+                target.message = new int[NUM_PLAYERS][MESSAGE_LENGTH];
+            } else {
+                for (int[] m : target.message) {
+                    Arrays.fill(m, 0);
+                }
+            }
+        } else if (playerIdx >= 0 && gameMode.equals(GAME_MODE.FFA) && message != null) {
+            target.message = message.clone();
+        } else {
+            target.message = null;
+        }
+    }
+
+    /**
+     * 64-bit Zobrist hash of this game state, including the current tick. Identical states have the same
+     * hash; different states collide only with negligible probability.
+     * @return the hash of this state.
+     */
+    public long hash64() {
+        return model.hash64() ^ Zobrist.tick(tick);
+    }
+
+    /**
+     * Zobrist key of the observing player's avatar alone: position, ammo, blast strength, kick and result. It
+     * ignores the rest of the board, so it tells whether an action had the expected outcome for this player whatever
+     * the other agents did.
+     * @return the key, or 0 if this state isn't observed by a player.
+     */
+    public long avatarHash64() {
+        if (avatar == null)
+            return 0;
+        Vector2d pos = avatar.getPosition();
+        int cell = pos == null ? -1 : pos.y * size + pos.x;
+        return Zobrist.agent(playerIdx, cell, avatar.getAmmo(), avatar.getBlastStrength(), avatar.canKick(),
+                avatar.getWinner());
+    }
+
+    /**
+     * Attaches the metrics of the player this state is handed to. Forward model calls and copies made from this
+     * state, or from its copies, are counted in them.
+     */
+    void setMetrics(PlayerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the metrics of the player working with this state, null if none.
+     */
+    public PlayerMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * @return the random seed of this state
      */
@@ -186,7 +304,10 @@ public class GameState {
 
         if (tick < Types.MAX_GAME_TICKS)
         {
+            if (metrics != null)
+                metrics.countNext();
             model.next(actions, tick);
+            flameMaskValid = false;
             tick++;
             if (tick == Types.MAX_GAME_TICKS)
                 Types.getGameConfig().processTimeout(gameMode, getAgents(), getAliveAgents());
@@ -252,6 +373,15 @@ public class GameState {
         return avatar.getPosition();
     }
 
+    /**
+     * @param playerIdx index of a player (0 to Types.NUM_PLAYERS - 1).
+     * @return position of the player, or null if it is dead. Owned by the state, so it shouldn't be modified.
+     */
+    public Vector2d getAgentPosition(int playerIdx) {
+        GameObject agent = model.getAgents()[playerIdx];
+        return agent.getLife() == 0 ? null : agent.getPosition();
+    }
+
     public Types.GAME_MODE getGameMode() {
         return gameMode;
     }
@@ -325,47 +455,99 @@ public class GameState {
      */
     public int getTick() { return tick; }
 
+    /**
+     * Checks if the player of this state is trapped: on a cell that bombs exploding next tick will set on fire, with
+     * no passable cell out of their blasts within one move. Chained explosions are not considered. Allocation-free
+     * after the first call, so it can be used on every step of a rollout.
+     * @return true if the player is trapped, false if not or if this state has no player.
+     */
+    public boolean isTrapped() {
+        return isTrapped(playerIdx);
+    }
+
+    /**
+     * Checks if a player is trapped, as isTrapped().
+     * @param playerIdx index of the player.
+     * @return true if the player is alive and trapped.
+     */
+    public boolean isTrapped(int playerIdx) {
+        if (playerIdx < 0)
+            return false;
+        GameObject agent = model.getAgents()[playerIdx];
+        if (agent.getLife() == 0 || agent.getPosition() == null)
+            return false;
+        int x = agent.getPosition().x;
+        int y = agent.getPosition().y;
+        FlameMask mask = getFlameMask();
+        return mask.isUpcomingFlame(x, y) && mask.isTrapped(x, y, getBoard());
+    }
+
+    /**
+     * @return cells that bombs exploding next tick will set on fire, without chained explosions. Owned by this state
+     * and updated when it changes, so it shouldn't be kept.
+     */
+    public FlameMask getFlameMask() {
+        if (!flameMaskValid) {
+            if (flameMask == null) {
+                flameMask = new FlameMask(size);
+            }
+            model.fillFlameMask(flameMask);
+            flameMaskValid = true;
+        }
+        return flameMask;
+    }
+
 
     /* ----- Methods to insert or remove observations into the game model ----- */
 
     public void addBomb(int x, int y, int blastStrength, int bombLife, int playerIdx, boolean addToBoard) {
         model.addBomb(x, y, blastStrength, bombLife, playerIdx, addToBoard);
+        flameMaskValid = false;
     }
 
     public void addFlame(int x, int y, int life) {
         model.addFlame(x, y, life);
+        flameMaskValid = false;
     }
 
     public void addPowerUp(int x, int y, Types.TILETYPE type, boolean visible) {
         model.addPowerUp(x, y, type, visible);
+        flameMaskValid = false;
     }
 
     public void addObject(int x, int y, Types.TILETYPE type) {
         model.addObject(x, y, type);
+        flameMaskValid = false;
     }
 
     public void removeObject(int x, int y, Types.TILETYPE type, boolean onlyBoard) {
         model.removeObject(x, y, type, onlyBoard);
+        flameMaskValid = false;
     }
 
     public void removePowerUp(int x, int y, Types.TILETYPE type) {
         model.removePowerUp(x, y, type);
+        flameMaskValid = false;
     }
 
     public void addAgent(int x, int y, int idx) {
         model.addAgent(x, y, idx);
+        flameMaskValid = false;
     }
 
     public void setAgent(int playerIdx, int x, int y, boolean canKick, int ammo, int blastStrength) {
         model.setAgent(playerIdx, x, y, canKick, ammo, blastStrength);
+        flameMaskValid = false;
     }
 
     public void setBomb(int x, int y, int playerIdx, Vector2d velocity) {
         model.setBomb(x, y, playerIdx, velocity);
+        flameMaskValid = false;
     }
 
     public void setFlame(int x, int y, int life) {
         model.setFlame(x, y, life);
+        flameMaskValid = false;
     }
 
     public int[] getMessage(){
@@ -457,6 +639,25 @@ public class GameState {
         int step_count = gson.fromJson(obsObj.get("step_count"), int.class); // step_count
         int action_space = object.get("action_space").getAsInt();
 
+        fromObservation(alive, board, bomb_blast_strength, bomb_life, game_type, position, blast_strength, can_kick,
+                ammo, step_count, action_space);
+    }
+
+    /**
+     * Game state constructor for observations read by ObservationParser.
+     */
+    GameState(int[] alive, int[][] board, int[][] bomb_blast_strength, int[][] bomb_life, int game_type,
+              int[] position, int blast_strength, boolean can_kick, int ammo, int step_count, int action_space) {
+        fromObservation(alive, board, bomb_blast_strength, bomb_life, game_type, position, blast_strength, can_kick,
+                ammo, step_count, action_space);
+    }
+
+    /**
+     * Sets up this state from the fields of a Python observation. The forward model keeps the bomb arrays.
+     */
+    private void fromObservation(int[] alive, int[][] board, int[][] bomb_blast_strength, int[][] bomb_life,
+                                 int game_type, int[] position, int blast_strength, boolean can_kick, int ammo,
+                                 int step_count, int action_space) {
         Types.GAME_MODE gameMode = Types.GAME_MODE.FFA; // Default
         if (game_type == 1) {
             gameMode = Types.GAME_MODE.FFA;
@@ -484,7 +685,7 @@ public class GameState {
             this.avatar.setAmmo(ammo);
             this.avatar.setBlastStrength(blast_strength);
             this.avatar.setVisionRange(DEFAULT_VISION_RANGE);
-            if (can_kick) this.avatar.canKick();
+            if (can_kick) this.avatar.setCanKick();
         } catch (Exception e){
             e.printStackTrace();
         }
@@ -0,0 +1,43 @@
+package core;
+
+import java.util.ArrayDeque;
+
+/**
+ * Per-thread pool of game states, for searches that copy a state on every iteration. Copies taken from the pool
+ * reuse the buffers of states released earlier on the same thread, so the search loop allocates almost nothing.
+ *
+ * A state must be released once it's no longer used, and nothing obtained from it (board, avatars, positions...)
+ * should be kept after that, as it will be overwritten by the next copy.
+ */
+public class GameStatePool {
+
+    // Maximum number of released states kept per thread.
+    private static final int MAX_POOL_SIZE = 32;
+
+    private static final ThreadLocal<ArrayDeque<GameState>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Returns a copy of the given state, equivalent to gs.copy(), reusing a pooled state if there is one.
+     * @param gs state to copy.
+     * @return the copy.
+     */
+    public static GameState copy(GameState gs) {
+        GameState copy = pool.get().pollLast();
+        if (copy == null) {
+            return gs.copy();
+        }
+        gs.copyInto(copy);
+        return copy;
+    }
+
+    /**
+     * Gives a state back to this thread's pool.
+     * @param gs state not used anymore.
+     */
+    public static void release(GameState gs) {
+        ArrayDeque<GameState> states = pool.get();
+        if (states.size() < MAX_POOL_SIZE) {
+            states.addLast(gs);
+        }
+    }
+}
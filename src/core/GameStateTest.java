@@ -1,6 +1,16 @@
 package core;
 
+import objects.Avatar;
+import objects.Bomb;
+import objects.GameObject;
+import org.junit.jupiter.api.Test;
 import utils.Types;
+import utils.Zobrist;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utils.TestUtils.randomActions;
 
 class GameStateTest {
 
@@ -10,4 +20,141 @@ class GameStateTest {
         gs.init();
         System.out.println(gs.model);
     }
-}
\ No newline at end of file
+
+    @Test
+    void copyIntoTest() {
+        for (Types.FM_TYPE fmType : Types.FM_TYPE.values()) {
+            Random rnd = new Random(1234);
+            GameState gs = new GameState(1234, 11, Types.GAME_MODE.FFA, fmType);
+            GameState target = gs.copy();
+
+            while (!gs.isTerminal()) {
+                gs.next(randomActions(rnd));
+
+                // The target is reused on every tick, after having moved on from the previous copy.
+                gs.copyInto(target);
+                GameState copy = gs.copy();
+                assertEquals(copy.model, target.model);
+                assertEquals(copy.getTick(), target.getTick());
+
+                Types.ACTIONS[] actions = randomActions(rnd);
+                copy.next(actions);
+                target.next(actions);
+                assertEquals(copy.model, target.model);
+                if (fmType == Types.FM_TYPE.PACKED)
+                    assertEquals(copy.model.hashCode(), target.model.hashCode());
+            }
+        }
+    }
+
+    @Test
+    void hash64Test() {
+        Random rnd = new Random(42);
+        GameState gs = new GameState(42, 11, Types.GAME_MODE.FFA, Types.FM_TYPE.OBJECT);
+        assertEquals(rehash(gs), gs.hash64());
+
+        long previous = gs.hash64();
+        while (!gs.isTerminal()) {
+            gs.next(randomActions(rnd));
+
+            // The incrementally updated key must match one computed from scratch.
+            assertEquals(rehash(gs), gs.hash64(), "tick " + gs.getTick());
+            assertNotEquals(previous, gs.hash64());
+            previous = gs.hash64();
+        }
+
+        // Equal states have the same hash
+        GameState copy = gs.copy();
+        assertEquals(rehash(copy), copy.hash64());
+        GameState target = new GameState(1, 11, Types.GAME_MODE.FFA, Types.FM_TYPE.OBJECT);
+        copy.copyInto(target);
+        assertEquals(copy.hash64(), target.hash64());
+    }
+
+    @Test
+    void isTrappedTest() {
+        for (Types.FM_TYPE fmType : Types.FM_TYPE.values()) {
+            int trapped = 0;
+            for (long seed = 0; seed < 20; seed++) {
+                Random rnd = new Random(seed);
+                GameState gs = new GameState(seed, 11, Types.GAME_MODE.FFA, fmType);
+                while (!gs.isTerminal()) {
+                    gs.next(randomActions(rnd));
+                    for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                        GameObject agent = gs.model.getAgents()[i];
+                        boolean expected = agent.getLife() > 0 && agent.getPosition() != null && isTrapped(gs, agent);
+                        assertEquals(expected, gs.isTrapped(i), "seed " + seed + " tick " + gs.getTick());
+                        if (expected) trapped++;
+                    }
+                }
+            }
+            assertTrue(trapped > 0);
+        }
+    }
+
+    /**
+     * Checks if an agent is trapped from scratch: on a cell reached by bombs exploding next tick, with all the
+     * passable cells within one move reached too.
+     */
+    private boolean isTrapped(GameState gs, GameObject agent) {
+        Types.TILETYPE[][] board = gs.getBoard();
+        int size = board.length;
+        boolean[][] flames = new boolean[size][size];
+        int[][] dirs = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        for (int by = 0; by < size; by++) {
+            for (int bx = 0; bx < size; bx++) {
+                if (gs.getBombLife()[by][bx] != 1) continue;
+                flames[by][bx] = true;
+                for (int[] d : dirs) {
+                    for (int i = 1; i < gs.getBombBlastStrength()[by][bx]; i++) {
+                        int x = bx + d[0] * i;
+                        int y = by + d[1] * i;
+                        if (x < 0 || y < 0 || x >= size || y >= size || board[y][x] == Types.TILETYPE.RIGID) break;
+                        flames[y][x] = true;
+                        if (board[y][x] == Types.TILETYPE.WOOD) break;
+                    }
+                }
+            }
+        }
+
+        int ax = agent.getPosition().x;
+        int ay = agent.getPosition().y;
+        if (!flames[ay][ax]) return false;
+        for (Types.DIRECTIONS d : Types.DIRECTIONS.values()) {
+            int x = ax + d.x();
+            int y = ay + d.y();
+            if (utils.Utils.isPassable(board, new utils.Vector2d(x, y), (Avatar) agent) && !flames[y][x]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the hash of a state with the object forward model from scratch.
+     */
+    private long rehash(GameState gs) {
+        ForwardModel model = gs.model;
+        int size = gs.getBoard().length;
+        long hash = Zobrist.tick(gs.getTick());
+        long tiles = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                tiles ^= Zobrist.tile(y * size + x, gs.getBoard()[y][x]);
+                tiles ^= Zobrist.powerUp(y * size + x, model.getPowerups()[y][x]);
+            }
+        }
+        long objects = 0;
+        for (GameObject o : model.getBombs()) {
+            Bomb b = (Bomb) o;
+            objects += Zobrist.bomb(b.getPosition().y * size + b.getPosition().x, b.getLife(), b.getBlastStrength());
+        }
+        for (GameObject f : model.getFlames()) {
+            objects += Zobrist.flame(f.getPosition().y * size + f.getPosition().x, f.getLife());
+        }
+        for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+            Avatar a = (Avatar) model.getAgents()[i];
+            int cell = a.getPosition() == null ? -1 : a.getPosition().y * size + a.getPosition().x;
+            objects += Zobrist.agent(i, cell, a.getAmmo(), a.getBlastStrength(), a.canKick(), a.getWinner());
+        }
+        return hash ^ (tiles + objects);
+    }
+}
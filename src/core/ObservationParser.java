@@ -0,0 +1,540 @@
+package core;
+
+import utils.Types;
+import utils.Vector2d;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Reads the observations Python clients send ({"obs": ..., "action_space": ...}) into game states, as
+ * GameState(String) does, without building a JSON tree. The message is scanned once, character by character, and
+ * the fields used are read straight into int arrays; everything else is skipped. "obs" may be an object or, as
+ * HttpAgent sends it, a string holding the object's JSON.
+ *
+ * Observations can also be sent in a fixed binary layout (see parse(ByteBuffer)), which needs no scanning at all.
+ *
+ * The buffers are reused from one message to the next, so a parser must not be shared between threads.
+ */
+public class ObservationParser {
+
+    private char[] message = new char[4096];
+    private char[] unescaped = new char[4096];
+
+    // Text being scanned: message, or unescaped while reading an "obs" string.
+    private char[] text;
+    private int pos, end;
+
+    // Fields of the last observation
+    private int[] alive = new int[Types.NUM_PLAYERS];
+    private int nAlive;
+    private int[][] board, boardBuffer;
+    private int[][] bombBlastStrength;
+    private int[][] bombLife;
+    private final int[] position = new int[2];
+    private int gameType, blastStrength, ammo, stepCount, actionSpace;
+    private boolean canKick;
+
+    // 2D arrays are read into this first, as their size is only known at the end.
+    private int[] cells = new int[Types.BOARD_SIZE * Types.BOARD_SIZE];
+    private int rows, cols;
+
+    /**
+     * Reads an observation.
+     * @param json message received from the client.
+     * @return a game state from the point of view of the observing player.
+     * @throws IllegalArgumentException if the message is not a well-formed observation.
+     */
+    public GameState parse(String json) {
+        if (message.length < json.length())
+            message = new char[json.length()];
+        json.getChars(0, json.length(), message, 0);
+        text = message;
+        pos = 0;
+        end = json.length();
+
+        nAlive = -1;
+        board = null;
+        bombBlastStrength = null;
+        bombLife = null;
+        actionSpace = Types.NUM_ACTIONS;
+        readMessage();
+
+        if (board == null || bombBlastStrength == null || bombLife == null)
+            throw new IllegalArgumentException("Observation without board or bombs");
+        // The forward model keeps the bomb arrays, so those are not reused. No "alive" means everyone is.
+        int[] aliveIds = nAlive < 0 ? null : Arrays.copyOf(alive, nAlive);
+        return new GameState(aliveIds, board, bombBlastStrength, bombLife, gameType, position, blastStrength, canKick,
+                ammo, stepCount, actionSpace);
+    }
+
+    /**
+     * Reads an observation in binary form, from the position of the buffer up to the end of the observation
+     * (BINARY_SIZE bytes). Layout, little-endian:
+     * - u8 board size N, u8 game type, u8 action space
+     * - N*N bytes each of board, bomb blast strength and bomb life, row by row
+     * - u8 alive agents (bit i set if agent i is alive)
+     * - u8 position row, u8 position column, u8 ammo, u8 blast strength, u8 can kick
+     * - i32 step count
+     * @param buf buffer holding the observation.
+     * @return a game state from the point of view of the observing player.
+     * @throws IllegalArgumentException if the buffer ends before the observation does.
+     */
+    public GameState parse(ByteBuffer buf) {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < 3)
+            throw new IllegalArgumentException("Truncated observation");
+        int size = buf.get() & 0xFF;
+        gameType = buf.get() & 0xFF;
+        actionSpace = buf.get() & 0xFF;
+        if (size == 0 || buf.remaining() < binarySize(size) - 3)
+            throw new IllegalArgumentException("Truncated observation");
+
+        if (boardBuffer == null || boardBuffer.length != size || boardBuffer[0].length != size)
+            boardBuffer = new int[size][size];
+        board = boardBuffer;
+        readBytes(buf, board);
+        bombBlastStrength = readBytes(buf, new int[size][size]);
+        bombLife = readBytes(buf, new int[size][size]);
+
+        int aliveMask = buf.get() & 0xFF;
+        nAlive = 0;
+        for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+            if ((aliveMask & (1 << i)) != 0)
+                alive[nAlive++] = Types.TILETYPE.AGENT0.getKey() + i;
+        }
+        position[0] = buf.get() & 0xFF;
+        position[1] = buf.get() & 0xFF;
+        ammo = buf.get() & 0xFF;
+        blastStrength = buf.get() & 0xFF;
+        canKick = buf.get() != 0;
+        stepCount = buf.getInt();
+
+        return new GameState(Arrays.copyOf(alive, nAlive), board, bombBlastStrength, bombLife, gameType, position,
+                blastStrength, canKick, ammo, stepCount, actionSpace);
+    }
+
+    /**
+     * @return number of bytes of a binary observation of a board of the given size.
+     */
+    public static int binarySize(int size) {
+        return 3 + 3 * size * size + 6 + 4;
+    }
+
+    private static int[][] readBytes(ByteBuffer buf, int[][] grid) {
+        for (int[] row : grid) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = buf.get();
+            }
+        }
+        return grid;
+    }
+
+    private void readMessage() {
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        do {
+            int key = readKey();
+            if (keyIs(key, "obs")) {
+                if (peek() == '"') {
+                    readObsString();
+                } else {
+                    readObs();
+                }
+            } else if (keyIs(key, "action_space")) {
+                actionSpace = readInt();
+            } else {
+                skipValue();
+            }
+        } while (next(','));
+        expect('}');
+    }
+
+    /**
+     * Reads "obs" given as a string: unescapes it and scans the result.
+     */
+    private void readObsString() {
+        expect('"');
+        int n = 0;
+        while (true) {
+            if (pos >= end) throw error("unterminated string");
+            char c = text[pos++];
+            if (c == '"') break;
+            if (c == '\\') c = unescape();
+            if (n == unescaped.length) unescaped = Arrays.copyOf(unescaped, n * 2);
+            unescaped[n++] = c;
+        }
+
+        char[] outerText = text;
+        int outerPos = pos, outerEnd = end;
+        text = unescaped;
+        pos = 0;
+        end = n;
+        readObs();
+        text = outerText;
+        pos = outerPos;
+        end = outerEnd;
+    }
+
+    private void readObs() {
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        do {
+            int key = readKey();
+            if (keyIs(key, "board")) {
+                readGrid();
+                if (boardBuffer == null || boardBuffer.length != rows || boardBuffer[0].length != cols)
+                    boardBuffer = new int[rows][cols];
+                board = boardBuffer;
+                fill(board);
+            } else if (keyIs(key, "bomb_blast_strength")) {
+                readGrid();
+                bombBlastStrength = new int[rows][cols];
+                fill(bombBlastStrength);
+            } else if (keyIs(key, "bomb_life")) {
+                readGrid();
+                bombLife = new int[rows][cols];
+                fill(bombLife);
+            } else if (keyIs(key, "alive")) {
+                nAlive = 0;
+                expect('[');
+                if (!next(']')) {
+                    do {
+                        if (nAlive == alive.length) alive = Arrays.copyOf(alive, nAlive * 2);
+                        alive[nAlive++] = readInt();
+                    } while (next(','));
+                    expect(']');
+                }
+            } else if (keyIs(key, "position")) {
+                expect('[');
+                position[0] = readInt();
+                expect(',');
+                position[1] = readInt();
+                expect(']');
+            } else if (keyIs(key, "game_type")) {
+                gameType = readInt();
+            } else if (keyIs(key, "blast_strength")) {
+                blastStrength = readInt();
+            } else if (keyIs(key, "can_kick")) {
+                canKick = readBoolean();
+            } else if (keyIs(key, "ammo")) {
+                ammo = readInt();
+            } else if (keyIs(key, "step_count")) {
+                stepCount = readInt();
+            } else {
+                skipValue();
+            }
+        } while (next(','));
+        expect('}');
+    }
+
+    /**
+     * Reads an array of arrays of numbers into cells, setting rows and cols.
+     */
+    private void readGrid() {
+        rows = 0;
+        cols = -1;
+        int n = 0;
+        expect('[');
+        if (!next(']')) {
+            do {
+                int rowStart = n;
+                expect('[');
+                if (!next(']')) {
+                    do {
+                        if (n == cells.length) cells = Arrays.copyOf(cells, n * 2);
+                        cells[n++] = readInt();
+                    } while (next(','));
+                    expect(']');
+                }
+                if (cols >= 0 && n - rowStart != cols) throw error("rows of different lengths");
+                cols = n - rowStart;
+                rows++;
+            } while (next(','));
+            expect(']');
+        }
+        if (rows == 0 || cols <= 0) throw error("empty grid");
+    }
+
+    private void fill(int[][] grid) {
+        for (int y = 0; y < rows; y++) {
+            System.arraycopy(cells, y * cols, grid[y], 0, cols);
+        }
+    }
+
+    /**
+     * Reads an object key and the colon after it.
+     * @return position of the first character of the key; it ends at the closing quote.
+     */
+    private int readKey() {
+        expect('"');
+        int start = pos;
+        while (pos < end && text[pos] != '"') {
+            if (text[pos] == '\\') pos++;
+            pos++;
+        }
+        if (pos >= end) throw error("unterminated key");
+        pos++;
+        expect(':');
+        return start;
+    }
+
+    private boolean keyIs(int start, String name) {
+        int n = name.length();
+        if (start + n >= end || text[start + n] != '"') return false;
+        for (int i = 0; i < n; i++) {
+            if (text[start + i] != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads an integer. Numbers may be quoted, and may have a fraction (numpy float arrays), which is dropped.
+     */
+    private int readInt() {
+        skipWhitespace();
+        boolean quoted = pos < end && text[pos] == '"';
+        if (quoted) pos++;
+        int start = pos;
+        boolean negative = pos < end && text[pos] == '-';
+        if (negative) pos++;
+        long value = 0;
+        int digits = 0;
+        while (pos < end && text[pos] >= '0' && text[pos] <= '9') {
+            value = value * 10 + (text[pos++] - '0');
+            digits++;
+        }
+        if (digits == 0) throw error("number expected");
+        if (pos < end && text[pos] == '.') {
+            pos++;
+            while (pos < end && text[pos] >= '0' && text[pos] <= '9') pos++;
+        }
+        if (pos < end && (text[pos] == 'e' || text[pos] == 'E')) {
+            while (pos < end && isNumberChar(text[pos])) pos++;
+            value = (long) Double.parseDouble(new String(text, start, pos - start));
+        } else if (negative) {
+            value = -value;
+        }
+        if (quoted) expect('"');
+        return (int) value;
+    }
+
+    private boolean readBoolean() {
+        skipWhitespace();
+        if (matches("true")) return true;
+        if (matches("false")) return false;
+        return readInt() != 0;
+    }
+
+    /**
+     * Skips a value of any type.
+     */
+    private void skipValue() {
+        skipWhitespace();
+        if (pos >= end) throw error("value expected");
+        char c = text[pos];
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = text[pos];
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') depth--;
+                pos++;
+            } while (depth > 0 && pos < end);
+            if (depth > 0) throw error("unterminated value");
+        } else if (c == '"') {
+            skipString();
+        } else {
+            while (pos < end && (isNumberChar(text[pos]) || Character.isLetter(text[pos]))) pos++;
+        }
+    }
+
+    private void skipString() {
+        pos++;
+        while (pos < end && text[pos] != '"') {
+            if (text[pos] == '\\') pos++;
+            pos++;
+        }
+        if (pos >= end) throw error("unterminated string");
+        pos++;
+    }
+
+    private char unescape() {
+        if (pos >= end) throw error("unterminated escape");
+        char c = text[pos++];
+        switch (c) {
+            case 'n': return '\n';
+            case 't': return '\t';
+            case 'r': return '\r';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'u':
+                if (pos + 4 > end) throw error("unterminated escape");
+                char u = (char) Integer.parseInt(new String(text, pos, 4), 16);
+                pos += 4;
+                return u;
+            default: return c; // quote, backslash and slash
+        }
+    }
+
+    private boolean matches(String literal) {
+        int n = literal.length();
+        if (pos + n > end) return false;
+        for (int i = 0; i < n; i++) {
+            if (text[pos + i] != literal.charAt(i)) return false;
+        }
+        pos += n;
+        return true;
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (pos >= end) throw error("unexpected end");
+        return text[pos];
+    }
+
+    /**
+     * Consumes c if it is the next character.
+     */
+    private boolean next(char c) {
+        if (peek() != c) return false;
+        pos++;
+        return true;
+    }
+
+    private void expect(char c) {
+        if (!next(c)) throw error("'" + c + "' expected");
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && text[pos] <= ' ') pos++;
+    }
+
+    private IllegalArgumentException error(String what) {
+        return new IllegalArgumentException("Malformed observation, " + what + " at " + pos);
+    }
+
+    /**
+     * Writes a state as the observation HttpAgent would send for it ("obs" as a string), for tests and benchmarks.
+     * @param gs state, observed by one player.
+     * @return the message.
+     */
+    public static String toMessage(GameState gs) {
+        StringBuilder obs = new StringBuilder();
+        obs.append("{\"alive\": [");
+        Types.TILETYPE[] alive = gs.getAliveAgentIDs();
+        for (int i = 0; i < alive.length; i++) {
+            if (i > 0) obs.append(", ");
+            obs.append(alive[i].getKey());
+        }
+        obs.append("], \"board\": ");
+        Types.TILETYPE[][] board = gs.getBoard();
+        int[][] intBoard = new int[board.length][board.length];
+        for (int y = 0; y < board.length; y++) {
+            for (int x = 0; x < board.length; x++) {
+                intBoard[y][x] = board[y][x].getKey();
+            }
+        }
+        appendGrid(obs, intBoard, false);
+        obs.append(", \"bomb_blast_strength\": ");
+        appendGrid(obs, gs.getBombBlastStrength(), true);
+        obs.append(", \"bomb_life\": ");
+        appendGrid(obs, gs.getBombLife(), true);
+        obs.append(", \"game_type\": ").append(gameType(gs));
+        obs.append(", \"game_env\": \"pommerman.envs.v0:Pomme\"");
+        Vector2d p = gs.getPosition();
+        obs.append(", \"position\": [").append(p.y).append(", ").append(p.x).append("]");
+        obs.append(", \"blast_strength\": ").append(gs.getBlastStrength());
+        obs.append(", \"can_kick\": ").append(gs.canKick());
+        obs.append(", \"teammate\": ").append(Types.TILETYPE.AGENTDUMMY.getKey());
+        obs.append(", \"ammo\": ").append(gs.getAmmo());
+        obs.append(", \"enemies\": [");
+        Types.TILETYPE[] enemies = gs.getEnemies();
+        for (int i = 0; i < enemies.length; i++) {
+            if (i > 0) obs.append(", ");
+            obs.append(enemies[i].getKey());
+        }
+        obs.append("], \"step_count\": ").append(gs.getTick()).append("}");
+
+        StringBuilder message = new StringBuilder(obs.length() + 64);
+        message.append("{\"obs\": \"");
+        for (int i = 0; i < obs.length(); i++) {
+            char c = obs.charAt(i);
+            if (c == '"' || c == '\\') message.append('\\');
+            message.append(c);
+        }
+        message.append("\", \"action_space\": \"").append(Types.NUM_ACTIONS).append("\"}");
+        return message.toString();
+    }
+
+    /**
+     * Writes a state as a binary observation (see parse(ByteBuffer)), for tests, benchmarks and Java clients.
+     * @param gs state, observed by one player.
+     * @param buf buffer to write to, with at least binarySize(board size) bytes remaining.
+     */
+    public static void toBytes(GameState gs, ByteBuffer buf) {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        Types.TILETYPE[][] board = gs.getBoard();
+        buf.put((byte) board.length);
+        buf.put((byte) gameType(gs));
+        buf.put((byte) gs.nActions());
+        for (Types.TILETYPE[] row : board) {
+            for (Types.TILETYPE tile : row) {
+                buf.put((byte) tile.getKey());
+            }
+        }
+        for (int[][] grid : new int[][][]{gs.getBombBlastStrength(), gs.getBombLife()}) {
+            for (int[] row : grid) {
+                for (int v : row) {
+                    buf.put((byte) v);
+                }
+            }
+        }
+        int aliveMask = 0;
+        for (Types.TILETYPE agent : gs.getAliveAgentIDs()) {
+            aliveMask |= 1 << (agent.getKey() - Types.TILETYPE.AGENT0.getKey());
+        }
+        buf.put((byte) aliveMask);
+        Vector2d p = gs.getPosition();
+        buf.put((byte) p.y);
+        buf.put((byte) p.x);
+        buf.put((byte) gs.getAmmo());
+        buf.put((byte) gs.getBlastStrength());
+        buf.put((byte) (gs.canKick() ? 1 : 0));
+        buf.putInt(gs.getTick());
+    }
+
+    private static int gameType(GameState gs) {
+        return gs.getGameMode() == Types.GAME_MODE.FFA ? 1 : gs.getGameMode() == Types.GAME_MODE.TEAM ? 2 : 3;
+    }
+
+    private static void appendGrid(StringBuilder sb, int[][] grid, boolean asFloat) {
+        sb.append('[');
+        for (int y = 0; y < grid.length; y++) {
+            if (y > 0) sb.append(", ");
+            sb.append('[');
+            for (int x = 0; x < grid[y].length; x++) {
+                if (x > 0) sb.append(", ");
+                sb.append(grid[y][x]);
+                if (asFloat) sb.append(".0");
+            }
+            sb.append(']');
+        }
+        sb.append(']');
+    }
+}
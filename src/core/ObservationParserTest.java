@@ -0,0 +1,108 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import utils.Types;
+import utils.Vector2d;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utils.TestUtils.randomActions;
+
+class ObservationParserTest {
+
+    @Test
+    void sameStateAsGson() {
+        // Also checks the binary form, which must give the same states.
+        int visionRange = Types.DEFAULT_VISION_RANGE;
+        try {
+            ObservationParser parser = new ObservationParser();
+            ByteBuffer buf = ByteBuffer.allocate(ObservationParser.binarySize(Types.BOARD_SIZE));
+            for (long seed = 0; seed < 10; seed++) {
+                Random rnd = new Random(seed);
+                GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.OBJECT);
+                while (!gs.isTerminal()) {
+                    for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                        GameState obs = gs.copy(i);
+                        // Observations are read from the point of view of the agent found on the board, which
+                        // isn't there when it stands on a bomb.
+                        Vector2d p = obs.getPosition();
+                        if (p == null || obs.getBoard()[p.y][p.x].getKey() != obs.getPlayerId()) continue;
+                        String message = ObservationParser.toMessage(obs);
+                        GameState expected = new GameState(message);
+                        assertSameState(expected, parser.parse(message), "Tick " + gs.getTick());
+
+                        buf.clear();
+                        ObservationParser.toBytes(obs, buf);
+                        assertEquals(ObservationParser.binarySize(Types.BOARD_SIZE), buf.position());
+                        buf.flip();
+                        assertSameState(expected, parser.parse(buf), "Binary, tick " + gs.getTick());
+                        assertFalse(buf.hasRemaining());
+                    }
+                    gs.next(randomActions(rnd));
+                }
+            }
+        } finally {
+            Types.DEFAULT_VISION_RANGE = visionRange;
+        }
+    }
+
+    @Test
+    void formats() {
+        int visionRange = Types.DEFAULT_VISION_RANGE;
+        try {
+            GameState gs = new GameState(7, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.OBJECT);
+            String message = ObservationParser.toMessage(gs.copy(0));
+            GameState expected = new GameState(message);
+
+            // "obs" as an object rather than a string, with spaces and fields that are skipped.
+            String obs = message.substring(message.indexOf('{', 1), message.lastIndexOf("}\"") + 1)
+                    .replace("\\\"", "\"");
+            String inline = "{ \"extra\": {\"a\": [1, {\"b\": \"}\"}]},\n \"obs\" : " + obs.replace(",", " ,")
+                    + ", \"action_space\": 6 }";
+            assertSameState(expected, new ObservationParser().parse(inline), "Inline obs");
+        } finally {
+            Types.DEFAULT_VISION_RANGE = visionRange;
+        }
+
+        ObservationParser parser = new ObservationParser();
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("{\"obs\": {\"board\": [[0, 1], [2]]}}"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("{\"action_space\": 6}"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("{\"obs\": \"{\\\"board\\\": [[0"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(ByteBuffer.wrap(new byte[]{11, 1, 6, 0})));
+    }
+
+    @Test
+    void canKick() {
+        int visionRange = Types.DEFAULT_VISION_RANGE;
+        try {
+            GameState gs = new GameState(3, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.OBJECT);
+            GameState start = gs.copy(0);
+            Vector2d p = start.getPosition();
+            gs.setAgent(0, p.x, p.y, true, start.getAmmo(), start.getBlastStrength());
+            GameState obs = gs.copy(0);
+            assertTrue(obs.canKick());
+
+            String message = ObservationParser.toMessage(obs);
+            assertTrue(new GameState(message).canKick(), "Gson");
+            assertTrue(new ObservationParser().parse(message).canKick(), "JSON");
+            ByteBuffer buf = ByteBuffer.allocate(ObservationParser.binarySize(Types.BOARD_SIZE));
+            ObservationParser.toBytes(obs, buf);
+            buf.flip();
+            assertTrue(new ObservationParser().parse(buf).canKick(), "Binary");
+        } finally {
+            Types.DEFAULT_VISION_RANGE = visionRange;
+        }
+    }
+
+    private static void assertSameState(GameState expected, GameState actual, String msg) {
+        assertEquals(expected, actual, msg);
+        assertEquals(expected.hash64(), actual.hash64(), msg);
+        assertEquals(expected.getTick(), actual.getTick(), msg);
+        assertEquals(expected.nActions(), actual.nActions(), msg);
+        assertEquals(expected.getAmmo(), actual.getAmmo(), msg);
+        assertEquals(expected.getBlastStrength(), actual.getBlastStrength(), msg);
+        assertEquals(expected.canKick(), actual.canKick(), msg);
+    }
+}
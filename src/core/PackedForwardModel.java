@@ -0,0 +1,1410 @@
+package core;
+
+import objects.Avatar;
+import objects.Bomb;
+import objects.Flame;
+import objects.GameObject;
+import utils.FlameMask;
+import utils.Types;
+import utils.Vector2d;
+import utils.Zobrist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static utils.Types.*;
+import static utils.Utils.deepCopy;
+import static utils.Utils.findAliveAgents;
+
+/**
+ * Forward model that keeps the game state in primitive arrays instead of TILETYPE grids and lists of GameObjects.
+ * The board and the hidden power-ups are stored as one byte per cell (tile keys, indexed y * size + x), and bombs
+ * and flames as parallel int arrays kept in the same order as the lists of the object model. Agents stay as Avatar
+ * objects, as those are shared with observers, but their positions are unpacked into int arrays for each step.
+ *
+ * All rules are resolved in exactly the same order as in ForwardModel, so both engines produce identical games.
+ * Event statistics (Types.LOGGING_STATISTICS) are only collected by ForwardModel.
+ */
+class PackedForwardModel extends ForwardModel {
+
+    // Tile keys, as stored in the packed arrays.
+    private static final Types.TILETYPE[] TILES = Types.TILETYPE.values();
+    private static final byte T_PASSAGE = (byte) TILETYPE.PASSAGE.getKey();
+    private static final byte T_RIGID = (byte) TILETYPE.RIGID.getKey();
+    private static final byte T_WOOD = (byte) TILETYPE.WOOD.getKey();
+    private static final byte T_BOMB = (byte) TILETYPE.BOMB.getKey();
+    private static final byte T_FLAMES = (byte) TILETYPE.FLAMES.getKey();
+    private static final byte T_FOG = (byte) TILETYPE.FOG.getKey();
+    private static final byte T_EXTRABOMB = (byte) TILETYPE.EXTRABOMB.getKey();
+    private static final byte T_INCRRANGE = (byte) TILETYPE.INCRRANGE.getKey();
+    private static final byte T_KICK = (byte) TILETYPE.KICK.getKey();
+    private static final byte T_AGENT0 = (byte) TILETYPE.AGENT0.getKey();
+    private static final byte T_AGENT3 = (byte) TILETYPE.AGENT3.getKey();
+
+    // Marks a cell without a hidden power-up (null in ForwardModel's powerups array).
+    private static final byte NONE = -1;
+
+    private static final int INITIAL_BOMB_CAPACITY = 16;
+    private static final int INITIAL_FLAME_CAPACITY = 32;
+
+    private final int size;
+    private final Types.GAME_MODE gameMode;
+
+    // Board and hidden power-ups, one tile key per cell.
+    private byte[] board;
+    private byte[] powerups;
+
+    // Observation grids, recreated at the end of each step as in ForwardModel.
+    private int[][] bombBlastStrength;
+    private int[][] bombLife;
+
+    // Set on the lanes of a ForwardModelBatch, which own their grids: these are then cleared and refilled at the end
+    // of each step instead of being recreated, so the arrays handed out are only valid until the next step.
+    boolean reuseGrids;
+
+    private GameObject[] agents;
+    private ArrayList<GameObject> aliveAgents;
+
+    // Bombs, in the same order as ForwardModel's bombs list.
+    private int nBombs;
+    private int[] bombX, bombY, bombDesX, bombDesY, bombTicks, bombBlast, bombVelX, bombVelY, bombOwner;
+    private boolean[] bombDead;
+
+    // Flames, in the same order as ForwardModel's flames list. A flame's desired coordinate is always its position.
+    private int nFlames;
+    private int[] flameX, flameY, flameLife, flameOwner;
+
+    // Zobrist key of the board and hidden power-ups, updated on every change of a cell.
+    private long tilesHash;
+
+    // Board handed out to observers, rebuilt from the packed board when it's requested after a change.
+    private Types.TILETYPE[][] boardView;
+    private boolean boardViewDirty = true;
+
+    // Agent positions and desired coordinates while a step is resolved.
+    private int[] agentX, agentY, desX, desY;
+    private boolean[] hasPos, hasDes;
+    private int[] alive;
+    private int nAlive;
+
+    // Per cell scratch counters: bomb targets and flames present this tick.
+    private int[] cellCount;
+    private int[] flameCount;
+    private boolean[] deadFlameCell;
+
+    /**
+     * Creates an empty packed forward model. Call init() to generate a board.
+     * @param size Size of the board.
+     * @param gameMode game mode being played.
+     */
+    PackedForwardModel(int size, Types.GAME_MODE gameMode) {
+        super(size, gameMode);
+        this.size = size;
+        this.gameMode = gameMode;
+    }
+
+    /**
+     * Creates a packed forward model with a generated board.
+     * @param seed Random seed
+     * @param size Size of board
+     * @param gameMode Mode of game
+     */
+    PackedForwardModel(long seed, int size, Types.GAME_MODE gameMode) {
+        this(size, gameMode);
+        init(seed, size, gameMode, null, null);
+    }
+
+    /**
+     * Creates a packed forward model from a board in int representation.
+     * @param seed Random seed
+     * @param intBoard Game board in int representation
+     * @param gameMode Mode of game
+     */
+    PackedForwardModel(long seed, int[][] intBoard, Types.GAME_MODE gameMode) {
+        this(intBoard.length, gameMode);
+        init(seed, intBoard.length, gameMode, intBoard, null);
+    }
+
+    /**
+     * Board generation is delegated to ForwardModel, and the result is packed. This keeps both engines starting
+     * from exactly the same state for the same seed.
+     */
+    @Override
+    void init(long seed, int size, Types.GAME_MODE gameMode, int[][] intBoard, int[] alive) {
+        ForwardModel model = new ForwardModel(size, gameMode);
+        model.init(seed, size, gameMode, intBoard, alive);
+        load(model);
+    }
+
+    /**
+     * Packs the state of an object forward model into this one. Agents and observation grids are taken over,
+     * so the source model should not be used afterwards.
+     * @param model model to pack.
+     */
+    private void load(ForwardModel model) {
+        int cells = size * size;
+        board = new byte[cells];
+        powerups = new byte[cells];
+
+        Types.TILETYPE[][] objBoard = model.getBoard();
+        Types.TILETYPE[][] objPowerups = model.getPowerups();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                board[y * size + x] = (byte) objBoard[y][x].getKey();
+                powerups[y * size + x] = objPowerups[y][x] == null ? NONE : (byte) objPowerups[y][x].getKey();
+            }
+        }
+
+        ArrayList<GameObject> bombs = model.getBombs();
+        allocateBombs(Math.max(INITIAL_BOMB_CAPACITY, bombs.size()));
+        nBombs = 0;
+        for (GameObject o : bombs) {
+            Bomb b = (Bomb) o;
+            int k = addBombSlot(b.getPosition().x, b.getPosition().y, b.getBlastStrength(), b.getLife(),
+                    b.getPlayerIdx());
+            bombDesX[k] = b.getDesiredCoordinate().x;
+            bombDesY[k] = b.getDesiredCoordinate().y;
+            bombVelX[k] = b.getVelocity().x;
+            bombVelY[k] = b.getVelocity().y;
+        }
+
+        ArrayList<GameObject> flames = model.getFlames();
+        allocateFlames(Math.max(INITIAL_FLAME_CAPACITY, flames.size()));
+        nFlames = 0;
+        for (GameObject o : flames) {
+            Flame f = (Flame) o;
+            addFlameSlot(f.getPosition().x, f.getPosition().y, f.getLife(), f.playerIdx);
+        }
+
+        tilesHash = computeTilesHash();
+
+        agents = model.getAgents();
+        aliveAgents = model.getAliveAgents();
+        bombBlastStrength = model.getBombBlastStrength();
+        bombLife = model.getBombLife();
+        boardViewDirty = true;
+    }
+
+    /**
+     * Observation getters. The board is unpacked on demand into a TILETYPE grid, which is kept and refreshed
+     * in place after the state changes.
+     */
+    @Override
+    Types.TILETYPE[][] getBoard() {
+        if (boardViewDirty) {
+            if (boardView == null) {
+                boardView = new Types.TILETYPE[size][size];
+            }
+            for (int y = 0; y < size; y++) {
+                Types.TILETYPE[] row = boardView[y];
+                for (int x = 0; x < size; x++) {
+                    row[x] = TILES[board[y * size + x]];
+                }
+            }
+            boardViewDirty = false;
+        }
+        return boardView;
+    }
+
+    @Override
+    void fillFlameMask(FlameMask mask) {
+        mask.clear();
+        for (int b = 0; b < nBombs; b++) {
+            if (bombTicks[b] != 1) continue;
+            int x = bombX[b];
+            int y = bombY[b];
+            addUpcomingFlame(mask, x, y);
+            boolean advanceP = true;
+            boolean advanceM = true;
+            for (int i = 1; i < bombBlast[b]; i++) {
+                if (advanceP) advanceP = addUpcomingFlame(mask, x + i, y);
+                if (advanceM) advanceM = addUpcomingFlame(mask, x - i, y);
+            }
+            advanceP = true;
+            advanceM = true;
+            for (int i = 1; i < bombBlast[b]; i++) {
+                if (advanceP) advanceP = addUpcomingFlame(mask, x, y + i);
+                if (advanceM) advanceM = addUpcomingFlame(mask, x, y - i);
+            }
+        }
+    }
+
+    /**
+     * Marks (x, y) in a flame mask unless it is off the board or on a rigid block.
+     * @return false if the flame stops at (x, y)
+     */
+    private boolean addUpcomingFlame(FlameMask mask, int x, int y) {
+        if (!onBoard(x, y)) return false;
+        byte type = board[y * size + x];
+        if (type == T_RIGID) return false;
+        mask.setUpcomingFlame(x, y);
+        return type != T_WOOD;
+    }
+
+    @Override
+    Types.TILETYPE[][] getPowerups() {
+        Types.TILETYPE[][] grid = new Types.TILETYPE[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                byte p = powerups[y * size + x];
+                grid[y][x] = p == NONE ? null : TILES[p];
+            }
+        }
+        return grid;
+    }
+
+    @Override
+    int[][] getBombBlastStrength() {
+        return bombBlastStrength;
+    }
+
+    @Override
+    int[][] getBombLife() {
+        return bombLife;
+    }
+
+    @Override
+    GameObject[] getAgents() {
+        return agents;
+    }
+
+    @Override
+    ArrayList<GameObject> getAliveAgents() {
+        return aliveAgents;
+    }
+
+    @Override
+    long hash64() {
+        long hash = tilesHash;
+        for (int b = 0; b < nBombs; b++) {
+            hash += Zobrist.bomb(bombY[b] * size + bombX[b], bombTicks[b], bombBlast[b]);
+        }
+        for (int f = 0; f < nFlames; f++) {
+            hash += Zobrist.flame(flameY[f] * size + flameX[f], flameLife[f]);
+        }
+        for (int i = 0; i < agents.length; i++) {
+            Avatar a = (Avatar) agents[i];
+            Vector2d pos = a.getPosition();
+            int cell = pos == null ? -1 : pos.y * size + pos.x;
+            hash += Zobrist.agent(i, cell, a.getAmmo(), a.getBlastStrength(), a.canKick(), a.getWinner());
+        }
+        return hash;
+    }
+
+    @Override
+    ForwardModel copy(int playerIdx) {
+        PackedForwardModel copy = new PackedForwardModel(size, gameMode);
+        reduce(copy, playerIdx);
+        return copy;
+    }
+
+    @Override
+    boolean copyInto(ForwardModel target) {
+        if (target.getClass() != getClass())
+            return false;
+        PackedForwardModel copy = (PackedForwardModel) target;
+        if (copy.size != size || copy.gameMode != gameMode)
+            return false;
+
+        if (copy.agents == null) {
+            copy.agents = deepCopy(agents);
+        } else {
+            for (int i = 0; i < agents.length; i++) {
+                agents[i].copyInto(copy.agents[i]);
+            }
+        }
+        if (copy.aliveAgents == null) {
+            copy.aliveAgents = new ArrayList<>();
+        }
+        copy.aliveAgents.clear();
+        for (GameObject a : copy.agents) {
+            if (((Avatar) a).getWinner() == Types.RESULT.INCOMPLETE) {
+                copy.aliveAgents.add(a);
+            }
+        }
+
+        int cells = size * size;
+        if (copy.board == null) {
+            copy.board = new byte[cells];
+            copy.powerups = new byte[cells];
+        }
+        System.arraycopy(board, 0, copy.board, 0, cells);
+        System.arraycopy(powerups, 0, copy.powerups, 0, cells);
+        copy.tilesHash = tilesHash;
+        copy.boardViewDirty = true;
+
+        // Flames and bombs are copied as in reduce().
+        if (copy.flameX == null || copy.flameX.length < nFlames) {
+            copy.allocateFlames(Math.max(INITIAL_FLAME_CAPACITY, flameX.length));
+        }
+        System.arraycopy(flameX, 0, copy.flameX, 0, nFlames);
+        System.arraycopy(flameY, 0, copy.flameY, 0, nFlames);
+        Arrays.fill(copy.flameLife, 0, nFlames, FLAME_LIFE);
+        Arrays.fill(copy.flameOwner, 0, nFlames, 0);
+        copy.nFlames = nFlames;
+
+        if (copy.bombX == null || copy.bombX.length < nBombs) {
+            copy.allocateBombs(Math.max(INITIAL_BOMB_CAPACITY, bombX.length));
+        }
+        System.arraycopy(bombX, 0, copy.bombX, 0, nBombs);
+        System.arraycopy(bombY, 0, copy.bombY, 0, nBombs);
+        System.arraycopy(bombDesX, 0, copy.bombDesX, 0, nBombs);
+        System.arraycopy(bombDesY, 0, copy.bombDesY, 0, nBombs);
+        System.arraycopy(bombTicks, 0, copy.bombTicks, 0, nBombs);
+        System.arraycopy(bombBlast, 0, copy.bombBlast, 0, nBombs);
+        Arrays.fill(copy.bombVelX, 0, nBombs, 0);
+        Arrays.fill(copy.bombVelY, 0, nBombs, 0);
+        Arrays.fill(copy.bombOwner, 0, nBombs, -1);
+        Arrays.fill(copy.bombDead, 0, nBombs, false);
+        copy.nBombs = nBombs;
+
+        if (copy.bombBlastStrength == null) {
+            copy.bombBlastStrength = new int[size][size];
+            copy.bombLife = new int[size][size];
+        }
+        for (int y = 0; y < size; y++) {
+            Arrays.fill(copy.bombBlastStrength[y], 0);
+            Arrays.fill(copy.bombLife[y], 0);
+        }
+        for (int b = 0; b < nBombs; b++) {
+            copy.bombBlastStrength[bombY[b]][bombX[b]] = bombBlast[b];
+            copy.bombLife[bombY[b]][bombX[b]] = bombTicks[b];
+        }
+        return true;
+    }
+
+    /**
+     * ROLLS the MODEL FORWARD, following the same steps as ForwardModel.next().
+     * @param playerActions player actions to execute in this game state.
+     * @param gsTick current tick of the game state.
+     */
+    @Override
+    void next(Types.ACTIONS[] playerActions, int gsTick) {
+        loadAgents();
+
+        // 1. Put actions into effect
+        translatePlayerActions(playerActions);
+
+        // 2. Tick the flames. The ones reaching 0 are dead, and are resolved after explosions.
+        int nTickedFlames = nFlames;
+        for (int f = 0; f < nFlames; f++) {
+            flameLife[f]--;
+        }
+
+        // 3. Agents already have desired positions set according to their chosen actions
+        // 4. Tick bombs, setting their desired positions from their velocities.
+        for (int b = 0; b < nBombs; b++) {
+            bombTicks[b]--;
+            int x = bombX[b] + bombVelX[b];
+            int y = bombY[b] + bombVelY[b];
+            if (isFree(x, y)) {
+                bombDesX[b] = x;
+                bombDesY[b] = y;
+            } else {
+                bombDesX[b] = bombX[b];
+                bombDesY[b] = bombY[b];
+                bombVelX[b] = 0;
+                bombVelY[b] = 0;
+            }
+        }
+
+        // 5. Position swap: agent <-> agent and bomb <-> bomb bounce back both, bomb <-> agent bounces the bomb.
+        for (int i = 0; i < nAlive; i++) {
+            int a1 = alive[i];
+            for (int j = 0; j < nAlive; j++) {
+                int a2 = alive[j];
+                if (agentMoving(a1) && agentMoving(a2) &&
+                        desX[a1] == agentX[a2] && desY[a1] == agentY[a2] &&
+                        desX[a2] == agentX[a1] && desY[a2] == agentY[a1]) {
+                    revertAgent(a1);
+                    revertAgent(a2);
+                }
+            }
+        }
+        for (int b1 = 0; b1 < nBombs; b1++) {
+            for (int b2 = 0; b2 < nBombs; b2++) {
+                if (bombMoving(b1) && bombMoving(b2) &&
+                        bombDesX[b1] == bombX[b2] && bombDesY[b1] == bombY[b2] &&
+                        bombDesX[b2] == bombX[b1] && bombDesY[b2] == bombY[b1]) {
+                    revertBomb(b1);
+                    revertBomb(b2);
+                }
+            }
+        }
+        for (int i = 0; i < nAlive; i++) {
+            int a = alive[i];
+            for (int b = 0; b < nBombs; b++) {
+                if (agentMoving(a) && bombMoving(b) &&
+                        desX[a] == bombX[b] && desY[a] == bombY[b] &&
+                        bombDesX[b] == agentX[a] && bombDesY[b] == agentY[a]) {
+                    revertBomb(b);
+                }
+            }
+        }
+
+        // 6. If >= 2 agents or >= 2 bombs want the same space, bounce all of them back.
+        checkAgentOverlap();
+        checkBombOverlap();
+
+        // 7. Handle kicks & moving bombs hitting agents that can not kick
+        handleMovingBombs();
+
+        // 8. Late update bomb overlaps, then bounce back agents that now overlap a bomb, and move bombs.
+        checkBombOverlap();
+        for (int b = 0; b < nBombs; b++) {
+            for (int a = 0; a < NUM_PLAYERS; a++) {
+                if (agentMoving(a) && desX[a] == bombDesX[b] && desY[a] == bombDesY[b]) {
+                    revertAgent(a);
+                }
+            }
+            moveBomb(b);
+        }
+
+        // 9. Players pick up power-ups
+        for (int i = 0; i < nAlive; i++) {
+            int a = alive[i];
+            if (hasDes[a]) {
+                pickPowerUp((Avatar) agents[a], desX[a], desY[a]);
+            }
+        }
+
+        // 10. Explode bombs. flameCount keeps the number of flames per cell, including those dead this tick.
+        handleBombExplosions();
+
+        // 11. Resolve flame on death effects, and remove dead flames.
+        boolean deadFlames = false;
+        for (int f = 0; f < nTickedFlames; f++) {
+            if (flameLife[f] == 0) {
+                int cell = flameY[f] * size + flameX[f];
+                deadFlameCell[cell] = true;
+                deadFlames = true;
+                revealOrClear(cell);
+            }
+        }
+        if (deadFlames) {
+            // Flames are removed by equality, as in ForwardModel: any dead flame sharing a dead flame's cell.
+            int kept = 0;
+            for (int f = 0; f < nFlames; f++) {
+                if (flameLife[f] == 0 && deadFlameCell[flameY[f] * size + flameX[f]]) continue;
+                moveFlameSlot(f, kept++);
+            }
+            nFlames = kept;
+            Arrays.fill(deadFlameCell, false);
+        }
+
+        // 12. Add flames left alive back into the board if missing.
+        for (int f = 0; f < nFlames; f++) {
+            int cell = flameY[f] * size + flameX[f];
+            if (board[cell] != T_FLAMES) {
+                setTile(cell, T_FLAMES);
+            }
+        }
+
+        // 13. Kill agents on flames. Otherwise, update position on board.
+        ArrayList<GameObject> deadAgentsThisTick = null;
+        for (int i = 0; i < nAlive; i++) {
+            int a = alive[i];
+            if (hasDes[a] && hasPos[a] && onBoard(desX[a], desY[a]) && flameCount[desY[a] * size + desX[a]] > 0) {
+                GameObject p = agents[a];
+                p.setLife(0);
+                if (deadAgentsThisTick == null) {
+                    deadAgentsThisTick = new ArrayList<>();
+                }
+                deadAgentsThisTick.add(p);
+
+                if (VERBOSE_FM_DEBUG) {
+                    System.out.println("Agent " + ((Avatar) p).getPlayerID() + " died.");
+                }
+
+                int cell = agentY[a] * size + agentX[a];
+                if (board[cell] != T_BOMB && board[cell] != T_FLAMES) {
+                    setTile(cell, T_PASSAGE);
+                }
+            } else {
+                moveAgent(a);
+            }
+        }
+        Arrays.fill(flameCount, 0);
+
+        // 14. Check for terminated agents
+        if (deadAgentsThisTick != null) {
+            Types.getGameConfig().processDeadAgents(agents, aliveAgents, deadAgentsThisTick, gameMode);
+        }
+
+        // 15. Update observable board grids of bomb blast strengths and bomb lives. New arrays are created, as
+        // players may keep the ones of previous ticks.
+        if (reuseGrids && bombBlastStrength != null) {
+            for (int y = 0; y < size; y++) {
+                Arrays.fill(bombBlastStrength[y], 0);
+                Arrays.fill(bombLife[y], 0);
+            }
+        } else {
+            bombBlastStrength = new int[size][size];
+            bombLife = new int[size][size];
+        }
+        for (int b = 0; b < nBombs; b++) {
+            bombBlastStrength[bombY[b]][bombX[b]] = bombBlast[b];
+            bombLife[bombY[b]][bombX[b]] = bombTicks[b];
+        }
+
+        // 16. Collapse
+        if (Types.COLLAPSE_BOARD) {
+            if (gsTick >= COLLAPSE_START && (gsTick - COLLAPSE_START) % COLLAPSE_STEP == 0) {
+                int collapse_stage = (gsTick - COLLAPSE_START) / COLLAPSE_STEP;
+
+                int ring_min = collapse_stage;
+                int ring_max = size - collapse_stage - 1;
+
+                ArrayList<GameObject> collapsedAgents = new ArrayList<>();
+
+                for (int x = ring_min; x <= ring_max; x++) {
+                    if (x == ring_min || x == ring_max) {
+                        for (int y = ring_min + 1; y <= ring_max - 1; y++) {
+                            collapseTile(x, y, collapsedAgents);
+                        }
+                    }
+                    collapseTile(x, ring_min, collapsedAgents);
+                    collapseTile(x, ring_max, collapsedAgents);
+                }
+
+                if (collapsedAgents.size() > 0)
+                    Types.getGameConfig().processDeadAgents(agents, aliveAgents, collapsedAgents, gameMode);
+            }
+        }
+
+        storeAgents();
+        boardViewDirty = true;
+    }
+
+    /**
+     * Unpacks agent positions and desired coordinates, and the indices of agents alive, for this step.
+     */
+    private void loadAgents() {
+        if (agentX == null) {
+            agentX = new int[NUM_PLAYERS];
+            agentY = new int[NUM_PLAYERS];
+            desX = new int[NUM_PLAYERS];
+            desY = new int[NUM_PLAYERS];
+            hasPos = new boolean[NUM_PLAYERS];
+            hasDes = new boolean[NUM_PLAYERS];
+            alive = new int[NUM_PLAYERS];
+            cellCount = new int[size * size];
+            flameCount = new int[size * size];
+            deadFlameCell = new boolean[size * size];
+        }
+
+        for (int a = 0; a < NUM_PLAYERS; a++) {
+            Vector2d pos = agents[a].getPosition();
+            hasPos[a] = pos != null;
+            if (pos != null) {
+                agentX[a] = pos.x;
+                agentY[a] = pos.y;
+            }
+            Vector2d des = agents[a].getDesiredCoordinate();
+            hasDes[a] = des != null;
+            if (des != null) {
+                desX[a] = des.x;
+                desY[a] = des.y;
+            }
+        }
+
+        nAlive = 0;
+        for (GameObject p : aliveAgents) {
+            alive[nAlive++] = agentIndex(p);
+        }
+    }
+
+    /**
+     * Writes positions and desired coordinates back into the agent objects, where they changed.
+     */
+    private void storeAgents() {
+        for (int a = 0; a < NUM_PLAYERS; a++) {
+            GameObject p = agents[a];
+            Vector2d pos = p.getPosition();
+            if (hasPos[a] && (pos == null || pos.x != agentX[a] || pos.y != agentY[a])) {
+                p.setPosition(new Vector2d(agentX[a], agentY[a]));
+            }
+            Vector2d des = p.getDesiredCoordinate();
+            if (hasDes[a] && (des == null || des.x != desX[a] || des.y != desY[a])) {
+                p.setDesiredCoordinate(new Vector2d(desX[a], desY[a]));
+            }
+        }
+    }
+
+    private static int agentIndex(GameObject p) {
+        return p.getType().getKey() - T_AGENT0;
+    }
+
+    /**
+     * Function to insert player action effects into the game.
+     * @param actions - array of actions, 1 for each player
+     */
+    private void translatePlayerActions(Types.ACTIONS[] actions) {
+        for (int i = 0; i < actions.length; i++) {
+            Avatar agent = (Avatar) agents[i];
+            if (agent.getWinner() != Types.RESULT.INCOMPLETE || !hasPos[i]) {
+                continue;
+            }
+
+            Types.ACTIONS action = actions[i];
+            if (action == null) {
+                System.out.println("WARNING: " + agent.getType() + " sent an action NULL.");
+                action = Types.ACTIONS.ACTION_STOP;
+            }
+
+            int x = agentX[i] + action.getDirection().x();
+            int y = agentY[i] + action.getDirection().y();
+            hasDes[i] = true;
+            if (isFree(x, y)) {
+                desX[i] = x;
+                desY[i] = y;
+            } else {
+                desX[i] = agentX[i];
+                desY[i] = agentY[i];
+            }
+
+            if (action == Types.ACTIONS.ACTION_BOMB) {
+                if (agent.getAmmo() > 0 && bombBlastStrength[agentY[i]][agentX[i]] == 0) {
+                    agent.reduceAmmo();
+                    addBombSlot(agentX[i], agentY[i], agent.getBlastStrength(), BOMB_LIFE, i);
+                    setTile(agentY[i] * size + agentX[i], T_BOMB);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if more than 1 agent wants to move to the same position, bouncing all of them back.
+     */
+    private void checkAgentOverlap() {
+        // Counts are taken before any agent is bounced back.
+        int[] counts = cellCount;
+        for (int i = 0; i < nAlive; i++) {
+            int a1 = alive[i];
+            int n = 0;
+            for (int j = 0; j < nAlive; j++) {
+                int a2 = alive[j];
+                if (hasDes[a1] == hasDes[a2] && (!hasDes[a1] || desX[a1] == desX[a2] && desY[a1] == desY[a2])) {
+                    n++;
+                }
+            }
+            counts[i] = n;
+        }
+        for (int i = 0; i < nAlive; i++) {
+            if (counts[i] > 1) {
+                revertAgent(alive[i]);
+            }
+        }
+        Arrays.fill(counts, 0, nAlive, 0);
+    }
+
+    /**
+     * Checks if more than 1 bomb wants to move to the same position, bouncing all of them back.
+     */
+    private void checkBombOverlap() {
+        if (nBombs < 2) return;
+        for (int b = 0; b < nBombs; b++) {
+            cellCount[bombDesY[b] * size + bombDesX[b]]++;
+        }
+        for (int b = 0; b < nBombs; b++) {
+            if (cellCount[bombDesY[b] * size + bombDesX[b]] > 1) {
+                bombDesX[b] = bombX[b];
+                bombDesY[b] = bombY[b];
+            }
+        }
+        Arrays.fill(cellCount, 0);
+    }
+
+    /**
+     * Handles the movement of bombs, including kicking them if the agent can do so.
+     */
+    private void handleMovingBombs() {
+        for (int b = 0; b < nBombs; b++) {
+            for (int i = 0; i < nAlive; i++) {
+                int a = alive[i];
+                if (!hasDes[a] || !hasPos[a]) continue;
+
+                if (bombDesX[b] == bombX[b] && bombDesY[b] == bombY[b]) {
+                    bombVelX[b] = 0;
+                    bombVelY[b] = 0;
+                }
+                if (desX[a] == bombDesX[b] && desY[a] == bombDesY[b]) {
+                    // Agent tried to move onto bomb OR bomb tried to move onto agent, check if agent can kick
+                    if (((Avatar) agents[a]).canKick()) {
+                        int vx = desX[a] - agentX[a];
+                        int vy = desY[a] - agentY[a];
+                        bombVelX[b] = vx;
+                        bombVelY[b] = vy;
+
+                        // A kicked bomb moves on the same tick, but not into players or walls.
+                        if (vx != 0 || vy != 0) {
+                            int x = bombDesX[b] + vx;
+                            int y = bombDesY[b] + vy;
+                            if (onBoard(x, y) && !blocksKick(board[y * size + x])) {
+                                bombDesX[b] = x;
+                                bombDesY[b] = y;
+                            } else {
+                                bombDesX[b] = bombX[b];
+                                bombDesY[b] = bombY[b];
+                                bombVelX[b] = 0;
+                                bombVelY[b] = 0;
+                            }
+                        }
+                    } else {
+                        // Move both back
+                        revertAgent(a);
+                        bombDesX[b] = bombX[b];
+                        bombDesY[b] = bombY[b];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Explodes bombs with no life left or reached by flames, chaining explosions until no bomb goes off. As in
+     * ForwardModel, a pass only starts from the first bomb reached by flames after its turn in the previous one.
+     * Leaves in flameCount the number of flames on each cell.
+     */
+    private void handleBombExplosions() {
+        for (int f = 0; f < nFlames; f++) {
+            flameCount[flameY[f] * size + flameX[f]]++;
+        }
+
+        int from = 0;
+        while (from < nBombs) {
+            boolean deadBombs = false;
+
+            for (int b = from; b < nBombs; b++) {
+                boolean forceExplosion = flameCount[bombY[b] * size + bombX[b]] > 0;
+                if (bombTicks[b] == 0 || forceExplosion) {
+                    int first = nFlames;
+                    explode(b);
+                    if (nFlames > first) {
+                        bombDead[b] = true;
+                        deadBombs = true;
+
+                        // Give the player 1 ammo back for this bomb
+                        if (bombOwner[b] >= 0) {
+                            ((Avatar) agents[bombOwner[b]]).addAmmo();
+                        }
+                    }
+                }
+            }
+            if (!deadBombs) break;
+            removeDeadBombs();
+
+            // Bombs left on a flame were reached after their turn in this pass, and explode in the next one.
+            from = nBombs;
+            for (int b = 0; b < nBombs; b++) {
+                if (flameCount[bombY[b] * size + bombX[b]] > 0) {
+                    from = b;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the flames of bomb b: its own cell first, then alternating sides along x and then along y.
+     */
+    private void explode(int b) {
+        int x = bombX[b];
+        int y = bombY[b];
+        int blastStrength = bombBlast[b];
+        int owner = bombOwner[b];
+
+        tryToAddFlame(x, y, owner);
+        boolean advanceP = true;
+        boolean advanceM = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP) advanceP = tryToAddFlame(x + i, y, owner);
+            if (advanceM) advanceM = tryToAddFlame(x - i, y, owner);
+        }
+        advanceP = true;
+        advanceM = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP) advanceP = tryToAddFlame(x, y + i, owner);
+            if (advanceM) advanceM = tryToAddFlame(x, y - i, owner);
+        }
+    }
+
+    /**
+     * Adds a flame at (x, y) unless it is off the board or on a rigid block.
+     * @return false if the flame stops at (x, y)
+     */
+    private boolean tryToAddFlame(int x, int y, int owner) {
+        if (!onBoard(x, y)) return false;
+        int cell = y * size + x;
+        byte type = board[cell];
+        if (type == T_RIGID) return false;
+        addFlameSlot(x, y, FLAME_LIFE, owner);
+        flameCount[cell]++;
+        setTile(cell, T_FLAMES);
+        return type != T_WOOD;
+    }
+
+    /**
+     * Removes exploded bombs. As in ForwardModel, bombs are removed by equality, so any bomb with the same
+     * life, position and desired coordinate as an exploded one goes too.
+     */
+    private void removeDeadBombs() {
+        for (int b = 0; b < nBombs; b++) {
+            if (bombDead[b]) continue;
+            for (int d = 0; d < nBombs; d++) {
+                if (bombDead[d] && bombTicks[d] == bombTicks[b] && bombX[d] == bombX[b] && bombY[d] == bombY[b]
+                        && bombDesX[d] == bombDesX[b] && bombDesY[d] == bombDesY[b]) {
+                    bombDead[b] = true;
+                    break;
+                }
+            }
+        }
+        compactBombs();
+    }
+
+    /**
+     * Collapses one tile into a rigid block, removing whatever was on it.
+     */
+    private void collapseTile(int x, int y, ArrayList<GameObject> collapsedAgents) {
+        byte tile = board[y * size + x];
+
+        if (tile == T_BOMB) {
+            boolean found = false;
+            for (int b = 0; b < nBombs; b++) {
+                if (bombX[b] == x && bombY[b] == y) {
+                    bombDead[b] = true;
+                    found = true;
+                    if (bombOwner[b] >= 0) {
+                        ((Avatar) agents[bombOwner[b]]).addAmmo();
+                    }
+                }
+            }
+            if (found) compactBombs();
+            bombLife[y][x] = 0;
+            bombBlastStrength[y][x] = 0;
+        } else if (tile == T_FLAMES) {
+            removeFlamesAt(x, y);
+        } else if (isAgent(tile)) {
+            for (GameObject p : aliveAgents) {
+                int a = agentIndex(p);
+                if (hasPos[a] && agentX[a] == x && agentY[a] == y) {
+                    collapsedAgents.add(p);
+                }
+            }
+        }
+        setTile(y * size + x, T_RIGID);
+    }
+
+    /**
+     * Moves agent a to its desired coordinate, unless it's blocked by a wall.
+     */
+    private void moveAgent(int a) {
+        if (!hasPos[a] || !hasDes[a]) return;
+
+        byte type = (byte) (T_AGENT0 + a);
+        int next = desY[a] * size + desX[a];
+        if (agentX[a] != desX[a] || agentY[a] != desY[a]) {
+            byte nextType = board[next];
+            if (nextType != T_RIGID && nextType != T_WOOD) {
+                int current = agentY[a] * size + agentX[a];
+                agentX[a] = desX[a];
+                agentY[a] = desY[a];
+
+                // Power-ups, flames, bombs and other agents are not replaced when an agent leaves its square.
+                byte currentType = board[current];
+                if (!isPowerUp(currentType) && currentType != T_FLAMES && currentType != T_BOMB &&
+                        !(isAgent(currentType) && currentType != type)) {
+                    revealOrClear(current);
+                }
+            }
+        }
+        setTile(next, type);
+    }
+
+    /**
+     * Moves bomb b to its desired coordinate, unless it's blocked by a wall.
+     */
+    private void moveBomb(int b) {
+        int next = bombDesY[b] * size + bombDesX[b];
+        if (bombX[b] != bombDesX[b] || bombY[b] != bombDesY[b]) {
+            byte nextType = board[next];
+            if (nextType != T_RIGID && nextType != T_WOOD) {
+                int current = bombY[b] * size + bombX[b];
+                bombX[b] = bombDesX[b];
+                bombY[b] = bombDesY[b];
+
+                // A bomb rolling over a power-up hides it again, to be revealed when the bomb leaves.
+                if (isPowerUp(nextType)) {
+                    setPowerUp(next, nextType);
+                }
+
+                byte currentType = board[current];
+                if (!isPowerUp(currentType) && currentType != T_FLAMES && !isAgent(currentType)) {
+                    revealOrClear(current);
+                }
+            }
+        }
+        setTile(next, T_BOMB);
+    }
+
+    /**
+     * Sets the tile of a cell, updating the Zobrist key of the tiles.
+     */
+    private void setTile(int cell, byte type) {
+        tilesHash ^= Zobrist.tile(cell, board[cell]) ^ Zobrist.tile(cell, type);
+        board[cell] = type;
+    }
+
+    /**
+     * Sets the power-up hidden in a cell (NONE for no power-up), updating the Zobrist key of the tiles.
+     */
+    private void setPowerUp(int cell, byte type) {
+        tilesHash ^= powerUpKey(cell, powerups[cell]) ^ powerUpKey(cell, type);
+        powerups[cell] = type;
+    }
+
+    private static long powerUpKey(int cell, byte type) {
+        return type == NONE ? 0 : Zobrist.powerUp(cell, type);
+    }
+
+    private long computeTilesHash() {
+        long hash = 0;
+        for (int cell = 0; cell < board.length; cell++) {
+            hash ^= Zobrist.tile(cell, board[cell]) ^ powerUpKey(cell, powerups[cell]);
+        }
+        return hash;
+    }
+
+    /**
+     * Puts back on the board the power-up hidden in a cell, or a passage if there is none.
+     */
+    private void revealOrClear(int cell) {
+        if (powerups[cell] != NONE) {
+            setTile(cell, powerups[cell]);
+            setPowerUp(cell, NONE);
+        } else {
+            setTile(cell, T_PASSAGE);
+        }
+    }
+
+    /**
+     * Method for a player to pick up a power-up.
+     */
+    private void pickPowerUp(Avatar p, int x, int y) {
+        if (onBoard(x, y)) {
+            byte type = board[y * size + x];
+            if (type == T_EXTRABOMB) {
+                p.addAmmo();
+            } else if (type == T_INCRRANGE) {
+                p.addBlastStrength();
+            } else if (type == T_KICK) {
+                p.setCanKick();
+            }
+        }
+    }
+
+    private boolean agentMoving(int a) {
+        return hasPos[a] && hasDes[a] && (desX[a] != agentX[a] || desY[a] != agentY[a]);
+    }
+
+    private boolean bombMoving(int b) {
+        return bombDesX[b] != bombX[b] || bombDesY[b] != bombY[b];
+    }
+
+    private void revertAgent(int a) {
+        if (hasPos[a]) {
+            desX[a] = agentX[a];
+            desY[a] = agentY[a];
+            hasDes[a] = true;
+        }
+    }
+
+    private void revertBomb(int b) {
+        bombDesX[b] = bombX[b];
+        bombDesY[b] = bombY[b];
+    }
+
+    private boolean onBoard(int x, int y) {
+        return x >= 0 && y >= 0 && x < size && y < size;
+    }
+
+    /**
+     * @return true if (x, y) is on the board and not a wall (rigid or wood).
+     */
+    private boolean isFree(int x, int y) {
+        if (!onBoard(x, y)) return false;
+        byte type = board[y * size + x];
+        return type != T_RIGID && type != T_WOOD;
+    }
+
+    private static boolean blocksKick(byte type) {
+        return type == T_RIGID || type == T_WOOD || isAgent(type);
+    }
+
+    private static boolean isAgent(byte type) {
+        return type >= T_AGENT0 && type <= T_AGENT3;
+    }
+
+    private static boolean isPowerUp(byte type) {
+        return type == T_EXTRABOMB || type == T_INCRRANGE || type == T_KICK;
+    }
+
+    /* ----- Bomb and flame storage ----- */
+
+    private void allocateBombs(int capacity) {
+        bombX = new int[capacity];
+        bombY = new int[capacity];
+        bombDesX = new int[capacity];
+        bombDesY = new int[capacity];
+        bombTicks = new int[capacity];
+        bombBlast = new int[capacity];
+        bombVelX = new int[capacity];
+        bombVelY = new int[capacity];
+        bombOwner = new int[capacity];
+        bombDead = new boolean[capacity];
+    }
+
+    private void allocateFlames(int capacity) {
+        flameX = new int[capacity];
+        flameY = new int[capacity];
+        flameLife = new int[capacity];
+        flameOwner = new int[capacity];
+    }
+
+    /**
+     * Appends a bomb at (x, y), not moving, and returns its index.
+     */
+    private int addBombSlot(int x, int y, int blastStrength, int life, int owner) {
+        if (nBombs == bombX.length) {
+            int capacity = bombX.length * 2;
+            bombX = Arrays.copyOf(bombX, capacity);
+            bombY = Arrays.copyOf(bombY, capacity);
+            bombDesX = Arrays.copyOf(bombDesX, capacity);
+            bombDesY = Arrays.copyOf(bombDesY, capacity);
+            bombTicks = Arrays.copyOf(bombTicks, capacity);
+            bombBlast = Arrays.copyOf(bombBlast, capacity);
+            bombVelX = Arrays.copyOf(bombVelX, capacity);
+            bombVelY = Arrays.copyOf(bombVelY, capacity);
+            bombOwner = Arrays.copyOf(bombOwner, capacity);
+            bombDead = Arrays.copyOf(bombDead, capacity);
+        }
+        int b = nBombs++;
+        bombX[b] = x;
+        bombY[b] = y;
+        bombDesX[b] = x;
+        bombDesY[b] = y;
+        bombTicks[b] = life;
+        bombBlast[b] = blastStrength;
+        bombVelX[b] = 0;
+        bombVelY[b] = 0;
+        bombOwner[b] = owner;
+        bombDead[b] = false;
+        return b;
+    }
+
+    /**
+     * Removes all bombs flagged as dead, keeping the order of the rest.
+     */
+    private void compactBombs() {
+        int kept = 0;
+        for (int b = 0; b < nBombs; b++) {
+            if (bombDead[b]) {
+                bombDead[b] = false;
+                continue;
+            }
+            if (kept != b) {
+                bombX[kept] = bombX[b];
+                bombY[kept] = bombY[b];
+                bombDesX[kept] = bombDesX[b];
+                bombDesY[kept] = bombDesY[b];
+                bombTicks[kept] = bombTicks[b];
+                bombBlast[kept] = bombBlast[b];
+                bombVelX[kept] = bombVelX[b];
+                bombVelY[kept] = bombVelY[b];
+                bombOwner[kept] = bombOwner[b];
+            }
+            kept++;
+        }
+        nBombs = kept;
+    }
+
+    private void addFlameSlot(int x, int y, int life, int owner) {
+        if (nFlames == flameX.length) {
+            int capacity = flameX.length * 2;
+            flameX = Arrays.copyOf(flameX, capacity);
+            flameY = Arrays.copyOf(flameY, capacity);
+            flameLife = Arrays.copyOf(flameLife, capacity);
+            flameOwner = Arrays.copyOf(flameOwner, capacity);
+        }
+        int f = nFlames++;
+        flameX[f] = x;
+        flameY[f] = y;
+        flameLife[f] = life;
+        flameOwner[f] = owner;
+    }
+
+    private void moveFlameSlot(int from, int to) {
+        if (from != to) {
+            flameX[to] = flameX[from];
+            flameY[to] = flameY[from];
+            flameLife[to] = flameLife[from];
+            flameOwner[to] = flameOwner[from];
+        }
+    }
+
+    private void removeFlamesAt(int x, int y) {
+        int kept = 0;
+        for (int f = 0; f < nFlames; f++) {
+            if (flameX[f] == x && flameY[f] == y) continue;
+            moveFlameSlot(f, kept++);
+        }
+        nFlames = kept;
+    }
+
+    /**
+     * Reduces this model into a copy, to the vision range of the player. Follows ForwardModel.reduce(): objects
+     * out of range are removed and shown as FOG, copied flames have their life reset and copied bombs lose their
+     * velocity and owner.
+     * @param copy - copy of the forward model that should be reduced.
+     * @param playerIdx - index of the player, or -1 for no reduction.
+     */
+    private void reduce(PackedForwardModel copy, int playerIdx) {
+        Vector2d avatarPosition = null;
+        int range = -1;
+
+        if (playerIdx >= 0) {
+            Avatar avatar = (Avatar) agents[playerIdx];
+            avatarPosition = avatar.getPosition();
+            range = avatar.getVisionRange();
+        }
+
+        copy.agents = deepCopy(agents);
+        if (range != -1) {
+            for (int i = 0; i < copy.agents.length; i++) {
+                GameObject a = copy.agents[i];
+                if (a.getPosition() != null && a.getPosition().custom_dist(avatarPosition) > range) {
+                    a.setPositionNull();
+                    a.setDesiredCoordinateNull();
+                }
+                if (i != playerIdx) {
+                    ((Avatar) a).reset();
+                }
+            }
+        }
+        copy.aliveAgents = findAliveAgents(copy.agents);
+
+        int cells = size * size;
+        copy.board = new byte[cells];
+        copy.powerups = new byte[cells];
+        if (range == -1) {
+            System.arraycopy(board, 0, copy.board, 0, cells);
+            System.arraycopy(powerups, 0, copy.powerups, 0, cells);
+        } else {
+            Arrays.fill(copy.powerups, NONE);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    boolean visible = avatarPosition != null && avatarPosition.custom_dist(x, y) <= range;
+                    copy.board[y * size + x] = visible ? board[y * size + x] : T_FOG;
+                }
+            }
+        }
+        copy.tilesHash = range == -1 ? tilesHash : copy.computeTilesHash();
+
+        copy.allocateFlames(Math.max(INITIAL_FLAME_CAPACITY, nFlames));
+        for (int f = 0; f < nFlames; f++) {
+            if (inRange(flameX[f], flameY[f], avatarPosition, range)) {
+                // Flame copies don't keep their owner, and life is reset: players don't know this information.
+                copy.addFlameSlot(flameX[f], flameY[f], FLAME_LIFE, 0);
+            }
+        }
+
+        copy.allocateBombs(Math.max(INITIAL_BOMB_CAPACITY, nBombs));
+        for (int b = 0; b < nBombs; b++) {
+            if (inRange(bombX[b], bombY[b], avatarPosition, range)) {
+                int k = copy.addBombSlot(bombX[b], bombY[b], bombBlast[b], bombTicks[b], -1);
+                copy.bombDesX[k] = bombDesX[b];
+                copy.bombDesY[k] = bombDesY[b];
+            }
+        }
+
+        copy.bombBlastStrength = new int[size][size];
+        copy.bombLife = new int[size][size];
+        for (int b = 0; b < copy.nBombs; b++) {
+            copy.bombBlastStrength[copy.bombY[b]][copy.bombX[b]] = copy.bombBlast[b];
+            copy.bombLife[copy.bombY[b]][copy.bombX[b]] = copy.bombTicks[b];
+        }
+    }
+
+    private static boolean inRange(int x, int y, Vector2d reference, int range) {
+        return range == -1 || range >= 0 && reference != null && reference.custom_dist(x, y) <= range;
+    }
+
+    /* ----- add* methods, used by agents to insert things into the model ----- */
+
+    @Override
+    void addBomb(int x, int y, int blastStrength, int bombLife, int playerIdx, boolean addToBoard) {
+        addBombSlot(x, y, blastStrength, bombLife, playerIdx);
+        if (addToBoard) {
+            setTile(y * size + x, T_BOMB);
+            boardViewDirty = true;
+        }
+    }
+
+    @Override
+    void addFlame(int x, int y, int life) {
+        // As in ForwardModel, a flame that can't take (x, y) ends up at the origin while the board still shows it.
+        if (isFree(x, y)) {
+            addFlameSlot(x, y, life, 0);
+        } else {
+            addFlameSlot(0, 0, life, 0);
+        }
+        setTile(y * size + x, T_FLAMES);
+        boardViewDirty = true;
+    }
+
+    @Override
+    void addPowerUp(int x, int y, Types.TILETYPE type, boolean visible) {
+        if (type == Types.TILETYPE.EXTRABOMB || type == Types.TILETYPE.INCRRANGE || type == Types.TILETYPE.KICK) {
+            if (visible) {
+                setTile(y * size + x, (byte) type.getKey());
+                boardViewDirty = true;
+            } else {
+                setPowerUp(y * size + x, (byte) type.getKey());
+            }
+        }
+    }
+
+    @Override
+    void addObject(int x, int y, Types.TILETYPE type) {
+        setTile(y * size + x, (byte) type.getKey());
+        boardViewDirty = true;
+    }
+
+    @Override
+    void addAgent(int x, int y, int idx) {
+        GameObject agent = agents[idx];
+        ((Avatar) agent).setWinner(Types.RESULT.INCOMPLETE);
+        agent.setPosition(new Vector2d(x, y));
+        agent.setDesiredCoordinate(new Vector2d(x, y));
+        setTile(y * size + x, (byte) agent.getType().getKey());
+        boardViewDirty = true;
+    }
+
+    @Override
+    void removePowerUp(int x, int y, Types.TILETYPE type) {
+        setPowerUp(y * size + x, T_PASSAGE);
+        removeObjects(x, y, type);
+    }
+
+    @Override
+    void removeObject(int x, int y, Types.TILETYPE type, boolean onlyBoard) {
+        setTile(y * size + x, T_PASSAGE);
+        boardViewDirty = true;
+        if (!onlyBoard) {
+            removeObjects(x, y, type);
+        }
+    }
+
+    /**
+     * Removes from the engine the objects of the given type at (x, y).
+     */
+    private void removeObjects(int x, int y, Types.TILETYPE type) {
+        if (type == TILETYPE.BOMB) {
+            for (int b = 0; b < nBombs; b++) {
+                if (bombX[b] == x && bombY[b] == y) {
+                    bombDead[b] = true;
+                }
+            }
+            compactBombs();
+            bombLife[y][x] = 0;
+            bombBlastStrength[y][x] = 0;
+        } else if (type == TILETYPE.FLAMES) {
+            removeFlamesAt(x, y);
+        } else if (TILETYPE.getAgentTypes().contains(type)) {
+            GameObject ob = agents[type.getKey() - T_AGENT0];
+            ((Avatar) ob).setWinner(RESULT.LOSS);
+            aliveAgents.remove(ob);
+        } else if (TILETYPE.getPowerUpTypes().contains(type)) {
+            setPowerUp(y * size + x, NONE);
+        }
+    }
+
+    @Override
+    void setAgent(int playerIdx, int x, int y, boolean canKick, int ammo, int blastStrength) {
+        Avatar a = (Avatar) agents[playerIdx];
+        a.setPosition(new Vector2d(x, y));
+        if (canKick) a.setCanKick();
+        a.setAmmo(ammo);
+        a.setBlastStrength(blastStrength);
+    }
+
+    @Override
+    void setBomb(int x, int y, int playerIdx, Vector2d velocity) {
+        for (int b = 0; b < nBombs; b++) {
+            if (bombX[b] == x && bombY[b] == y) {
+                bombOwner[b] = playerIdx;
+                bombVelX[b] = velocity.x;
+                bombVelY[b] = velocity.y;
+            }
+        }
+    }
+
+    @Override
+    void setFlame(int x, int y, int life) {
+        for (int f = 0; f < nFlames; f++) {
+            if (flameX[f] == x && flameY[f] == y) {
+                flameLife[f] = life;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o.getClass() != getClass()) {
+            return false;
+        }
+        PackedForwardModel fm = (PackedForwardModel) o;
+
+        if (size != fm.size)
+            return false;
+        for (int i = 0; i < board.length; i++) {
+            // A missing power-up in either model is not a difference, as in Types.TILETYPE.boardEquals()
+            if (powerups[i] != NONE && fm.powerups[i] != NONE && powerups[i] != fm.powerups[i])
+                return false;
+            if (board[i] != fm.board[i])
+                return false;
+        }
+        if (!Arrays.deepEquals(bombBlastStrength, fm.bombBlastStrength))
+            return false;
+        if (!Arrays.deepEquals(bombLife, fm.bombLife))
+            return false;
+        if (nFlames != fm.nFlames || nBombs != fm.nBombs)
+            return false;
+        for (int f = 0; f < nFlames; f++) {
+            if (flameX[f] != fm.flameX[f] || flameY[f] != fm.flameY[f] || flameLife[f] != fm.flameLife[f])
+                return false;
+        }
+        for (int b = 0; b < nBombs; b++) {
+            if (bombX[b] != fm.bombX[b] || bombY[b] != fm.bombY[b] || bombTicks[b] != fm.bombTicks[b] ||
+                    bombDesX[b] != fm.bombDesX[b] || bombDesY[b] != fm.bombDesY[b])
+                return false;
+        }
+        if (!GameObject.arrayEquals(agents, fm.agents))
+            return false;
+        if (!GameObject.listEquals(aliveAgents, fm.aliveAgents))
+            return false;
+        return true;
+    }
+
+    /**
+     * Hashes what equals() compares exactly. Hidden power-ups are left out, as a missing one in either model is not
+     * a difference, which also keeps hash64() from being used here.
+     */
+    @Override
+    public int hashCode() {
+        int hash = Arrays.hashCode(board);
+        hash = 31 * hash + nBombs;
+        hash = 31 * hash + nFlames;
+        return hash;
+    }
+}
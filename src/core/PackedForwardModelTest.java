@@ -0,0 +1,92 @@
+package core;
+
+import objects.Avatar;
+import objects.GameObject;
+import org.junit.jupiter.api.Test;
+import utils.Types;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the ForwardModel test suite on the packed forward model, and checks that both implementations
+ * play exactly the same games.
+ */
+class PackedForwardModelTest extends ForwardModelTest {
+
+    private static final int NUM_GAMES = 40;
+
+    @Override
+    ForwardModel createModel(long seed, int[][] intBoard, Types.GAME_MODE gameMode) {
+        return new PackedForwardModel(seed, intBoard, gameMode);
+    }
+
+    @Test
+    void testSameGamesAsObjectModel() {
+        for (int g = 0; g < NUM_GAMES; g++) {
+            Types.GAME_MODE gameMode = g % 2 == 0 ? Types.GAME_MODE.FFA : Types.GAME_MODE.TEAM;
+            GameState objectState = new GameState(g, Types.BOARD_SIZE, gameMode, Types.FM_TYPE.OBJECT);
+            GameState packedState = new GameState(g, Types.BOARD_SIZE, gameMode, Types.FM_TYPE.PACKED);
+            assertTrue(packedState.model instanceof PackedForwardModel);
+
+            // Some games with kicking agents and partial observability
+            boolean kick = g % 4 >= 2;
+            int visionRange = g % 3 == 0 ? 4 : -1;
+            for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                setUpAgent(objectState, i, kick, visionRange);
+                setUpAgent(packedState, i, kick, visionRange);
+            }
+
+            Random rnd = new Random(g);
+            while (!objectState.isTerminal()) {
+                Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+                for (int i = 0; i < actions.length; i++) {
+                    // Bias towards bombs, so chained explosions and kicks happen often
+                    int a = rnd.nextInt(Types.NUM_ACTIONS + 2);
+                    actions[i] = Types.ACTIONS.all().get(Math.min(a, Types.NUM_ACTIONS - 1));
+                }
+                objectState.next(actions);
+                packedState.next(actions);
+
+                String msg = "Game " + g + ", tick " + objectState.getTick();
+                assertSameState(objectState, packedState, msg);
+                for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                    assertSameState(objectState.copy(i), packedState.copy(i), msg + ", observation of player " + i);
+                }
+
+                // Rollouts continue from copies of the state
+                if (rnd.nextInt(50) == 0) {
+                    objectState = objectState.copy();
+                    packedState = packedState.copy();
+                    assertTrue(packedState.model instanceof PackedForwardModel);
+                }
+            }
+            assertTrue(packedState.isTerminal());
+        }
+    }
+
+    private void setUpAgent(GameState gs, int idx, boolean kick, int visionRange) {
+        Avatar avatar = (Avatar) gs.getAgents()[idx];
+        if (kick) avatar.setCanKick();
+        avatar.setVisionRange(visionRange);
+    }
+
+    private void assertSameState(GameState expected, GameState actual, String msg) {
+        assertTrue(Arrays.deepEquals(expected.getBoard(), actual.getBoard()), msg + "\n" + expected.model + actual.model);
+        assertTrue(Arrays.deepEquals(expected.getBombBlastStrength(), actual.getBombBlastStrength()), msg);
+        assertTrue(Arrays.deepEquals(expected.getBombLife(), actual.getBombLife()), msg);
+        assertTrue(GameObject.arrayEquals(expected.getAgents(), actual.getAgents()), msg);
+        assertEquals(expected.getAliveAgents().size(), actual.getAliveAgents().size(), msg);
+        assertTrue(GameObject.listEquals(expected.getAliveAgents(), actual.getAliveAgents()), msg);
+        assertEquals(expected.hash64(), actual.hash64(), msg);
+        for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+            Avatar e = (Avatar) expected.getAgents()[i];
+            Avatar a = (Avatar) actual.getAgents()[i];
+            assertEquals(e.getWinner(), a.getWinner(), msg);
+            assertEquals(e.getPosition(), a.getPosition(), msg);
+            assertEquals(e.getDesiredCoordinate(), a.getDesiredCoordinate(), msg);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package network;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of request latencies, safe to update from many threads. Latencies are counted in buckets of powers of
+ * two microseconds (bucket i holds [2^(i-1), 2^i) us), so percentiles are reported as the upper bound of their
+ * bucket (or the maximum, if lower), within a factor of two of the true value.
+ */
+class LatencyHistogram {
+
+    private static final int N_BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(N_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(N_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // Retry until this is not the maximum or has been stored.
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @param p percentile, in (0, 1].
+     * @return upper bound, in microseconds, of the bucket holding the p-th percentile; 0 if nothing was recorded.
+     */
+    long percentileMicros(double p) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < N_BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return Math.min(1L << i, maxNanos.get() / 1000);
+        }
+        return maxNanos.get() / 1000;
+    }
+
+    JsonObject toJson() {
+        long n = count.get();
+        JsonObject obj = new JsonObject();
+        obj.addProperty("count", n);
+        obj.addProperty("mean_us", n == 0 ? 0 : totalNanos.get() / n / 1000);
+        obj.addProperty("p50_us", percentileMicros(0.5));
+        obj.addProperty("p90_us", percentileMicros(0.9));
+        obj.addProperty("p99_us", percentileMicros(0.99));
+        obj.addProperty("max_us", maxNanos.get() / 1000);
+        return obj;
+    }
+}
@@ -4,119 +4,352 @@ import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import core.GameState;
+import core.ObservationParser;
 import players.Player;
-import players.SimplePlayer;
 import players.mcts.MCTSParams;
 import players.mcts.MCTSPlayer;
-import players.rhea.RHEAPlayer;
 import utils.Types;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * HTTP server playing for Python pommerman clients (HttpAgent), any number of matches at a time.
+ *
+ * Each /init_agent starts a session with its own agent and answers {"session": id}. Clients send that id back in
+ * the "X-Session-Id" header or the "session" query parameter. Requests without one go to the session created last,
+ * which is what a single unmodified client expects. Requests are served by a bounded pool of worker threads; when
+ * all workers are busy and the queue is full, the server's dispatcher thread answers them itself, which slows
+ * down accepting new connections instead of failing requests.
+ *
+ * /action_bin answers any number of observations, of any sessions, at once, in a fixed binary layout that is much
+ * cheaper to read and write than JSON. Little-endian request: i32 number of observations, then for each an i64
+ * session id (0 for the session of the request, as for /action) followed by the observation, laid out as read by
+ * ObservationParser.parse(ByteBuffer). The response has one byte per observation: the action, or -1 if the session
+ * doesn't exist. Observations are played in parallel, on a pool of as many threads as workers that all /action_bin
+ * requests share, so searches never run on more threads than the server was started with. Bodies are always read to
+ * the end, so clients can keep the connection alive between requests.
+ *
+ * GET /stats returns the number of sessions and the latency histogram of every endpoint.
+ *
+ * Usage: java network.Server [port] [worker threads]
+ */
 public class Server {
-    static int id = -1;
-    static int game_type = -1;
-    static Player agent;
 
+    private static final int DEFAULT_PORT = 12345;
+    private static final int QUEUE_PER_WORKER = 16;
+    // Sessions without requests for this long are dropped when a new one starts.
+    private static final long SESSION_TIMEOUT_MS = 10 * 60 * 1000;
+    // Ticks played by the warm-up agent before the server starts.
+    private static final int WARMUP_TICKS = 30;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextSessionId = new AtomicLong();
+    private volatile Session lastSession;
+
+    // Filled in the constructor, only read afterwards.
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+    private HttpServer server;
+    private ThreadPoolExecutor executor;
+    // Plays the observations of /action_bin requests. Separate from the workers, which wait for it.
+    private ExecutorService batchExecutor;
 
     public static void main(String[] args) throws IOException {
-        // todo remove static keyword and maybe from this out from the main function
-        HttpServer server = HttpServer.create(new InetSocketAddress(12345), 0);
-        HttpContext context = server.createContext("/");
-        HttpContext actionContext = server.createContext("/action");
-        HttpContext initContext = server.createContext("/init_agent");
-        HttpContext episodeEndContext = server.createContext("/episode_end");
-        HttpContext shutdownContext = server.createContext("/shutdown");
-        context.setHandler(Server::handleRequest);
-        actionContext.setHandler(Server::getAction);
-        initContext.setHandler(Server::initAgent);
-        episodeEndContext.setHandler(Server::episodeEnd);
-        shutdownContext.setHandler(Server::shutdown);
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        warmUp();
+        new Server().start(port, threads);
+        System.out.println("Listening on port " + port + " with " + threads + " workers");
+    }
+
+    public Server() {
+        for (String endpoint : new String[]{"/", "/init_agent", "/action", "/action_bin", "/episode_end", "/shutdown",
+                "/stats"}) {
+            latencies.put(endpoint, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Starts serving requests.
+     * @param port port to listen on.
+     * @param threads number of worker threads.
+     */
+    public void start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", timed("/", this::handleRequest));
+        server.createContext("/init_agent", timed("/init_agent", this::initAgent));
+        server.createContext("/action", timed("/action", this::getAction));
+        server.createContext("/action_bin", timed("/action_bin", this::getActionBinary));
+        server.createContext("/episode_end", timed("/episode_end", this::episodeEnd));
+        server.createContext("/shutdown", timed("/shutdown", this::shutdown));
+        server.createContext("/stats", timed("/stats", this::stats));
+
+        AtomicInteger workerId = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_WORKER), r -> {
+                    Thread t = new Thread(r, "server-worker-" + workerId.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        server.setExecutor(executor);
+
+        AtomicInteger batchId = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "server-batch-" + batchId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
         server.start();
     }
 
-    private static void handleRequest(HttpExchange exchange) throws IOException {
-        // httpagent calls this first, maybe initialize agents here?
-        System.out.println("default");
-        String response = "";
-        exchange.sendResponseHeaders(200, response.getBytes().length);//response code and length
-        OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
-        os.close();
+    /**
+     * Stops the server, waiting up to a second for requests being answered.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        batchExecutor.shutdown();
     }
 
-    private static void getAction(HttpExchange exchange) throws IOException {
-        String state = getMessageBody(exchange);
-        GameState gs = new GameState(state);
-        try {
-            Types.ACTIONS action = agent.act(gs);
-            //System.out.println("selected action = " + action);
-
-            String response = "{\"action\": " + action.getKey() + "}";
-            exchange.sendResponseHeaders(200, response.getBytes().length);//response code and length
-            OutputStream os = exchange.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
-        } catch (Exception e){
-            e.printStackTrace();
+    /**
+     * Plays a few ticks with an agent of the kind sessions use, so that the first matches are not played by
+     * interpreted code. Only needs to happen once per JVM.
+     */
+    static void warmUp() {
+        GameState gs = new GameState(0, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        Player agent = createAgent(Types.TILETYPE.AGENT0.getKey());
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        Arrays.fill(actions, Types.ACTIONS.ACTION_STOP);
+        for (int t = 0; t < WARMUP_TICKS && !gs.isTerminal(); t++) {
+            actions[0] = agent.act(gs.copy(0));
+            gs.next(actions);
         }
+    }
 
+    private static Player createAgent(int playerId) {
+        return new MCTSPlayer(0, playerId, new MCTSParams());
     }
 
-    private static void initAgent(HttpExchange exchange) throws IOException {
-        // httpagent calls this second
-        System.out.println("initAgent");
+    private HttpHandler timed(String endpoint, HttpHandler handler) {
+        LatencyHistogram histogram = latencies.get(endpoint);
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(exchange);
+            } catch (Exception e) {
+                e.printStackTrace();
+                try {
+                    respond(exchange, 500, "");
+                } catch (IOException ignored) {
+                    // The response had already been started
+                }
+            } finally {
+                histogram.record(System.nanoTime() - start);
+                exchange.close();
+            }
+        };
+    }
+
+    private void handleRequest(HttpExchange exchange) throws IOException {
+        // httpagent calls this first
+        respond(exchange, 200, "");
+    }
 
+    private void initAgent(HttpExchange exchange) throws IOException {
+        // httpagent calls this second
         Gson gson = new Gson();
         String value = getMessageBody(exchange);
-        System.out.println(value);
-        JsonParser parser = new JsonParser();
-        JsonElement e = parser.parse(value);
-        JsonObject obj = e.getAsJsonObject();
-        id = gson.fromJson(obj.get("id"), int.class) + 10; // todo pommerman agent starts from 0
-        game_type = gson.fromJson(obj.get("game_type"), int.class);
-        agent = new MCTSPlayer(0, id, new MCTSParams());
-
-        System.out.println("id = " + id);
-        System.out.println("game_type = " + game_type);
-
-        String response = "";
-        exchange.sendResponseHeaders(200, response.getBytes().length);//response code and length
-        OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
-        os.close();
+        JsonObject obj = new JsonParser().parse(value).getAsJsonObject();
+        int id = gson.fromJson(obj.get("id"), int.class) + 10; // todo pommerman agent starts from 0
+        int gameType = gson.fromJson(obj.get("game_type"), int.class);
+
+        dropIdleSessions();
+        Session session = new Session(Long.toString(nextSessionId.incrementAndGet()), id, gameType,
+                createAgent(id));
+        sessions.put(session.id, session);
+        lastSession = session;
+        System.out.println("Session " + session.id + ": id = " + id + ", game_type = " + gameType);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("session", session.id);
+        respond(exchange, 200, response.toString());
     }
 
-    private static void episodeEnd(HttpExchange exchange) throws IOException {
-        System.out.println("episodeend");
-        String message = getMessageBody(exchange);
-        System.out.println(message);
-        String response = "";
-        exchange.sendResponseHeaders(200, response.getBytes().length);//response code and length
-        OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
-        os.close();
+    private void getAction(HttpExchange exchange) throws IOException {
+        Session session = findSession(exchange);
+        if (session == null) {
+            respond(exchange, 404, "");
+            return;
+        }
+        Types.ACTIONS action = session.act(getMessageBody(exchange));
+        respond(exchange, 200, "{\"action\": " + action.getKey() + "}");
+    }
+
+    private void getActionBinary(HttpExchange exchange) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(readBody(exchange)).order(ByteOrder.LITTLE_ENDIAN);
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / (Long.BYTES + ObservationParser.binarySize(1)))
+            throw new IllegalArgumentException("Bad number of observations: " + count);
+
+        Session requestSession = findSession(exchange);
+        Session[] targets = new Session[count];
+        ByteBuffer[] observations = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long id = buf.getLong();
+            int length = ObservationParser.binarySize(buf.get(buf.position()) & 0xFF);
+            if (buf.remaining() < length)
+                throw new IllegalArgumentException("Truncated observation " + i);
+            observations[i] = buf.slice();
+            observations[i].limit(length);
+            buf.position(buf.position() + length);
+            targets[i] = id == 0 ? requestSession : sessions.get(Long.toString(id));
+        }
+
+        byte[] actions = new byte[count];
+        List<Callable<Void>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int idx = i;
+            tasks.add(() -> {
+                actions[idx] = targets[idx] == null ? -1 : (byte) targets[idx].act(observations[idx]).getKey();
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : batchExecutor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while playing observations", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to play an observation", e.getCause());
+        }
+        respond(exchange, 200, actions);
     }
 
-    private static void shutdown(HttpExchange exchange) throws IOException {
-        System.out.println("shutdown");
+    private void episodeEnd(HttpExchange exchange) throws IOException {
+        Session session = findSession(exchange);
         String message = getMessageBody(exchange);
-        System.out.println(message);
-        String response = "";
-        exchange.sendResponseHeaders(200, response.getBytes().length);//response code and length
+        if (session != null && message != null) {
+            JsonElement reward = new JsonParser().parse(message).getAsJsonObject().get("reward");
+            if (reward != null && reward.isJsonPrimitive())
+                session.result(reward.getAsDouble());
+        }
+        respond(exchange, 200, "");
+    }
+
+    private void shutdown(HttpExchange exchange) throws IOException {
+        Session session = findSession(exchange);
+        if (session != null) {
+            sessions.remove(session.id);
+            if (lastSession == session)
+                lastSession = null;
+            System.out.println("Session " + session.id + " closed");
+        }
+        respond(exchange, 200, "");
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        JsonObject endpoints = new JsonObject();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            endpoints.add(entry.getKey(), entry.getValue().toJson());
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("sessions", sessions.size());
+        response.addProperty("queued", executor.getQueue().size());
+        response.add("endpoints", endpoints);
+        respond(exchange, 200, response.toString());
+    }
+
+    /**
+     * @return the session named by the request, or the last one created if it names none; null if there is no
+     * such session.
+     */
+    private Session findSession(HttpExchange exchange) {
+        String id = exchange.getRequestHeaders().getFirst("X-Session-Id");
+        if (id == null)
+            id = queryParameter(exchange, "session");
+        return id == null ? lastSession : sessions.get(id);
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name))
+                return pair.substring(eq + 1);
+        }
+        return null;
+    }
+
+    private void dropIdleSessions() {
+        long now = System.currentTimeMillis();
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            Session session = it.next();
+            if (now - session.getLastUsed() > SESSION_TIMEOUT_MS) {
+                it.remove();
+                if (lastSession == session)
+                    lastSession = null;
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String response) throws IOException {
+        respond(exchange, code, response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int code, byte[] bytes) throws IOException {
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length); // -1: no body
         OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
+        if (bytes.length > 0)
+            os.write(bytes);
         os.close();
     }
 
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        byte[] chunk = new byte[4096];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
     public static String getMessageBody(HttpExchange exchange) throws IOException {
         InputStreamReader isr =  new InputStreamReader(exchange.getRequestBody(),"utf-8");
         BufferedReader br = new BufferedReader(isr);
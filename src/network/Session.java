@@ -0,0 +1,63 @@
+package network;
+
+import core.GameState;
+import core.ObservationParser;
+import players.Player;
+import utils.Types;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One match played by a Python client: the agent created for it by /init_agent and the game type it was created
+ * for. Requests of a session are answered one at a time, different sessions in parallel.
+ */
+class Session {
+
+    final String id;
+    final int playerId;
+    final int gameType;
+    private final Player agent;
+    private final ObservationParser parser = new ObservationParser();
+    private volatile long lastUsed;
+
+    Session(String id, int playerId, int gameType, Player agent) {
+        this.id = id;
+        this.playerId = playerId;
+        this.gameType = gameType;
+        this.agent = agent;
+        touch();
+    }
+
+    /**
+     * @param observation observation sent by the client.
+     * @return the action of the agent.
+     */
+    synchronized Types.ACTIONS act(String observation) {
+        touch();
+        GameState gs = parser.parse(observation);
+        return agent.act(gs);
+    }
+
+    /**
+     * @param observation binary observation sent by the client (see ObservationParser.parse(ByteBuffer)).
+     * @return the action of the agent.
+     */
+    synchronized Types.ACTIONS act(ByteBuffer observation) {
+        touch();
+        GameState gs = parser.parse(observation);
+        return agent.act(gs);
+    }
+
+    synchronized void result(double reward) {
+        touch();
+        agent.result(reward);
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    private void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+}
@@ -85,6 +85,27 @@ public class Avatar extends GameObject {
         return copy;
     }
 
+    @Override
+    public void copyInto(GameObject target) {
+        super.copyInto(target);
+        Avatar copy = (Avatar) target;
+        copy.canKick = canKick;
+        copy.ammo = ammo;
+        copy.blastStrength = blastStrength;
+        copy.winner = winner;
+        copy.visionRange = visionRange;
+        copy.team = team;
+        copy.enemies = copyInto(enemies, copy.enemies);
+        copy.teammates = copyInto(teammates, copy.teammates);
+    }
+
+    private static Types.TILETYPE[] copyInto(Types.TILETYPE[] source, Types.TILETYPE[] target) {
+        if (source == null) return null;
+        if (target == null || target.length != source.length) return source.clone();
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
+
     public int getBlastStrength() {
         return blastStrength;
     }
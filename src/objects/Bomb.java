@@ -1,7 +1,6 @@
 package objects;
 
 import utils.Types;
-import utils.Utils;
 import utils.Vector2d;
 
 import java.util.ArrayList;
@@ -44,71 +43,67 @@ public class Bomb extends GameObject {
         return copy;
     }
 
-    public ArrayList<GameObject> explode(boolean forceExplode, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups) {
-        ArrayList<GameObject> flames = new ArrayList<>();
-
-        if (life == 0 || forceExplode) {
-            if (VERBOSE)
-                System.out.println("KABOOM at "+position.toString());
-
-            // First add the flame at the current position
-            tryToAddFlame(position.x, position.y, board, powerups, flames);
-            boolean advanceP = true;
-            boolean advanceM = true;
-            for (int i = 1; i < blastStrength; i++) {
-                if (advanceP) {
-                    int x1 = position.x + i;
-                    advanceP = tryToAddFlame(x1, position.y, board, powerups, flames);
-                }
-                if (advanceM) {
-                    int x2 = position.x - i;
-                    advanceM = tryToAddFlame(x2, position.y, board, powerups, flames);
-                }
-            }
-            advanceM = true;
-            advanceP = true;
-            for (int i = 1; i < blastStrength; i++) {
-                if (advanceP) {
-                    int y1 = position.y + i;
-                    advanceP = tryToAddFlame(position.x, y1, board, powerups, flames);
-                }
-                if (advanceM) {
-                    int y2 = position.y - i;
-                    advanceM = tryToAddFlame(position.x, y2, board, powerups, flames);
-                }
-            }
-            return flames;
+    @Override
+    public void copyInto(GameObject target) {
+        super.copyInto(target);
+        Bomb copy = (Bomb) target;
+        copy.blastStrength = blastStrength;
+        copy.playerIdx = playerIdx;
+        copy.velocity = copyInto(velocity, copy.velocity);
+    }
+
+    /**
+     * Explodes this bomb if its life reached 0 or it's forced to, turning the cells reached by the blast into flames:
+     * its own cell first, then alternating sides along x and then along y. Blasts stop at rigid blocks and at the
+     * first wooden block.
+     * @param flames list the new flames are added to.
+     * @param flameCount number of flames on each cell (indexed y * size + x), updated with the new flames.
+     * @return number of flames added, 0 if the bomb didn't explode.
+     */
+    public int explode(boolean forceExplode, Types.TILETYPE[][] board, ArrayList<GameObject> flames,
+                       int[] flameCount) {
+        if (life != 0 && !forceExplode)
+            return 0;
+
+        if (VERBOSE)
+            System.out.println("KABOOM at "+position.toString());
+
+        int first = flames.size();
+        tryToAddFlame(position.x, position.y, board, flames, flameCount);
+        boolean advanceP = true;
+        boolean advanceM = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP) advanceP = tryToAddFlame(position.x + i, position.y, board, flames, flameCount);
+            if (advanceM) advanceM = tryToAddFlame(position.x - i, position.y, board, flames, flameCount);
+        }
+        advanceM = true;
+        advanceP = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP) advanceP = tryToAddFlame(position.x, position.y + i, board, flames, flameCount);
+            if (advanceM) advanceM = tryToAddFlame(position.x, position.y - i, board, flames, flameCount);
         }
-        return null;
+        return flames.size() - first;
     }
 
-    private boolean tryToAddFlame(int x, int y, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups,
-                                  ArrayList<GameObject> flames) {
+    /**
+     * Adds a flame at (x, y) unless it is off the board or on a rigid block.
+     * @return false if the flame stops at (x, y)
+     */
+    private boolean tryToAddFlame(int x, int y, Types.TILETYPE[][] board, ArrayList<GameObject> flames,
+                                  int[] flameCount) {
         if (x < 0 || y < 0 || x >= board.length || y >= board.length) {
             return false;
         }
-        ArrayList<Types.TILETYPE> flameCollisions = new ArrayList<>();
-        flameCollisions.add(Types.TILETYPE.RIGID);
-
         Types.TILETYPE type = board[y][x];
-        Flame f = new Flame();
-        f.playerIdx = playerIdx;
-        boolean success = Utils.setDesiredCoordinate(f, new Vector2d(x, y), board, flameCollisions);
-        if (success) {
-            f.setPosition(f.getDesiredCoordinate());
-            flames.add(f);
-
-            // Power-ups are killed by bombs, so this is commented out now.
-//            if (Types.TILETYPE.getPowerUpTypes().contains(board[y][x]))
-//                // Powerups temporarily removed from the board, put back into the powerups array to be revealed
-//                // when this flame dies
-//                powerups[y][x] = board[y][x];
-
-            board[y][x] = f.getType();
-            return type != Types.TILETYPE.WOOD;  // Flames should stop at first wooden block
-        }
-        else
+        if (type == Types.TILETYPE.RIGID) {
             return false;
+        }
+
+        // Power-ups are killed by bombs, so they're not kept in the powerups array to be revealed later.
+        flames.add(new Flame(x, y, playerIdx));
+        flameCount[y * board.length + x]++;
+        board[y][x] = Types.TILETYPE.FLAMES;
+        return type != Types.TILETYPE.WOOD;  // Flames should stop at first wooden block
     }
 
     // Getters, setters
@@ -1,6 +1,7 @@
 package objects;
 
 import utils.Types;
+import utils.Vector2d;
 
 import static utils.Types.FLAME_LIFE;
 
@@ -13,6 +14,17 @@ public class Flame extends GameObject {
         life = FLAME_LIFE;
     }
 
+    /**
+     * Creates a flame placed at (x, y).
+     * @param playerIdx owner of the bomb that created it.
+     */
+    public Flame(int x, int y, int playerIdx) {
+        super(Types.TILETYPE.FLAMES, x, y);
+        position = new Vector2d(x, y);
+        life = FLAME_LIFE;
+        this.playerIdx = playerIdx;
+    }
+
     @Override
     public void tick(){
         this.life--;
@@ -30,4 +42,11 @@ public class Flame extends GameObject {
         copy.id = hashCode();
         return copy;
     }
+
+    @Override
+    public void copyInto(GameObject target) {
+        super.copyInto(target);
+        // As in copy(), the owner of the flame is not copied
+        ((Flame) target).playerIdx = 0;
+    }
 }
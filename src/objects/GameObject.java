@@ -150,6 +150,29 @@ public class GameObject {
         return copy;
     }
 
+    /**
+     * Copies this object into another object of the same class, as copy() would, but reusing the target object
+     * and its coordinates. The target must not be shared with anything that expects it to keep its old state.
+     * @param target object to overwrite.
+     */
+    public void copyInto(GameObject target) {
+        target.life = life;
+        target.id = hashCode();
+        target.desiredCoordinate = copyInto(desiredCoordinate, target.desiredCoordinate);
+        target.position = copyInto(position, target.position);
+    }
+
+    /**
+     * Copies a vector, reusing the target vector if there is one.
+     * @return the vector holding the copy, null if the source is null.
+     */
+    static Vector2d copyInto(Vector2d source, Vector2d target) {
+        if (source == null) return null;
+        if (target == null) return source.copy();
+        target.set(source);
+        return target;
+    }
+
     public Image getImage() { return img;}
 
     /**
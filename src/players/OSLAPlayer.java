@@ -41,6 +41,7 @@ public class OSLAPlayer extends Player {
             GameState gsCopy = gs.copy();
             rollRnd(gsCopy, act);
             double valState = rootStateHeuristic.evaluateState(gsCopy);
+            getMetrics().countHeuristicEvaluation();
 
             //System.out.println(valState);
             double Q = Utils.noise(valState, this.epsilon, this.random.nextDouble());
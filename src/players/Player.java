@@ -13,6 +13,9 @@ public abstract class Player {
     protected int playerID;
     protected long seed;
 
+    // Work done in act(), filled by the game and by the player itself.
+    private final PlayerMetrics metrics = new PlayerMetrics();
+
     /**
      * Default constructor, to be called in subclasses (initializes player ID and random seed for this agent.
      * @param seed - random seed for this player.
@@ -57,6 +60,14 @@ public abstract class Player {
         return seed;
     }
 
+    /**
+     * Getter for the metrics of this player in the current game.
+     * @return - this player's metrics.
+     */
+    public final PlayerMetrics getMetrics() {
+        return metrics;
+    }
+
     public abstract Player copy();
 
     public void reset(long seed, int playerID) {
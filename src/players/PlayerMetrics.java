@@ -0,0 +1,121 @@
+package players;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Work done by a player while deciding its actions in a game. Game records the time spent in act(), and the
+ * observations it hands to the player count the forward model calls and copies made from them, in any thread.
+ * Search-based players also report their iterations, heuristic evaluations and tree sizes.
+ */
+public class PlayerMetrics {
+
+    // Updated from the thread the player acts on, which may still be running a late decision when the game reads
+    // or resets them.
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder treeNodes = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+
+    // Updated from the states the player works with, which may be on several threads at once.
+    private final LongAdder fmCalls = new LongAdder();
+    private final LongAdder copies = new LongAdder();
+    private final LongAdder heuristicEvaluations = new LongAdder();
+
+    /**
+     * Records one call to act().
+     * @param wallNanos wall-clock time it took.
+     * @param cpuNanos CPU time of the thread it ran on.
+     */
+    public void addDecision(long wallNanos, long cpuNanos) {
+        decisions.increment();
+        this.wallNanos.add(wallNanos);
+        this.cpuNanos.add(cpuNanos);
+    }
+
+    /**
+     * Records search iterations (MCTS iterations, evolution generations...) of one decision.
+     */
+    public void addIterations(long n) {
+        iterations.add(n);
+    }
+
+    /**
+     * Records the size of the search tree built for one decision.
+     */
+    public void addTreeNodes(long n) {
+        treeNodes.add(n);
+    }
+
+    public void countNext() {
+        fmCalls.increment();
+    }
+
+    public void countCopy() {
+        copies.increment();
+    }
+
+    public void countHeuristicEvaluation() {
+        heuristicEvaluations.increment();
+    }
+
+    /**
+     * Adds the metrics of another player or game to these ones.
+     */
+    public void add(PlayerMetrics other) {
+        decisions.add(other.decisions.sum());
+        iterations.add(other.iterations.sum());
+        treeNodes.add(other.treeNodes.sum());
+        wallNanos.add(other.wallNanos.sum());
+        cpuNanos.add(other.cpuNanos.sum());
+        fmCalls.add(other.fmCalls.sum());
+        copies.add(other.copies.sum());
+        heuristicEvaluations.add(other.heuristicEvaluations.sum());
+    }
+
+    public void reset() {
+        decisions.reset();
+        iterations.reset();
+        treeNodes.reset();
+        wallNanos.reset();
+        cpuNanos.reset();
+        fmCalls.reset();
+        copies.reset();
+        heuristicEvaluations.reset();
+    }
+
+    public long getDecisions() { return decisions.sum(); }
+    public long getIterations() { return iterations.sum(); }
+    public long getTreeNodes() { return treeNodes.sum(); }
+    public long getWallNanos() { return wallNanos.sum(); }
+    public long getCpuNanos() { return cpuNanos.sum(); }
+    public long getFMCalls() { return fmCalls.sum(); }
+    public long getCopies() { return copies.sum(); }
+    public long getHeuristicEvaluations() { return heuristicEvaluations.sum(); }
+
+    /**
+     * @return forward model calls per second of time spent deciding (wall-clock).
+     */
+    public double getFMCallsPerSecond() {
+        long wall = getWallNanos();
+        return wall == 0 ? 0 : getFMCalls() * 1e9 / wall;
+    }
+
+    /**
+     * Column names of toString(), tab separated.
+     */
+    public static String header() {
+        return "ms/act \tCPU ms/act \tIters/act \tNext/act \tCopies/act \tEvals/act \tNodes/act \tNext/s";
+    }
+
+    /**
+     * Averages per decision, tab separated.
+     */
+    @Override
+    public String toString() {
+        double n = Math.max(1, getDecisions());
+        return String.format("%.2f \t%.2f \t\t%.1f \t\t%.1f \t\t%.1f \t\t%.1f \t\t%.1f \t\t%.0f",
+                getWallNanos() / 1e6 / n, getCpuNanos() / 1e6 / n, getIterations() / n, getFMCalls() / n,
+                getCopies() / n, getHeuristicEvaluations() / n, getTreeNodes() / n, getFMCallsPerSecond());
+    }
+}
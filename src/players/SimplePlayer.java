@@ -3,6 +3,7 @@ package players;
 import core.GameState;
 import objects.Bomb;
 import objects.GameObject;
+import utils.PathFinder;
 import utils.Types;
 import utils.Vector2d;
 
@@ -12,7 +13,13 @@ import static java.lang.Math.*;
 import static utils.Utils.*;
 
 public class SimplePlayer extends Player {
+    // Cells further away than this are ignored when looking for items
+    private static final int SEARCH_DEPTH = 10;
+    private static final Set<Types.TILETYPE> POWER_UPS = Types.TILETYPE.getPowerUpTypes();
+
     private Random random;
+    private final PathFinder pathFinder = new PathFinder();
+    private final PathFinder escapeFinder = new PathFinder();
     private ArrayList<Vector2d> recentlyVisitedPositions;
     private int recentlyVisitedLength;
 
@@ -50,16 +57,6 @@ public class SimplePlayer extends Player {
         this.recentlyVisitedLength = 6;
     }
 
-    // Container for return values of Dijkstra's pathfinding algorithm.
-    public class Container
-    {
-        HashMap<Types.TILETYPE, ArrayList<Vector2d> > items;
-        HashMap<Vector2d, Integer> dist;
-        HashMap<Vector2d, Vector2d> prev;
-
-        Container() { }
-    }
-
     /**
      * Called every tick, returns the action to execute one each frame.
      * @param gs - current game state.
@@ -85,6 +82,7 @@ public class SimplePlayer extends Player {
 
         ArrayList<Bomb> bombs = new ArrayList<>();
         ArrayList<GameObject> enemies = new ArrayList<>();
+        ArrayList<Types.TILETYPE> enemyTypes = new ArrayList<>();
 
         for (int x = 0; x < boardSizeX; x++) {
             for (int y = 0; y < boardSizeY; y++) {
@@ -106,27 +104,22 @@ public class SimplePlayer extends Player {
                         GameObject enemy = new GameObject(type);
                         enemy.setPosition(new Vector2d(x, y));
                         enemies.add(enemy); // no copy needed
+                        enemyTypes.add(type);
                     }
                 }
             }
         }
 
-        // items: tile types with their coordinates
-        // dist: coordinates with their distance
-        // prev: shortest path with previous node and the distance to it
-
-        Container from_dijkstra = dijkstra(board, myPosition, bombs, enemies, 10);
-        HashMap<Types.TILETYPE, ArrayList<Vector2d>> items = from_dijkstra.items;
-        Iterator it;
-        HashMap<Vector2d, Integer> dist = from_dijkstra.dist;
-        HashMap<Vector2d, Vector2d> prev = from_dijkstra.prev;
+        // Distances and shortest paths to everything reachable from our position.
+        pathFinder.search(board, myPosition.x, myPosition.y, enemyTypes, SEARCH_DEPTH, random);
 
         // 2) Move if we are in an unsafe place.
-        HashMap<Types.DIRECTIONS, Integer> unsafeDirections = directionsInRangeOfBomb(myPosition, bombs, dist);
+        HashMap<Types.DIRECTIONS, Integer> unsafeDirections = directionsInRangeOfBomb(myPosition, bombs);
 
         if(!unsafeDirections.isEmpty()){
 
-            ArrayList<Types.DIRECTIONS> directions = findSafeDirections(board, myPosition, unsafeDirections, bombs, enemies);
+            ArrayList<Types.DIRECTIONS> directions = findSafeDirections(board, myPosition, unsafeDirections, bombs,
+                    enemies, enemyTypes);
 
             if(!directions.isEmpty()) {
                 return directionToAction(directions.get(random.nextInt(directions.size())));
@@ -137,96 +130,54 @@ public class SimplePlayer extends Player {
         }
 
         // 3) Lay bomb if we are adjacent to an enemy.
-        if(isAdjacentEnemy(items, dist, enemies) && maybeBomb(ammo, blastStrength, items, dist, myPosition)){
+        if(isAdjacentEnemy(enemies) && maybeBomb(ammo, blastStrength, board, myPosition)){
             return Types.ACTIONS.ACTION_BOMB;
         }
 
         //  4) Move towards an enemy if there is one in exactly three reachable spaces.
-        // check dist to nearest enemy
-        // enemies - list of ArrayList of game objects
         for (GameObject en: enemies){
-            Iterator dist_it = dist.entrySet().iterator(); // <Vector2d, Integer>
-            while (dist_it.hasNext()){
-                Map.Entry<Vector2d, Integer> entry = (Map.Entry)dist_it.next();
-
-                if (entry.getKey().equals(en.getPosition()) && entry.getValue() == 3){
-                    // pick this direction
-                    Vector2d next_node = entry.getKey();
-                    while (!myPosition.equals(prev.get(next_node))){
-                        next_node = prev.get(next_node);
-                    }
-                    // return node, which had prev_node
-                    return directionToAction(getDirection(myPosition, next_node));
-
-                }
+            if (pathFinder.distance(en.getPosition()) == 3){
+                return directionToAction(pathFinder.firstDirection(en.getPosition()));
             }
-
         }
 
         // 5) Move towards a good item if there is one within two reachable spaces.
         // good items are the pickups
-        it = items.entrySet().iterator();
-        Vector2d previousNode = new Vector2d(-1, -1); // placeholder, these values are not actually used
+        Vector2d nearestPowerUp = null;
         int distance = Integer.MAX_VALUE;
-        while (it.hasNext()){
-            Map.Entry<Types.TILETYPE, ArrayList<Vector2d> > entry = (Map.Entry)it.next();
-            // check pickup entries on the board
-            if (Types.TILETYPE.getPowerUpTypes().contains(entry.getKey())){
-                // no need to store just get closest
-                for (Vector2d coords: entry.getValue()){
-                    if (dist.get(coords) < distance){
-                        distance = dist.get(coords);
-                        previousNode = coords;
-                    }
+        for (int x = max(0, myPosition.x - 2); x <= min(board.length - 1, myPosition.x + 2); x++){
+            for (int y = max(0, myPosition.y - 2); y <= min(board.length - 1, myPosition.y + 2); y++){
+                if (POWER_UPS.contains(board[y][x]) && pathFinder.distance(x, y) < distance){
+                    distance = pathFinder.distance(x, y);
+                    nearestPowerUp = new Vector2d(x, y);
                 }
             }
         }
         if (distance <= 2){
-            // iterate until we get to the immadiate next node
-            if (myPosition.equals(previousNode)){
-                return directionToAction(getDirection(myPosition, previousNode));
-            }
-            while (!myPosition.equals(prev.get(previousNode))){ ;
-                previousNode = prev.get(previousNode);
-            }
-            return directionToAction(getDirection(myPosition, previousNode));
+            return directionToAction(pathFinder.firstDirection(nearestPowerUp));
         }
 
         // 6) Maybe lay a bomb if we are within a space of a wooden wall.
-        it = items.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Types.TILETYPE, ArrayList<Vector2d>> entry = (Map.Entry) it.next();
-            // check pickup entries on the board
-            if (entry.getKey().equals(Types.TILETYPE.WOOD) ) {
-                // check the distance from the wooden planks
-                for (Vector2d coords: entry.getValue()){
-                    if (dist.get(coords) == 1){
-                        if( maybeBomb(ammo, blastStrength, items, dist, myPosition)){
-                            return Types.ACTIONS.ACTION_BOMB;
-                        }
-                    }
-                }
-                // 7) Move towards a wooden wall if there is one within two reachable spaces and you have a bomb.
-                if (ammo < 1) continue;
-                for (Vector2d coords:entry.getValue()){
-                    // max 2 reachable space
-                    if (dist.get(coords) <= 2){
-                        previousNode = coords;
-                        while (!myPosition.equals(prev.get(previousNode))){
-                            previousNode = prev.get(previousNode);
-                        }
-                        Types.DIRECTIONS direction = getDirection(myPosition, previousNode);
-                        if (direction != null){
-                            ArrayList<Types.DIRECTIONS> dirArray = new ArrayList<>();
-                            dirArray.add(direction);
-                            dirArray = filterUnsafeDirections(myPosition, dirArray, bombs);
-
-                            if (dirArray.size() > 0){
-                                return directionToAction(dirArray.get(0));
-                            }
-                        }
+        for (Types.DIRECTIONS d : Types.DIRECTIONS.values()){
+            int x = myPosition.x + d.x(), y = myPosition.y + d.y();
+            if (pathFinder.distance(x, y) == 1 && board[y][x] == Types.TILETYPE.WOOD &&
+                    maybeBomb(ammo, blastStrength, board, myPosition)){
+                return Types.ACTIONS.ACTION_BOMB;
+            }
+        }
 
+        // 7) Move towards a wooden wall if there is one within two reachable spaces and you have a bomb.
+        if (ammo >= 1){
+            for (int x = max(0, myPosition.x - 2); x <= min(board.length - 1, myPosition.x + 2); x++){
+                for (int y = max(0, myPosition.y - 2); y <= min(board.length - 1, myPosition.y + 2); y++){
+                    if (board[y][x] != Types.TILETYPE.WOOD || pathFinder.distance(x, y) > 2) continue;
 
+                    ArrayList<Types.DIRECTIONS> dirArray = new ArrayList<>();
+                    dirArray.add(pathFinder.firstDirection(x, y));
+                    dirArray = filterUnsafeDirections(myPosition, dirArray, bombs);
+
+                    if (dirArray.size() > 0){
+                        return directionToAction(dirArray.get(0));
                     }
                 }
             }
@@ -261,127 +212,19 @@ public class SimplePlayer extends Player {
         return new int[Types.MESSAGE_LENGTH];
     }
 
-    /**
-     * Dijkstra's pathfinding
-     * @param board - game board
-     * @param myPosition - the position of agent
-     * @param bombs - array of bombs in the game
-     * @param enemies - array of enemies in the game
-     * @param depth - depth of search (default: 10)
-     * @return A set of paths to the different elements in the game.
-     */
-    private Container dijkstra(Types.TILETYPE[][] board, Vector2d myPosition, ArrayList<Bomb> bombs,
-                               ArrayList<GameObject> enemies, int depth){
-
-        HashMap<Types.TILETYPE, ArrayList<Vector2d> > items = new HashMap<>();
-        HashMap<Vector2d, Integer> dist = new HashMap<>();
-        HashMap<Vector2d, Vector2d> prev = new HashMap<>();
-
-        Queue<Vector2d> Q = new LinkedList<>();
-
-        for(int r = max(0, myPosition.x - depth); r < min(board.length, myPosition.x + depth); r++){
-            for(int c = max(0, myPosition.y - depth); c < min(board.length, myPosition.y + depth); c++){
-
-                Vector2d position = new Vector2d(r, c);
-
-                // Determines if two points are out of range of each other.
-                boolean out_of_range = (abs(c - myPosition.y) + abs(r - myPosition.x)) > depth;
-                if(out_of_range)
-                    continue;
-
-                Types.TILETYPE itemType = board[c][r];
-                boolean positionInItems = (itemType == Types.TILETYPE.FOG ||
-                        itemType == Types.TILETYPE.RIGID || itemType == Types.TILETYPE.FLAMES);
-                if(positionInItems)
-                    continue;
-
-                ArrayList<Vector2d> itemsTempList = items.get(itemType);
-                if(itemsTempList == null) {
-                    itemsTempList = new ArrayList<>();
-                }
-                itemsTempList.add(position);
-                items.put(itemType, itemsTempList);
-
-                if(position.equals(myPosition)){
-                    Q.add(position);
-                    dist.put(position, 0);
-                }
-                else{
-                    dist.put(position, Integer.MAX_VALUE);
-                }
-            }
-        }
-
-        for(Bomb bomb : bombs){
-            if(bomb.getPosition().equals(myPosition)){
-                ArrayList<Vector2d> itemsTempList = items.get(Types.TILETYPE.BOMB);
-                if(itemsTempList == null) {
-                    itemsTempList = new ArrayList<>();
-                }
-                itemsTempList.add(myPosition);
-                items.put(Types.TILETYPE.BOMB, itemsTempList);
-            }
-        }
-
-        while(!Q.isEmpty()){
-            Vector2d position = Q.remove();
-
-            if(positionIsPassable(board, position, enemies)){
-                int val = dist.get(position) + 1;
-
-                //Types.DIRECTIONS[] directionsToBeChecked = Types.DIRECTIONS.values();
-                Types.DIRECTIONS[] directionsToBeChecked = {Types.DIRECTIONS.LEFT, Types.DIRECTIONS.RIGHT,
-                        Types.DIRECTIONS.UP, Types.DIRECTIONS.DOWN};
-
-                for (Types.DIRECTIONS directionToBeChecked : directionsToBeChecked) {
-
-                    Vector2d direction = directionToBeChecked.toVec();
-                    Vector2d new_position = new Vector2d(position.x + direction.x, position.y + direction.y);
-
-                    if(!dist.containsKey(new_position))
-                        continue;
-
-                    int dist_val = dist.get(new_position);
-
-                    if(val < dist_val){
-                        dist.put(new_position, val);
-                        prev.put(new_position, position);
-                        Q.add(new_position);
-                    }
-                    else if(val == dist_val && random.nextFloat() < 0.5){
-                        dist.put(new_position, val);
-                        prev.put(new_position, position);
-                    }
-                }
-            }
-        }
-
-        Container container = new Container();
-        container.dist = dist;
-        container.items = items;
-        container.prev = prev;
-
-        return container;
-    }
-
     /**
      * Calculates those directions from the agent's posititon that are in the direction of a bob explosion.
      * @param myPosition - Position of this agent.
      * @param bombs - List of bombs in the board now
-     * @param dist - The list of distances to all bombs.
      * @return A set of directions that would fall in the bomb explosion range.
      */
-    private HashMap<Types.DIRECTIONS, Integer> directionsInRangeOfBomb(Vector2d myPosition, ArrayList<Bomb> bombs,
-            HashMap<Vector2d, Integer> dist) {
+    private HashMap<Types.DIRECTIONS, Integer> directionsInRangeOfBomb(Vector2d myPosition, ArrayList<Bomb> bombs) {
         HashMap<Types.DIRECTIONS, Integer> ret = new HashMap<>();
 
         for(Bomb bomb : bombs){
             Vector2d position = bomb.getPosition();
 
-            if(!dist.containsKey(position))
-                continue;
-
-            int distance = dist.get(position);
+            int distance = pathFinder.distance(position);
             int bombBlastStrength = bomb.getBlastStrength();
 
             if(distance > bombBlastStrength)
@@ -426,68 +269,25 @@ public class SimplePlayer extends Player {
      * @return true if the position is not a good one to be in.
      */
     private boolean isStuckPosition(Vector2d nextPosition, int bombRange, Types.TILETYPE[][] nextBoard,
-                                    ArrayList<GameObject> enemies) {
-        // A tuple class for PriorityQueue since it does not support pair of values in default
-        class Tuple implements Comparable<Tuple>{
-            private int distance;
-            private Vector2d position;
-
-            private Tuple(int distance, Vector2d position){
-                this.distance = distance;
-                this.position = position;
-            }
-
-            @Override
-            public int compareTo(Tuple tuple) {
-                return this.distance - tuple.distance;
-            }
-        }
-
-        PriorityQueue<Tuple> Q = new PriorityQueue<>();
-        Q.add(new Tuple(0, nextPosition));
+                                    ArrayList<Types.TILETYPE> enemies) {
+        // Any way out of the blast is at most one step further than its range.
+        escapeFinder.search(nextBoard, nextPosition.x, nextPosition.y, enemies, bombRange + 1, null);
 
-        Set<Vector2d> seen = new HashSet<>();
+        for (int i = 0; i < escapeFinder.reachedCount(); i++) {
+            int cell = escapeFinder.reachedCell(i);
+            int x = escapeFinder.cellX(cell), y = escapeFinder.cellY(cell);
 
-        boolean is_stuck = true;
-
-        while(!Q.isEmpty()){
-            Tuple tuple = Q.remove();
-            int dist = tuple.distance;
-            Vector2d position = tuple.position;
-
-            seen.add(position);
-
-            if(nextPosition.x != position.x && nextPosition.y != position.y){
-                is_stuck = false;
-                break;
-            }
-
-            if(dist > bombRange){
-                is_stuck = false;
-                break;
-            }
-
-            Types.DIRECTIONS[] directions = {Types.DIRECTIONS.LEFT, Types.DIRECTIONS.RIGHT,
-                    Types.DIRECTIONS.UP, Types.DIRECTIONS.DOWN};
-            //Types.DIRECTIONS.values();
-
-            for (Types.DIRECTIONS direction : directions) {
-                Vector2d newPosition = position.copy();
-                newPosition = newPosition.add(direction.toVec());
-
-                if(seen.contains(newPosition)) continue;
-
-                if(!positionOnBoard(nextBoard, newPosition)) continue;
-
-                if(!positionIsPassable(nextBoard, newPosition, enemies)) continue;
+            // Cells we can't walk into don't get us out
+            if (i > 0 && !escapeFinder.isPassable(nextBoard[y][x]))
+                continue;
 
-                dist = abs(direction.x() + position.x - nextPosition.x) +
-                        abs(direction.y() + position.y - nextPosition.y);
+            if (nextPosition.x != x && nextPosition.y != y)
+                return false;
 
-                Q.add(new Tuple(dist, newPosition));
-            }
+            if (escapeFinder.cellDistance(cell) > bombRange)
+                return false;
         }
-        return is_stuck;
+        return true;
     }
 
     /**
@@ -497,11 +297,13 @@ public class SimplePlayer extends Player {
      * @param unsafeDirections - Set of previously determined unsafe directions.
      * @param bombs - List of bombs currently in hte game.
      * @param enemies - List of enemies in hte game.
+     * @param enemyTypes - Tile types of the enemies.
      * @return A set of directions that would be safe to move (may be empty)
      */
     private ArrayList<Types.DIRECTIONS> findSafeDirections(Types.TILETYPE[][] board, Vector2d myPosition,
                                                            HashMap<Types.DIRECTIONS, Integer> unsafeDirections,
-                                                           ArrayList<Bomb> bombs, ArrayList<GameObject> enemies) {
+                                                           ArrayList<Bomb> bombs, ArrayList<GameObject> enemies,
+                                                           ArrayList<Types.TILETYPE> enemyTypes) {
         // All directions are unsafe. Return a position that won't leave us locked.
         ArrayList<Types.DIRECTIONS> safe = new ArrayList<>();
 
@@ -532,7 +334,7 @@ public class SimplePlayer extends Player {
                         !positionIsPassable(nextBoard, nextPosition, enemies))
                     continue;
 
-                if(!isStuckPosition(nextPosition, bomb_range, nextBoard, enemies)){
+                if(!isStuckPosition(nextPosition, bomb_range, nextBoard, enemyTypes)){
                     return new ArrayList<>(Arrays.asList(direction));
                 }
             }
@@ -581,24 +383,14 @@ public class SimplePlayer extends Player {
 
     /**
      * Checks if there's an adjecent enemy.
-     * @param objects - Game objects in the board.
-     * @param dist - Distance to different positions around me.
      * @param enemies - Set of enemy players.
      * @return true if an agent is next to this player.
      */
-    private boolean isAdjacentEnemy(
-            HashMap<Types.TILETYPE, ArrayList<Vector2d> > objects,
-            HashMap<Vector2d, Integer> dist,
-            ArrayList<GameObject> enemies)
+    private boolean isAdjacentEnemy(ArrayList<GameObject> enemies)
     {
         for(GameObject enemy : enemies){
-            if(objects.containsKey(enemy.getType())) {
-                ArrayList<Vector2d> items_list = objects.get(enemy.getType());
-                for (Vector2d position : items_list) {
-                    if (dist.get(position) == 1)
-                        return true;
-                }
-            }
+            if (pathFinder.distance(enemy.getPosition()) == 1)
+                return true;
         }
         return false;
     }
@@ -607,36 +399,27 @@ public class SimplePlayer extends Player {
      * Determines whether we can safely bomb right now.
      * @param ammo - our ammo count
      * @param blastStrength - our blast strength
-     * @param objects - list of objects in the board.
-     * @param dist - distances to positions in the board.
+     * @param board - game board.
      * @param myPosition - our agent's position
      * @return true if if would be a good idea to drop a bomb here
      */
-    private boolean maybeBomb(int ammo, int blastStrength, HashMap<Types.TILETYPE, ArrayList<Vector2d> > objects,
-                              HashMap<Vector2d, Integer> dist, Vector2d myPosition) {
+    private boolean maybeBomb(int ammo, int blastStrength, Types.TILETYPE[][] board, Vector2d myPosition) {
         // Do we have ammo?
         if(ammo < 1)
             return false;
 
-        if(objects.containsKey(Types.TILETYPE.PASSAGE)){
-            ArrayList<Vector2d> items_list = objects.get(Types.TILETYPE.PASSAGE);
-
-            // Will we be stuck?
-            for (Vector2d position : items_list) {
-
-                if(dist.containsKey(position)){
-                    if(dist.get(position) > Integer.MAX_VALUE)
-                        continue;
-                }
+        // Will we be stuck? Check the passages around us.
+        for (int y = max(0, myPosition.y - SEARCH_DEPTH); y < min(board.length, myPosition.y + SEARCH_DEPTH + 1); y++) {
+            for (int x = max(0, myPosition.x - SEARCH_DEPTH); x < min(board.length, myPosition.x + SEARCH_DEPTH + 1); x++) {
+                if (board[y][x] != Types.TILETYPE.PASSAGE || abs(x - myPosition.x) + abs(y - myPosition.y) > SEARCH_DEPTH)
+                    continue;
 
                 // We can reach a passage that's outside of the bomb strength.
-                if(dist.containsKey(position)){
-                    if(dist.get(position) > blastStrength)
-                        return true;
-                }
+                if (pathFinder.distance(x, y) > blastStrength)
+                    return true;
 
                 // We can reach a passage that's outside of the bomb scope.
-                if(position.x != myPosition.x && position.y != myPosition.y)
+                if (x != myPosition.x && y != myPosition.y)
                     return true;
             }
         }
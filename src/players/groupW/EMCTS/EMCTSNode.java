@@ -1,8 +1,10 @@
 package players.groupW.EMCTS;
 
 import core.GameState;
+import players.heuristics.CachedHeuristic;
 import players.heuristics.CustomHeuristic;
 import players.heuristics.StateHeuristic;
+import players.opponents.OpponentModel;
 import utils.Types;
 import utils.Utils;
 
@@ -36,6 +38,9 @@ public class EMCTSNode {
     // Heuristic for evaluating game states
     private StateHeuristic stateHeuristic;
 
+    // Moves of the other players in simulated ticks
+    private OpponentModel opponentModel;
+
     private double[] raveVisits;
     private double[] raveWins;
 
@@ -55,6 +60,9 @@ public class EMCTSNode {
     private int N_ACTIONS;
     private Types.ACTIONS FPU_Action_choice;
 
+    // Number of EMCTS trees created by the last search from this node
+    private int numIterations = 0;
+
     /**
      * Helper class for storing genomes and their scores
      * @param <X>
@@ -108,6 +116,7 @@ public class EMCTSNode {
         if(parent != null) {
             currentDepth = parent.currentDepth + 1;
             this.stateHeuristic = stateHeuristic;
+            this.opponentModel = parent.opponentModel;
             this.scoreBoard = parent.scoreBoard;
         }
         // If this node is the root node, initialise with depth 0 and empty score board
@@ -135,7 +144,7 @@ public class EMCTSNode {
         // Stop flag
         boolean stop = false;
         // Number of iterations
-        int numIterations = 0;
+        numIterations = 0;
 
         // Store the current best in parameters to reduce search time during evaluation
         params.currentBest = -Double.MAX_VALUE;
@@ -154,6 +163,21 @@ public class EMCTSNode {
         }
     }
 
+    public int getNumIterations() {
+        return numIterations;
+    }
+
+    /**
+     * @return number of nodes in the tree below this node, including it
+     */
+    public int treeSize() {
+        int size = 1;
+        for (EMCTSNode child : children) {
+            size += child.treeSize();
+        }
+        return size;
+    }
+
     public Types.ACTIONS[] findBestAction() {
         return params.currentBestGenome;
     }
@@ -175,6 +199,8 @@ public class EMCTSNode {
         for (Types.ACTIONS act : actionsList) {
             GameState gsCopy = state.copy();
             rollState(gsCopy, act);
+            if (gsCopy.getMetrics() != null)
+                gsCopy.getMetrics().countHeuristicEvaluation();
             double valState = stateHeuristic.evaluateState(gsCopy);
 
             //System.out.println(valState);
@@ -306,6 +332,8 @@ public class EMCTSNode {
             }
 
             // Add noise to break ties
+            if (copy.getMetrics() != null)
+                copy.getMetrics().countHeuristicEvaluation();
             double result = Utils.noise(stateHeuristic.evaluateState(copy), params.epsilon, random.nextDouble());
             if(result > params.currentBest){
                 // Add leaf node value to score board
@@ -323,31 +351,8 @@ public class EMCTSNode {
      */
     private void rollState(GameState gameState, Types.ACTIONS act)
     {
-        // Simple heuristic for opponents: Random moves
-        // Assume 4 players
-        int nPlayers = 4;
-        // Create array for player moves (both this agent and opponents)
-        Types.ACTIONS[] playerActions = new Types.ACTIONS[4];
-
-        // Get our player ID
-        int playerId = gameState.getPlayerId() - Types.TILETYPE.AGENT0.getKey();
-
-        // Assign player action for rollout
-        for(int i = 0; i < nPlayers; ++i)
-        {
-            if(playerId == i)
-            {
-                // Apply our move
-                playerActions[i] = act;
-            }else {
-                // Pick random move for opponents
-                int actionIdx = random.nextInt(gameState.nActions());
-                playerActions[i] = Types.ACTIONS.all().get(actionIdx);
-            }
-        }
-
-        // Roll out game state with
-        gameState.next(playerActions);
+        // Apply our move, the opponent model picks the others
+        OpponentModel.advance(gameState, act, opponentModel, random);
     }
 
     /**
@@ -356,6 +361,17 @@ public class EMCTSNode {
      */
     public void setCurrentGameState(GameState gameState){
         this.gameState = gameState;
-        this.stateHeuristic = new CustomHeuristic(gameState);
+        // UCB1Tuned evaluates the outcome of every action each time it is called, often on states seen before
+        this.stateHeuristic = new CachedHeuristic(new CustomHeuristic(gameState));
+        if (opponentModel == null)
+            this.opponentModel = OpponentModel.create(params.opponentModel);
+    }
+
+    /**
+     * Use the player's model of the other players instead of a new one
+     * @param opponentModel Model kept by the player for the whole game
+     */
+    void setOpponentModel(OpponentModel opponentModel){
+        this.opponentModel = opponentModel;
     }
 }
@@ -1,5 +1,6 @@
 package players.groupW.EMCTS;
 
+import players.opponents.OpponentModel;
 import players.optimisers.ParameterSet;
 import utils.Pair;
 import utils.Types;
@@ -18,6 +19,9 @@ public class EMCTSParams implements ParameterSet {
 
     public int branchingFactor = 2;
 
+    // Model of the other players' moves, one of the OpponentModel types
+    public int opponentModel = OpponentModel.RANDOM;
+
     public double currentBest = -Double.MAX_VALUE;
     public Types.ACTIONS[] currentBestGenome;
 
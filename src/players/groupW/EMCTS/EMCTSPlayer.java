@@ -2,6 +2,7 @@ package players.groupW.EMCTS;
 
 import core.GameState;
 import players.Player;
+import players.opponents.OpponentModel;
 import players.optimisers.ParameterizedPlayer;
 import utils.Types;
 
@@ -22,6 +23,10 @@ public class EMCTSPlayer extends ParameterizedPlayer {
     // Java random number engine
     private Random random = new Random();
 
+    // What we expect the other players to do, learning from every observation of the game
+    private OpponentModel opponentModel;
+    private int opponentModelType;
+
     public EMCTSPlayer(long seed, int playerID) {
         super(seed, playerID);
         reset(seed, playerID);
@@ -29,6 +34,12 @@ public class EMCTSPlayer extends ParameterizedPlayer {
 
     @Override
     public Types.ACTIONS act(GameState gameState) {
+        if (opponentModel == null || opponentModelType != params.opponentModel) {
+            opponentModel = OpponentModel.create(params.opponentModel);
+            opponentModelType = params.opponentModel;
+        }
+        opponentModel.observe(gameState);
+
         // Pass current game state to root node for EMCTS search
         EMCTSNode rootNode;
         if(currentGenome == null){
@@ -42,10 +53,13 @@ public class EMCTSPlayer extends ParameterizedPlayer {
             rootNode = new EMCTSNode(params, actions.toArray(new Types.ACTIONS[0]), currentGenome);
         }
         // Apply current game state
+        rootNode.setOpponentModel(opponentModel);
         rootNode.setCurrentGameState(gameState);
 
         // Find best genome (and thereby action) for this turn
         rootNode.search(); // This call will terminate after a certain number of iterations
+        getMetrics().addIterations(rootNode.getNumIterations());
+        getMetrics().addTreeNodes(rootNode.treeSize());
         // Get the best genome
         currentGenome = rootNode.findBestAction();
         // Take the first action of the best genome
@@ -83,6 +97,7 @@ public class EMCTSPlayer extends ParameterizedPlayer {
 
     @Override
     public void reset(long l, int i) {
+        opponentModel = null;
         this.params = (EMCTSParams) getParameters();
         if (this.params == null) {
             this.params = new EMCTSParams();
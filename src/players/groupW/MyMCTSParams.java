@@ -1,6 +1,8 @@
 package players.groupW;
 
+import players.opponents.OpponentModel;
 import players.optimisers.ParameterSet;
+import players.rollout.RolloutPolicy;
 import utils.Pair;
 
 import java.util.ArrayList;
@@ -15,6 +17,16 @@ public class MyMCTSParams implements ParameterSet {
     // Change this for testing
     public int maxNumIterations = 200;
 
+    // Policy for our moves in rollouts, one of the RolloutPolicy types
+    public int rolloutPolicy = RolloutPolicy.SAFE_RANDOM;
+    public double rolloutEpsilon = 0.2;
+
+    // Model of the other players' moves, one of the OpponentModel types
+    public int opponentModel = OpponentModel.RANDOM;
+
+    // Keep the subtree of the action played for the next search, when the game went as it expected
+    public boolean treeReuse = false;
+
     @Override
     public void setParameterValue(String s, Object o) {
 
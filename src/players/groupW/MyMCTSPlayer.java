@@ -2,6 +2,7 @@ package players.groupW;
 
 import core.GameState;
 import players.Player;
+import players.opponents.OpponentModel;
 import players.optimisers.ParameterSet;
 import players.optimisers.ParameterizedPlayer;
 import utils.Types;
@@ -15,6 +16,14 @@ public class MyMCTSPlayer extends ParameterizedPlayer {
     // Our MCTS parameter set
     MyMCTSParams params;
 
+    // Tree of the last search and the action we played, kept when params.treeReuse is set
+    private MyTreeNode lastRoot;
+    private int lastAction;
+
+    // What we expect the other players to do, learning from every observation of the game
+    private OpponentModel opponentModel;
+    private int opponentModelType;
+
     // Use later to measure avg duration of moves per game
     private ArrayList<Long> durations = new ArrayList<>();
     // Counter to print method execution duration
@@ -33,6 +42,8 @@ public class MyMCTSPlayer extends ParameterizedPlayer {
 
     @Override
     public void reset(long l, int i) {
+        lastRoot = null;
+        opponentModel = null;
         this.params = (MyMCTSParams) getParameters();
         if (this.params == null) {
             this.params = new MyMCTSParams();
@@ -47,15 +58,32 @@ public class MyMCTSPlayer extends ParameterizedPlayer {
         // Number of actions available
         int numActions = actions.size();
 
-        // Pass current game state to root node for MCTS search
-        MyTreeNode rootNode = new MyTreeNode(params, numActions,
-                actions.toArray(new Types.ACTIONS[0]) // This just converts the list of all actions to an array
-        );
-        rootNode.setCurrentGameState(gameState);
+        if (opponentModel == null || opponentModelType != params.opponentModel) {
+            lastRoot = null; // It holds the old model
+            opponentModel = OpponentModel.create(params.opponentModel);
+            opponentModelType = params.opponentModel;
+        }
+        opponentModel.observe(gameState);
+
+        // Pass current game state to root node for MCTS search, continuing the last tree if possible
+        MyTreeNode rootNode = params.treeReuse && lastRoot != null ? lastRoot.reuse(lastAction, gameState) : null;
+        if (rootNode == null) {
+            rootNode = new MyTreeNode(params, numActions,
+                    actions.toArray(new Types.ACTIONS[0]) // This just converts the list of all actions to an array
+            );
+            rootNode.setOpponentModel(opponentModel);
+            rootNode.setCurrentGameState(gameState);
+        }
 
         // Find best action
         rootNode.search(); // This call will terminate after a certain amount of time
         int bestAction = rootNode.findBestAction();
+        if (params.treeReuse) {
+            lastRoot = rootNode;
+            lastAction = bestAction;
+        }
+        getMetrics().addIterations(rootNode.getNumIterations());
+        getMetrics().addTreeNodes(rootNode.treeSize());
 
         long endTime = System.nanoTime();
         long duration = (endTime - startTime) / 1000000; // ms
@@ -76,6 +104,6 @@ public class MyMCTSPlayer extends ParameterizedPlayer {
 
     @Override
     public Player copy() {
-        return null;
+        return new MyMCTSPlayer(seed, playerID, params);
     }
 }
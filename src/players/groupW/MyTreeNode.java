@@ -1,13 +1,14 @@
 package players.groupW;
 
 import core.GameState;
+import core.GameStatePool;
 import players.heuristics.CustomHeuristic;
 import players.heuristics.StateHeuristic;
+import players.opponents.OpponentModel;
+import players.rollout.RolloutPolicy;
 import utils.Types;
 import utils.Utils;
-import utils.Vector2d;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 public class MyTreeNode {
@@ -36,6 +37,12 @@ public class MyTreeNode {
 
     private StateHeuristic stateHeuristic;
 
+    // Picks our moves in rollouts, shared by the whole tree
+    private RolloutPolicy rolloutPolicy;
+
+    // Picks the moves of everyone else, shared by the whole tree
+    private OpponentModel opponentModel;
+
     private double totalValue;
 
     private int numberOfVisits;
@@ -47,6 +54,10 @@ public class MyTreeNode {
     private double[] raveVisits;
     private double[] raveWins;
 
+    // With tree reuse: key of our avatar in the states this node reached, and whether it was the same every time
+    private long avatarKey;
+    private boolean avatarKeyConsistent = true;
+
     /**
      * Constructor for our tree node
      * @param params The set of MCTS parameters
@@ -80,6 +91,8 @@ public class MyTreeNode {
         if(parent != null) {
             currentDepth = parent.currentDepth + 1;
             this.stateHeuristic = stateHeuristic;
+            this.rolloutPolicy = parent.rolloutPolicy;
+            this.opponentModel = parent.opponentModel;
         }
         else{
             currentDepth = 0;
@@ -94,8 +107,8 @@ public class MyTreeNode {
         numIterations = 0;
 
         while(!stop){
-            // Copy game state to isolate changes
-            GameState state = gameState.copy();
+            // Copy game state to isolate changes, reusing a pooled state
+            GameState state = GameStatePool.copy(gameState);
 
             // Select a child node
             MyTreeNode selected = selectChildNode(state);
@@ -105,6 +118,7 @@ public class MyTreeNode {
 
             // Backpropagate
             backpropagate(selected, result);
+            GameStatePool.release(state);
 
             // Basic stopping condition for now
             numIterations++;
@@ -112,6 +126,27 @@ public class MyTreeNode {
         }
     }
 
+    /**
+     * @return number of iterations of the last search
+     */
+    public int getNumIterations() {
+        return numIterations;
+    }
+
+    /**
+     * @return number of nodes in the tree below this node, including it
+     */
+    public int treeSize() {
+        int size = 1;
+        if (children != null) {
+            for (MyTreeNode child : children) {
+                if (child != null)
+                    size += child.treeSize();
+            }
+        }
+        return size;
+    }
+
     /**
      * Returns the best action to take after the MCTS search is completed
      * @return
@@ -158,6 +193,56 @@ public class MyTreeNode {
         // TODO Change heuristic
         // Not sure whether we're allowed to use their heuristics
         this.stateHeuristic = new CustomHeuristic(gameState);
+        this.rolloutPolicy = RolloutPolicy.create(params.rolloutPolicy, stateHeuristic, params.rolloutEpsilon);
+        if (opponentModel == null)
+            this.opponentModel = OpponentModel.create(params.opponentModel);
+    }
+
+    /**
+     * Use the player's model of the other agents instead of a new one
+     * @param opponentModel Model kept by the player for the whole game
+     */
+    void setOpponentModel(OpponentModel opponentModel){
+        this.opponentModel = opponentModel;
+    }
+
+    /**
+     * Makes the subtree of the action we played the tree of the next search, if our avatar ended up where that
+     * subtree always had it and the game moved on by exactly one tick. Its values are shifted to be relative to the
+     * new state, like those of a new tree.
+     * @param action index of the action we played
+     * @param gameState observation of the new state
+     * @return the new root, or null if the tree must be started again
+     */
+    MyTreeNode reuse(int action, GameState gameState) {
+        MyTreeNode child = children[action];
+        if (child == null || !child.avatarKeyConsistent || child.avatarKey != gameState.avatarHash64()
+                || gameState.getTick() != this.gameState.getTick() + 1 || gameState.isTerminal())
+            return null;
+
+        double offset = stateHeuristic.evaluateState(gameState);
+        children[action] = null;
+        child.parent = null;
+        child.childIndex = -1;
+        child.setCurrentGameState(gameState);
+        child.rebase(child, offset);
+        return child;
+    }
+
+    private void rebase(MyTreeNode root, double offset) {
+        currentDepth--;
+        totalValue -= offset * numberOfVisits;
+        if (numberOfVisits > 0) {
+            bounds[0] -= offset;
+            bounds[1] -= offset;
+        }
+        stateHeuristic = root.stateHeuristic;
+        rolloutPolicy = root.rolloutPolicy;
+        opponentModel = root.opponentModel;
+        for (MyTreeNode child : children) {
+            if (child != null)
+                child.rebase(root, offset);
+        }
     }
 
     /**
@@ -195,35 +280,15 @@ public class MyTreeNode {
                 );
 
         children[bestAction] = treeNode;
+        if (params.treeReuse)
+            treeNode.avatarKey = state.avatarHash64();
         return treeNode;
     }
 
     private void rollState(GameState gs, Types.ACTIONS act)
     {
-        //Simple, all random first, then my position.
-        int nPlayers = 4;
-        Types.ACTIONS[] playerActions = new Types.ACTIONS[4];
-
-        // Get our player ID
-        int playerId = gs.getPlayerId() - Types.TILETYPE.AGENT0.getKey();
-
-        // Assign player action for rollout
-        for(int i = 0; i < nPlayers; ++i)
-        {
-            if(playerId == i)
-            {
-                // Apply our move
-                playerActions[i] = act;
-            }else {
-                // Pick random move for opponents
-                // TODO this could be improved by a heuristic
-                int actionIdx = random.nextInt(gs.nActions());
-                playerActions[i] = Types.ACTIONS.all().get(actionIdx);
-            }
-        }
-
-        // Roll out game state with
-        gs.next(playerActions);
+        // Apply our move, the opponent model picks the others
+        OpponentModel.advance(gs, act, opponentModel, random);
     }
 
     // Note uct is upper confidence bound applied to trees
@@ -267,6 +332,8 @@ public class MyTreeNode {
 
         //Roll the state:
         rollState(state, actions[selected.childIndex]);
+        if (params.treeReuse && selected.avatarKey != state.avatarHash64())
+            selected.avatarKeyConsistent = false;
 
         return selected;
     }
@@ -276,45 +343,15 @@ public class MyTreeNode {
         int thisDepth = this.currentDepth;
 
         while (thisDepth <= params.maxRolloutDepth && !state.isTerminal()) {
-            int action = safeRandomAction(state);
-            rollState(state, actions[action]);
+            rollState(state, rolloutPolicy.act(state, random));
             thisDepth++;
         }
 
+        if (state.getMetrics() != null)
+            state.getMetrics().countHeuristicEvaluation();
         return stateHeuristic.evaluateState(state);
     }
 
-    // TODO huge possibility to improve performance here
-    // E.g. by not making next action for simulation random
-    // But basing it on the opponents somehow
-    // For now, this method is basically copied from the SingleTreeNode
-    private int safeRandomAction(GameState state)
-    {
-        Types.TILETYPE[][] board = state.getBoard();
-        ArrayList<Types.ACTIONS> actionsToTry = Types.ACTIONS.all();
-        int width = board.length;
-        int height = board[0].length;
-
-        while(actionsToTry.size() > 0) {
-            int nAction = random.nextInt(actionsToTry.size());
-            Types.ACTIONS act = actionsToTry.get(nAction);
-            Vector2d dir = act.getDirection().toVec();
-
-            Vector2d pos = state.getPosition();
-            int x = pos.x + dir.x;
-            int y = pos.y + dir.y;
-
-            if (x >= 0 && x < width && y >= 0 && y < height)
-                if(board[y][x] != Types.TILETYPE.FLAMES)
-                    return nAction;
-
-            actionsToTry.remove(nAction);
-        }
-
-        //Uh oh...
-        return random.nextInt(numActions);
-    }
-
     private void backpropagate(MyTreeNode selected, double result){
         MyTreeNode node = selected;
         while(node != null)
@@ -3,6 +3,7 @@ package players.heuristics;
 import core.GameState;
 import objects.Bomb;
 import objects.GameObject;
+import utils.PathFinder;
 import utils.Types;
 import utils.Vector2d;
 
@@ -16,12 +17,11 @@ import static utils.Utils.positionIsPassable;
 public class AdvancedHeuristic extends StateHeuristic {
 
     private BoardStats rootBoardStats;
-    private Random random;
-
-    public AdvancedHeuristic(GameState root, Random random) {
-        this.random = random;
-        rootBoardStats = new BoardStats(root, this.random);
+    // Shared by the stats of every state evaluated, which take what they need from it when created.
+    private final PathFinder pathFinder = new PathFinder();
 
+    public AdvancedHeuristic(GameState root) {
+        rootBoardStats = new BoardStats(root, pathFinder);
     }
 
     @Override
@@ -29,20 +29,21 @@ public class AdvancedHeuristic extends StateHeuristic {
         boolean gameOver = gs.isTerminal();
         Types.RESULT win = gs.winner();
 
+        // A decided game needs no board statistics.
+        if(gameOver && win == Types.RESULT.LOSS)
+            return -1;
+
+        if(gameOver && win == Types.RESULT.WIN)
+            return 1;
+
         // Compute a score relative to the root's state.
-        BoardStats lastBoardState = new BoardStats(gs, this.random);
+        BoardStats lastBoardState = new BoardStats(gs, pathFinder);
         double rawScore = rootBoardStats.score(lastBoardState);
 
         // TODO: Should we reserve -1 and 1 to LOSS and WIN, and shrink rawScore to be in [-0.5, 0.5]?
         // rawScore is in [-1, 1], move it to [-0.5, 0.5]
         rawScore /= 2.0;
 
-        if(gameOver && win == Types.RESULT.LOSS)
-            rawScore = -1;
-
-        if(gameOver && win == Types.RESULT.WIN)
-            rawScore = 1;
-
         return rawScore;
     }
 
@@ -55,6 +56,10 @@ public class AdvancedHeuristic extends StateHeuristic {
         static double maxWoods = -1;
         static double maxBlastStrength = 10;
 
+        static final int SEARCH_DEPTH = 10;
+        static final List<Types.TILETYPE> POWER_UPS = Arrays.asList(Types.TILETYPE.EXTRABOMB,
+                Types.TILETYPE.INCRRANGE, Types.TILETYPE.KICK);
+
         // 0.4
         double FACTOR_SAFE_DIRECTIONS = 0.2;
         double FACTOR_BOMB_DIRECTIONS = 0.2;
@@ -74,39 +79,29 @@ public class AdvancedHeuristic extends StateHeuristic {
         double FACTOR_WOODS = 0.05;
 
         // State information
-        private Random random;
-
         private Vector2d myPosition;
         private Types.TILETYPE[][] board;
         private ArrayList<Bomb> bombs;
         private ArrayList<GameObject> enemies;
 
-        private HashMap<Types.TILETYPE, ArrayList<Vector2d>> items;
-        private HashMap<Vector2d, Integer> dist;
-        private HashMap<Vector2d, Vector2d> prev;
-
-        // Extra state information (to be used as heuristics):
+        // Extra state information (to be used as heuristics), computed from one search of the board unless noted:
 
         // Directions in range of a bomb
-        private HashMap<Types.DIRECTIONS, Integer> directionsInRangeOfBomb = null;
-        private Integer n_directionsInRangeOfBomb = null;
+        private HashMap<Types.DIRECTIONS, Integer> directionsInRangeOfBomb;
 
         // Safe directions
-        private ArrayList<Types.DIRECTIONS> safeDirections = null;
-        private Integer n_safeDirections = null;
+        private ArrayList<Types.DIRECTIONS> safeDirections;
 
-        // Adjacency to an enemy
-        private Integer isAdjacentEnemy = null;
+        // Adjacency to an enemy, -1 until first asked for (not part of the score)
+        private int isAdjacentEnemy = -1;
 
-        // Distance to nearest enemy
-        private Integer distanceToNearestEnemy = null;
+        // Distance to nearest enemy, up to 10
+        private int distanceToNearestEnemy;
 
-        // Distance to nearest power-up, up to 10 (default: 1000 as max distance)
-        private Integer distanceToNearestPowerUp = null;
+        // Distance to nearest power-up, up to 10
+        private int distanceToNearestPowerUp;
 
-        BoardStats(GameState gs, Random random) {
-
-            this.random = random;
+        BoardStats(GameState gs, PathFinder pathFinder) {
 
             nEnemies = gs.getAliveEnemyIDs().size();
 
@@ -174,10 +169,13 @@ public class AdvancedHeuristic extends StateHeuristic {
                 }
             }
 
-            Container from_dijkstra = dijkstra(board, myPosition, bombs, enemies, 10);
-            this.items = from_dijkstra.items;
-            this.dist = from_dijkstra.dist;
-            this.prev = from_dijkstra.prev;
+            pathFinder.search(board, myPosition.x, myPosition.y, enemyIDs, SEARCH_DEPTH, null);
+            this.directionsInRangeOfBomb = computeDirectionsInRangeOfBomb(this.myPosition, this.bombs, pathFinder);
+            this.distanceToNearestEnemy = computeDistanceToNearestEnemy(pathFinder, enemyIDs);
+            this.distanceToNearestPowerUp = computeDistanceToNearestPowerUp(pathFinder);
+            // Searches the board again, so last
+            this.safeDirections = computeSafeDirections(this.board, this.myPosition, this.directionsInRangeOfBomb,
+                    this.bombs, this.enemies, enemyIDs, pathFinder);
         }
 
         /**
@@ -215,31 +213,18 @@ public class AdvancedHeuristic extends StateHeuristic {
                     + (diffDistanceToNearestPowerUp / 10.0) * FACTOR_NEAREST_POWERUP;
         }
 
-        private HashMap<Types.DIRECTIONS, Integer> getDirectionsInRangeOfBomb(){
-            if(this.directionsInRangeOfBomb == null){
-                this.directionsInRangeOfBomb = computeDirectionsInRangeOfBomb(this.myPosition, this.bombs, this.dist);
-            }
-            return this.directionsInRangeOfBomb;
-        }
-
-        private Integer getNumberOfDirectionsInRangeOfBomb(){
-            if(this.n_directionsInRangeOfBomb == null){
-                this.n_directionsInRangeOfBomb = getDirectionsInRangeOfBomb().size();
-            }
-            return this.n_directionsInRangeOfBomb;
+        private int getNumberOfDirectionsInRangeOfBomb(){
+            return this.directionsInRangeOfBomb.size();
         }
 
         private HashMap<Types.DIRECTIONS, Integer> computeDirectionsInRangeOfBomb(Vector2d myPosition, ArrayList<Bomb> bombs,
-                                                                                  HashMap<Vector2d, Integer> dist) {
+                                                                                  PathFinder pathFinder) {
             HashMap<Types.DIRECTIONS, Integer> ret = new HashMap<>();
 
             for(Bomb bomb : bombs){
                 Vector2d position = bomb.getPosition();
 
-                if(!dist.containsKey(position))
-                    continue;
-
-                int distance = dist.get(position);
+                int distance = pathFinder.distance(position);
                 int bombBlastStrength = bomb.getBlastStrength();
 
                 if(distance > bombBlastStrength)
@@ -272,24 +257,15 @@ public class AdvancedHeuristic extends StateHeuristic {
             return ret;
         }
 
-        private ArrayList<Types.DIRECTIONS> getSafeDirections(){
-            if(this.safeDirections == null){
-                this.safeDirections = computeSafeDirections(this.board, this.myPosition, getDirectionsInRangeOfBomb(),
-                        this.bombs, this.enemies);
-            }
-            return this.safeDirections;
-        }
-
-        private Integer getNumberOfSafeDirections(){
-            if(this.n_safeDirections == null){
-                this.n_safeDirections = getSafeDirections().size();
-            }
-            return this.n_safeDirections;
+        private int getNumberOfSafeDirections(){
+            return this.safeDirections.size();
         }
 
         private ArrayList<Types.DIRECTIONS> computeSafeDirections(Types.TILETYPE[][] board, Vector2d myPosition,
                                                                   HashMap<Types.DIRECTIONS, Integer> unsafeDirections,
-                                                                  ArrayList<Bomb> bombs, ArrayList<GameObject> enemies) {
+                                                                  ArrayList<Bomb> bombs, ArrayList<GameObject> enemies,
+                                                                  ArrayList<Types.TILETYPE> enemyIDs,
+                                                                  PathFinder pathFinder) {
             // All directions are unsafe. Return a position that won't leave us locked.
             ArrayList<Types.DIRECTIONS> safe = new ArrayList<>();
 
@@ -320,7 +296,7 @@ public class AdvancedHeuristic extends StateHeuristic {
                             !positionIsPassable(nextBoard, nextPosition, enemies))
                         continue;
 
-                    if(!isStuckDirection(nextPosition, bomb_range, nextBoard, enemies)){
+                    if(!isStuckDirection(nextPosition, bomb_range, nextBoard, enemyIDs, pathFinder)){
                         return new ArrayList<>(Arrays.asList(direction));
                     }
                 }
@@ -363,255 +339,58 @@ public class AdvancedHeuristic extends StateHeuristic {
         }
 
         private boolean isStuckDirection(Vector2d nextPosition, int bombRange, Types.TILETYPE[][] nextBoard,
-                                         ArrayList<GameObject> enemies) {
-            // A tuple class for PriorityQueue since it does not support pair of values in default
-            class Tuple implements Comparable<Tuple>{
-                private int distance;
-                private Vector2d position;
-
-                private Tuple(int distance, Vector2d position){
-                    this.distance = distance;
-                    this.position = position;
-                }
-
-                @Override
-                public int compareTo(Tuple tuple) {
-                    return this.distance - tuple.distance;
-                }
-            }
-
-            PriorityQueue<Tuple> Q = new PriorityQueue<>();
-            Q.add(new Tuple(0, nextPosition));
-
-            Set<Vector2d> seen = new HashSet<>();
-
-            boolean is_stuck = true;
-
-            while(!Q.isEmpty()){
-                Tuple tuple = Q.remove();
-                int dist = tuple.distance;
-                Vector2d position = tuple.position;
-
-                seen.add(position);
-
-                if(nextPosition.x != position.x && nextPosition.y != position.y){
-                    is_stuck = false;
-                    break;
-                }
-
-                if(dist > bombRange){
-                    is_stuck = false;
-                    break;
-                }
-
-                Types.DIRECTIONS[] directions = Types.DIRECTIONS.values();
-
-                for (Types.DIRECTIONS direction : directions) {
-                    Vector2d newPosition = position.copy();
-                    newPosition = newPosition.add(direction.toVec());
-
-                    if(seen.contains(newPosition)) continue;
-
-                    if(!positionOnBoard(nextBoard, newPosition)) continue;
-
-                    if(!positionIsPassable(nextBoard, newPosition, enemies)) continue;
+                                         ArrayList<Types.TILETYPE> enemyIDs, PathFinder pathFinder) {
+            // A way out of the blast is at most one step further than its range.
+            pathFinder.search(nextBoard, nextPosition.x, nextPosition.y, enemyIDs, bombRange + 1, null);
+
+            for (int i = 0; i < pathFinder.reachedCount(); i++) {
+                int cell = pathFinder.reachedCell(i);
+                int x = pathFinder.cellX(cell), y = pathFinder.cellY(cell);
+                if (i > 0 && !pathFinder.isPassable(nextBoard[y][x]))
+                    continue;
 
-                    dist = abs(direction.x() + position.x - nextPosition.x) +
-                            abs(direction.y() + position.y - nextPosition.y);
+                if (nextPosition.x != x && nextPosition.y != y)
+                    return false;
 
-                    Q.add(new Tuple(dist, newPosition));
-                }
+                if (pathFinder.cellDistance(cell) > bombRange)
+                    return false;
             }
-            return is_stuck;
+            return true;
         }
 
         private int getIsAdjacentEnemy(){
-            if(this.isAdjacentEnemy == null){
-                this.isAdjacentEnemy = computeIsAdjacentEnemy(this.items, this.dist, this.enemies) ? 1 : 0;
-            }
+            if (this.isAdjacentEnemy < 0)
+                this.isAdjacentEnemy = computeIsAdjacentEnemy(this.myPosition, this.enemies) ? 1 : 0;
             return this.isAdjacentEnemy;
         }
 
-        private boolean computeIsAdjacentEnemy(
-                HashMap<Types.TILETYPE, ArrayList<Vector2d> > items,
-                HashMap<Vector2d, Integer> dist,
-                ArrayList<GameObject> enemies)
+        private boolean computeIsAdjacentEnemy(Vector2d myPosition, ArrayList<GameObject> enemies)
         {
+            // A neighbouring agent is always one step away, so no search is needed.
             for(GameObject enemy : enemies){
-                if(items.containsKey(enemy.getType())) {
-                    ArrayList<Vector2d> items_list = items.get(enemy.getType());
-                    for (Vector2d position : items_list) {
-                        if (dist.get(position) == 1)
-                            return true;
-                    }
-                }
+                Vector2d position = enemy.getPosition();
+                if (abs(myPosition.x - position.x) + abs(myPosition.y - position.y) == 1)
+                    return true;
             }
             return false;
         }
 
         private int getDistanceToNearestEnemy(){
-            if(this.distanceToNearestEnemy == null){
-                this.distanceToNearestEnemy = computeDistanceToNearestEnemy(this.items, this.dist, this.enemies);
-            }
             return this.distanceToNearestEnemy;
         }
 
-        private int computeDistanceToNearestEnemy(
-                HashMap<Types.TILETYPE, ArrayList<Vector2d> > items,
-                HashMap<Vector2d, Integer> dist,
-                ArrayList<GameObject> enemies)
+        private int computeDistanceToNearestEnemy(PathFinder pathFinder, ArrayList<Types.TILETYPE> enemyIDs)
         {
-            int distance = 1000; // TODO: Max distance/Infinity
-            for(GameObject enemy : enemies){
-                if(items.containsKey(enemy.getType())) {
-                    ArrayList<Vector2d> items_list = items.get(enemy.getType());
-                    for (Vector2d position : items_list) {
-                        if(dist.get(position) < distance)
-                            distance = dist.get(position);
-                    }
-                }
-            }
-            if(distance > 10)
-                distance = 10;
-            return distance;
+            return min(pathFinder.distanceToNearest(enemyIDs), SEARCH_DEPTH);
         }
 
         private int getDistanceToNearestPowerUp(){
-            if(this.distanceToNearestPowerUp == null){
-                this.distanceToNearestPowerUp = computeDistanceToNearestPowerUp(this.items);
-            }
             return this.distanceToNearestPowerUp;
         }
 
-        private int computeDistanceToNearestPowerUp(HashMap<Types.TILETYPE, ArrayList<Vector2d> > items)
+        private int computeDistanceToNearestPowerUp(PathFinder pathFinder)
         {
-            Vector2d previousNode = new Vector2d(-1, -1); // placeholder, these values are not actually used
-            int distance = 1000; // TODO: Max distance/Infinity
-            for (Map.Entry<Types.TILETYPE, ArrayList<Vector2d>> entry : items.entrySet()) {
-                // check pickup entries on the board
-                if (entry.getKey().equals(Types.TILETYPE.EXTRABOMB) ||
-                        entry.getKey().equals(Types.TILETYPE.KICK) ||
-                        entry.getKey().equals(Types.TILETYPE.INCRRANGE)){
-                    // no need to store just get closest
-                    for (Vector2d coords: entry.getValue()){
-                        if (dist.get(coords) < distance){
-                            distance = dist.get(coords);
-                            previousNode = coords;
-                        }
-                    }
-                }
-            }
-            if(distance > 10)
-                distance = 10;
-            return distance;
-        }
-
-        /**
-         * Dijkstra's pathfinding
-         * @param board - game board
-         * @param myPosition - the position of agent
-         * @param bombs - array of bombs in the game
-         * @param enemies - array of enemies in the game
-         * @param depth - depth of search (default: 10)
-         * @return TODO
-         */
-        private Container dijkstra(Types.TILETYPE[][] board, Vector2d myPosition, ArrayList<Bomb> bombs,
-                                   ArrayList<GameObject> enemies, int depth){
-
-            HashMap<Types.TILETYPE, ArrayList<Vector2d> > items = new HashMap<>();
-            HashMap<Vector2d, Integer> dist = new HashMap<>();
-            HashMap<Vector2d, Vector2d> prev = new HashMap<>();
-
-            Queue<Vector2d> Q = new LinkedList<>();
-
-            for(int r = max(0, myPosition.x - depth); r < min(board.length, myPosition.x + depth); r++){
-                for(int c = max(0, myPosition.y - depth); c < min(board.length, myPosition.y + depth); c++){
-
-                    Vector2d position = new Vector2d(r, c);
-
-                    // Determines if two points are out of range of each other.
-                    boolean out_of_range = (abs(c - myPosition.y) + abs(r - myPosition.x)) > depth;
-                    if(out_of_range)
-                        continue;
-
-                    Types.TILETYPE itemType = board[r][c];
-                    boolean positionInItems = (itemType == Types.TILETYPE.FOG ||
-                            itemType == Types.TILETYPE.RIGID || itemType == Types.TILETYPE.FLAMES);
-                    if(positionInItems)
-                        continue;
-
-                    ArrayList<Vector2d> itemsTempList = items.get(itemType);
-                    if(itemsTempList == null) {
-                        itemsTempList = new ArrayList<>();
-                    }
-                    itemsTempList.add(position);
-                    items.put(itemType, itemsTempList);
-
-                    if(position.equals(myPosition)){
-                        Q.add(position);
-                        dist.put(position, 0);
-                    }
-                    else{
-                        dist.put(position, 100000); // TODO: Inf
-                    }
-                }
-            }
-
-            for(Bomb bomb : bombs){
-                if(bomb.getPosition().equals(myPosition)){
-                    ArrayList<Vector2d> itemsTempList = items.get(Types.TILETYPE.BOMB);
-                    if(itemsTempList == null) {
-                        itemsTempList = new ArrayList<>();
-                    }
-                    itemsTempList.add(myPosition);
-                    items.put(Types.TILETYPE.BOMB, itemsTempList);
-                }
-            }
-
-            while(!Q.isEmpty()){
-                Vector2d position = Q.remove();
-
-                if(positionIsPassable(board, position, enemies)){
-                    int val = dist.get(position) + 1;
-
-                    Types.DIRECTIONS[] directionsToBeChecked = Types.DIRECTIONS.values();
-
-                    for (Types.DIRECTIONS directionToBeChecked : directionsToBeChecked) {
-
-                        Vector2d direction = directionToBeChecked.toVec();
-                        Vector2d new_position = new Vector2d(position.x + direction.x, position.y + direction.y);
-
-                        if(!dist.containsKey(new_position))
-                            continue;
-
-                        int dist_val = dist.get(new_position);
-
-                        if(val < dist_val){
-                            dist.put(new_position, val);
-                            prev.put(new_position, position);
-                            Q.add(new_position);
-                        }
-                        else if(val == dist_val && random.nextFloat() < 0.5){
-                            dist.put(new_position, val);
-                            prev.put(new_position, position);
-                        }
-                    }
-                }
-            }
-            Container container = new Container();
-            container.dist = dist;
-            container.items = items;
-            container.prev = prev;
-            return container;
+            return min(pathFinder.distanceToNearest(POWER_UPS), SEARCH_DEPTH);
         }
-
-        // Container for return values of Dijkstra's pathfinding algorithm.
-        private class Container {
-            HashMap<Types.TILETYPE, ArrayList<Vector2d> > items;
-            HashMap<Vector2d, Integer> dist;
-            HashMap<Vector2d, Vector2d> prev;
-            Container() { }
-        }
-
     }
 }
@@ -0,0 +1,90 @@
+package players.heuristics;
+
+import core.GameState;
+
+import java.util.Arrays;
+
+/**
+ * Decorator that remembers the values another heuristic gave to recent states, keyed by GameState.hash64() and the
+ * id of the player the state is observed by. Searches often evaluate the same state more than once (the same
+ * action sequence tried again, or different actions with the same outcome), and those evaluations become a table
+ * lookup.
+ *
+ * The table is direct-mapped: a fixed, power of two number of slots, each holding the last state whose hash fell in
+ * it. It never grows and a newer state simply replaces the older one in its slot. Not thread-safe: give each search
+ * thread its own instance.
+ */
+public class CachedHeuristic extends StateHeuristic {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final StateHeuristic heuristic;
+    private final long[] keys;
+    private final double[] values;
+    private final boolean[] used;
+    private final int mask;
+
+    private long hits, misses;
+
+    public CachedHeuristic(StateHeuristic heuristic) {
+        this(heuristic, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param heuristic heuristic to cache the values of.
+     * @param capacity number of states kept, rounded up to a power of two.
+     */
+    public CachedHeuristic(StateHeuristic heuristic, int capacity) {
+        int n = Integer.highestOneBit(Math.max(1, capacity));
+        if (n < capacity) n <<= 1;
+        this.heuristic = heuristic;
+        this.keys = new long[n];
+        this.values = new double[n];
+        this.used = new boolean[n];
+        this.mask = n - 1;
+    }
+
+    @Override
+    public double evaluateState(GameState gs) {
+        // The hash doesn't depend on the observer, but the value does.
+        long key = gs.hash64() ^ (gs.getPlayerId() * 0x9E3779B97F4A7C15L);
+        int idx = (int) (key ^ (key >>> 32)) & mask;
+        if (used[idx] && keys[idx] == key) {
+            hits++;
+            return values[idx];
+        }
+        misses++;
+        double value = heuristic.evaluateState(gs);
+        keys[idx] = key;
+        values[idx] = value;
+        used[idx] = true;
+        return value;
+    }
+
+    /**
+     * Forgets all cached values. The hit and miss counts are kept.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+    }
+
+    public StateHeuristic getHeuristic() {
+        return heuristic;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return fraction of evaluations answered from the cache, 0 if there were none.
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -15,15 +15,16 @@ public class CustomHeuristic extends StateHeuristic {
         boolean gameOver = gs.isTerminal();
         Types.RESULT win = gs.winner();
 
-        // Compute a score relative to the root's state.
-        BoardStats lastBoardState = new BoardStats(gs);
-        double rawScore = rootBoardStats.score(lastBoardState);
-
+        // A decided game needs no board statistics.
         if(gameOver && win == Types.RESULT.LOSS)
-            rawScore = -1;
+            return -1;
 
         if(gameOver && win == Types.RESULT.WIN)
-            rawScore = 1;
+            return 1;
+
+        // Compute a score relative to the root's state.
+        BoardStats lastBoardState = new BoardStats(gs);
+        double rawScore = rootBoardStats.score(lastBoardState);
 
         return rawScore;
     }
@@ -0,0 +1,369 @@
+package players.mcts;
+
+import core.GameState;
+import core.GameStatePool;
+import players.heuristics.StateHeuristic;
+import players.opponents.OpponentModel;
+import players.rollout.RolloutPolicy;
+import utils.ElapsedCpuTimer;
+import utils.Types;
+import utils.Utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MCTS tree kept in flat arrays indexed by node, instead of one SingleTreeNode object per node. It searches exactly
+ * as SingleTreeNode does (same selection, expansion and random numbers drawn in the same order), so both give the
+ * same action for the same seed.
+ *
+ * The children of a node are num_actions consecutive slots starting at firstChild[node], the slot of action i being
+ * firstChild[node] + i. All slots are taken when the node is first expanded; a slot only holds a node once it has
+ * been visited. Node 0 is the root. Arrays grow in chunks and are kept by reset(), so a player keeping its FlatTree
+ * doesn't allocate anything for the tree once it has grown to the size of its searches.
+ */
+class FlatTree {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final MCTSParams params;
+    private Random m_rnd;
+    private final int num_actions;
+    private final Types.ACTIONS[] actions;
+
+    // Statistics shared by all nodes reaching the same state, null if transpositions are not used.
+    private TranspositionTable tt;
+
+    // Per node.
+    private int[] nVisits;
+    private double[] totValue;
+    private double[] lowerBound;
+    private double[] upperBound;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] depth;
+    private int[] nChildren;
+    // Entry of the state each node reached in the current iteration, null if transpositions are not used.
+    private TranspositionTable.Entry[] ttEntries;
+    private int size;
+
+    private GameState rootState;
+    private StateHeuristic rootStateHeuristic;
+    private RolloutPolicy rolloutPolicy;
+    private OpponentModel opponentModel;
+
+    private int fmCallsCount;
+    private int iterations;
+    private int maxDepth;
+    private int treeSize;
+
+    FlatTree(MCTSParams p, int num_actions, Types.ACTIONS[] actions) {
+        this.params = p;
+        this.num_actions = num_actions;
+        this.actions = actions;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Empties the tree for a new search from gs.
+     * @param gs state of the root.
+     * @param rnd random generator of the search.
+     * @param tt transposition table of the search, null to not use one.
+     * @param opponents model of the other agents.
+     */
+    void reset(GameState gs, Random rnd, TranspositionTable tt, OpponentModel opponents) {
+        this.m_rnd = rnd;
+        this.tt = tt;
+        this.opponentModel = opponents;
+        if (tt != null && ttEntries == null)
+            ttEntries = new TranspositionTable.Entry[nVisits.length];
+        else if (tt == null)
+            ttEntries = null;
+        rootState = gs;
+        rootStateHeuristic = SingleTreeNode.createHeuristic(params, gs);
+        rolloutPolicy = RolloutPolicy.create(params.rollout_policy, rootStateHeuristic, params.rollout_epsilon);
+        size = 0;
+        fmCallsCount = 0;
+        iterations = 0;
+        maxDepth = 0;
+        treeSize = 1;
+        initNode(size++, -1, 0);
+    }
+
+    void mctsSearch(ElapsedCpuTimer elapsedTimer) {
+        double acumTimeTaken = 0;
+        int numIters = 0;
+        int remainingLimit = 5;
+        boolean stop = false;
+        if (tt != null) {
+            ttEntries[0] = tt.get(rootState.hash64(), 0);
+        }
+
+        while (!stop) {
+            GameState state = GameStatePool.copy(rootState);
+            ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
+            long policyCalls = rolloutPolicy.getFMCalls();
+            int selected = treePolicy(state);
+            double delta = rollOut(state, depth[selected]);
+            backUp(selected, delta);
+            GameStatePool.release(state);
+            iterations++;
+            if (depth[selected] > maxDepth) {
+                maxDepth = depth[selected];
+            }
+
+            if (params.stop_type == params.STOP_TIME) {
+                numIters++;
+                acumTimeTaken += elapsedTimerIteration.elapsedMillis();
+                double avgTimeTaken = acumTimeTaken / numIters;
+                long remaining = elapsedTimer.remainingTimeMillis();
+                stop = remaining <= 2 * avgTimeTaken || remaining <= remainingLimit;
+            } else if (params.stop_type == params.STOP_ITERATIONS) {
+                numIters++;
+                stop = numIters >= params.num_iterations;
+            } else if (params.stop_type == params.STOP_FMCALLS) {
+                // A full rollout, plus the FM calls made by the rollout policy to pick its actions
+                int iterationCalls = params.rollout_depth + (int) (rolloutPolicy.getFMCalls() - policyCalls);
+                fmCallsCount += iterationCalls;
+                stop = (fmCallsCount + iterationCalls) > params.num_fmcalls;
+            }
+        }
+    }
+
+    private int treePolicy(GameState state) {
+        int cur = 0;
+        while (!state.isTerminal() && depth[cur] < params.rollout_depth) {
+            if (nChildren[cur] < num_actions) {
+                return expand(cur, state);
+            }
+            cur = uct(cur, state);
+        }
+        return cur;
+    }
+
+    private int expand(int node, GameState state) {
+        if (firstChild[node] < 0) {
+            ensureCapacity(size + num_actions);
+            firstChild[node] = size;
+            for (int i = 0; i < num_actions; i++) {
+                initNode(size + i, node, depth[node] + 1);
+            }
+            size += num_actions;
+        }
+
+        int first = firstChild[node];
+        int bestAction = 0;
+        double bestValue = -1;
+        for (int i = 0; i < num_actions; i++) {
+            double x = m_rnd.nextDouble();
+            if (x > bestValue && nVisits[first + i] == 0) {
+                bestAction = i;
+                bestValue = x;
+            }
+        }
+
+        OpponentModel.advance(state, actions[bestAction], opponentModel, m_rnd);
+        nChildren[node]++;
+        treeSize++;
+        int child = first + bestAction;
+        lookUpTransposition(child, state);
+        return child;
+    }
+
+    private int uct(int node, GameState state) {
+        int first = firstChild[node];
+        double low = lowerBound[node], high = upperBound[node];
+        double logVisits = Math.log(nVisits[node] + 1);
+        int selected = -1;
+        double bestValue = -Double.MAX_VALUE;
+        for (int child = first; child < first + num_actions; child++) {
+            double childValue = Utils.normalise(meanValue(child), low, high);
+            double uctValue = childValue + params.K * Math.sqrt(logVisits / (nVisits[child] + params.epsilon));
+            uctValue = Utils.noise(uctValue, params.epsilon, m_rnd.nextDouble());     //break ties randomly
+            if (uctValue > bestValue) {
+                selected = child;
+                bestValue = uctValue;
+            }
+        }
+        if (selected < 0) {
+            throw new RuntimeException("Warning! returning null: " + bestValue + " : " + num_actions + " "
+                    + low + " " + high);
+        }
+
+        OpponentModel.advance(state, actions[selected - first], opponentModel, m_rnd);
+        lookUpTransposition(selected, state);
+        return selected;
+    }
+
+    private double rollOut(GameState state, int thisDepth) {
+        while (thisDepth < params.rollout_depth && !state.isTerminal()) {
+            OpponentModel.advance(state, rolloutPolicy.act(state, m_rnd), opponentModel, m_rnd);
+            thisDepth++;
+        }
+        if (state.getMetrics() != null)
+            state.getMetrics().countHeuristicEvaluation();
+        return rootStateHeuristic.evaluateState(state);
+    }
+
+    private void backUp(int node, double result) {
+        for (int n = node; n >= 0; n = parent[n]) {
+            nVisits[n]++;
+            totValue[n] += result;
+            if (ttEntries != null && ttEntries[n] != null) {
+                ttEntries[n].nVisits++;
+                ttEntries[n].totValue += result;
+            }
+            if (result < lowerBound[n]) {
+                lowerBound[n] = result;
+            }
+            if (result > upperBound[n]) {
+                upperBound[n] = result;
+            }
+        }
+    }
+
+    private void lookUpTransposition(int node, GameState state) {
+        if (tt != null) {
+            ttEntries[node] = tt.get(state.hash64(), depth[node]);
+        }
+    }
+
+    private double meanValue(int node) {
+        if (ttEntries != null) {
+            TranspositionTable.Entry entry = ttEntries[node];
+            if (entry != null && entry.nVisits > nVisits[node])
+                return entry.totValue / (entry.nVisits + params.epsilon);
+        }
+        return totValue[node] / (nVisits[node] + params.epsilon);
+    }
+
+    /**
+     * @return index of the action to play, chosen as SingleTreeNode.mostVisitedAction() does.
+     */
+    int mostVisitedAction() {
+        int first = firstChild[0];
+        if (first < 0) return 0;
+        return mostVisitedAction(Arrays.copyOfRange(nVisits, first, first + num_actions),
+                Arrays.copyOfRange(totValue, first, first + num_actions), params, m_rnd);
+    }
+
+    /**
+     * Chooses the action to play after a root-parallel search, as SingleTreeNode.mostVisitedAction(roots, rnd) does.
+     */
+    static int mostVisitedAction(FlatTree[] trees, Random rnd) {
+        FlatTree first = trees[0];
+        int[] visits = new int[first.num_actions];
+        double[] values = new double[first.num_actions];
+        for (FlatTree tree : trees) {
+            int child = tree.firstChild[0];
+            if (child < 0) continue;
+            for (int i = 0; i < visits.length; i++) {
+                visits[i] += tree.nVisits[child + i];
+                values[i] += tree.totValue[child + i];
+            }
+        }
+        return mostVisitedAction(visits, values, first.params, rnd);
+    }
+
+    private static int mostVisitedAction(int[] visits, double[] values, MCTSParams params, Random rnd) {
+        int selected = -1;
+        double bestValue = -Double.MAX_VALUE;
+        boolean allEqual = true;
+        int firstVisits = -1;
+        for (int i = 0; i < visits.length; i++) {
+            if (visits[i] == 0) continue;
+            if (firstVisits == -1)
+                firstVisits = visits[i];
+            else if (firstVisits != visits[i])
+                allEqual = false;
+
+            double childValue = Utils.noise(visits[i], params.epsilon, rnd.nextDouble());     //break ties randomly
+            if (childValue > bestValue) {
+                bestValue = childValue;
+                selected = i;
+            }
+        }
+
+        if (selected == -1)
+            return 0;
+        if (!allEqual)
+            return selected;
+
+        //If all are equal, we opt to choose for the one with the best Q.
+        selected = -1;
+        bestValue = -Double.MAX_VALUE;
+        for (int i = 0; i < visits.length; i++) {
+            if (visits[i] == 0) continue;
+            double childValue = Utils.noise(values[i] / (visits[i] + params.epsilon), params.epsilon,
+                    rnd.nextDouble());
+            if (childValue > bestValue) {
+                bestValue = childValue;
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return number of iterations of the last search.
+     */
+    int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return number of nodes in the tree, including the root.
+     */
+    int treeSize() {
+        return treeSize;
+    }
+
+    /**
+     * @return depth of the deepest node reached in the last search.
+     */
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    private void initNode(int node, int parentNode, int nodeDepth) {
+        nVisits[node] = 0;
+        totValue[node] = 0;
+        lowerBound[node] = Double.MAX_VALUE;
+        upperBound[node] = -Double.MAX_VALUE;
+        parent[node] = parentNode;
+        firstChild[node] = -1;
+        depth[node] = nodeDepth;
+        nChildren[node] = 0;
+        if (ttEntries != null)
+            ttEntries[node] = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > nVisits.length)
+            allocate(Math.max(capacity, nVisits.length * 2));
+    }
+
+    private void allocate(int capacity) {
+        if (nVisits == null) {
+            nVisits = new int[capacity];
+            totValue = new double[capacity];
+            lowerBound = new double[capacity];
+            upperBound = new double[capacity];
+            parent = new int[capacity];
+            firstChild = new int[capacity];
+            depth = new int[capacity];
+            nChildren = new int[capacity];
+            return;
+        }
+        nVisits = Arrays.copyOf(nVisits, capacity);
+        totValue = Arrays.copyOf(totValue, capacity);
+        lowerBound = Arrays.copyOf(lowerBound, capacity);
+        upperBound = Arrays.copyOf(upperBound, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        depth = Arrays.copyOf(depth, capacity);
+        nChildren = Arrays.copyOf(nChildren, capacity);
+        if (ttEntries != null)
+            ttEntries = Arrays.copyOf(ttEntries, capacity);
+    }
+}
@@ -0,0 +1,90 @@
+package players.mcts;
+
+import core.GameState;
+import org.junit.jupiter.api.Test;
+import players.opponents.RandomOpponent;
+import utils.Types;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utils.TestUtils.randomActions;
+
+class FlatTreeTest {
+
+    @Test
+    void sameSearchAsObjectTree() {
+        Types.ACTIONS[] actions = Types.ACTIONS.all().toArray(new Types.ACTIONS[0]);
+        for (int heuristic = 0; heuristic < 2; heuristic++) {
+            for (boolean transpositions : new boolean[]{false, true}) {
+                MCTSParams params = new MCTSParams();
+                params.stop_type = params.STOP_ITERATIONS;
+                params.num_iterations = 150;
+                params.heuristic_method = heuristic;
+                // A single flat tree is reused for all searches, as players do.
+                FlatTree flat = new FlatTree(params, actions.length, actions);
+                TranspositionTable objectTable = new TranspositionTable(params);
+                TranspositionTable flatTable = new TranspositionTable(params);
+
+                for (long seed = 0; seed < 3; seed++) {
+                    Random game = new Random(seed);
+                    GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.PACKED);
+                    for (int t = 0; t < 25 && !gs.isTerminal(); t++) {
+                        String msg = "Heuristic " + heuristic + ", transpositions " + transpositions + ", seed "
+                                + seed + ", tick " + t;
+                        GameState obs = gs.copy(0);
+                        objectTable.clear();
+                        flatTable.clear();
+
+                        Random objectRnd = new Random(seed * 1000 + t);
+                        SingleTreeNode root = new SingleTreeNode(params, objectRnd, actions.length, actions,
+                                transpositions ? objectTable : null);
+                        root.setRootGameState(obs.copy());
+                        root.mctsSearch(null);
+
+                        Random flatRnd = new Random(seed * 1000 + t);
+                        flat.reset(obs.copy(), flatRnd, transpositions ? flatTable : null, new RandomOpponent());
+                        flat.mctsSearch(null);
+
+                        assertEquals(root.getIterations(), flat.getIterations(), msg);
+                        assertEquals(root.treeSize(), flat.treeSize(), msg);
+                        assertEquals(root.getMaxDepth(), flat.getMaxDepth(), msg);
+                        assertEquals(root.mostVisitedAction(), flat.mostVisitedAction(), msg);
+                        // Both drew the same random numbers.
+                        assertEquals(objectRnd.nextLong(), flatRnd.nextLong(), msg);
+
+                        gs.next(randomActions(game));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void samePlayerActions() {
+        for (int threads = 1; threads <= 2; threads++) {
+            MCTSParams objectParams = new MCTSParams();
+            MCTSParams flatParams = new MCTSParams();
+            for (MCTSParams params : new MCTSParams[]{objectParams, flatParams}) {
+                params.stop_type = params.STOP_ITERATIONS;
+                params.num_iterations = 100;
+                params.num_threads = threads;
+            }
+            flatParams.tree_storage = flatParams.TREE_FLAT;
+            MCTSPlayer objectPlayer = new MCTSPlayer(42, Types.TILETYPE.AGENT0.getKey(), objectParams);
+            MCTSPlayer flatPlayer = new MCTSPlayer(42, Types.TILETYPE.AGENT0.getKey(), flatParams);
+
+            Random game = new Random(threads);
+            GameState gs = new GameState(threads, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.PACKED);
+            for (int t = 0; t < 40 && !gs.isTerminal(); t++) {
+                Types.ACTIONS action = objectPlayer.act(gs.copy(0));
+                assertEquals(action, flatPlayer.act(gs.copy(0)), "Threads " + threads + ", tick " + t);
+                Types.ACTIONS[] actions = randomActions(game);
+                actions[0] = action;
+                gs.next(actions);
+            }
+            assertEquals(objectPlayer.getTotalIterations(), flatPlayer.getTotalIterations());
+            assertEquals(objectPlayer.getMetrics().getTreeNodes(), flatPlayer.getMetrics().getTreeNodes());
+        }
+    }
+}
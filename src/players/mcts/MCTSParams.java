@@ -1,6 +1,8 @@
 package players.mcts;
 
+import players.opponents.OpponentModel;
 import players.optimisers.ParameterSet;
+import players.rollout.RolloutPolicy;
 import utils.Pair;
 
 import java.util.ArrayList;
@@ -21,6 +23,12 @@ public class MCTSParams implements ParameterSet {
     public final int CUSTOM_HEURISTIC = 0;
     public final int ADVANCED_HEURISTIC = 1;
 
+    public final int TT_LRU = 0;
+    public final int TT_DEPTH = 1;
+
+    public final int TREE_OBJECTS = 0;
+    public final int TREE_FLAT = 1;
+
     public double epsilon = 1e-6;
 
     // Parameters
@@ -28,18 +36,50 @@ public class MCTSParams implements ParameterSet {
     public int rollout_depth = 8;//10;
     public int heuristic_method = CUSTOM_HEURISTIC;
 
+    // Policy of the player in rollouts, one of the RolloutPolicy types. rollout_epsilon is the chance of a safe
+    // random move with EPSILON_GREEDY.
+    public int rollout_policy = RolloutPolicy.SAFE_RANDOM;
+    public double rollout_epsilon = 0.2;
+
+    // Model of the other agents in simulated ticks, one of the OpponentModel types.
+    public int opponent_model = OpponentModel.RANDOM;
+
     // Budget settings
     public int stop_type = STOP_TIME;
     public int num_iterations = 200;
     public int num_fmcalls = 2000;
     public int num_time = 40;
 
+    // Transposition table: nodes reaching the same state share their statistics
+    public boolean use_transpositions = false;
+    public int tt_capacity = 50000;
+    public int tt_replacement = TT_LRU;
+
+    // Tree reuse: start each search from the subtree of the action played last, when the game went as that subtree
+    // expected (see SingleTreeNode.reuse()), instead of from a new root
+    public boolean tree_reuse = false;
+
+    // How the tree is stored: TREE_OBJECTS, one SingleTreeNode per node, or TREE_FLAT, flat arrays of node
+    // statistics kept by the player between searches (see FlatTree). Both search the same way; tree_reuse is only
+    // supported by TREE_OBJECTS.
+    public int tree_storage = TREE_OBJECTS;
+
+    // Number of heuristic values remembered by state (see CachedHeuristic), 0 to evaluate every leaf afresh.
+    public int heuristic_cache = 0;
+
+    // Root parallelisation: number of independent trees searched at the same time, each on its own thread. The
+    // iteration and FM call budgets apply to each tree; with STOP_TIME all trees stop at the same deadline.
+    public int num_threads = 1;
+
     @Override
     public void setParameterValue(String param, Object value) {
         switch(param) {
             case "K": K = (double) value; break;
             case "rollout_depth": rollout_depth = (int) value; break;
             case "heuristic_method": heuristic_method = (int) value; break;
+            case "rollout_policy": rollout_policy = (int) value; break;
+            case "rollout_epsilon": rollout_epsilon = (double) value; break;
+            case "opponent_model": opponent_model = (int) value; break;
         }
     }
 
@@ -49,6 +89,9 @@ public class MCTSParams implements ParameterSet {
             case "K": return K;
             case "rollout_depth": return rollout_depth;
             case "heuristic_method": return heuristic_method;
+            case "rollout_policy": return rollout_policy;
+            case "rollout_epsilon": return rollout_epsilon;
+            case "opponent_model": return opponent_model;
         }
         return null;
     }
@@ -59,6 +102,9 @@ public class MCTSParams implements ParameterSet {
         paramList.add("K");
         paramList.add("rollout_depth");
         paramList.add("heuristic_method");
+        paramList.add("rollout_policy");
+        paramList.add("rollout_epsilon");
+        paramList.add("opponent_model");
         return paramList;
     }
 
@@ -68,6 +114,11 @@ public class MCTSParams implements ParameterSet {
         parameterValues.put("K", new Double[]{1.0, Math.sqrt(2), 2.0});
         parameterValues.put("rollout_depth", new Integer[]{5, 8, 10, 12, 15});
         parameterValues.put("heuristic_method", new Integer[]{CUSTOM_HEURISTIC, ADVANCED_HEURISTIC});
+        parameterValues.put("rollout_policy", new Integer[]{RolloutPolicy.RANDOM, RolloutPolicy.SAFE_RANDOM,
+                RolloutPolicy.EPSILON_GREEDY, RolloutPolicy.SIMPLE});
+        parameterValues.put("rollout_epsilon", new Double[]{0.1, 0.2, 0.5});
+        parameterValues.put("opponent_model", new Integer[]{OpponentModel.RANDOM, OpponentModel.STOP,
+                OpponentModel.FREQUENCY, OpponentModel.SIMPLE});
         return parameterValues;
     }
 
@@ -85,6 +136,8 @@ public class MCTSParams implements ParameterSet {
     public Map<String, String[]> constantNames() {
         HashMap<String, String[]> names = new HashMap<>();
         names.put("heuristic_method", new String[]{"CUSTOM_HEURISTIC", "ADVANCED_HEURISTIC"});
+        names.put("rollout_policy", RolloutPolicy.names());
+        names.put("opponent_model", OpponentModel.names());
         return names;
     }
 }
@@ -1,13 +1,19 @@
 package players.mcts;
 
 import core.GameState;
+import players.opponents.OpponentModel;
 import players.optimisers.ParameterizedPlayer;
 import players.Player;
 import utils.ElapsedCpuTimer;
 import utils.Types;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MCTSPlayer extends ParameterizedPlayer {
 
@@ -26,6 +32,43 @@ public class MCTSPlayer extends ParameterizedPlayer {
      */
     public MCTSParams params;
 
+    /**
+     * Transposition tables, one per tree, reused across searches when params.use_transpositions is set.
+     */
+    private TranspositionTable[] tts;
+
+    /**
+     * Threads running the trees of parallel searches, shared by all players. Idle threads are kept for a while
+     * so consecutive searches don't start new ones.
+     */
+    private static ExecutorService searchExecutor;
+
+    /**
+     * Trees of the last search and the action played after it, kept when params.tree_reuse is set.
+     */
+    private SingleTreeNode[] lastRoots;
+    private int lastAction;
+
+    /**
+     * Trees of searches with params.tree_storage set to TREE_FLAT, one per tree searched, emptied and reused by
+     * every search.
+     */
+    private FlatTree[] flatTrees;
+
+    /**
+     * Model of the other agents, of type params.opponent_model, kept for the whole game so it can learn from every
+     * observation.
+     */
+    private OpponentModel opponentModel;
+    private int opponentModelType;
+
+    // Search statistics, accumulated over all calls to act()
+    private long reusedTrees;
+    private long totalIterations;
+    private long totalSearchNanos;
+    private long totalTreeDepth;
+    private int searches;
+
     public MCTSPlayer(long seed, int id) {
         this(seed, id, new MCTSParams());
     }
@@ -46,6 +89,9 @@ public class MCTSPlayer extends ParameterizedPlayer {
     public void reset(long seed, int playerID) {
         super.reset(seed, playerID);
         m_rnd = new Random(seed);
+        lastRoots = null;
+        flatTrees = null;
+        opponentModel = null;
 
         this.params = (MCTSParams) getParameters();
         if (this.params == null) {
@@ -65,18 +111,67 @@ public class MCTSPlayer extends ParameterizedPlayer {
         ElapsedCpuTimer ect = new ElapsedCpuTimer();
         ect.setMaxTimeMillis(params.num_time);
 
+        if (opponentModel == null || opponentModelType != params.opponent_model) {
+            // Reused trees hold the model they were searched with
+            lastRoots = null;
+            opponentModel = OpponentModel.create(params.opponent_model);
+            opponentModelType = params.opponent_model;
+        }
+        opponentModel.observe(gs);
+
         // Number of actions available
         int num_actions = actions.length;
 
-        // Root of the tree
-        SingleTreeNode m_root = new SingleTreeNode(params, m_rnd, num_actions, actions);
-        m_root.setRootGameState(gs);
+        // Statistics are relative to the root state (heuristic values), so they're not kept between searches.
+        // Reused trees are moved to the new root state instead, see SingleTreeNode.reuse().
+        int numTrees = Math.max(1, params.num_threads);
+        if (params.use_transpositions) {
+            if (tts == null || tts.length != numTrees) {
+                lastRoots = null;
+                tts = new TranspositionTable[numTrees];
+                for (int i = 0; i < numTrees; i++) {
+                    tts[i] = new TranspositionTable(params);
+                }
+            } else {
+                for (TranspositionTable tt : tts) {
+                    tt.clear();
+                }
+            }
+        }
 
         //Determine the action using MCTS...
-        m_root.mctsSearch(ect);
+        long start = System.nanoTime();
+        if (params.tree_storage == params.TREE_FLAT) {
+            // Flat trees are emptied by every search, so there's no subtree to reuse
+            return actions[flatSearch(gs, ect, numTrees, start)];
+        }
+        int action;
+        SingleTreeNode[] roots;
+        if (numTrees == 1) {
+            // Root of the tree
+            SingleTreeNode m_root = reusedRoot(0, gs);
+            if (m_root == null) {
+                m_root = new SingleTreeNode(params, m_rnd, num_actions, actions,
+                        params.use_transpositions ? tts[0] : null);
+                m_root.setOpponentModel(opponentModel);
+                m_root.setRootGameState(gs);
+            }
+            m_root.mctsSearch(ect);
+            recordSearch(start, m_root);
+            roots = new SingleTreeNode[]{m_root};
 
-        //Determine the best action to take and return it.
-        int action = m_root.mostVisitedAction();
+            //Determine the best action to take and return it.
+            action = m_root.mostVisitedAction();
+        } else {
+            roots = parallelSearch(gs, ect, numTrees);
+            recordSearch(start, roots);
+            action = SingleTreeNode.mostVisitedAction(roots, m_rnd);
+        }
+
+        if (params.tree_reuse) {
+            lastRoots = roots;
+            lastAction = action;
+        }
 
         // TODO update message memory
 
@@ -84,6 +179,176 @@ public class MCTSPlayer extends ParameterizedPlayer {
         return actions[action];
     }
 
+    /**
+     * Searches params.num_threads independent trees from the given state at the same time. Each tree has its own
+     * copy of the state and its own random generator. The calling thread searches one of them.
+     * @return the roots of the trees.
+     */
+    private SingleTreeNode[] parallelSearch(GameState gs, ElapsedCpuTimer ect, int numTrees) {
+        // Each thread only sees its own CPU time, so the budget left is turned into a deadline shared by all trees.
+        ElapsedCpuTimer timer = ect;
+        if (params.stop_type == params.STOP_TIME) {
+            timer = new ElapsedCpuTimer(true);
+            timer.setMaxTimeMillis(ect.remainingTimeMillis());
+        }
+
+        SingleTreeNode[] roots = new SingleTreeNode[numTrees];
+        Runnable[] searches = new Runnable[numTrees];
+        final ElapsedCpuTimer searchTimer = timer;
+        for (int i = 0; i < numTrees; i++) {
+            GameState treeState = i == 0 ? gs : gs.copy();
+            roots[i] = reusedRoot(i, treeState);
+            if (roots[i] == null) {
+                roots[i] = new SingleTreeNode(params, new Random(m_rnd.nextLong()), actions.length, actions,
+                        params.use_transpositions ? tts[i] : null);
+                roots[i].setOpponentModel(opponentModel);
+                roots[i].setRootGameState(treeState);
+            }
+            final SingleTreeNode root = roots[i];
+            searches[i] = () -> root.mctsSearch(searchTimer);
+        }
+        runInParallel(searches);
+        return roots;
+    }
+
+    /**
+     * Searches with the player's flat trees, as the single-tree or parallel search would with SingleTreeNode trees.
+     * @return index of the action to play.
+     */
+    private int flatSearch(GameState gs, ElapsedCpuTimer ect, int numTrees, long start) {
+        if (flatTrees == null || flatTrees.length != numTrees) {
+            flatTrees = new FlatTree[numTrees];
+            for (int i = 0; i < numTrees; i++) {
+                flatTrees[i] = new FlatTree(params, actions.length, actions);
+            }
+        }
+
+        if (numTrees == 1) {
+            flatTrees[0].reset(gs, m_rnd, params.use_transpositions ? tts[0] : null, opponentModel);
+            flatTrees[0].mctsSearch(ect);
+            recordSearch(start, flatTrees);
+            return flatTrees[0].mostVisitedAction();
+        }
+
+        ElapsedCpuTimer timer = ect;
+        if (params.stop_type == params.STOP_TIME) {
+            timer = new ElapsedCpuTimer(true);
+            timer.setMaxTimeMillis(ect.remainingTimeMillis());
+        }
+        Runnable[] searches = new Runnable[numTrees];
+        final ElapsedCpuTimer searchTimer = timer;
+        for (int i = 0; i < numTrees; i++) {
+            final FlatTree tree = flatTrees[i];
+            tree.reset(i == 0 ? gs : gs.copy(), new Random(m_rnd.nextLong()),
+                    params.use_transpositions ? tts[i] : null, opponentModel);
+            searches[i] = () -> tree.mctsSearch(searchTimer);
+        }
+        runInParallel(searches);
+        recordSearch(start, flatTrees);
+        return FlatTree.mostVisitedAction(flatTrees, m_rnd);
+    }
+
+    /**
+     * Runs the given searches at the same time, the first one on the calling thread, and waits for all of them.
+     */
+    private static void runInParallel(Runnable[] searches) {
+        ExecutorService executor = getSearchExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < searches.length; i++) {
+            futures.add(executor.submit(searches[i]));
+        }
+        searches[0].run();
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new RuntimeException("MCTS search failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return the subtree of the last action in the i-th tree of the last search, as the root of a search from gs;
+     * null if tree reuse is off or the subtree doesn't match gs.
+     */
+    private SingleTreeNode reusedRoot(int i, GameState gs) {
+        if (!params.tree_reuse || lastRoots == null || i >= lastRoots.length)
+            return null;
+        SingleTreeNode root = lastRoots[i].reuse(lastAction, gs);
+        if (root != null)
+            reusedTrees++;
+        return root;
+    }
+
+    private static synchronized ExecutorService getSearchExecutor() {
+        if (searchExecutor == null) {
+            searchExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "mcts-search");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return searchExecutor;
+    }
+
+    private void recordSearch(long start, SingleTreeNode... roots) {
+        totalSearchNanos += System.nanoTime() - start;
+        int depth = 0;
+        for (SingleTreeNode root : roots) {
+            totalIterations += root.getIterations();
+            depth = Math.max(depth, root.getMaxDepth());
+            getMetrics().addIterations(root.getIterations());
+            getMetrics().addTreeNodes(root.treeSize());
+        }
+        totalTreeDepth += depth;
+        searches++;
+    }
+
+    private void recordSearch(long start, FlatTree... trees) {
+        totalSearchNanos += System.nanoTime() - start;
+        int depth = 0;
+        for (FlatTree tree : trees) {
+            totalIterations += tree.getIterations();
+            depth = Math.max(depth, tree.getMaxDepth());
+            getMetrics().addIterations(tree.getIterations());
+            getMetrics().addTreeNodes(tree.treeSize());
+        }
+        totalTreeDepth += depth;
+        searches++;
+    }
+
+    /**
+     * @return number of MCTS iterations (nodes added to the trees) in all searches so far.
+     */
+    public long getTotalIterations() {
+        return totalIterations;
+    }
+
+    /**
+     * @return number of trees that started from the subtree of the previous search (see MCTSParams.tree_reuse).
+     */
+    public long getReusedTrees() {
+        return reusedTrees;
+    }
+
+    /**
+     * @return wall time spent searching in all calls to act(), in nanoseconds.
+     */
+    public long getTotalSearchNanos() {
+        return totalSearchNanos;
+    }
+
+    /**
+     * @return average depth of the search trees built so far.
+     */
+    public double getAverageTreeDepth() {
+        return searches == 0 ? 0 : (double) totalTreeDepth / searches;
+    }
+
     @Override
     public int[] getMessage() {
         // default message
@@ -1,15 +1,17 @@
 package players.mcts;
 
 import core.GameState;
+import core.GameStatePool;
 import players.heuristics.AdvancedHeuristic;
+import players.heuristics.CachedHeuristic;
 import players.heuristics.CustomHeuristic;
 import players.heuristics.StateHeuristic;
+import players.opponents.OpponentModel;
+import players.rollout.RolloutPolicy;
 import utils.ElapsedCpuTimer;
 import utils.Types;
 import utils.Utils;
-import utils.Vector2d;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 public class SingleTreeNode
@@ -31,9 +33,30 @@ public class SingleTreeNode
 
     private GameState rootState;
     private StateHeuristic rootStateHeuristic;
+    // Policy of the player in rollouts, shared by all nodes of the tree.
+    private RolloutPolicy rolloutPolicy;
+    // Actions of the other agents in simulated ticks, shared by all nodes of the tree.
+    private OpponentModel opponentModel;
+
+    // Statistics shared by all nodes reaching the same state, null if transpositions are not used.
+    private TranspositionTable tt;
+    // Entry of the state this node reached in the current iteration.
+    private TranspositionTable.Entry ttEntry;
+    private int iterations;
+    private int maxDepth;
+
+    // With tree reuse: key of the player's avatar in the states this node reached (GameState.avatarHash64()), and
+    // whether it was the same every time.
+    private long avatarKey;
+    private boolean avatarKeyConsistent = true;
 
     SingleTreeNode(MCTSParams p, Random rnd, int num_actions, Types.ACTIONS[] actions) {
+        this(p, rnd, num_actions, actions, null);
+    }
+
+    SingleTreeNode(MCTSParams p, Random rnd, int num_actions, Types.ACTIONS[] actions, TranspositionTable tt) {
         this(p, null, -1, rnd, num_actions, actions, 0, null);
+        this.tt = tt;
     }
 
     private SingleTreeNode(MCTSParams p, SingleTreeNode parent, int childIdx, Random rnd, int num_actions,
@@ -50,6 +73,9 @@ public class SingleTreeNode
         if(parent != null) {
             m_depth = parent.m_depth + 1;
             this.rootStateHeuristic = sh;
+            this.tt = parent.tt;
+            this.rolloutPolicy = parent.rolloutPolicy;
+            this.opponentModel = parent.opponentModel;
         }
         else
             m_depth = 0;
@@ -58,10 +84,32 @@ public class SingleTreeNode
     void setRootGameState(GameState gs)
     {
         this.rootState = gs;
+        this.rootStateHeuristic = createHeuristic(params, gs);
+        this.rolloutPolicy = RolloutPolicy.create(params.rollout_policy, rootStateHeuristic, params.rollout_epsilon);
+        if (opponentModel == null)
+            this.opponentModel = OpponentModel.create(params.opponent_model);
+    }
+
+    /**
+     * Sets the model of the other agents used by the search from this root, instead of a new one of the type set by
+     * params. Must be called before the first search.
+     */
+    void setOpponentModel(OpponentModel model) {
+        this.opponentModel = model;
+    }
+
+    /**
+     * @return the heuristic set by params, evaluating states relative to the given root state.
+     */
+    static StateHeuristic createHeuristic(MCTSParams params, GameState gs) {
+        StateHeuristic heuristic = null;
         if (params.heuristic_method == params.CUSTOM_HEURISTIC)
-            this.rootStateHeuristic = new CustomHeuristic(gs);
+            heuristic = new CustomHeuristic(gs);
         else if (params.heuristic_method == params.ADVANCED_HEURISTIC) // New method: combined heuristics
-            this.rootStateHeuristic = new AdvancedHeuristic(gs, m_rnd);
+            heuristic = new AdvancedHeuristic(gs);
+        if (params.heuristic_cache > 0)
+            heuristic = new CachedHeuristic(heuristic, params.heuristic_cache);
+        return heuristic;
     }
 
 
@@ -74,14 +122,24 @@ public class SingleTreeNode
 
         int remainingLimit = 5;
         boolean stop = false;
+        if (tt != null) {
+            ttEntry = tt.get(rootState.hash64(), m_depth);
+        }
 
         while(!stop){
 
-            GameState state = rootState.copy();
+            // Iteration states are recycled through the pool, instead of allocating a new copy every time.
+            GameState state = GameStatePool.copy(rootState);
             ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
+            long policyCalls = rolloutPolicy.getFMCalls();
             SingleTreeNode selected = treePolicy(state);
             double delta = selected.rollOut(state);
             backUp(selected, delta);
+            GameStatePool.release(state);
+            iterations++;
+            if (selected.m_depth > maxDepth) {
+                maxDepth = selected.m_depth;
+            }
 
             //Stopping condition
             if(params.stop_type == params.STOP_TIME) {
@@ -95,8 +153,10 @@ public class SingleTreeNode
                 stop = numIters >= params.num_iterations;
             }else if(params.stop_type == params.STOP_FMCALLS)
             {
-                fmCallsCount+=params.rollout_depth;
-                stop = (fmCallsCount + params.rollout_depth) > params.num_fmcalls;
+                // A full rollout, plus the FM calls made by the rollout policy to pick its actions
+                int iterationCalls = params.rollout_depth + (int) (rolloutPolicy.getFMCalls() - policyCalls);
+                fmCallsCount+=iterationCalls;
+                stop = (fmCallsCount + iterationCalls) > params.num_fmcalls;
             }
         }
         //System.out.println(" ITERS " + numIters);
@@ -139,29 +199,15 @@ public class SingleTreeNode
         SingleTreeNode tn = new SingleTreeNode(params,this,bestAction,this.m_rnd,num_actions,
                 actions, fmCallsCount, rootStateHeuristic);
         children[bestAction] = tn;
+        tn.lookUpTransposition(state);
+        if (params.tree_reuse)
+            tn.avatarKey = state.avatarHash64();
         return tn;
     }
 
     private void roll(GameState gs, Types.ACTIONS act)
     {
-        //Simple, all random first, then my position.
-        int nPlayers = 4;
-        Types.ACTIONS[] actionsAll = new Types.ACTIONS[4];
-        int playerId = gs.getPlayerId() - Types.TILETYPE.AGENT0.getKey();
-
-        for(int i = 0; i < nPlayers; ++i)
-        {
-            if(playerId == i)
-            {
-                actionsAll[i] = act;
-            }else {
-                int actionIdx = m_rnd.nextInt(gs.nActions());
-                actionsAll[i] = Types.ACTIONS.all().get(actionIdx);
-            }
-        }
-
-        gs.next(actionsAll);
-
+        OpponentModel.advance(gs, act, opponentModel, m_rnd);
     }
 
     private SingleTreeNode uct(GameState state) {
@@ -169,8 +215,7 @@ public class SingleTreeNode
         double bestValue = -Double.MAX_VALUE;
         for (SingleTreeNode child : this.children)
         {
-            double hvVal = child.totValue;
-            double childValue =  hvVal / (child.nVisits + params.epsilon);
+            double childValue = child.meanValue();
 
             childValue = Utils.normalise(childValue, bounds[0], bounds[1]);
 
@@ -193,6 +238,9 @@ public class SingleTreeNode
 
         //Roll the state:
         roll(state, actions[selected.childIdx]);
+        selected.lookUpTransposition(state);
+        if (params.tree_reuse && selected.avatarKey != state.avatarHash64())
+            selected.avatarKeyConsistent = false;
 
         return selected;
     }
@@ -202,52 +250,122 @@ public class SingleTreeNode
         int thisDepth = this.m_depth;
 
         while (!finishRollout(state,thisDepth)) {
-            int action = safeRandomAction(state);
-            roll(state, actions[action]);
+            roll(state, rolloutPolicy.act(state, m_rnd));
             thisDepth++;
         }
 
+        if (state.getMetrics() != null)
+            state.getMetrics().countHeuristicEvaluation();
         return rootStateHeuristic.evaluateState(state);
     }
 
-    private int safeRandomAction(GameState state)
+    @SuppressWarnings("RedundantIfStatement")
+    private boolean finishRollout(GameState rollerState, int depth)
     {
-        Types.TILETYPE[][] board = state.getBoard();
-        ArrayList<Types.ACTIONS> actionsToTry = Types.ACTIONS.all();
-        int width = board.length;
-        int height = board[0].length;
+        if (depth >= params.rollout_depth)      //rollout end condition.
+            return true;
 
-        while(actionsToTry.size() > 0) {
+        if (rollerState.isTerminal())               //end of game
+            return true;
 
-            int nAction = m_rnd.nextInt(actionsToTry.size());
-            Types.ACTIONS act = actionsToTry.get(nAction);
-            Vector2d dir = act.getDirection().toVec();
+        return false;
+    }
 
-            Vector2d pos = state.getPosition();
-            int x = pos.x + dir.x;
-            int y = pos.y + dir.y;
+    /**
+     * Turns the subtree of the action played from this root into the tree of the next search, if it describes the
+     * state the game is now in: the tick must follow the one of this root, and every visit of the child must have
+     * left the player's avatar as it is in the new state (same position, ammo, etc.). Opponents' moves are not
+     * checked, as the tree averages over them anyway.
+     *
+     * Values in the tree are relative to the old root state. They're moved to the new one by subtracting the value
+     * of the new state relative to the old, which is exact for heuristics linear in the board statistics.
+     * @param action index of the action played.
+     * @param gs observation of the new state.
+     * @return the new root, or null if the subtree can't be reused.
+     */
+    SingleTreeNode reuse(int action, GameState gs) {
+        SingleTreeNode child = children[action];
+        if (child == null || !child.avatarKeyConsistent || child.avatarKey != gs.avatarHash64()
+                || gs.getTick() != rootState.getTick() + 1 || gs.isTerminal())
+            return null;
+
+        double offset = rootStateHeuristic.evaluateState(gs);
+        children[action] = null;
+        child.parent = null;
+        child.childIdx = -1;
+        child.fmCallsCount = 0;
+        child.iterations = 0;
+        child.maxDepth = 0;
+        child.setRootGameState(gs);
+        child.rebase(child, offset);
+        return child;
+    }
 
-            if (x >= 0 && x < width && y >= 0 && y < height)
-                if(board[y][x] != Types.TILETYPE.FLAMES)
-                    return nAction;
+    /**
+     * Moves this subtree one level up, under the given root, with values shifted by -offset.
+     */
+    private void rebase(SingleTreeNode root, double offset) {
+        m_depth--;
+        totValue -= offset * nVisits;
+        if (nVisits > 0) {
+            bounds[0] -= offset;
+            bounds[1] -= offset;
+        }
+        ttEntry = null;
+        rootStateHeuristic = root.rootStateHeuristic;
+        rolloutPolicy = root.rolloutPolicy;
+        opponentModel = root.opponentModel;
+        tt = root.tt;
+        for (SingleTreeNode child : children) {
+            if (child != null)
+                child.rebase(root, offset);
+        }
+    }
 
-            actionsToTry.remove(nAction);
+    /**
+     * Finds the transposition table entry of the state this node has just reached.
+     */
+    private void lookUpTransposition(GameState state) {
+        if (tt != null) {
+            ttEntry = tt.get(state.hash64(), m_depth);
         }
+    }
 
-        //Uh oh...
-        return m_rnd.nextInt(num_actions);
+    /**
+     * Average value of this node. With transpositions, the value of the state reached by this node in the last
+     * iteration is used, which also counts the visits of other nodes that reached it.
+     */
+    private double meanValue() {
+        if (ttEntry != null && ttEntry.nVisits > nVisits) {
+            return ttEntry.totValue / (ttEntry.nVisits + params.epsilon);
+        }
+        return totValue / (nVisits + params.epsilon);
     }
 
-    @SuppressWarnings("RedundantIfStatement")
-    private boolean finishRollout(GameState rollerState, int depth)
-    {
-        if (depth >= params.rollout_depth)      //rollout end condition.
-            return true;
+    /**
+     * @return number of iterations of the last search.
+     */
+    int getIterations() {
+        return iterations;
+    }
 
-        if (rollerState.isTerminal())               //end of game
-            return true;
+    /**
+     * @return number of nodes in the tree below this node, including it.
+     */
+    int treeSize() {
+        int size = 1;
+        for (SingleTreeNode child : children) {
+            if (child != null)
+                size += child.treeSize();
+        }
+        return size;
+    }
 
-        return false;
+    /**
+     * @return depth of the deepest node reached in the last search.
+     */
+    int getMaxDepth() {
+        return maxDepth;
     }
 
     private void backUp(SingleTreeNode node, double result)
@@ -257,6 +375,10 @@ public class SingleTreeNode
         {
             n.nVisits++;
             n.totValue += result;
+            if (n.ttEntry != null) {
+                n.ttEntry.nVisits++;
+                n.ttEntry.totValue += result;
+            }
             if (result < n.bounds[0]) {
                 n.bounds[0] = result;
             }
@@ -306,6 +428,31 @@ public class SingleTreeNode
         return selected;
     }
 
+    /**
+     * Chooses the action to play after a root-parallel search, as mostVisitedAction() would on a single tree whose
+     * root children hold the visits and values of those of all trees.
+     * @param roots roots of trees searched from the same state.
+     * @param rnd random generator, to break ties.
+     * @return index of the action to play.
+     */
+    static int mostVisitedAction(SingleTreeNode[] roots, Random rnd) {
+        SingleTreeNode first = roots[0];
+        SingleTreeNode merged = new SingleTreeNode(first.params, rnd, first.num_actions, first.actions);
+        for (SingleTreeNode root : roots) {
+            for (int i = 0; i < root.children.length; i++) {
+                SingleTreeNode child = root.children[i];
+                if (child == null) continue;
+                if (merged.children[i] == null) {
+                    merged.children[i] = new SingleTreeNode(first.params, merged, i, rnd, first.num_actions,
+                            first.actions, 0, null);
+                }
+                merged.children[i].nVisits += child.nVisits;
+                merged.children[i].totValue += child.totValue;
+            }
+        }
+        return merged.mostVisitedAction();
+    }
+
     private int bestAction()
     {
         int selected = -1;
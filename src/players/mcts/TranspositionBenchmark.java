@@ -0,0 +1,84 @@
+package players.mcts;
+
+import core.Game;
+import players.Player;
+import utils.Types;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Plays MCTS with transpositions against plain MCTS, both with a budget of 200 iterations per move, and reports
+ * the win rate, search speed and tree depth of each.
+ *
+ * Usage: java players.mcts.TranspositionBenchmark [games] [seed] [LRU|DEPTH]
+ */
+public class TranspositionBenchmark {
+
+    private static final int NUM_ITERATIONS = 200;
+
+    public static void main(String[] args) {
+        int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1234;
+        boolean depthReplacement = args.length > 2 && args[2].equalsIgnoreCase("DEPTH");
+
+        Types.VISUALS = false;
+        Random rnd = new Random(seed);
+
+        // Index 0: with transpositions, 1: plain
+        String[] names = new String[]{"MCTS-TT", "MCTS"};
+        int[] wins = new int[2], ties = new int[2], losses = new int[2];
+        long[] iterations = new long[2], nanos = new long[2];
+        double[] depth = new double[2];
+        int[] seats = new int[2];
+
+        for (int g = 0; g < numGames; g++) {
+            long gameSeed = rnd.nextInt(100000);
+            Game game = new Game(gameSeed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "");
+
+            // Swap seats every game, so neither variant keeps the same starting corners
+            ArrayList<Player> players = new ArrayList<>();
+            int[] variant = new int[Types.NUM_PLAYERS];
+            for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                variant[i] = (i + g) % 2;
+                MCTSParams params = new MCTSParams();
+                params.stop_type = params.STOP_ITERATIONS;
+                params.num_iterations = NUM_ITERATIONS;
+                params.rollout_depth = 12;
+                params.heuristic_method = params.CUSTOM_HEURISTIC;
+                if (variant[i] == 0) {
+                    params.use_transpositions = true;
+                    params.tt_replacement = depthReplacement ? params.TT_DEPTH : params.TT_LRU;
+                }
+                players.add(new MCTSPlayer(gameSeed + i, Types.TILETYPE.AGENT0.getKey() + i, params));
+            }
+            game.setPlayers(players);
+
+            Types.RESULT[] results = game.run(false);
+
+            for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                int v = variant[i];
+                if (results[i] == Types.RESULT.WIN) wins[v]++;
+                else if (results[i] == Types.RESULT.TIE) ties[v]++;
+                else losses[v]++;
+
+                MCTSPlayer p = (MCTSPlayer) players.get(i);
+                iterations[v] += p.getTotalIterations();
+                nanos[v] += p.getTotalSearchNanos();
+                depth[v] += p.getAverageTreeDepth();
+                seats[v]++;
+            }
+            System.out.println("Game " + (g + 1) + "/" + numGames + " (seed " + gameSeed + ") done.");
+        }
+
+        System.out.println("N \tWin \tTie \tLoss \tNodes/s \tAvg. depth \tPlayer");
+        for (int v = 0; v < 2; v++) {
+            double winRate = 100.0 * wins[v] / seats[v];
+            double tieRate = 100.0 * ties[v] / seats[v];
+            double lossRate = 100.0 * losses[v] / seats[v];
+            double nodesPerSec = nanos[v] == 0 ? 0 : iterations[v] * 1e9 / nanos[v];
+            System.out.println(String.format("%d\t%.1f%%\t%.1f%%\t%.1f%%\t%.0f\t\t%.2f\t\t%s", seats[v], winRate,
+                    tieRate, lossRate, nodesPerSec, depth[v] / seats[v], names[v]));
+        }
+    }
+}
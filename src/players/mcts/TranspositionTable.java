@@ -0,0 +1,121 @@
+package players.mcts;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded table of search statistics, keyed by the hash of the game state they were collected on
+ * (GameState.hash64()). Tree nodes that reach the same state through different action sequences share one entry,
+ * so the visits of one path also inform the other.
+ *
+ * Two replacement policies are supported once the table is full:
+ * - LRU: the entry used least recently is evicted.
+ * - DEPTH: states are stored in a fixed array of slots, and a slot taken by another state is given to the new one
+ *   only if the new one is not deeper in the tree (shallower entries gather more visits).
+ */
+public class TranspositionTable {
+
+    /**
+     * Statistics of one state.
+     */
+    static class Entry {
+        final long hash;
+        int depth;
+        int nVisits;
+        double totValue;
+
+        Entry(long hash, int depth) {
+            this.hash = hash;
+            this.depth = depth;
+        }
+    }
+
+    private final int capacity;
+
+    // LRU policy
+    private LinkedHashMap<Long, Entry> lru;
+
+    // DEPTH policy
+    private Entry[] slots;
+    private int mask;
+
+    /**
+     * Creates a transposition table, with the capacity and replacement policy given in the parameters.
+     * @param params MCTS parameters.
+     */
+    TranspositionTable(MCTSParams params) {
+        this.capacity = Math.max(1, params.tt_capacity);
+        if (params.tt_replacement == params.TT_DEPTH) {
+            // Power of two number of slots, so indices are taken with a mask
+            int n = Integer.highestOneBit(this.capacity);
+            if (n < this.capacity) n <<= 1;
+            slots = new Entry[n];
+            mask = n - 1;
+        } else {
+            lru = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, TranspositionTable.Entry> eldest) {
+                    return size() > TranspositionTable.this.capacity;
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns the entry of a state, creating it if needed.
+     * @param hash hash of the state.
+     * @param depth depth in the tree at which the state was reached.
+     * @return the entry, or null if the DEPTH policy kept a shallower state in its slot.
+     */
+    Entry get(long hash, int depth) {
+        if (slots != null) {
+            int idx = (int) (hash ^ (hash >>> 32)) & mask;
+            Entry e = slots[idx];
+            if (e != null && e.hash == hash) {
+                if (depth < e.depth) e.depth = depth;
+                return e;
+            }
+            if (e == null || e.depth >= depth) {
+                e = new Entry(hash, depth);
+                slots[idx] = e;
+                return e;
+            }
+            return null;
+        }
+
+        Entry e = lru.get(hash);
+        if (e == null) {
+            e = new Entry(hash, depth);
+            lru.put(hash, e);
+        } else if (depth < e.depth) {
+            e.depth = depth;
+        }
+        return e;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        if (slots != null) {
+            Arrays.fill(slots, null);
+        } else {
+            lru.clear();
+        }
+    }
+
+    /**
+     * @return the number of states in the table.
+     */
+    int size() {
+        if (slots != null) {
+            int n = 0;
+            for (Entry e : slots) {
+                if (e != null) n++;
+            }
+            return n;
+        }
+        return lru.size();
+    }
+}
@@ -0,0 +1,102 @@
+package players.opponents;
+
+import core.GameState;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Plays the actions of each agent with the frequencies it was seen playing them so far in the game. Actions are
+ * read off consecutive observations: a step to a neighbouring cell is a move, a new bomb under an agent that didn't
+ * move is ACTION_BOMB, and staying anywhere else is ACTION_STOP (which also covers moves into walls). Every action
+ * starts with PRIOR counts, so the model plays randomly until it has seen a few ticks.
+ */
+public class FrequencyOpponent implements OpponentModel {
+
+    private static final Types.ACTIONS[] ACTIONS = Types.ACTIONS.values();
+    private static final double PRIOR = 1;
+
+    private final double[][] counts = new double[Types.NUM_PLAYERS][ACTIONS.length];
+
+    // Position of every agent in the last observation (null if dead or not observed), and the life of the bomb in
+    // its cell then.
+    private final Vector2d[] lastPositions = new Vector2d[Types.NUM_PLAYERS];
+    private final int[] lastBombLife = new int[Types.NUM_PLAYERS];
+    private int lastTick = -1;
+
+    public FrequencyOpponent() {
+        for (double[] c : counts) {
+            Arrays.fill(c, PRIOR);
+        }
+    }
+
+    @Override
+    public Types.ACTIONS act(GameState state, int agent, Random rnd) {
+        double[] c = counts[agent];
+        int nActions = state.nActions();
+        double total = 0;
+        for (int a = 0; a < nActions; a++) {
+            total += c[a];
+        }
+        double r = rnd.nextDouble() * total;
+        for (int a = 0; a < nActions - 1; a++) {
+            r -= c[a];
+            if (r < 0)
+                return ACTIONS[a];
+        }
+        return ACTIONS[nActions - 1];
+    }
+
+    @Override
+    public void observe(GameState obs) {
+        int self = obs.getPlayerId() - Types.TILETYPE.AGENT0.getKey();
+        boolean consecutive = obs.getTick() == lastTick + 1;
+        int[][] bombLife = obs.getBombLife();
+        for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+            Vector2d pos = i == self ? null : obs.getAgentPosition(i);
+            if (pos == null) {
+                lastPositions[i] = null;
+                continue;
+            }
+            if (consecutive && lastPositions[i] != null) {
+                Types.ACTIONS action = inferAction(lastPositions[i], lastBombLife[i], pos, bombLife[pos.y][pos.x]);
+                if (action != null)
+                    counts[i][action.getKey()]++;
+            }
+            lastPositions[i] = pos.copy();
+            lastBombLife[i] = bombLife[pos.y][pos.x];
+        }
+        lastTick = obs.getTick();
+    }
+
+    /**
+     * @return the action that took an agent from one cell to the other in a tick, or null if none could.
+     */
+    private static Types.ACTIONS inferAction(Vector2d from, int fromBombLife, Vector2d to, int toBombLife) {
+        int dx = to.x - from.x;
+        int dy = to.y - from.y;
+        if (dx == 0 && dy == 0) {
+            // Bombs are seen with one tick of their life gone
+            boolean newBomb = fromBombLife == 0 && toBombLife == Types.BOMB_LIFE - 1;
+            return newBomb ? Types.ACTIONS.ACTION_BOMB : Types.ACTIONS.ACTION_STOP;
+        }
+        for (Types.ACTIONS a : ACTIONS) {
+            if (a.getDirection().x() == dx && a.getDirection().y() == dy)
+                return a;
+        }
+        return null;
+    }
+
+    /**
+     * @return the probability of the agent playing the action, among all actions.
+     */
+    public double getProbability(int agent, Types.ACTIONS action) {
+        double total = 0;
+        for (double c : counts[agent]) {
+            total += c;
+        }
+        return counts[agent][action.getKey()] / total;
+    }
+}
@@ -0,0 +1,73 @@
+package players.opponents;
+
+import core.GameState;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * Picks the actions of the other agents when a search (MCTS, RHEA, EMCTS) simulates a tick. A model may learn from
+ * the observations of the real game (observe()), which happens between searches; act() only reads what was learned,
+ * and may be called by several search threads at the same time.
+ */
+public interface OpponentModel {
+
+    // Model types, for the params of search players.
+    int RANDOM = 0;
+    int STOP = 1;
+    int FREQUENCY = 2;
+    int SIMPLE = 3;
+
+    /**
+     * @param state - simulated state, seen by the searching player. Must not be modified.
+     * @param agent - index of the agent acting (0 to Types.NUM_PLAYERS - 1), not the player of the state.
+     * @param rnd - random generator of the search.
+     * @return action for the agent.
+     */
+    Types.ACTIONS act(GameState state, int agent, Random rnd);
+
+    /**
+     * Called with the observation of the player at every tick of the real game, before it searches.
+     * @param obs - observation of the player.
+     */
+    default void observe(GameState obs) {
+    }
+
+    /**
+     * Advances a state by one tick, in which the player of the state plays the given action and every other agent
+     * plays the action of the model.
+     * @param state - state to advance.
+     * @param action - action of the player of the state.
+     * @param model - model of the other agents.
+     * @param rnd - random generator of the search.
+     */
+    static void advance(GameState state, Types.ACTIONS action, OpponentModel model, Random rnd) {
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        int playerIdx = state.getPlayerId() - Types.TILETYPE.AGENT0.getKey();
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = i == playerIdx ? action : model.act(state, i, rnd);
+        }
+        state.next(actions);
+    }
+
+    /**
+     * Creates an opponent model.
+     * @param type - one of the model types.
+     */
+    static OpponentModel create(int type) {
+        switch (type) {
+            case STOP: return new StopOpponent();
+            case FREQUENCY: return new FrequencyOpponent();
+            case SIMPLE: return new SimpleOpponent();
+            default:
+            case RANDOM: return new RandomOpponent();
+        }
+    }
+
+    /**
+     * Names of the model types, for ParameterSet.constantNames().
+     */
+    static String[] names() {
+        return new String[]{"RANDOM", "STOP", "FREQUENCY", "SIMPLE"};
+    }
+}
@@ -0,0 +1,122 @@
+package players.opponents;
+
+import core.GameState;
+import org.junit.jupiter.api.Test;
+import players.rollout.DangerMap;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpponentModelTest {
+
+    @Test
+    void frequencyLearnsObservedActions() {
+        GameState gs = new GameState(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.PACKED);
+        // Agent 3 steps back and forth between its cell and a free neighbour.
+        Types.ACTIONS step = freeStep(gs, 3);
+        assertNotNull(step, "Agent 3 has no free neighbour");
+        Types.ACTIONS back = opposite(step);
+
+        FrequencyOpponent model = new FrequencyOpponent();
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        int ticks = 8; // Before the bomb of agent 1 explodes
+        for (int t = 0; t < ticks; t++) {
+            model.observe(gs.copy(0));
+            Arrays.fill(actions, Types.ACTIONS.ACTION_STOP);
+            actions[1] = t == 0 ? Types.ACTIONS.ACTION_BOMB : Types.ACTIONS.ACTION_STOP;
+            actions[3] = t % 2 == 0 ? step : back;
+            gs.next(actions);
+        }
+        model.observe(gs.copy(0));
+
+        // Every action starts with one count, and each tick adds one.
+        double total = Types.ACTIONS.values().length + ticks;
+        assertEquals(2 / total, model.getProbability(1, Types.ACTIONS.ACTION_BOMB), 1e-9);
+        assertEquals(ticks / total, model.getProbability(1, Types.ACTIONS.ACTION_STOP), 1e-9);
+        assertEquals((ticks + 1) / total, model.getProbability(2, Types.ACTIONS.ACTION_STOP), 1e-9);
+        assertEquals((ticks / 2 + 1) / total, model.getProbability(3, step), 1e-9);
+        assertEquals((ticks / 2 + 1) / total, model.getProbability(3, back), 1e-9);
+        // The player itself isn't modelled.
+        assertEquals(1 / (double) Types.ACTIONS.values().length,
+                model.getProbability(0, Types.ACTIONS.ACTION_STOP), 1e-9);
+
+        // Sampled actions follow the frequencies.
+        Random rnd = new Random(1);
+        int stops = 0;
+        int samples = 10000;
+        for (int i = 0; i < samples; i++) {
+            if (model.act(gs, 2, rnd) == Types.ACTIONS.ACTION_STOP)
+                stops++;
+        }
+        assertEquals((ticks + 1) / total, stops / (double) samples, 0.02);
+    }
+
+    @Test
+    void advanceUsesModel() {
+        GameState gs = new GameState(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.PACKED);
+        GameState obs = gs.copy(0);
+        Types.ACTIONS step = freeStep(obs, 0);
+        Vector2d[] before = new Vector2d[Types.NUM_PLAYERS];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = obs.getAgentPosition(i).copy();
+        }
+
+        OpponentModel.advance(obs, step, new StopOpponent(), new Random(1));
+        assertNotEquals(before[0], obs.getAgentPosition(0));
+        for (int i = 1; i < before.length; i++) {
+            assertEquals(before[i], obs.getAgentPosition(i));
+        }
+    }
+
+    @Test
+    void simpleStaysSafe() {
+        SimpleOpponent model = new SimpleOpponent();
+        Random rnd = new Random(3);
+        for (long seed = 0; seed < 5; seed++) {
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, Types.FM_TYPE.PACKED);
+            while (!gs.isTerminal()) {
+                GameState obs = gs.copy(0);
+                Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+                for (int i = 0; i < actions.length; i++) {
+                    actions[i] = model.act(obs, i, rnd);
+                    Vector2d pos = obs.getAgentPosition(i);
+                    if (pos == null) continue;
+                    int safe = DangerMap.safeActions(obs.getBoard(), obs.getFlameMask(), pos.x, pos.y, false);
+                    if (safe != 0)
+                        assertTrue((safe & (1 << actions[i].getKey())) != 0, "Unsafe " + actions[i]);
+                }
+                gs.next(actions);
+            }
+        }
+    }
+
+    /**
+     * @return a move of the agent into a passage, null if it has none.
+     */
+    private static Types.ACTIONS freeStep(GameState gs, int agent) {
+        Vector2d pos = gs.getAgentPosition(agent);
+        Types.TILETYPE[][] board = gs.getBoard();
+        for (Types.ACTIONS a : Types.ACTIONS.values()) {
+            int x = pos.x + a.getDirection().x();
+            int y = pos.y + a.getDirection().y();
+            if ((x != pos.x || y != pos.y) && x >= 0 && y >= 0 && x < board.length && y < board.length
+                    && board[y][x] == Types.TILETYPE.PASSAGE)
+                return a;
+        }
+        return null;
+    }
+
+    private static Types.ACTIONS opposite(Types.ACTIONS a) {
+        switch (a) {
+            case ACTION_UP: return Types.ACTIONS.ACTION_DOWN;
+            case ACTION_DOWN: return Types.ACTIONS.ACTION_UP;
+            case ACTION_LEFT: return Types.ACTIONS.ACTION_RIGHT;
+            case ACTION_RIGHT: return Types.ACTIONS.ACTION_LEFT;
+            default: return a;
+        }
+    }
+}
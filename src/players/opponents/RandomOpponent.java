@@ -0,0 +1,19 @@
+package players.opponents;
+
+import core.GameState;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * Uniformly random actions, as search players always assumed of their opponents.
+ */
+public class RandomOpponent implements OpponentModel {
+
+    private static final Types.ACTIONS[] ACTIONS = Types.ACTIONS.values();
+
+    @Override
+    public Types.ACTIONS act(GameState state, int agent, Random rnd) {
+        return ACTIONS[rnd.nextInt(state.nActions())];
+    }
+}
@@ -0,0 +1,77 @@
+package players.opponents;
+
+import core.GameState;
+import players.rollout.DangerMap;
+import utils.FlameMask;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.Random;
+
+/**
+ * SimplePlayer's habits, cheap enough for every simulated tick: an agent flees when its cell is about to burn, lays
+ * a bomb next to wood or another agent when it has a free cell to step out to, and otherwise moves randomly without
+ * walking into flames. Opponents are assumed unable to kick, as observations don't say.
+ */
+public class SimpleOpponent implements OpponentModel {
+
+    private static final Types.ACTIONS[] ACTIONS = Types.ACTIONS.values();
+    private static final Types.DIRECTIONS[] MOVES = {Types.DIRECTIONS.UP, Types.DIRECTIONS.DOWN,
+            Types.DIRECTIONS.LEFT, Types.DIRECTIONS.RIGHT};
+    private static final int BOMB_BIT = 1 << Types.ACTIONS.ACTION_BOMB.getKey();
+
+    @Override
+    public Types.ACTIONS act(GameState state, int agent, Random rnd) {
+        Vector2d pos = state.getAgentPosition(agent);
+        if (pos == null)
+            return ACTIONS[rnd.nextInt(state.nActions())];
+
+        Types.TILETYPE[][] board = state.getBoard();
+        FlameMask flames = state.getFlameMask();
+        int safe = DangerMap.safeActions(board, flames, pos.x, pos.y, false);
+        if (!flames.isUpcomingFlame(pos.x, pos.y)) {
+            if (state.getBombLife()[pos.y][pos.x] == 0 && shouldBomb(board, flames, pos, agent))
+                return Types.ACTIONS.ACTION_BOMB;
+            // Don't stand still laying bombs at random
+            if ((safe & ~BOMB_BIT) != 0)
+                safe &= ~BOMB_BIT;
+        }
+        if (safe == 0)
+            return ACTIONS[rnd.nextInt(state.nActions())];
+
+        int pick = rnd.nextInt(Integer.bitCount(safe));
+        for (Types.ACTIONS a : ACTIONS) {
+            if ((safe & (1 << a.getKey())) != 0 && pick-- == 0)
+                return a;
+        }
+        return Types.ACTIONS.ACTION_STOP;
+    }
+
+    /**
+     * @return true if a neighbour of the agent's cell is wood or another agent, and another is a passage that won't
+     * burn next tick.
+     */
+    private static boolean shouldBomb(Types.TILETYPE[][] board, FlameMask flames, Vector2d pos, int agent) {
+        int size = board.length;
+        int self = Types.TILETYPE.AGENT0.getKey() + agent;
+        boolean target = false;
+        boolean exit = false;
+        for (Types.DIRECTIONS d : MOVES) {
+            int x = pos.x + d.x();
+            int y = pos.y + d.y();
+            if (x < 0 || y < 0 || x >= size || y >= size)
+                continue;
+            Types.TILETYPE tile = board[y][x];
+            if (tile == Types.TILETYPE.WOOD || (isAgent(tile) && tile.getKey() != self))
+                target = true;
+            else if (tile == Types.TILETYPE.PASSAGE && !flames.isUpcomingFlame(x, y))
+                exit = true;
+        }
+        return target && exit;
+    }
+
+    private static boolean isAgent(Types.TILETYPE tile) {
+        int key = tile.getKey();
+        return key >= Types.TILETYPE.AGENT0.getKey() && key <= Types.TILETYPE.AGENT3.getKey();
+    }
+}
@@ -0,0 +1,17 @@
+package players.opponents;
+
+import core.GameState;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * Opponents that never move.
+ */
+public class StopOpponent implements OpponentModel {
+
+    @Override
+    public Types.ACTIONS act(GameState state, int agent, Random rnd) {
+        return Types.ACTIONS.ACTION_STOP;
+    }
+}
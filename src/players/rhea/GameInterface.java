@@ -1,14 +1,18 @@
 package players.rhea;
 
+import core.ForwardModelBatch;
 import core.GameState;
 import gnu.trove.set.hash.TIntHashSet;
 import players.heuristics.*;
+import players.opponents.OpponentModel;
 import players.rhea.evo.Individual;
 import players.rhea.evo.Mutation;
 import players.rhea.hybrids.MCTSNode;
 import players.rhea.utils.FMBudget;
+import players.rhea.utils.PrefixCache;
 import players.rhea.utils.RHEAParams;
 import players.rhea.utils.Utilities;
+import players.rollout.RolloutPolicy;
 import utils.ElapsedCpuTimer;
 import utils.Types;
 import utils.Utils;
@@ -29,6 +33,19 @@ public class GameInterface {
     private RHEAParams params;
     private int playerID;
     private Random random;
+    private PrefixCache prefixCache;
+    private RolloutPolicy rolloutPolicy;
+    // Model of the other agents (params.opponent_model), kept for the whole game and shared with the workers.
+    private OpponentModel opponentModel;
+    private int opponentModelType;
+
+    // Interfaces used by the threads evaluating individuals in parallel, if params.num_threads > 1.
+    private GameInterface[] workers;
+
+    // States, actions and flags of the MC rollout repetitions, stepped together.
+    private ForwardModelBatch rolloutBatch;
+    private Types.ACTIONS[][] rolloutActions;
+    private boolean[] rolloutStepped;
 
     private ElapsedCpuTimer elapsedTimer;
     private HashMap<Integer, Types.ACTIONS> action_mapping;
@@ -40,21 +57,75 @@ public class GameInterface {
         this.random = random;
         fmBudget = new FMBudget(params.fm_budget);
         this.playerID = playerID;
+        if (params.prefix_cache) {
+            prefixCache = new PrefixCache(params.prefix_cache_size);
+        }
+    }
+
+    /**
+     * Creates an interface for a thread evaluating individuals in parallel with the given one. Both use the same
+     * FM budget.
+     */
+    private GameInterface(GameInterface parent, Random random) {
+        this(parent.params, random, parent.playerID);
+        fmBudget = parent.fmBudget;
     }
 
     void initTick(GameState stateObs, ElapsedCpuTimer elapsedTimer) {
+        fmBudget.reset();
+        if (opponentModel == null || opponentModelType != params.opponent_model) {
+            opponentModel = OpponentModel.create(params.opponent_model);
+            opponentModelType = params.opponent_model;
+        }
+        opponentModel.observe(stateObs);
+        setupTick(stateObs, elapsedTimer);
+
+        if (params.num_threads > 1) {
+            if (workers == null || workers.length != params.num_threads) {
+                workers = new GameInterface[params.num_threads];
+                for (int i = 0; i < workers.length; i++) {
+                    workers[i] = new GameInterface(this, new Random(random.nextLong()));
+                }
+            }
+            for (GameInterface worker : workers) {
+                worker.opponentModel = opponentModel;
+                worker.setupTick(stateObs.copy(), elapsedTimer);
+            }
+        }
+    }
+
+    /**
+     * @return interfaces for the threads evaluating individuals in parallel, set up for the current tick with their
+     * own copy of the root state, or null if params.num_threads is 1.
+     */
+    public GameInterface[] getWorkers() {
+        return params.num_threads > 1 ? workers : null;
+    }
+
+    /**
+     * @return FM budget of the current tick, shared with the workers.
+     */
+    FMBudget getFMBudget() {
+        return fmBudget;
+    }
+
+    private void setupTick(GameState stateObs, ElapsedCpuTimer elapsedTimer) {
         rootState = stateObs;
         this.elapsedTimer = elapsedTimer;
-        fmBudget.reset();
         initStateInfo();
         switch (params.heurisic_type) {
             case PLAYER_COUNT_HEURISTIC: stateHeuristic = new PlayerCountHeuristic(); break;
             case CUSTOM_HEURISTIC: stateHeuristic = new CustomHeuristic(stateObs); break;
-            case ADVANCED_HEURISTIC: stateHeuristic = new AdvancedHeuristic(stateObs, random); break;
+            case ADVANCED_HEURISTIC: stateHeuristic = new AdvancedHeuristic(stateObs); break;
             default:
             case WIN_SCORE_HEURISTIC: stateHeuristic = new WinScoreHeuristic(); break;
         }
+        rolloutPolicy = RolloutPolicy.create(params.rollout_policy, stateHeuristic, params.rollout_epsilon);
 
+        // States cached last tick were reached from a different root, start again.
+        if (prefixCache != null) {
+            prefixCache.reset(rootState, params.evaluate_act == EVALUATE_ACT_LAST ? 0 : evaluateState(rootState));
+        }
     }
 
     /**
@@ -152,15 +223,42 @@ public class GameInterface {
     @SuppressWarnings("UnusedReturnValue")
     public double evaluate(Individual individual, Mutation mutation, int evaluation_update) {
         double[] values = new double[individual.get_length() + 1];
-        GameState stateObsCopy = rootState.copy();
-        if (params.evaluate_act == EVALUATE_ACT_LAST) {  // This doesn't need first state value
-            values[0] = 0;
+        GameState stateObsCopy;
+        int lastIdx;
+
+        if (prefixCache != null) {
+            // Resume from the deepest prefix of this individual with a state snapshot. Mutations are applied
+            // first, so the whole prefix is known. The values of the states skipped are those recorded in the
+            // trie; values past the snapshot are overwritten by the rollout.
+            if (mutation != null) {
+                mutation.mutate(individual);
+            }
+            PrefixCache.Node node = prefixCache.root();
+            PrefixCache.Node resume = node;
+            int start = 0;
+            values[0] = node.getValue();
+            for (int i = 0; i < individual.get_length() - 1; i++) {
+                node = node.child(individual.get_action(i));
+                if (node == null) break;
+                values[i + 1] = node.getValue();
+                if (node.getState() != null) {
+                    resume = node;
+                    start = i + 1;
+                }
+            }
+            stateObsCopy = resume.getState().copy();
+            lastIdx = evaluateRollout(values, stateObsCopy, start, individual.get_length(), individual, null, resume);
         } else {
-            values[0] = evaluateState(stateObsCopy);  // Evaluate current state
-        }
+            stateObsCopy = rootState.copy();
+            if (params.evaluate_act == EVALUATE_ACT_LAST) {  // This doesn't need first state value
+                values[0] = 0;
+            } else {
+                values[0] = evaluateState(stateObsCopy);  // Evaluate current state
+            }
 
-        // Evaluate subsequent states obtained by rolling through the actions
-        int lastIdx = evaluateRollout(values, stateObsCopy, individual.get_length(), individual, mutation);
+            // Evaluate subsequent states obtained by rolling through the actions
+            lastIdx = evaluateRollout(values, stateObsCopy, 0, individual.get_length(), individual, mutation, null);
+        }
 
         if (lastIdx < values.length - 1) {
             // We stopped early, trim the values array to remove trailing 0s
@@ -195,18 +293,22 @@ public class GameInterface {
     /**
      * Evaluates an individual by rolling the state forward through the actions
      * @param values - array in which we'll save state values for every action we pass through
-     * @param copy - copy of root game state
+     * @param copy - copy of root game state, or of the state reached after the first /start/ actions
+     * @param start - index of the first action to roll through
      * @param length - length of this rollout
      * @param individual - individual that should be used for the rollout. If null, we're doing random rollout.
      * @param mutation - mutation class containing information about genes which should be mutated for this individual,
      *                 used during rollout to modify genes if needed.
+     * @param cached - prefix cache node of the first /start/ actions, states reached are added under it.
+     *               If null, states are not cached.
      * @return index of last action reached. may terminate early if a terminal state is reached before the end
      * of the rollout length.
      */
-    private int evaluateRollout(double[] values, GameState copy, int length, Individual individual,
-                                Mutation mutation) {
+    private int evaluateRollout(double[] values, GameState copy, int start, int length, Individual individual,
+                                Mutation mutation, PrefixCache.Node cached) {
         // Keep track of where the rollout stopped (in case of early terminal state).
-        int lastIdx = 0;
+        int lastIdx = Math.max(0, start - 1);
+        long policyCalls = rolloutPolicy.getFMCalls();
 
         // Retrieve the list of genes to mutate.
         TIntHashSet genesToMutate = null;
@@ -215,7 +317,7 @@ public class GameInterface {
         }
 
         // Roll through the actions
-        for (int i = 0; i < length; i++) {
+        for (int i = start; i < length; i++) {
             // Stop if the state reached is terminal
             if (!copy.isTerminal()) {
                 if (individual != null) {
@@ -226,14 +328,8 @@ public class GameInterface {
                     // Advance the state with the action in the individual
                     advanceState(copy, action_mapping.get(individual.get_action(i)));
 
-                } else {  // No individual passed, doing random rollout
-                    ArrayList<Types.ACTIONS> acts = Types.ACTIONS.all();
-                    int bound = rootState.nActions();
-                    Types.ACTIONS action = Types.ACTIONS.ACTION_STOP;
-                    if (bound > 0) {
-                        action = acts.get(random.nextInt(bound));
-                    }
-                    advanceState(copy, action);
+                } else {  // No individual passed, doing MC rollout
+                    advanceState(copy, rolloutPolicy.act(copy, random));
                 }
 
                 // Signal we used 1 FM call
@@ -247,6 +343,12 @@ public class GameInterface {
                     values[i + 1] = evaluateState(copy);
                 }
                 lastIdx = i;
+
+                // Record the prefix for individuals sharing it. The last action is left out, so individuals
+                // evaluated again still roll through at least one action.
+                if (cached != null && i < length - 1 && !copy.isTerminal()) {
+                    cached = prefixCache.visit(cached, individual.get_action(i), copy, values[i + 1]);
+                }
             } else {
                 break;
             }
@@ -257,6 +359,9 @@ public class GameInterface {
         }
         lastIdx++;
 
+        // Signal the FM calls made by the rollout policy to pick its actions
+        fmBudget.use((int) (rolloutPolicy.getFMCalls() - policyCalls));
+
         return lastIdx;
     }
 
@@ -298,40 +403,82 @@ public class GameInterface {
     }
 
     /**
-     * Performs monte carlo rollouts from the given state.
+     * Performs monte carlo rollouts from the given state. All repetitions are stepped together in a batch, so their
+     * states are reused from one call to the next.
      * @param start - root state for MC rollouts
      * @param ind_values - array of values from individual we just evaluated.
      * @return value of individual at the end of the MC rollouts.
      */
     private double MCrollouts(GameState start, double[] ind_values) {
-        double reward = 0;
-
-        // We may average over multiple repetitions of rollouts
-        for (int k = 0; k < params.mc_rollouts_repeat; k++) {
-            GameState first = start.copy();
+        int repeat = params.mc_rollouts_repeat;
+        int length = params.mc_rollouts_length;
+        if (rolloutBatch == null || rolloutBatch.capacity() < repeat) {
+            rolloutBatch = new ForwardModelBatch(repeat);
+            rolloutActions = new Types.ACTIONS[repeat][Types.NUM_PLAYERS];
+            rolloutStepped = new boolean[repeat];
+        }
 
-            // Save values of states we pass through in values array
-            double[] values = new double[params.mc_rollouts_length + 1];
+        // Save values of states we pass through in values arrays, one per repetition
+        double[][] values = new double[repeat][length + 1];
+        int[] lastIdx = new int[repeat];
+        for (int k = 0; k < repeat; k++) {
+            rolloutBatch.set(k, start);
             if (params.evaluate_act != EVALUATE_ACT_LAST) {  // This doesn't need first state value
-                values[0] = evaluateState(first);  // Evaluate current state
+                values[k][0] = evaluateState(rolloutBatch.get(k));  // Evaluate current state
             }
+        }
 
-            // Passing null as individual and mutation to perform random rollout
-            int lastIdx = evaluateRollout(values, first, params.mc_rollouts_length, null, null);
+        // Random rollouts, as evaluateRollout() does without an individual
+        long policyCalls = rolloutPolicy.getFMCalls();
+        for (int i = 0; i < length; i++) {
+            for (int k = 0; k < repeat; k++) {
+                rolloutStepped[k] = !rolloutBatch.isDone(k);
+                if (rolloutStepped[k]) {
+                    GameState gs = rolloutBatch.get(k);
+                    Types.ACTIONS[] actionsAll = rolloutActions[k];
+                    for (int p = 0; p < actionsAll.length; p++) {
+                        actionsAll[p] = p == playerID ? rolloutPolicy.act(gs, random)
+                                : opponentModel.act(gs, p, random);
+                    }
+                }
+            }
+            int stepped = rolloutBatch.step(repeat, rolloutActions);
+            if (stepped == 0) {
+                break;
+            }
+            fmBudget.use(stepped);
 
-            if (lastIdx < values.length - 1) {
-                // We may have terminated the rollout earlier due to reaching terminal state
-                values = Arrays.copyOfRange(values, 0, lastIdx + 1);
+            for (int k = 0; k < repeat; k++) {
+                if (!rolloutStepped[k]) continue;
+                if ((params.evaluate_act == EVALUATE_ACT_DELTA || params.evaluate_act == EVALUATE_ACT_LAST)
+                        && (i != length - 1)) {  // This only needs last state evaluated, speed up execution
+                    values[k][i + 1] = 0;
+                } else {
+                    values[k][i + 1] = evaluateState(rolloutBatch.get(k));
+                }
+                lastIdx[k] = i;
             }
+        }
 
-            // Use both individual values and rollout values to determine reward
-            double thisReward = combineAndNormalize(ind_values, values);
+        fmBudget.use((int) (rolloutPolicy.getFMCalls() - policyCalls));
 
-            reward += thisReward;
+        double reward = 0;
+
+        // We average over multiple repetitions of rollouts
+        for (int k = 0; k < repeat; k++) {
+            double[] rolloutValues = values[k];
+            if (lastIdx[k] < length - 1) {
+                // We terminated the rollout earlier due to reaching terminal state
+                rolloutValues[lastIdx[k] + 1] = evaluateState(rolloutBatch.get(k));
+                rolloutValues = Arrays.copyOfRange(rolloutValues, 0, lastIdx[k] + 2);
+            }
+
+            // Use both individual values and rollout values to determine reward
+            reward += combineAndNormalize(ind_values, rolloutValues);
         }
 
         // Returned value is average over all rollout repetitions
-        reward /= params.mc_rollouts_repeat;
+        reward /= repeat;
 
         return reward;
     }
@@ -421,49 +568,21 @@ public class GameInterface {
             if (playerID == i) {
                 actionsAll[i] = action;
             } else {
-                actionsAll[i] = opponentModel(gs);
+                actionsAll[i] = opponentModel.act(gs, i, random);
             }
         }
 
         gs.next(actionsAll);
     }
 
-    /**
-     * Retrieves the action of an opponent.
-     * @param gs - current game state.
-     * @return action for opponent.
-     */
-    private Types.ACTIONS opponentModel(GameState gs) {
-        return _random_model(gs.nActions());
-//        return _stop_model();
-    }
-
-    /**
-     * Random opponent model, returns random action within limits.
-     * @param nActions - number of available actions.
-     * @return - random action.
-     */
-    @SuppressWarnings("unused")
-    private Types.ACTIONS _random_model(int nActions) {
-        int actionIdx = random.nextInt(nActions);
-        return Types.ACTIONS.all().get(actionIdx);
-    }
-
-    /**
-     * Do nothing opponent model.
-     * @return - ACTION_STOP always.
-     */
-    @SuppressWarnings("unused")
-    private Types.ACTIONS _stop_model() {
-        return Types.ACTIONS.ACTION_STOP;
-    }
-
     /**
      * Function to evaluate a state. Calls heuristic with the player ID.
      * @param a_gameState - state to evaluate.
      * @return value of given state.
      */
     public double evaluateState(GameState a_gameState) {
+        if (a_gameState.getMetrics() != null)
+            a_gameState.getMetrics().countHeuristicEvaluation();
         return stateHeuristic.evaluateState(a_gameState);
     }
 
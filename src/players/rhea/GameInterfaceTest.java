@@ -0,0 +1,150 @@
+package players.rhea;
+
+import core.GameState;
+import org.junit.jupiter.api.Test;
+import players.opponents.OpponentModel;
+import players.rhea.evo.Individual;
+import players.rhea.utils.RHEAParams;
+import players.rollout.RolloutPolicy;
+import utils.ElapsedCpuTimer;
+import utils.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static players.rhea.utils.Constants.*;
+
+class GameInterfaceTest {
+
+    private static final int[] EVALUATE_ACTS = new int[]{EVALUATE_ACT_LAST, EVALUATE_ACT_DELTA, EVALUATE_ACT_AVG,
+            EVALUATE_ACT_MIN, EVALUATE_ACT_MAX, EVALUATE_ACT_DISCOUNT};
+
+    @Test
+    void prefixCacheGivesSameValues() {
+        for (int heuristic : new int[]{CUSTOM_HEURISTIC, ADVANCED_HEURISTIC}) {
+            for (int evaluateAct : EVALUATE_ACTS) {
+                for (long seed = 0; seed < 4; seed++) {
+                    GameState root = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA).copy(0);
+                    GameInterface plain = newInterface(root, params(heuristic, evaluateAct, 0));
+                    // Half the runs with a trie that fills up
+                    GameInterface cached = newInterface(root,
+                            params(heuristic, evaluateAct, seed % 2 == 0 ? 2000 : 10));
+
+                    // Individuals sharing prefixes of all lengths, each evaluated more than once, so rollouts
+                    // resume at every depth.
+                    ArrayList<Individual> individuals = sharingPrefixes(new Random(seed), root.nActions(), 40);
+                    for (int round = 0; round < 2; round++) {
+                        for (int k = 0; k < individuals.size(); k++) {
+                            String msg = "Heuristic " + heuristic + ", evaluate_act " + evaluateAct + ", seed "
+                                    + seed + ", individual " + k + ", round " + round;
+                            double expected = plain.evaluate(individuals.get(k).copy(), null, EVALUATE_UPDATE_RAW);
+                            double actual = cached.evaluate(individuals.get(k).copy(), null, EVALUATE_UPDATE_RAW);
+                            assertEquals(expected, actual, 1e-12, msg);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void prefixCacheOnlyChargesActionsSimulated() {
+        GameState root = new GameState(1, Types.BOARD_SIZE, Types.GAME_MODE.FFA).copy(0);
+        GameInterface gi = newInterface(root, params(CUSTOM_HEURISTIC, EVALUATE_ACT_AVG, 2000));
+        int length = new RHEAParams().individual_length;
+
+        // No bombs, so no state reached is terminal.
+        int[] actions = new int[length];
+        Random rnd = new Random(3);
+        for (int i = 0; i < length; i++) {
+            actions[i] = rnd.nextInt(Types.ACTIONS.ACTION_BOMB.getKey());
+        }
+        assertEquals(length, used(gi, actions));
+        // The second time the prefixes get snapshots, so all actions are still simulated.
+        assertEquals(length, used(gi, actions));
+        // Only the last action isn't cached.
+        assertEquals(1, used(gi, actions));
+
+        // An individual diverging after k actions resumes from the snapshot reached by the first k.
+        for (int k : new int[]{0, 4, length - 1}) {
+            int[] other = Arrays.copyOf(actions, length);
+            other[k] = (actions[k] + 1) % Types.ACTIONS.ACTION_BOMB.getKey();
+            assertEquals(length - k, used(gi, other), "Diverging at " + k);
+        }
+    }
+
+    @Test
+    void rolloutPolicyCallsAreCharged() {
+        GameState root = new GameState(2, Types.BOARD_SIZE, Types.GAME_MODE.FFA).copy(0);
+        int[] actions = new int[new RHEAParams().individual_length];
+        int rolloutLength = 6;
+        for (int policy : new int[]{RolloutPolicy.SAFE_RANDOM, RolloutPolicy.EPSILON_GREEDY}) {
+            RHEAParams params = params(CUSTOM_HEURISTIC, EVALUATE_ACT_LAST, 0);
+            params.mc_rollouts = true;
+            params.mc_rollouts_length = rolloutLength;
+            params.rollout_policy = policy;
+            params.rollout_epsilon = 0;
+            int used = used(newInterface(root, params), actions);
+            if (policy == RolloutPolicy.SAFE_RANDOM) {
+                assertEquals(actions.length + rolloutLength, used);
+            } else {
+                // Every rollout step also looks one step ahead for each safe action.
+                assertTrue(used > actions.length + rolloutLength, "Policy FM calls not charged: " + used);
+            }
+        }
+    }
+
+    /**
+     * @param cacheSize - size of the prefix cache, or 0 for no cache.
+     * @return params of a player evaluating individuals against opponents that don't move, with an FM budget.
+     */
+    private static RHEAParams params(int heuristic, int evaluateAct, int cacheSize) {
+        RHEAParams params = new RHEAParams();
+        params.heurisic_type = heuristic;
+        params.evaluate_act = evaluateAct;
+        params.opponent_model = OpponentModel.STOP;
+        params.budget_type = FM_BUDGET;
+        params.prefix_cache = cacheSize > 0;
+        params.prefix_cache_size = cacheSize;
+        return params;
+    }
+
+    private static GameInterface newInterface(GameState root, RHEAParams params) {
+        GameInterface gi = new GameInterface(params, new Random(0), 0);
+        gi.initTick(root.copy(), new ElapsedCpuTimer());
+        return gi;
+    }
+
+    /**
+     * @return individuals made of a few random ones, and of copies of them with the actions after a random index
+     * drawn again. No bombs are placed: copies of states forget who owns a bomb (see PrefixCache), so the ammo of
+     * bombs placed before a snapshot would not be given back in rollouts resumed from it.
+     */
+    private static ArrayList<Individual> sharingPrefixes(Random rnd, int nActions, int n) {
+        int length = new RHEAParams().individual_length;
+        ArrayList<Individual> individuals = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            int[] actions = k < 4 ? new int[length] : individuals.get(rnd.nextInt(4)).get_actions().clone();
+            for (int i = k < 4 ? 0 : rnd.nextInt(length); i < length; i++) {
+                actions[i] = rnd.nextInt(Types.ACTIONS.ACTION_BOMB.getKey());
+            }
+            Individual ind = new Individual(length, rnd, nActions);
+            ind.set_actions(actions);
+            individuals.add(ind);
+        }
+        return individuals;
+    }
+
+    /**
+     * @return FM calls used to evaluate an individual with the given actions.
+     */
+    private static int used(GameInterface gi, int[] actions) {
+        Individual ind = new Individual(actions.length, new Random(0), Types.NUM_ACTIONS);
+        ind.set_actions(actions.clone());
+        int before = gi.getFMBudget().getUsed();
+        gi.evaluate(ind, null, EVALUATE_UPDATE_RAW);
+        return gi.getFMBudget().getUsed() - before;
+    }
+}
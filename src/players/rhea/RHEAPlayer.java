@@ -49,11 +49,14 @@ public class RHEAPlayer extends ParameterizedPlayer {
     public Types.ACTIONS act(GameState gs) {
         ElapsedCpuTimer elapsedTimer = null;
         if (params.budget_type == TIME_BUDGET) {
-            elapsedTimer = new ElapsedCpuTimer();
+            // This thread waits while individuals are evaluated in parallel, so it needs wall-clock time then.
+            elapsedTimer = new ElapsedCpuTimer(params.num_threads > 1);
             elapsedTimer.setMaxTimeMillis(params.time_budget);
         }
         setup(gs, elapsedTimer);
-        return gInterface.translate(player.getAction(elapsedTimer, gs.nActions()));
+        int action = player.getAction(elapsedTimer, gs.nActions());
+        getMetrics().addIterations(player.getLastIterations());
+        return gInterface.translate(action);
     }
 
     @Override
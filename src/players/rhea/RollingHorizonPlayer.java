@@ -18,6 +18,9 @@ class RollingHorizonPlayer {
 
     private Evolution ea;
 
+    // Iterations of the evolution in the last call to getAction()
+    private int lastIterations;
+
 
     RollingHorizonPlayer(Random randomGenerator, RHEAParams params, GameInterface gInterface) {
         this.gameInterface = gInterface;
@@ -38,10 +41,12 @@ class RollingHorizonPlayer {
 //        System.out.println();
         // Find best next action within the allowed budget
         int action = max_actions;
+        lastIterations = 0;
         while (gameInterface.budget(elapsedTimer, params.iteration_budget - ea.getNIterations(),
                 null)) {
             action = ea.iteration();
             gameInterface.endIteration(elapsedTimer, null);
+            lastIterations++;
         }
 //        System.out.println(Arrays.toString(ea.population));
 
@@ -73,6 +78,10 @@ class RollingHorizonPlayer {
         return action;
     }
 
+    int getLastIterations() {
+        return lastIterations;
+    }
+
     private int getBestAction(int idx) {
         return ea.getBestAction(idx);
     }
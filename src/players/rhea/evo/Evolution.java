@@ -5,6 +5,8 @@ import players.rhea.utils.RHEAParams;
 import players.rhea.utils.Utilities;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static players.rhea.utils.Constants.*;
 
@@ -21,6 +23,9 @@ public class Evolution {
 
     private GameInterface gInterface;
 
+    // Shared by all players evaluating individuals in parallel.
+    private static ForkJoinPool evaluationPool;
+
     public Evolution(RHEAParams params, Random random, GameInterface gInterface) {
         this.params = params;
         this.random = random;
@@ -88,9 +93,14 @@ public class Evolution {
             population[i] = new Individual(params.individual_length, random, max_actions);
             if (params.init_type == INIT_RANDOM) {
                 population[i].randomize();
-                gInterface.evaluate(population[i], null, params.evaluate_update);
+                if (!parallel(population)) {
+                    gInterface.evaluate(population[i], null, params.evaluate_update);
+                }
             }
         }
+        if (params.init_type == INIT_RANDOM && parallel(population)) {
+            evaluateParallel(population, params.evaluate_update);
+        }
     }
 
     private Individual select(Individual[] population) {
@@ -125,13 +135,22 @@ public class Evolution {
             } else {
                 offspring[i] = crossover(population);
             }
-            if (params.genetic_operator != CROSSOVER_ONLY) {
+            if (parallel(offspring)) {
+                // Mutate now, offspring are evaluated all together below
+                if (params.genetic_operator != CROSSOVER_ONLY) {
+                    mutationClass.findGenesToMutate();
+                    mutationClass.mutate(offspring[i]);
+                }
+            } else if (params.genetic_operator != CROSSOVER_ONLY) {
                 mutationClass.findGenesToMutate();
                 gInterface.evaluate(offspring[i], mutationClass, params.evaluate_update);
             } else {
                 gInterface.evaluate(offspring[i], null, params.evaluate_update);
             }
         }
+        if (parallel(offspring)) {
+            evaluateParallel(offspring, params.evaluate_update);
+        }
         return offspring;
     }
 
@@ -154,8 +173,12 @@ public class Evolution {
         if (params.keep_parents_next_gen) {
             // Reevaluate current population
             if (params.reevaluate_pop) {
-                for (Individual i : population) {
-                    gInterface.evaluate(i, null, params.evaluate_update);
+                if (parallel(population)) {
+                    evaluateParallel(population, params.evaluate_update);
+                } else {
+                    for (Individual i : population) {
+                        gInterface.evaluate(i, null, params.evaluate_update);
+                    }
                 }
             }
             // If we should keep best individuals of parents + offspring, then combine array
@@ -184,8 +207,47 @@ public class Evolution {
                 population[i].set_action(j - 1, population[i].get_action(j));
             }
             population[i].set_action(params.individual_length - 1, random.nextInt(max_actions));
-            gInterface.evaluate(population[i], null, EVALUATE_UPDATE_AVERAGE);
+            if (!parallel(population)) {
+                gInterface.evaluate(population[i], null, EVALUATE_UPDATE_AVERAGE);
+            }
 //            population[i].discount_value(params.shift_discount);
         }
+        if (parallel(population)) {
+            evaluateParallel(population, EVALUATE_UPDATE_AVERAGE);
+        }
+    }
+
+    /**
+     * @return true if the given individuals should be evaluated in parallel.
+     */
+    private boolean parallel(Individual[] individuals) {
+        return individuals.length > 1 && gInterface.getWorkers() != null;
+    }
+
+    /**
+     * Evaluates individuals at the same time, spread over the interfaces of the parallel workers. Individuals are
+     * evaluated without mutation, any mutation should be applied before.
+     */
+    private void evaluateParallel(Individual[] individuals, int evaluation_update) {
+        GameInterface[] workers = gInterface.getWorkers();
+        int nTasks = Math.min(workers.length, individuals.length);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[nTasks];
+        for (int w = 0; w < nTasks; w++) {
+            GameInterface worker = workers[w];
+            int first = w;
+            tasks[w] = ForkJoinTask.adapt(() -> {
+                for (int i = first; i < individuals.length; i += nTasks) {
+                    worker.evaluate(individuals[i], null, evaluation_update);
+                }
+            });
+        }
+        getEvaluationPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    private static synchronized ForkJoinPool getEvaluationPool() {
+        if (evaluationPool == null) {
+            evaluationPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return evaluationPool;
     }
 }
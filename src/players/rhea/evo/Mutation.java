@@ -90,6 +90,17 @@ public class Mutation {
         return genesToMutate;
     }
 
+    /**
+     * Mutates all genes found by the last call to findGenesToMutate().
+     */
+    public void mutate(Individual ind) {
+        for (int i = 0; i < ind.get_length(); i++) {
+            if (genesToMutate.contains(i)) {
+                mutateGeneToNewValue(ind, i);
+            }
+        }
+    }
+
     /**
      * Changes given gene to new random value in range [0, max_value). New gene will NOT be the same as current.
      * @param idx - index of gene to mutate
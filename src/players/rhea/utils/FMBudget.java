@@ -1,43 +1,47 @@
 package players.rhea.utils;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class FMBudget {
-    private int remainingBudget;
+    // Atomic, as individuals evaluated in parallel all use the budget of the same player.
+    private final AtomicInteger remainingBudget;
     private int maxBudget;
     private int averageUsage;
     private int nIters;
 
     public FMBudget(int maxBudget) {
         this.maxBudget = maxBudget;
-        this.remainingBudget = maxBudget;
+        this.remainingBudget = new AtomicInteger(maxBudget);
         averageUsage = 0;
         nIters = 0;
     }
 
     public void reset() {
-        remainingBudget = maxBudget;
+        remainingBudget.set(maxBudget);
     }
 
     public int remaining() {
-        return remainingBudget;
+        return remainingBudget.get();
     }
 
     public void use() {
-        remainingBudget--;
+        remainingBudget.decrementAndGet();
     }
 
     public void use(int amount) {
-        remainingBudget -= amount;
+        remainingBudget.addAndGet(-amount);
     }
 
-    public int getUsed() { return maxBudget - remainingBudget; }
+    public int getUsed() { return maxBudget - remainingBudget.get(); }
 
     /**
      * Calculates average number of FM calls spent per iteration.
      * @return - true if enough budget is left for another iteration, false otherwise.
      */
     public boolean enoughBudgetIteration() {
-        if (nIters == 0) averageUsage = 0; else averageUsage = (maxBudget - remainingBudget) / nIters;
-        return remainingBudget >= averageUsage;
+        int remaining = remainingBudget.get();
+        if (nIters == 0) averageUsage = 0; else averageUsage = (maxBudget - remaining) / nIters;
+        return remaining >= averageUsage;
     }
 
     /**
@@ -0,0 +1,112 @@
+package players.rhea.utils;
+
+import core.GameState;
+
+import java.util.Arrays;
+
+/**
+ * Trie of action prefixes rolled through from the root state of the current tick, so rollouts of individuals sharing
+ * a prefix can resume from a snapshot of the state it reaches instead of the root. Copying a state costs about as
+ * much as advancing it, so a prefix only gets a snapshot the second time it is rolled through. Opponent actions are
+ * sampled once per snapshot, so individuals resuming from it are compared against the same opponent moves up to
+ * where they diverge. Snapshots are copies, so like all copies of a state they don't know who owns the bombs placed
+ * along the prefix: their ammo isn't given back when they explode in rollouts resumed from the snapshot. The trie is
+ * bounded: once full, it keeps the prefixes it has and stops growing until reset.
+ */
+public class PrefixCache {
+
+    public static class Node {
+        private GameState state;
+        private double value;
+        private Node[] children;
+
+        private Node(GameState state, double value) {
+            this.state = state;
+            this.value = value;
+        }
+
+        /**
+         * @return node reached by playing the given action after this node's prefix, or null if not in the trie.
+         */
+        public Node child(int action) {
+            if (children == null || action >= children.length)
+                return null;
+            return children[action];
+        }
+
+        /**
+         * @return state reached after this node's prefix, or null if there's no snapshot yet. Shared, must be
+         * copied before rolling it forward.
+         */
+        public GameState getState() {
+            return state;
+        }
+
+        /**
+         * @return value recorded for the state of this node when the snapshot was taken.
+         */
+        public double getValue() {
+            return value;
+        }
+    }
+
+    private final int capacity;
+    private Node root;
+    private int size;
+
+    /**
+     * @param capacity - maximum number of prefixes kept.
+     */
+    public PrefixCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Removes all prefixes and sets a new root (empty prefix).
+     * @param rootState - state at the root, not copied.
+     * @param rootValue - value of the root state.
+     */
+    public void reset(GameState rootState, double rootValue) {
+        root = new Node(rootState, rootValue);
+        size = 0;
+    }
+
+    public Node root() {
+        return root;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Records that a rollout played an action after a prefix in the trie.
+     * @param parent - node of the prefix.
+     * @param action - action played.
+     * @param state - state reached, copied if this is the second time the new prefix is rolled through.
+     * @param value - value of the state reached.
+     * @return the node of the new prefix, or null if the trie is full.
+     */
+    public Node visit(Node parent, int action, GameState state, double value) {
+        Node child = parent.child(action);
+        if (child != null) {
+            if (child.state == null) {
+                child.state = state.copy();
+                child.value = value;
+            }
+            return child;
+        }
+        if (size >= capacity)
+            return null;
+
+        if (parent.children == null) {
+            parent.children = new Node[action + 1];
+        } else if (action >= parent.children.length) {
+            parent.children = Arrays.copyOf(parent.children, action + 1);
+        }
+        child = new Node(null, value);
+        parent.children[action] = child;
+        size++;
+        return child;
+    }
+}
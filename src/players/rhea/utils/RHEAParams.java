@@ -1,6 +1,8 @@
 package players.rhea.utils;
 
+import players.opponents.OpponentModel;
 import players.optimisers.ParameterSet;
+import players.rollout.RolloutPolicy;
 import utils.Pair;
 
 import java.util.*;
@@ -22,6 +24,11 @@ public class RHEAParams implements ParameterSet {
     // Efficiency settings
     public int frame_skip = 0;
     public int frame_skip_type = SKIP_SEQUENCE;
+    public boolean prefix_cache = false;  // Resume rollouts from states cached for action prefixes already played
+    public int prefix_cache_size = 2000;  // Max states cached per tick
+    // Individuals evaluated at the same time in a batch (offspring, population re-evaluation), each thread with its
+    // own random generator, heuristic and copy of the root state. Only used with more than 1 individual per batch.
+    public int num_threads = 1;
 
     // EA parameters
     public int population_size = 1;
@@ -49,6 +56,11 @@ public class RHEAParams implements ParameterSet {
     public boolean mc_rollouts = false;
     private double mc_rollouts_length_perc = 0.5;
     public int mc_rollouts_repeat = 1;
+    public int rollout_policy = RolloutPolicy.RANDOM;  // Policy of the player in MC rollouts
+    public double rollout_epsilon = 0.2;  // Chance of a safe random action with RolloutPolicy.EPSILON_GREEDY
+
+    // Model of the other agents in all simulated ticks, one of the OpponentModel types
+    public int opponent_model = OpponentModel.RANDOM;
 
     // Budget restrictions
     public int budget_type = ITERATION_BUDGET;//FM_BUDGET;
@@ -104,6 +116,10 @@ public class RHEAParams implements ParameterSet {
         parameterValues.put("mc_rollouts", new Boolean[]{false, true});
         parameterValues.put("mc_rollouts_length_perc", new Double[]{0.25, 0.5, 0.75, 1.0, 2.0});
         parameterValues.put("mc_rollouts_repeat", new Integer[]{1, 5, 10});
+        parameterValues.put("rollout_policy", new Integer[]{RolloutPolicy.RANDOM, RolloutPolicy.SAFE_RANDOM,
+                RolloutPolicy.EPSILON_GREEDY, RolloutPolicy.SIMPLE});
+        parameterValues.put("opponent_model", new Integer[]{OpponentModel.RANDOM, OpponentModel.STOP,
+                OpponentModel.FREQUENCY, OpponentModel.SIMPLE});
 
         return parameterValues;
     }
@@ -134,6 +150,7 @@ public class RHEAParams implements ParameterSet {
                 children = new ArrayList<>();
                 children.add("mc_rollouts_length_perc");
                 children.add("mc_rollouts_repeat");
+                children.add("rollout_policy");
                 values.put(true, children);
                 break;
             case "evaluate_act":
@@ -218,6 +235,9 @@ public class RHEAParams implements ParameterSet {
             case "mc_rollouts_repeat":
                 values.add(true);
                 return new Pair<>("mc_rollouts", values);
+            case "rollout_policy":
+                values.add(true);
+                return new Pair<>("mc_rollouts", values);
             case "evaluate_discount":
                 values.add(EVALUATE_ACT_DISCOUNT);
                 return new Pair<>("evaluate_act", values);
@@ -283,6 +303,9 @@ public class RHEAParams implements ParameterSet {
 
             case "frame_skip": frame_skip = (int) value; break;
             case "frame_skip_type": frame_skip_type = (int) value; break;
+            case "prefix_cache": prefix_cache = (boolean) value; break;
+            case "prefix_cache_size": prefix_cache_size = (int) value; break;
+            case "num_threads": num_threads = (int) value; break;
 
             case "population_size": population_size = (int) value; break;
             case "individual_length": individual_length = (int) value; break;
@@ -305,6 +328,9 @@ public class RHEAParams implements ParameterSet {
             case "mc_rollouts": mc_rollouts = (boolean) value; break;
             case "mc_rollouts_length_perc": mc_rollouts_length_perc = (double) value; break;
             case "mc_rollouts_repeat": mc_rollouts_repeat = (int) value; break;
+            case "rollout_policy": rollout_policy = (int) value; break;
+            case "rollout_epsilon": rollout_epsilon = (double) value; break;
+            case "opponent_model": opponent_model = (int) value; break;
         }
         updateDependentVariables();
     }
@@ -327,6 +353,9 @@ public class RHEAParams implements ParameterSet {
 
             case "frame_skip": return frame_skip;
             case "frame_skip_type": return frame_skip_type;
+            case "prefix_cache": return prefix_cache;
+            case "prefix_cache_size": return prefix_cache_size;
+            case "num_threads": return num_threads;
 
             case "population_size": return population_size;
             case "individual_length": return individual_length;
@@ -349,6 +378,9 @@ public class RHEAParams implements ParameterSet {
             case "mc_rollouts": return mc_rollouts;
             case "mc_rollouts_length_perc": return mc_rollouts_length_perc;
             case "mc_rollouts_repeat": return mc_rollouts_repeat;
+            case "rollout_policy": return rollout_policy;
+            case "rollout_epsilon": return rollout_epsilon;
+            case "opponent_model": return opponent_model;
         }
         return null;
     }
@@ -391,6 +423,9 @@ public class RHEAParams implements ParameterSet {
         paramList.add("mc_rollouts");
         paramList.add("mc_rollouts_length_perc");
         paramList.add("mc_rollouts_repeat");
+        paramList.add("rollout_policy");
+
+        paramList.add("opponent_model");
 
         return paramList;
     }
@@ -423,6 +458,8 @@ public class RHEAParams implements ParameterSet {
         names.put("frame_skip_type", new String[]{"SKIP_REPEAT", "SKIP_NULL", "SKIP_RANDOM", "SKIP_SEQUENCE"});
         names.put("heuristic_type", new String[]{"WIN_SCORE_HEURISTIC", "PLAYER_COUNT_HEURISTIC", "CUSTOM_HEURISTIC",
                 "ADVANCED_HEURISTIC"});
+        names.put("rollout_policy", RolloutPolicy.names());
+        names.put("opponent_model", OpponentModel.names());
 //        names.put("draw_code", new String[]{"DRAW_EXPLORATION", "DRAW_THINKING", "DRAW_ALL"});
         return names;
     }
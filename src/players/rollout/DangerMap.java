@@ -0,0 +1,106 @@
+package players.rollout;
+
+import core.GameState;
+import utils.FlameMask;
+import utils.Types;
+import utils.Vector2d;
+
+/**
+ * Table of the actions of a player that don't walk into flames next tick: neither flames on the board now nor those
+ * of bombs about to explode (GameState.getFlameMask()). Moves into blocked cells keep the player in place, so they
+ * are as safe as staying. Updated once per rollout step, without copying the state.
+ */
+public class DangerMap {
+
+    private static final Types.ACTIONS[] ACTIONS = Types.ACTIONS.values();
+
+    private final boolean[] safe = new boolean[ACTIONS.length];
+    private final Types.ACTIONS[] safeActions = new Types.ACTIONS[ACTIONS.length];
+    private int nSafe;
+    private boolean inDanger;
+
+    /**
+     * Computes the safe actions of the player of a state.
+     */
+    public void update(GameState state) {
+        nSafe = 0;
+        inDanger = false;
+        Vector2d pos = state.getPosition();
+        if (pos == null) {
+            for (Types.ACTIONS a : ACTIONS) {
+                safe[a.getKey()] = true;
+                safeActions[nSafe++] = a;
+            }
+            return;
+        }
+
+        FlameMask flames = state.getFlameMask();
+        inDanger = flames.isUpcomingFlame(pos.x, pos.y);
+        int mask = safeActions(state.getBoard(), flames, pos.x, pos.y, state.canKick());
+        for (Types.ACTIONS a : ACTIONS) {
+            boolean isSafe = (mask & (1 << a.getKey())) != 0;
+            safe[a.getKey()] = isSafe;
+            if (isSafe) {
+                safeActions[nSafe++] = a;
+            }
+        }
+    }
+
+    /**
+     * Finds the safe actions of an agent anywhere on the board, without keeping any state.
+     * @param board - board of the state.
+     * @param flames - flame mask of the state.
+     * @param x - column of the agent.
+     * @param y - row of the agent.
+     * @param canKick - whether the agent can kick bombs, so move into their cells.
+     * @return bit set of the keys of the safe actions (bit a.getKey() is set if a is safe).
+     */
+    public static int safeActions(Types.TILETYPE[][] board, FlameMask flames, int x, int y, boolean canKick) {
+        int size = board.length;
+        boolean inDanger = flames.isUpcomingFlame(x, y);
+        int mask = 0;
+        for (Types.ACTIONS a : ACTIONS) {
+            int nx = x + a.getDirection().x();
+            int ny = y + a.getDirection().y();
+            boolean isSafe;
+            if (nx < 0 || ny < 0 || nx >= size || ny >= size) {
+                isSafe = !inDanger;
+            } else if (board[ny][nx] == Types.TILETYPE.FLAMES) {
+                isSafe = false;
+            } else if (!FlameMask.isPassable(board[ny][nx]) || (board[ny][nx] == Types.TILETYPE.BOMB && !canKick)) {
+                isSafe = !inDanger;
+            } else {
+                isSafe = !flames.isUpcomingFlame(nx, ny);
+            }
+            if (isSafe) {
+                mask |= 1 << a.getKey();
+            }
+        }
+        return mask;
+    }
+
+    public boolean isSafe(Types.ACTIONS action) {
+        return safe[action.getKey()];
+    }
+
+    /**
+     * @return number of safe actions.
+     */
+    public int countSafe() {
+        return nSafe;
+    }
+
+    /**
+     * @return the i-th safe action, in the order of Types.ACTIONS.
+     */
+    public Types.ACTIONS getSafe(int i) {
+        return safeActions[i];
+    }
+
+    /**
+     * @return true if the player's cell will be on fire next tick.
+     */
+    public boolean inDanger() {
+        return inDanger;
+    }
+}
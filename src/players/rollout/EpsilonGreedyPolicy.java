@@ -0,0 +1,67 @@
+package players.rollout;
+
+import core.GameState;
+import players.heuristics.StateHeuristic;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * With probability epsilon a safe random action, otherwise the safe action whose next state the heuristic values
+ * the most, with the other players standing still. The next states are rolled on a scratch state reused across
+ * calls, so this costs one forward model call per safe action but no allocations. These calls are counted by
+ * getFMCalls().
+ */
+public class EpsilonGreedyPolicy implements RolloutPolicy {
+
+    private final StateHeuristic heuristic;
+    private final double epsilon;
+    private final DangerMap danger = new DangerMap();
+    private final Types.ACTIONS[] actionsAll = new Types.ACTIONS[Types.NUM_PLAYERS];
+    private GameState scratch;
+    private long fmCalls;
+
+    public EpsilonGreedyPolicy(StateHeuristic heuristic, double epsilon) {
+        this.heuristic = heuristic;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public Types.ACTIONS act(GameState state, Random rnd) {
+        danger.update(state);
+        if (heuristic == null || danger.countSafe() <= 1 || rnd.nextDouble() < epsilon)
+            return SafeRandomPolicy.safeRandom(danger, state, rnd);
+
+        int playerId = state.getPlayerId() - Types.TILETYPE.AGENT0.getKey();
+        Types.ACTIONS best = null;
+        double bestValue = -Double.MAX_VALUE;
+        for (int i = 0; i < danger.countSafe(); i++) {
+            Types.ACTIONS act = danger.getSafe(i);
+            if (scratch == null) {
+                scratch = state.copy();
+            } else {
+                state.copyInto(scratch);
+            }
+            for (int p = 0; p < actionsAll.length; p++) {
+                actionsAll[p] = p == playerId ? act : Types.ACTIONS.ACTION_STOP;
+            }
+            scratch.next(actionsAll);
+            fmCalls++;
+
+            // Random tie-breaking, as in the tree policies
+            if (scratch.getMetrics() != null)
+                scratch.getMetrics().countHeuristicEvaluation();
+            double value = heuristic.evaluateState(scratch) + rnd.nextDouble() * 1e-6;
+            if (value > bestValue) {
+                bestValue = value;
+                best = act;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public long getFMCalls() {
+        return fmCalls;
+    }
+}
@@ -0,0 +1,19 @@
+package players.rollout;
+
+import core.GameState;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * Uniformly random actions.
+ */
+public class RandomPolicy implements RolloutPolicy {
+
+    private static final Types.ACTIONS[] ACTIONS = Types.ACTIONS.values();
+
+    @Override
+    public Types.ACTIONS act(GameState state, Random rnd) {
+        return ACTIONS[rnd.nextInt(state.nActions())];
+    }
+}
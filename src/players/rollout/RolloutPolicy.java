@@ -0,0 +1,58 @@
+package players.rollout;
+
+import core.GameState;
+import players.heuristics.StateHeuristic;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * Picks the actions of the searching player in the rollouts of a search (MCTS, RHEA random rollouts). A policy may
+ * keep scratch data between calls, so each search thread needs its own instance.
+ */
+public interface RolloutPolicy {
+
+    // Policy types, for the params of search players.
+    int RANDOM = 0;
+    int SAFE_RANDOM = 1;
+    int EPSILON_GREEDY = 2;
+    int SIMPLE = 3;
+
+    /**
+     * @param state - rollout state, its player is the one acting. Must not be modified.
+     * @param rnd - random generator of the search.
+     * @return action for the player of the state.
+     */
+    Types.ACTIONS act(GameState state, Random rnd);
+
+    /**
+     * @return forward model calls made by act() so far, to be charged to searches with a budget of forward model
+     * calls on top of the rollout steps. Policies that don't look ahead make none.
+     */
+    default long getFMCalls() {
+        return 0;
+    }
+
+    /**
+     * Creates a rollout policy.
+     * @param type - one of the policy types.
+     * @param heuristic - heuristic of the search, used by EPSILON_GREEDY.
+     * @param epsilon - probability of a safe random action with EPSILON_GREEDY.
+     */
+    static RolloutPolicy create(int type, StateHeuristic heuristic, double epsilon) {
+        switch (type) {
+            case RANDOM: return new RandomPolicy();
+            case EPSILON_GREEDY: return new EpsilonGreedyPolicy(heuristic, epsilon);
+            case SIMPLE: return new SimplePolicy();
+            default:
+            case SAFE_RANDOM: return new SafeRandomPolicy();
+        }
+    }
+
+    /**
+     * Names of the policy types, for ParameterSet.constantNames().
+     */
+    static String[] names() {
+        return new String[]{"RANDOM", "SAFE_RANDOM", "EPSILON_GREEDY", "SIMPLE"};
+    }
+}
@@ -0,0 +1,31 @@
+package players.rollout;
+
+import core.GameState;
+import utils.Types;
+
+import java.util.Random;
+
+/**
+ * Random actions among those that don't walk into flames next tick, or any action if there are none.
+ */
+public class SafeRandomPolicy implements RolloutPolicy {
+
+    private static final Types.ACTIONS[] ACTIONS = Types.ACTIONS.values();
+
+    private final DangerMap danger = new DangerMap();
+
+    @Override
+    public Types.ACTIONS act(GameState state, Random rnd) {
+        danger.update(state);
+        return safeRandom(danger, state, rnd);
+    }
+
+    /**
+     * @return a random safe action from an updated danger map, or a random action if there are none.
+     */
+    static Types.ACTIONS safeRandom(DangerMap danger, GameState state, Random rnd) {
+        if (danger.countSafe() == 0)
+            return ACTIONS[rnd.nextInt(state.nActions())];
+        return danger.getSafe(rnd.nextInt(danger.countSafe()));
+    }
+}
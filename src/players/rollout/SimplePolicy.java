@@ -0,0 +1,67 @@
+package players.rollout;
+
+import core.GameState;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.Random;
+
+/**
+ * A cut-down SimplePlayer that needs no path finding: flee to a safe cell when the player's cell is about to burn,
+ * lay a bomb next to wood or an enemy when there is a free cell to step out to, and otherwise move randomly
+ * without walking into flames.
+ */
+public class SimplePolicy implements RolloutPolicy {
+
+    private static final Types.DIRECTIONS[] MOVES = {Types.DIRECTIONS.UP, Types.DIRECTIONS.DOWN,
+            Types.DIRECTIONS.LEFT, Types.DIRECTIONS.RIGHT};
+
+    private final DangerMap danger = new DangerMap();
+    private final Types.ACTIONS[] moves = new Types.ACTIONS[Types.ACTIONS.values().length];
+
+    @Override
+    public Types.ACTIONS act(GameState state, Random rnd) {
+        danger.update(state);
+        Vector2d pos = state.getPosition();
+        if (pos == null || danger.inDanger())
+            return SafeRandomPolicy.safeRandom(danger, state, rnd);
+
+        Types.TILETYPE[][] board = state.getBoard();
+        int size = board.length;
+        if (state.getAmmo() > 0 && board[pos.y][pos.x] != Types.TILETYPE.BOMB) {
+            boolean target = false;
+            boolean exit = false;
+            for (Types.DIRECTIONS d : MOVES) {
+                int x = pos.x + d.x();
+                int y = pos.y + d.y();
+                if (x < 0 || y < 0 || x >= size || y >= size)
+                    continue;
+                Types.TILETYPE tile = board[y][x];
+                if (tile == Types.TILETYPE.WOOD || isEnemy(state, tile))
+                    target = true;
+                else if (tile == Types.TILETYPE.PASSAGE && !state.getFlameMask().isUpcomingFlame(x, y))
+                    exit = true;
+            }
+            if (target && exit)
+                return Types.ACTIONS.ACTION_BOMB;
+        }
+
+        int n = 0;
+        for (int i = 0; i < danger.countSafe(); i++) {
+            Types.ACTIONS act = danger.getSafe(i);
+            if (act != Types.ACTIONS.ACTION_BOMB)
+                moves[n++] = act;
+        }
+        if (n == 0)
+            return SafeRandomPolicy.safeRandom(danger, state, rnd);
+        return moves[rnd.nextInt(n)];
+    }
+
+    private static boolean isEnemy(GameState state, Types.TILETYPE tile) {
+        for (Types.TILETYPE enemy : state.getEnemies()) {
+            if (enemy == tile)
+                return true;
+        }
+        return false;
+    }
+}
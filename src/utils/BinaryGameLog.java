@@ -0,0 +1,185 @@
+package utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact binary format for game logs, written tick by tick while the game is played.
+ *
+ * A log starts with a header: the magic bytes "PGL1", then the seed (zig-zag varint), board size, game mode ordinal
+ * and number of players (varints). Each tick follows as one varint holding the actions of all players, 3 bits
+ * each (action key), player 0 in the lowest bits. With 4 players a tick takes 1 or 2 bytes.
+ */
+public class BinaryGameLog {
+
+    public final static String BINARY_GAMELOGS_PATH = "res/gamelogs/bin/";
+    public final static String EXTENSION = ".pgl";
+
+    private final static byte[] MAGIC = new byte[]{'P', 'G', 'L', '1'};
+    private final static int BITS_PER_ACTION = 3;
+    private final static int ACTION_MASK = (1 << BITS_PER_ACTION) - 1;
+
+    /**
+     * Appends the actions of a game to a log file as they're played.
+     */
+    public static class Writer implements Closeable {
+        private final OutputStream out;
+        private final int numPlayers;
+
+        /**
+         * Creates the log file (and its folder) and writes the header.
+         */
+        public Writer(File file, long seed, int size, Types.GAME_MODE gameMode, int numPlayers) throws IOException {
+            File folder = file.getAbsoluteFile().getParentFile();
+            if (folder != null && !folder.exists() && !folder.mkdirs() && !folder.exists()) {
+                throw new IOException("Folder " + folder + " does not exist nor could be created.");
+            }
+            this.out = new BufferedOutputStream(new FileOutputStream(file));
+            this.numPlayers = numPlayers;
+            out.write(MAGIC);
+            writeVarLong(out, (seed << 1) ^ (seed >> 63));
+            writeVarLong(out, size);
+            writeVarLong(out, gameMode.ordinal());
+            writeVarLong(out, numPlayers);
+        }
+
+        /**
+         * Appends the actions of one tick.
+         */
+        public void append(Types.ACTIONS[] actions) throws IOException {
+            long packed = 0;
+            for (int i = numPlayers - 1; i >= 0; i--) {
+                packed = packed << BITS_PER_ACTION | actions[i].getKey();
+            }
+            writeVarLong(out, packed);
+        }
+
+        /**
+         * Writes everything appended so far to the file.
+         */
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a whole game log in binary format.
+     */
+    public static void write(GameLog log, File file) throws IOException {
+        int numPlayers = log.getActions().isEmpty() ? Types.NUM_PLAYERS : log.getActions().get(0).length;
+        try (Writer writer = new Writer(file, log.getSeed(), log.getSize(), log.getGameMode(), numPlayers)) {
+            for (Types.ACTIONS[] actions : log.getActions()) {
+                writer.append(actions);
+            }
+        }
+    }
+
+    /**
+     * Reads a binary log, mapping the file in memory.
+     * @param file log file.
+     * @return the game log.
+     * @throws IOException if the file can't be read or is not a binary game log.
+     */
+    public static GameLog read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            byte[] magic = new byte[MAGIC.length];
+            if (buffer.remaining() < magic.length) {
+                throw new IOException("Not a binary game log: " + file);
+            }
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a binary game log: " + file);
+            }
+            long zigzag = readVarLong(buffer);
+            long seed = (zigzag >>> 1) ^ -(zigzag & 1);
+            int size = (int) readVarLong(buffer);
+            Types.GAME_MODE gameMode = Types.GAME_MODE.values()[(int) readVarLong(buffer)];
+            int numPlayers = (int) readVarLong(buffer);
+
+            Types.ACTIONS[] all = Types.ACTIONS.values();
+            GameLog log = new GameLog(seed, size, gameMode);
+            while (buffer.hasRemaining()) {
+                long packed = readVarLong(buffer);
+                Types.ACTIONS[] actions = new Types.ACTIONS[numPlayers];
+                for (int i = 0; i < numPlayers; i++) {
+                    actions[i] = all[(int) (packed & ACTION_MASK)];
+                    packed >>>= BITS_PER_ACTION;
+                }
+                log.addActions(actions);
+            }
+            return log;
+        }
+    }
+
+    /**
+     * Reads the most recently written binary log in a folder or its sub-folders (one per game id).
+     * @return the game log, or null if there's none.
+     */
+    public static GameLog readLast(File folder) {
+        File last = lastLogFile(folder, null);
+        if (last == null)
+            return null;
+        try {
+            return read(last);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static File lastLogFile(File folder, File last) {
+        File[] files = folder.listFiles();
+        if (files == null)
+            return last;
+        for (File f : files) {
+            if (f.isDirectory()) {
+                last = lastLogFile(f, last);
+            } else if (f.getName().endsWith(EXTENSION) && (last == null || f.lastModified() > last.lastModified())) {
+                last = f;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Path of the log of a game: BINARY_GAMELOGS_PATH/gameIdStr/seed_rep_MODE[sizexsize].pgl
+     */
+    public static File logFile(String gameIdStr, long seed, int rep, int size, Types.GAME_MODE gameMode) {
+        return new File(BINARY_GAMELOGS_PATH + gameIdStr + "/" + seed + "_" + rep + "_" + gameMode.name() +
+                "[" + size + "x" + size + "]" + EXTENSION);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Truncated binary game log");
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary game log");
+    }
+}
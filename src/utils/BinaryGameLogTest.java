@@ -0,0 +1,77 @@
+package utils;
+
+import core.Game;
+import core.GameState;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utils.TestUtils.randomActions;
+
+class BinaryGameLogTest {
+
+    @Test
+    void writeAndRead() throws IOException {
+        Random rnd = new Random(1);
+        for (Types.GAME_MODE gameMode : Types.GAME_MODE.values()) {
+            GameLog log = new GameLog(-rnd.nextLong(), Types.BOARD_SIZE, gameMode);
+            for (int t = 0; t < Types.MAX_GAME_TICKS; t++) {
+                log.addActions(randomActions(rnd));
+            }
+
+            File file = tempFile();
+            BinaryGameLog.write(log, file);
+            assertEquals(log, BinaryGameLog.read(file));
+
+            // Header plus at most 2 bytes per tick
+            assertTrue(file.length() <= 4 + 10 + 3 + Types.MAX_GAME_TICKS * 2, "Log size: " + file.length());
+        }
+    }
+
+    @Test
+    void emptyLog() throws IOException {
+        GameLog log = new GameLog(42, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        File file = tempFile();
+        BinaryGameLog.write(log, file);
+        assertEquals(log, BinaryGameLog.read(file));
+    }
+
+    @Test
+    void notABinaryLog() throws IOException {
+        File file = tempFile();
+        java.nio.file.Files.write(file.toPath(), "{}".getBytes());
+        assertThrows(IOException.class, () -> BinaryGameLog.read(file));
+    }
+
+    @Test
+    void replayGame() throws IOException {
+        long seed = 93988;
+        GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        GameLog log = new GameLog(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        Random rnd = new Random(seed);
+        while (!gs.isTerminal()) {
+            Types.ACTIONS[] actions = randomActions(rnd);
+            log.addActions(actions);
+            gs.next(actions);
+        }
+
+        File file = tempFile();
+        BinaryGameLog.write(log, file);
+        Game replay = Game.getReplayGame(file);
+        assertNotNull(replay);
+        replay.run(false);
+
+        assertEquals(gs.getTick(), replay.getGameState().getTick());
+        assertTrue(Arrays.deepEquals(gs.getBoard(), replay.getGameState().getBoard()));
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("gamelog", BinaryGameLog.EXTENSION);
+        file.deleteOnExit();
+        return file;
+    }
+}
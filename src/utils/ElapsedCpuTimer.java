@@ -17,15 +17,25 @@ public class ElapsedCpuTimer {
     private long oldTime;
     private long maxTime;
     private int nIters;
+    private boolean wallClock;
 
     public ElapsedCpuTimer() {
+        this(false);
+    }
+
+    /**
+     * @param wallClock true to measure wall-clock time instead of the CPU time of the current thread. Needed when
+     *                  the timer is shared by several threads, as each would only see its own CPU time.
+     */
+    public ElapsedCpuTimer(boolean wallClock) {
+        this.wallClock = wallClock;
         oldTime = getTime();
         nIters = 0;
     }
 
     public ElapsedCpuTimer copy()
     {
-        ElapsedCpuTimer newCpuTimer = new ElapsedCpuTimer();
+        ElapsedCpuTimer newCpuTimer = new ElapsedCpuTimer(wallClock);
         newCpuTimer.maxTime = this.maxTime;
         newCpuTimer.oldTime = this.oldTime;
         newCpuTimer.bean = this.bean;
@@ -67,6 +77,8 @@ public class ElapsedCpuTimer {
     }
 
     private long getTime() {
+        if (wallClock)
+            return System.nanoTime();
         return getCpuTime();
     }
 
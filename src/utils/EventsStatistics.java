@@ -25,6 +25,10 @@ public class EventsStatistics {
     }
 
     public void saveToTextFile(String gameIdStr, long seed){
+        saveToTextFile(gameIdStr, seed, REP);
+    }
+
+    public void saveToTextFile(String gameIdStr, long seed, int rep){
 
         File file = new File(experimentsFolderPath+ gameIdStr + "/");
         if (! file.exists()){
@@ -35,7 +39,7 @@ public class EventsStatistics {
             throw new Error("Folder specified at " + experimentsFolderPath + " does not exist nor could be created.");
         }
 
-        String path = experimentsFolderPath + gameIdStr + "/" + seed + "_" + REP + "_events.txt";
+        String path = experimentsFolderPath + gameIdStr + "/" + seed + "_" + rep + "_events.txt";
 
         try {
             FileWriter writer = new FileWriter(path, true);
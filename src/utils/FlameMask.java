@@ -0,0 +1,106 @@
+package utils;
+
+import objects.Bomb;
+import objects.GameObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bit mask over the cells of a board (indexed y * size + x) of the flames coming next tick, from bombs about to
+ * explode. An agent is trapped if it stands on an upcoming flame and no cell it can reach in one move (including
+ * staying) is both passable and free of upcoming flames.
+ *
+ * Flames are predicted as in Utils.isStuckAdvanced: only bombs with 1 tick of life left are considered, without
+ * chained explosions. The mask is filled once and can then be queried for any number of agents.
+ */
+public class FlameMask {
+
+    private static final Types.DIRECTIONS[] DIRECTIONS = Types.DIRECTIONS.values();
+
+    private final int size;
+    private final long[] upcoming;
+
+    public FlameMask(int size) {
+        this.size = size;
+        upcoming = new long[(size * size + 63) >>> 6];
+    }
+
+    public void clear() {
+        Arrays.fill(upcoming, 0);
+    }
+
+    /**
+     * Fills the mask from a board and its bombs, clearing it first.
+     */
+    public void fill(Types.TILETYPE[][] board, List<GameObject> bombs) {
+        clear();
+        for (int i = 0; i < bombs.size(); i++) {
+            GameObject b = bombs.get(i);
+            if (b.getLife() == 1) {
+                addBlast(b.getPosition().x, b.getPosition().y, ((Bomb) b).getBlastStrength(), board);
+            }
+        }
+    }
+
+    /**
+     * Marks the cells reached by the blast of a bomb at (x, y): blasts stop at rigid blocks and at the first wooden
+     * block.
+     */
+    public void addBlast(int x, int y, int blastStrength, Types.TILETYPE[][] board) {
+        addFlame(x, y, board);
+        boolean advanceP = true;
+        boolean advanceM = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP) advanceP = addFlame(x + i, y, board);
+            if (advanceM) advanceM = addFlame(x - i, y, board);
+        }
+        advanceP = true;
+        advanceM = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP) advanceP = addFlame(x, y + i, board);
+            if (advanceM) advanceM = addFlame(x, y - i, board);
+        }
+    }
+
+    private boolean addFlame(int x, int y, Types.TILETYPE[][] board) {
+        if (x < 0 || y < 0 || x >= size || y >= size || board[y][x] == Types.TILETYPE.RIGID)
+            return false;
+        setUpcomingFlame(x, y);
+        return board[y][x] != Types.TILETYPE.WOOD;  // Flames should stop at first wooden block
+    }
+
+    public void setUpcomingFlame(int x, int y) {
+        int cell = y * size + x;
+        upcoming[cell >>> 6] |= 1L << cell;
+    }
+
+    public boolean isUpcomingFlame(int x, int y) {
+        int cell = y * size + x;
+        return (upcoming[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    /**
+     * @param board - board the mask was filled from.
+     * @return true if an agent at (x, y) will be caught by the flames of next tick whatever it does.
+     */
+    public boolean isTrapped(int x, int y, Types.TILETYPE[][] board) {
+        if (!isUpcomingFlame(x, y))
+            return false;
+        for (Types.DIRECTIONS d : DIRECTIONS) {
+            int nx = x + d.x();
+            int ny = y + d.y();
+            if (nx >= 0 && ny >= 0 && nx < size && ny < size && isPassable(board[ny][nx]) && !isUpcomingFlame(nx, ny))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if an agent can move into a tile of this type (as in Utils.isPassable).
+     */
+    public static boolean isPassable(Types.TILETYPE type) {
+        return type == Types.TILETYPE.PASSAGE || type == Types.TILETYPE.BOMB || type == Types.TILETYPE.EXTRABOMB
+                || type == Types.TILETYPE.INCRRANGE || type == Types.TILETYPE.KICK;
+    }
+}
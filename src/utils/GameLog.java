@@ -69,6 +69,15 @@ public class GameLog implements Serializable {
     }
 
     public void serializeJSON(String gameIdStr){
+        serializeJSON(gameIdStr, REP);
+    }
+
+    /**
+     * Writes this log as JSON to the folder of the given game id.
+     * @param gameIdStr id of the game, name of the folder.
+     * @param rep repetition of the game with the same seed, part of the file name.
+     */
+    public void serializeJSON(String gameIdStr, int rep){
         File file = new File(JSON_GAMELOGS_PATH + gameIdStr + "/");
         if (! file.exists()){
             file.mkdir();
@@ -78,7 +87,7 @@ public class GameLog implements Serializable {
             throw new Error("Folder specified at "+ JSON_GAMELOGS_PATH +" does not exist nor could be created.");
         }
 
-        String path = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "["+size+"x"+size+"].json";
+        String path = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ rep +"_"+  gameMode.name() + "["+size+"x"+size+"].json";
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
         String json = gson.toJson(this);
 
@@ -3,25 +3,23 @@ package utils;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ImageIO {
 
-    private static ImageIO imageIO = null;
-    private static HashMap<String, Image> images;
+    // Created eagerly and backed by a concurrent map: game objects look up their image when they're created, which
+    // happens on several threads at once with parallel searches.
+    private static final ImageIO imageIO = new ImageIO();
+    private static ConcurrentHashMap<String, Image> images;
 
     public static ImageIO GetInstance()
     {
-        if (imageIO == null)
-        {
-            imageIO = new ImageIO();
-        }
         return imageIO;
     }
 
     private ImageIO()
     {
-        images = new HashMap<String, Image>();
+        images = new ConcurrentHashMap<String, Image>();
     }
 
 
@@ -0,0 +1,207 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Breadth-first search over the board from one cell, as used by SimplePlayer and AdvancedHeuristic to find paths and
+ * distances to items. All moves cost 1, so no priority queue is needed: distances and predecessors are kept in int
+ * arrays indexed by cell (y * size + x) and the queue is a single array that also records the order in which cells
+ * were reached. The arrays are reused by every search, so an instance holds the results of its last search only.
+ *
+ * Rigid blocks, flames and fog are never reached. Other cells are reached, but only passable ones (passages,
+ * power-ups and agents that are not enemies) are expanded, so distances to wood, bombs and enemies are known too.
+ * The first cell reached of every tile type is recorded, which answers "nearest enemy/power-up/wood" after the
+ * search.
+ */
+public class PathFinder {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final Types.TILETYPE[] TYPES = Types.TILETYPE.values();
+    private static final boolean[] WALKABLE = new boolean[TYPES.length];
+    static {
+        for (Types.TILETYPE t : TYPES) {
+            WALKABLE[t.ordinal()] = t == Types.TILETYPE.PASSAGE || Types.TILETYPE.getPowerUpTypes().contains(t)
+                    || Types.TILETYPE.getAgentTypes().contains(t);
+        }
+    }
+
+    // Moves in the order SimplePlayer has always checked them: LEFT, RIGHT, UP, DOWN.
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    private int size;
+    private int[] dist = new int[0];
+    private int[] prev = new int[0];
+    private int[] order = new int[0];
+    private int nReached;
+    private int source = -1;
+
+    private final int[] nearest = new int[TYPES.length];
+    private final boolean[] passable = new boolean[TYPES.length];
+
+    /**
+     * Searches the board from (x, y).
+     * @param board - game board.
+     * @param x - x coordinate of the start.
+     * @param y - y coordinate of the start.
+     * @param enemies - tile types of the enemies, which block the way.
+     * @param depth - maximum path length; cells further away are left unreached.
+     * @param tieBreak - if not null, cells with several shortest paths get one of their predecessors at random, as
+     *                 SimplePlayer does. If null, the first one found is kept.
+     */
+    public void search(Types.TILETYPE[][] board, int x, int y, Collection<Types.TILETYPE> enemies, int depth,
+                       Random tieBreak) {
+        reset(board.length);
+        for (Types.TILETYPE t : TYPES) {
+            passable[t.ordinal()] = WALKABLE[t.ordinal()] && !enemies.contains(t);
+        }
+
+        source = y * size + x;
+        dist[source] = 0;
+        order[nReached++] = source;
+        nearest[board[y][x].ordinal()] = source;
+
+        int head = 0;
+        while (head < nReached) {
+            int cell = order[head++];
+            int cx = cell % size;
+            int cy = cell / size;
+            int d = dist[cell] + 1;
+            if (d > depth || !passable[board[cy][cx].ordinal()])
+                continue;
+
+            for (int k = 0; k < DX.length; k++) {
+                int nx = cx + DX[k];
+                int ny = cy + DY[k];
+                if (nx < 0 || ny < 0 || nx >= size || ny >= size)
+                    continue;
+                Types.TILETYPE type = board[ny][nx];
+                if (type == Types.TILETYPE.RIGID || type == Types.TILETYPE.FLAMES || type == Types.TILETYPE.FOG)
+                    continue;
+
+                int next = ny * size + nx;
+                if (dist[next] == UNREACHABLE) {
+                    dist[next] = d;
+                    prev[next] = cell;
+                    order[nReached++] = next;
+                    if (nearest[type.ordinal()] < 0)
+                        nearest[type.ordinal()] = next;
+                } else if (tieBreak != null && dist[next] == d && tieBreak.nextFloat() < 0.5) {
+                    prev[next] = cell;
+                }
+            }
+        }
+    }
+
+    private void reset(int boardSize) {
+        if (boardSize != size) {
+            size = boardSize;
+            dist = new int[size * size];
+            prev = new int[size * size];
+            order = new int[size * size];
+            Arrays.fill(dist, UNREACHABLE);
+        } else {
+            for (int i = 0; i < nReached; i++) {
+                dist[order[i]] = UNREACHABLE;
+            }
+        }
+        nReached = 0;
+        Arrays.fill(nearest, -1);
+    }
+
+    /**
+     * @return length of the shortest path to (x, y), or UNREACHABLE.
+     */
+    public int distance(int x, int y) {
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            return UNREACHABLE;
+        return dist[y * size + x];
+    }
+
+    public int distance(Vector2d position) {
+        return distance(position.x, position.y);
+    }
+
+    /**
+     * @return length of the shortest path to a cell (y * size + x), or UNREACHABLE.
+     */
+    public int cellDistance(int cell) {
+        return dist[cell];
+    }
+
+    /**
+     * @return direction of the first move of a shortest path to (x, y), NONE if it is the start, null if unreached.
+     */
+    public Types.DIRECTIONS firstDirection(int x, int y) {
+        if (distance(x, y) == UNREACHABLE)
+            return null;
+        int cell = y * size + x;
+        if (cell == source)
+            return Types.DIRECTIONS.NONE;
+        while (prev[cell] != source) {
+            cell = prev[cell];
+        }
+        int dx = cell % size - source % size;
+        int dy = cell / size - source / size;
+        if (dx < 0) return Types.DIRECTIONS.LEFT;
+        if (dx > 0) return Types.DIRECTIONS.RIGHT;
+        if (dy < 0) return Types.DIRECTIONS.UP;
+        return Types.DIRECTIONS.DOWN;
+    }
+
+    public Types.DIRECTIONS firstDirection(Vector2d position) {
+        return firstDirection(position.x, position.y);
+    }
+
+    /**
+     * @return the nearest cell of a tile type, or -1 if none was reached.
+     */
+    public int nearest(Types.TILETYPE type) {
+        return nearest[type.ordinal()];
+    }
+
+    /**
+     * @return distance to the nearest cell of any of the given tile types, or UNREACHABLE.
+     */
+    public int distanceToNearest(Collection<Types.TILETYPE> types) {
+        int best = UNREACHABLE;
+        for (Types.TILETYPE type : types) {
+            int cell = nearest[type.ordinal()];
+            if (cell >= 0 && dist[cell] < best)
+                best = dist[cell];
+        }
+        return best;
+    }
+
+    /**
+     * @return true if the last search walked through cells of this tile type.
+     */
+    public boolean isPassable(Types.TILETYPE type) {
+        return passable[type.ordinal()];
+    }
+
+    /**
+     * @return number of cells reached, including the start.
+     */
+    public int reachedCount() {
+        return nReached;
+    }
+
+    /**
+     * @return the i-th cell reached. Cells are in order of distance, the start first.
+     */
+    public int reachedCell(int i) {
+        return order[i];
+    }
+
+    public int cellX(int cell) {
+        return cell % size;
+    }
+
+    public int cellY(int cell) {
+        return cell / size;
+    }
+}
@@ -0,0 +1,151 @@
+package utils;
+
+import core.GameState;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utils.TestUtils.randomActions;
+
+class PathFinderTest {
+
+    @Test
+    void distancesMatchReference() {
+        PathFinder pathFinder = new PathFinder();
+        for (long seed = 0; seed < 20; seed++) {
+            Random rnd = new Random(seed);
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+            for (int t = 0; t < 60 && !gs.isTerminal(); t++) {
+                Types.TILETYPE[][] board = gs.getBoard();
+                int x = rnd.nextInt(board.length), y = rnd.nextInt(board.length);
+                List<Types.TILETYPE> enemies = rnd.nextBoolean() ? Collections.singletonList(Types.TILETYPE.AGENT1)
+                        : Collections.emptyList();
+                int depth = 2 + rnd.nextInt(10);
+
+                pathFinder.search(board, x, y, enemies, depth, rnd.nextBoolean() ? rnd : null);
+                int[][] expected = reference(board, x, y, enemies, depth);
+                for (int cy = 0; cy < board.length; cy++) {
+                    for (int cx = 0; cx < board.length; cx++) {
+                        assertEquals(expected[cy][cx], pathFinder.distance(cx, cy), "Cell " + cx + "," + cy);
+                        checkFirstDirection(pathFinder, x, y, cx, cy);
+                    }
+                }
+                checkReachedOrder(pathFinder);
+                gs.next(randomActions(rnd));
+            }
+        }
+    }
+
+    @Test
+    void nearestOfEachType() {
+        Types.TILETYPE[][] board = emptyBoard(5);
+        board[0][4] = Types.TILETYPE.WOOD;
+        board[4][0] = Types.TILETYPE.KICK;
+        board[2][3] = Types.TILETYPE.EXTRABOMB;
+        board[1][1] = Types.TILETYPE.RIGID;
+
+        PathFinder pathFinder = new PathFinder();
+        pathFinder.search(board, 0, 0, Collections.emptyList(), 10, null);
+        assertEquals(4, pathFinder.cellDistance(pathFinder.nearest(Types.TILETYPE.WOOD)));
+        assertEquals(4, pathFinder.distanceToNearest(Collections.singletonList(Types.TILETYPE.KICK)));
+        assertEquals(4, pathFinder.distanceToNearest(Types.TILETYPE.getPowerUpTypes()));
+        assertEquals(-1, pathFinder.nearest(Types.TILETYPE.INCRRANGE));
+        assertEquals(PathFinder.UNREACHABLE, pathFinder.distance(1, 1));
+
+        // Wood is reached but not walked through
+        board[0][1] = Types.TILETYPE.WOOD;
+        board[1][0] = Types.TILETYPE.WOOD;
+        pathFinder.search(board, 0, 0, Collections.emptyList(), 10, null);
+        assertEquals(1, pathFinder.distance(1, 0));
+        assertEquals(1, pathFinder.distance(0, 1));
+        assertEquals(PathFinder.UNREACHABLE, pathFinder.distance(2, 0));
+        assertEquals(2, pathFinder.reachedCount() - 1);
+    }
+
+    @Test
+    void depthLimit() {
+        Types.TILETYPE[][] board = emptyBoard(7);
+        PathFinder pathFinder = new PathFinder();
+        pathFinder.search(board, 3, 3, Collections.emptyList(), 2, null);
+        assertEquals(2, pathFinder.distance(3, 5));
+        assertEquals(2, pathFinder.distance(4, 4));
+        assertEquals(PathFinder.UNREACHABLE, pathFinder.distance(3, 6));
+        assertEquals(13, pathFinder.reachedCount());
+        assertEquals(Types.DIRECTIONS.NONE, pathFinder.firstDirection(3, 3));
+        assertEquals(Types.DIRECTIONS.LEFT, pathFinder.firstDirection(1, 3));
+        assertNull(pathFinder.firstDirection(0, 0));
+    }
+
+    private static void checkFirstDirection(PathFinder pathFinder, int x, int y, int cx, int cy) {
+        int d = pathFinder.distance(cx, cy);
+        Types.DIRECTIONS dir = pathFinder.firstDirection(cx, cy);
+        if (d == PathFinder.UNREACHABLE) {
+            assertNull(dir);
+        } else if (d == 0) {
+            assertEquals(Types.DIRECTIONS.NONE, dir);
+        } else {
+            // One step closer to the target, through a cell the search walked through
+            int nx = x + dir.x(), ny = y + dir.y();
+            assertEquals(1, pathFinder.distance(nx, ny));
+            if (d > 1) {
+                assertTrue(Math.abs(cx - nx) + Math.abs(cy - ny) <= d - 1);
+            }
+        }
+    }
+
+    private static void checkReachedOrder(PathFinder pathFinder) {
+        int last = 0;
+        for (int i = 0; i < pathFinder.reachedCount(); i++) {
+            int cell = pathFinder.reachedCell(i);
+            int d = pathFinder.distance(pathFinder.cellX(cell), pathFinder.cellY(cell));
+            assertTrue(d >= last);
+            last = d;
+        }
+    }
+
+    /**
+     * Distances by relaxing every cell until nothing changes.
+     */
+    private static int[][] reference(Types.TILETYPE[][] board, int x, int y, List<Types.TILETYPE> enemies, int depth) {
+        int n = board.length;
+        int[][] dist = new int[n][n];
+        for (int[] row : dist) Arrays.fill(row, PathFinder.UNREACHABLE);
+        dist[y][x] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int cy = 0; cy < n; cy++) {
+                for (int cx = 0; cx < n; cx++) {
+                    Types.TILETYPE type = board[cy][cx];
+                    if (dist[cy][cx] >= depth || !walkable(type, enemies)) continue;
+                    for (Types.DIRECTIONS d : Types.DIRECTIONS.values()) {
+                        int nx = cx + d.x(), ny = cy + d.y();
+                        if (nx < 0 || ny < 0 || nx >= n || ny >= n) continue;
+                        Types.TILETYPE t = board[ny][nx];
+                        if (t == Types.TILETYPE.RIGID || t == Types.TILETYPE.FLAMES || t == Types.TILETYPE.FOG) continue;
+                        if (dist[cy][cx] + 1 < dist[ny][nx]) {
+                            dist[ny][nx] = dist[cy][cx] + 1;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static boolean walkable(Types.TILETYPE type, List<Types.TILETYPE> enemies) {
+        return (type == Types.TILETYPE.PASSAGE || Types.TILETYPE.getPowerUpTypes().contains(type)
+                || Types.TILETYPE.getAgentTypes().contains(type)) && !enemies.contains(type);
+    }
+
+    private static Types.TILETYPE[][] emptyBoard(int size) {
+        Types.TILETYPE[][] board = new Types.TILETYPE[size][size];
+        for (Types.TILETYPE[] row : board) Arrays.fill(row, Types.TILETYPE.PASSAGE);
+        return board;
+    }
+}
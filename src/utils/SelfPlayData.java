@@ -0,0 +1,396 @@
+package utils;
+
+import core.GameState;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar binary format for self-play training data: one row per tick and player still in the game, holding the
+ * observation of the player, the action it took and its result at the end of the game.
+ *
+ * Rows are written to a folder in chunk files (chunk_00000.psd, chunk_00001.psd...) of a bounded number of rows.
+ * A chunk starts with the magic bytes "PSD1" and three int32: board size, number of rows and NUM_FEATURES. Its
+ * columns follow one after another, each with one value per row (big-endian):
+ *   game      int32  index of the game in the run
+ *   tick      int16
+ *   player    int8   index of the observing player
+ *   board     int8 x size * size, tile keys of the observed board (y * size + x)
+ *   blast     int8 x size * size, bomb blast strengths
+ *   life      int8 x size * size, bomb lives
+ *   features  int8 x NUM_FEATURES, see the FEATURE_ constants
+ *   action    int8   action key
+ *   result    int8   result key
+ *
+ * Next to the chunks, a checkpoint file keeps the number of chunks written and the games they hold, so a run that
+ * is stopped can be resumed without playing those again.
+ */
+public class SelfPlayData {
+
+    public final static String SELFPLAY_PATH = "res/selfplay/";
+    public final static String EXTENSION = ".psd";
+    public final static String CHECKPOINT = "checkpoint";
+
+    // Agent features of each row.
+    public final static int FEATURE_X = 0;
+    public final static int FEATURE_Y = 1;
+    public final static int FEATURE_AMMO = 2;
+    public final static int FEATURE_BLAST_STRENGTH = 3;
+    public final static int FEATURE_CAN_KICK = 4;
+    public final static int FEATURE_ALIVE = 5;  // One bit per player in the game, player 0 in the lowest bit
+    public final static int NUM_FEATURES = 6;
+
+    private final static byte[] MAGIC = new byte[]{'P', 'S', 'D', '1'};
+    private final static byte[] CHECKPOINT_MAGIC = new byte[]{'P', 'S', 'C', '1'};
+    private final static int INITIAL_ROWS = 1024;
+
+    /**
+     * Rows of training data, stored by column.
+     */
+    public static class Columns {
+        private final int size;
+        private final int cells;
+        private int rows;
+
+        private int[] game;
+        private short[] tick;
+        private byte[] player, board, blast, life, features, action, result;
+
+        /**
+         * @param size size of the board.
+         */
+        public Columns(int size) {
+            this.size = size;
+            this.cells = size * size;
+            allocate(INITIAL_ROWS);
+        }
+
+        private void allocate(int capacity) {
+            game = new int[capacity];
+            tick = new short[capacity];
+            player = new byte[capacity];
+            board = new byte[capacity * cells];
+            blast = new byte[capacity * cells];
+            life = new byte[capacity * cells];
+            features = new byte[capacity * NUM_FEATURES];
+            action = new byte[capacity];
+            result = new byte[capacity];
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= game.length) return;
+            capacity = Math.max(capacity, game.length * 2);
+            game = Arrays.copyOf(game, capacity);
+            tick = Arrays.copyOf(tick, capacity);
+            player = Arrays.copyOf(player, capacity);
+            board = Arrays.copyOf(board, capacity * cells);
+            blast = Arrays.copyOf(blast, capacity * cells);
+            life = Arrays.copyOf(life, capacity * cells);
+            features = Arrays.copyOf(features, capacity * NUM_FEATURES);
+            action = Arrays.copyOf(action, capacity);
+            result = Arrays.copyOf(result, capacity);
+        }
+
+        /**
+         * Adds a row with the observation of a player, its result set to INCOMPLETE until setResults() is called.
+         * @param gameIdx index of the game in the run.
+         * @param obs observation of the player (GameState.copy(playerIdx)).
+         * @param playerIdx index of the player.
+         * @param a action taken by the player.
+         */
+        public void add(int gameIdx, GameState obs, int playerIdx, Types.ACTIONS a) {
+            ensureCapacity(rows + 1);
+            int r = rows++;
+            game[r] = gameIdx;
+            tick[r] = (short) obs.getTick();
+            player[r] = (byte) playerIdx;
+
+            Types.TILETYPE[][] obsBoard = obs.getBoard();
+            int[][] obsBlast = obs.getBombBlastStrength();
+            int[][] obsLife = obs.getBombLife();
+            int c = r * cells;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++, c++) {
+                    board[c] = (byte) obsBoard[y][x].getKey();
+                    blast[c] = (byte) obsBlast[y][x];
+                    life[c] = (byte) obsLife[y][x];
+                }
+            }
+
+            int f = r * NUM_FEATURES;
+            Vector2d pos = obs.getPosition();
+            features[f + FEATURE_X] = (byte) pos.x;
+            features[f + FEATURE_Y] = (byte) pos.y;
+            features[f + FEATURE_AMMO] = (byte) obs.getAmmo();
+            features[f + FEATURE_BLAST_STRENGTH] = (byte) obs.getBlastStrength();
+            features[f + FEATURE_CAN_KICK] = (byte) (obs.canKick() ? 1 : 0);
+            int alive = 0;
+            for (Types.TILETYPE agent : obs.getAliveAgentIDs()) {
+                alive |= 1 << (agent.getKey() - Types.TILETYPE.AGENT0.getKey());
+            }
+            features[f + FEATURE_ALIVE] = (byte) alive;
+
+            action[r] = (byte) a.getKey();
+            result[r] = (byte) Types.RESULT.INCOMPLETE.getKey();
+        }
+
+        /**
+         * Sets the result column of all rows, by the player of each row.
+         * @param results results of the game, per player.
+         */
+        public void setResults(Types.RESULT[] results) {
+            for (int r = 0; r < rows; r++) {
+                result[r] = (byte) results[player[r]].getKey();
+            }
+        }
+
+        /**
+         * Appends all rows of another set of columns of the same board size.
+         */
+        public void addAll(Columns other) {
+            ensureCapacity(rows + other.rows);
+            System.arraycopy(other.game, 0, game, rows, other.rows);
+            System.arraycopy(other.tick, 0, tick, rows, other.rows);
+            System.arraycopy(other.player, 0, player, rows, other.rows);
+            System.arraycopy(other.board, 0, board, rows * cells, other.rows * cells);
+            System.arraycopy(other.blast, 0, blast, rows * cells, other.rows * cells);
+            System.arraycopy(other.life, 0, life, rows * cells, other.rows * cells);
+            System.arraycopy(other.features, 0, features, rows * NUM_FEATURES, other.rows * NUM_FEATURES);
+            System.arraycopy(other.action, 0, action, rows, other.rows);
+            System.arraycopy(other.result, 0, result, rows, other.rows);
+            rows += other.rows;
+        }
+
+        /**
+         * Removes all rows, keeping the arrays allocated.
+         */
+        public void clear() {
+            rows = 0;
+        }
+
+        public int getSize() { return size; }
+        public int getRows() { return rows; }
+        public int getGame(int row) { return game[row]; }
+        public int getTick(int row) { return tick[row]; }
+        public int getPlayer(int row) { return player[row]; }
+        public int getTile(int row, int x, int y) { return board[row * cells + y * size + x]; }
+        public int getBombBlastStrength(int row, int x, int y) { return blast[row * cells + y * size + x]; }
+        public int getBombLife(int row, int x, int y) { return life[row * cells + y * size + x]; }
+        public int getFeature(int row, int feature) { return features[row * NUM_FEATURES + feature]; }
+        public Types.ACTIONS getAction(int row) { return Types.ACTIONS.all().get(action[row]); }
+        public Types.RESULT getResult(int row) { return Types.RESULT.values()[result[row]]; }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.write(MAGIC);
+            out.writeInt(size);
+            out.writeInt(rows);
+            out.writeInt(NUM_FEATURES);
+            for (int r = 0; r < rows; r++) out.writeInt(game[r]);
+            for (int r = 0; r < rows; r++) out.writeShort(tick[r]);
+            out.write(player, 0, rows);
+            out.write(board, 0, rows * cells);
+            out.write(blast, 0, rows * cells);
+            out.write(life, 0, rows * cells);
+            out.write(features, 0, rows * NUM_FEATURES);
+            out.write(action, 0, rows);
+            out.write(result, 0, rows);
+        }
+    }
+
+    /**
+     * Writes the rows of whole games to chunk files as they're played, possibly by several threads, and keeps the
+     * checkpoint of the folder up to date. Memory is bounded by the rows of one chunk.
+     */
+    public static class Writer implements Closeable {
+        private final File folder;
+        private final int chunkRows;
+        private final Columns chunk;
+
+        // Games in chunk files, and those in the current chunk. The checkpoint only counts the former.
+        private final BitSet gamesWritten;
+        private final BitSet gamesInChunk = new BitSet();
+        private int nextChunk;
+        private long rowsWritten;
+
+        /**
+         * Opens a folder of self-play data, resuming from its checkpoint if it has one.
+         * @param folder folder of the chunk files, created if needed.
+         * @param size size of the board.
+         * @param chunkRows rows after which a chunk is written. A chunk holds whole games, so it may be longer.
+         */
+        public Writer(File folder, int size, int chunkRows) throws IOException {
+            if (!folder.exists() && !folder.mkdirs() && !folder.exists()) {
+                throw new IOException("Folder " + folder + " does not exist nor could be created.");
+            }
+            this.folder = folder;
+            this.chunkRows = chunkRows;
+            this.chunk = new Columns(size);
+
+            File checkpoint = new File(folder, CHECKPOINT);
+            if (checkpoint.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(checkpoint)))) {
+                    byte[] magic = new byte[CHECKPOINT_MAGIC.length];
+                    in.readFully(magic);
+                    if (!Arrays.equals(magic, CHECKPOINT_MAGIC)) {
+                        throw new IOException("Not a self-play checkpoint: " + checkpoint);
+                    }
+                    int checkpointSize = in.readInt();
+                    if (checkpointSize != size) {
+                        throw new IOException("Checkpoint of board size " + checkpointSize + ", expected " + size);
+                    }
+                    nextChunk = in.readInt();
+                    rowsWritten = in.readLong();
+                    long[] words = new long[in.readInt()];
+                    for (int i = 0; i < words.length; i++) {
+                        words[i] = in.readLong();
+                    }
+                    gamesWritten = BitSet.valueOf(words);
+                }
+            } else {
+                gamesWritten = new BitSet();
+            }
+        }
+
+        /**
+         * @return true if the rows of a game were already added, in this run or in the one resumed.
+         */
+        public synchronized boolean hasGame(int gameIdx) {
+            return gamesWritten.get(gameIdx) || gamesInChunk.get(gameIdx);
+        }
+
+        /**
+         * Adds the rows of a whole game, writing a chunk if it's full.
+         * @param gameIdx index of the game in the run.
+         * @param rows rows of the game, with their results set. They're copied.
+         */
+        public synchronized void addGame(int gameIdx, Columns rows) throws IOException {
+            chunk.addAll(rows);
+            gamesInChunk.set(gameIdx);
+            if (chunk.getRows() >= chunkRows) {
+                writeChunk();
+            }
+        }
+
+        /**
+         * @return number of chunk files written.
+         */
+        public synchronized int getChunks() {
+            return nextChunk;
+        }
+
+        /**
+         * @return number of rows in chunk files.
+         */
+        public synchronized long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        /**
+         * @return number of games in chunk files.
+         */
+        public synchronized int getGamesWritten() {
+            return gamesWritten.cardinality();
+        }
+
+        /**
+         * Writes the rows added since the last chunk, if any.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (chunk.getRows() > 0) {
+                writeChunk();
+            }
+        }
+
+        /**
+         * Writes the current chunk and then the checkpoint, each to a temporary file moved into place once
+         * complete. A run stopped at any point resumes with the games of the chunks the checkpoint counts.
+         */
+        private void writeChunk() throws IOException {
+            File file = chunkFile(folder, nextChunk);
+            File tmp = new File(folder, file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                chunk.write(out);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            nextChunk++;
+            rowsWritten += chunk.getRows();
+            gamesWritten.or(gamesInChunk);
+            gamesInChunk.clear();
+            chunk.clear();
+
+            File checkpoint = new File(folder, CHECKPOINT);
+            tmp = new File(folder, CHECKPOINT + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.write(CHECKPOINT_MAGIC);
+                out.writeInt(chunk.getSize());
+                out.writeInt(nextChunk);
+                out.writeLong(rowsWritten);
+                long[] words = gamesWritten.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a chunk file, mapping it in memory.
+     * @param file chunk file.
+     * @return the rows of the chunk.
+     * @throws IOException if the file can't be read or is not a self-play chunk.
+     */
+    public static Columns read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            byte[] magic = new byte[MAGIC.length];
+            if (buffer.remaining() < magic.length + 12) {
+                throw new IOException("Not a self-play chunk: " + file);
+            }
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a self-play chunk: " + file);
+            }
+            int size = buffer.getInt();
+            int rows = buffer.getInt();
+            if (buffer.getInt() != NUM_FEATURES) {
+                throw new IOException("Unsupported features in self-play chunk: " + file);
+            }
+            Columns columns = new Columns(size);
+            int cells = size * size;
+            if (buffer.remaining() != (long) rows * (4 + 2 + 1 + 3 * cells + NUM_FEATURES + 1 + 1)) {
+                throw new IOException("Truncated self-play chunk: " + file);
+            }
+            columns.ensureCapacity(rows);
+            columns.rows = rows;
+            for (int r = 0; r < rows; r++) columns.game[r] = buffer.getInt();
+            for (int r = 0; r < rows; r++) columns.tick[r] = buffer.getShort();
+            buffer.get(columns.player, 0, rows);
+            buffer.get(columns.board, 0, rows * cells);
+            buffer.get(columns.blast, 0, rows * cells);
+            buffer.get(columns.life, 0, rows * cells);
+            buffer.get(columns.features, 0, rows * NUM_FEATURES);
+            buffer.get(columns.action, 0, rows);
+            buffer.get(columns.result, 0, rows);
+            return columns;
+        }
+    }
+
+    /**
+     * Path of a chunk file: folder/chunk_00000.psd
+     */
+    public static File chunkFile(File folder, int chunk) {
+        return new File(folder, String.format("chunk_%05d", chunk) + EXTENSION);
+    }
+}
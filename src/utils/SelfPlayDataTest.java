@@ -0,0 +1,142 @@
+package utils;
+
+import core.Game;
+import core.GameState;
+import org.junit.jupiter.api.Test;
+import players.Player;
+import players.RandomPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelfPlayDataTest {
+
+    @Test
+    void writeAndRead() throws IOException {
+        File folder = tempFolder();
+        ArrayList<GameState> observations = new ArrayList<>();
+        ArrayList<Types.ACTIONS> actions = new ArrayList<>();
+        SelfPlayData.Columns rows = new SelfPlayData.Columns(Types.BOARD_SIZE);
+        try (SelfPlayData.Writer writer = new SelfPlayData.Writer(folder, Types.BOARD_SIZE, 500)) {
+            for (int g = 0; g < 3; g++) {
+                Types.RESULT[] results = playGame(g, rows, observations, actions);
+                rows.setResults(results);
+                writer.addGame(g, rows);
+                assertTrue(writer.hasGame(g));
+            }
+        }
+
+        // Chunks hold whole games, in the order they were added.
+        int row = 0;
+        int lastGame = -1;
+        for (int c = 0; SelfPlayData.chunkFile(folder, c).exists(); c++) {
+            SelfPlayData.Columns chunk = SelfPlayData.read(SelfPlayData.chunkFile(folder, c));
+            assertTrue(chunk.getRows() > 0);
+            assertTrue(c == 0 || chunk.getGame(0) > lastGame, "Game split over chunks");
+            for (int r = 0; r < chunk.getRows(); r++, row++) {
+                assertSameRow(observations.get(row), actions.get(row), chunk, r);
+                assertNotEquals(Types.RESULT.INCOMPLETE, chunk.getResult(r));
+            }
+            lastGame = chunk.getGame(chunk.getRows() - 1);
+        }
+        assertEquals(observations.size(), row);
+    }
+
+    @Test
+    void resumeFromCheckpoint() throws IOException {
+        File folder = tempFolder();
+        SelfPlayData.Columns rows = new SelfPlayData.Columns(Types.BOARD_SIZE);
+        SelfPlayData.Writer writer = new SelfPlayData.Writer(folder, Types.BOARD_SIZE, 1);
+        for (int g = 0; g < 2; g++) {
+            rows.setResults(playGame(g, rows, new ArrayList<>(), new ArrayList<>()));
+            writer.addGame(g, rows);
+        }
+        long rowsWritten = writer.getRowsWritten();
+        // Stopped without closing: the chunks written survive, as recorded by the checkpoint.
+        SelfPlayData.Writer resumed = new SelfPlayData.Writer(folder, Types.BOARD_SIZE, 1);
+        assertTrue(resumed.hasGame(0));
+        assertTrue(resumed.hasGame(1));
+        assertFalse(resumed.hasGame(2));
+        assertEquals(2, resumed.getChunks());
+        assertEquals(2, resumed.getGamesWritten());
+        assertEquals(rowsWritten, resumed.getRowsWritten());
+
+        rows.setResults(playGame(2, rows, new ArrayList<>(), new ArrayList<>()));
+        resumed.addGame(2, rows);
+        resumed.close();
+        assertEquals(3, new SelfPlayData.Writer(folder, Types.BOARD_SIZE, 1).getGamesWritten());
+        assertEquals(2, SelfPlayData.read(SelfPlayData.chunkFile(folder, 2)).getGame(0));
+
+        assertThrows(IOException.class, () -> new SelfPlayData.Writer(folder, 8, 1));
+    }
+
+    @Test
+    void notAChunk() throws IOException {
+        File file = File.createTempFile("chunk", SelfPlayData.EXTENSION);
+        file.deleteOnExit();
+        Files.write(file.toPath(), "{}".getBytes());
+        assertThrows(IOException.class, () -> SelfPlayData.read(file));
+    }
+
+    /**
+     * Plays a game of random players, recording its rows through a tick listener.
+     */
+    private static Types.RESULT[] playGame(int g, SelfPlayData.Columns rows, ArrayList<GameState> observations,
+                                           ArrayList<Types.ACTIONS> actions) {
+        boolean printResults = Game.PRINT_RESULTS;
+        Game.PRINT_RESULTS = false;
+        try {
+            Game game = new Game(g, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "test", Types.FM_TYPE.PACKED);
+            ArrayList<Player> players = new ArrayList<>();
+            for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+                players.add(new RandomPlayer(g, Types.TILETYPE.AGENT0.getKey() + p));
+            }
+            game.setPlayers(players);
+            rows.clear();
+            game.setTickListener((state, tickActions) -> {
+                for (int p = 0; p < tickActions.length; p++) {
+                    GameState obs = state.copy(p);
+                    if (obs.winner() == Types.RESULT.INCOMPLETE) {
+                        rows.add(g, obs, p, tickActions[p]);
+                        observations.add(obs);
+                        actions.add(tickActions[p]);
+                    }
+                }
+            });
+            return game.run(false);
+        } finally {
+            Game.PRINT_RESULTS = printResults;
+        }
+    }
+
+    private static void assertSameRow(GameState obs, Types.ACTIONS action, SelfPlayData.Columns chunk, int r) {
+        String msg = "Row " + r;
+        assertEquals(obs.getTick(), chunk.getTick(r), msg);
+        assertEquals(obs.getPlayerId() - Types.TILETYPE.AGENT0.getKey(), chunk.getPlayer(r), msg);
+        assertEquals(action, chunk.getAction(r), msg);
+        Types.TILETYPE[][] board = obs.getBoard();
+        for (int y = 0; y < board.length; y++) {
+            for (int x = 0; x < board.length; x++) {
+                assertEquals(board[y][x].getKey(), chunk.getTile(r, x, y), msg);
+                assertEquals(obs.getBombBlastStrength()[y][x], chunk.getBombBlastStrength(r, x, y), msg);
+                assertEquals(obs.getBombLife()[y][x], chunk.getBombLife(r, x, y), msg);
+            }
+        }
+        assertEquals(obs.getPosition().x, chunk.getFeature(r, SelfPlayData.FEATURE_X), msg);
+        assertEquals(obs.getPosition().y, chunk.getFeature(r, SelfPlayData.FEATURE_Y), msg);
+        assertEquals(obs.getAmmo(), chunk.getFeature(r, SelfPlayData.FEATURE_AMMO), msg);
+        assertEquals(obs.getBlastStrength(), chunk.getFeature(r, SelfPlayData.FEATURE_BLAST_STRENGTH), msg);
+        assertEquals(obs.getAliveAgentIDs().length, Integer.bitCount(chunk.getFeature(r, SelfPlayData.FEATURE_ALIVE)),
+                msg);
+    }
+
+    private static File tempFolder() throws IOException {
+        File folder = Files.createTempDirectory("selfplay").toFile();
+        folder.deleteOnExit();
+        return folder;
+    }
+}
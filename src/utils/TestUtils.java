@@ -0,0 +1,23 @@
+package utils;
+
+import java.util.Random;
+
+/**
+ * Helpers shared by the tests of several packages.
+ */
+public class TestUtils {
+
+    /**
+     * Random actions for all players, each action drawn uniformly. See benchmark.Fixtures for actions biased
+     * towards bombs.
+     * @param rnd random number generator the actions are drawn from.
+     * @return one action per player.
+     */
+    public static Types.ACTIONS[] randomActions(Random rnd) {
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = Types.ACTIONS.all().get(rnd.nextInt(Types.NUM_ACTIONS));
+        }
+        return actions;
+    }
+}
@@ -176,6 +176,15 @@ public class Types {
         public int getKey() { return key; }
     }
 
+    /**
+     * Implementations of the forward model. OBJECT keeps the game objects in lists and grids of tile types, PACKED
+     * keeps the state in primitive arrays. Both play exactly the same games.
+     */
+    public enum FM_TYPE {
+        OBJECT,
+        PACKED
+    }
+
     /**
      * Defines the directions that game objects can have for movement.
      */
@@ -533,103 +533,17 @@ public class Utils
     }
 
     /**
-     * Checks if a given avatar is stuck in a single cell.
-     * @param board - given board to check position on
-     * @param avatar - avatar
-     * @return true if avatar is stuck, false otherwise
-     */
-    private static ArrayList<Vector2d> passableDirections(Types.TILETYPE[][] board, Avatar avatar) {
-        ArrayList<Vector2d> passableDirections = new ArrayList<>();
-        for(Types.DIRECTIONS d : Types.DIRECTIONS.values())
-        {
-            Vector2d newPos = new Vector2d(avatar.getPosition().x + d.x(), avatar.getPosition().y + d.y());
-            if(isPassable(board, newPos, avatar))
-                passableDirections.add(newPos);
-        }
-        return passableDirections;
-    }
-
-    /**
-     * Checks if a given avatar is stuck in a single cell.
+     * Checks if a given avatar is stuck in a single cell, about to be caught by flames of bombs exploding next tick
+     * wherever it moves. Builds a FlameMask for this check alone: to check several agents, or many times on the same
+     * state, use GameState.isTrapped() instead.
      * @param board - given board to check position on
+     * @param bombs - bombs on the board
      * @param avatar - avatar
      * @return true if avatar is stuck, false otherwise
      */
     public static boolean isStuckAdvanced(Types.TILETYPE[][] board, ArrayList<GameObject> bombs, Avatar avatar) {
-
-        boolean isStuck = true;
-
-        // Determine which tiles may have flames next turn (based on bomb lives but also on early triggers)
-        HashSet<Vector2d> upcomingFlames = new HashSet<>();
-        for (GameObject b : bombs){
-            ArrayList<GameObject> flames = new ArrayList<>();
-
-            if (b.getLife() == 1) {
-
-                Vector2d position = b.getPosition();
-                int blastStrength = ((Bomb) b).getBlastStrength();
-
-                // First add the flame at the current position
-                expandFlames(position.x, position.y, board, upcomingFlames);
-                boolean advanceP = true;
-                boolean advanceM = true;
-                for (int i = 1; i < blastStrength; i++) {
-                    if (advanceP) {
-                        int x1 = position.x + i;
-                        advanceP = expandFlames(x1, position.y, board, upcomingFlames);
-                    }
-                    if (advanceM) {
-                        int x2 = position.x - i;
-                        advanceM = expandFlames(x2, position.y, board, upcomingFlames);
-                    }
-                }
-                advanceM = true;
-                advanceP = true;
-                for (int i = 1; i < blastStrength; i++) {
-                    if (advanceP) {
-                        int y1 = position.y + i;
-                        advanceP = expandFlames(position.x, y1, board, upcomingFlames);
-                    }
-                    if (advanceM) {
-                        int y2 = position.y - i;
-                        advanceM = expandFlames(position.x, y2, board, upcomingFlames);
-                    }
-                }
-            }
-        }
-
-        Vector2d avatarPosition = avatar.getPosition();
-
-        // Is avatar in danger?
-        if (upcomingFlames.contains(avatarPosition)){
-            // Check passable movement directions
-            ArrayList<Vector2d> passableDirections = passableDirections(board, avatar);
-            for (Vector2d pd : passableDirections){
-                if(!upcomingFlames.contains(pd)){
-                    isStuck = false;
-                    break;
-                }
-            }
-        }
-        else{
-            isStuck = false;
-        }
-
-        return isStuck;
-    }
-
-    /**
-     * Accumulates in an array of flames the position (x,y) unless there's a rigid block in there.
-     * @param x x coordinate of the position
-     * @param y y coordinate of the position
-     * @param board current board state.
-     * @param upcomingFlames Array of flame positions to maybe add this new position to.
-     * @return false if the flame stops at (x,y)
-     */
-    private static boolean expandFlames(int x, int y, Types.TILETYPE[][] board, HashSet<Vector2d> upcomingFlames) {
-        if (x < 0 || y < 0 || x >= board[0].length || y >= board.length || board[y][x] == Types.TILETYPE.RIGID)
-            return false;
-        upcomingFlames.add(new Vector2d(x, y));
-        return (board[y][x] != Types.TILETYPE.WOOD); // Flames should stop at first wooden block
+        FlameMask mask = new FlameMask(board.length);
+        mask.fill(board, bombs);
+        return mask.isTrapped(avatar.getPosition().x, avatar.getPosition().y, board);
     }
 }
@@ -0,0 +1,101 @@
+package utils;
+
+/**
+ * Zobrist keys for hashing game states. Keys are derived from the feature they describe with a SplitMix64
+ * finaliser instead of being drawn from random tables, so they don't depend on the board size and are the same
+ * in every run (hashes can be stored and compared across games).
+ *
+ * Cells are identified by their index in the board, y * size + x.
+ */
+public class Zobrist {
+
+    // Feature domains, kept in the top bits of the value mixed into a key.
+    private static final long TILE = 1L << 56;
+    private static final long POWERUP = 2L << 56;
+    private static final long BOMB = 3L << 56;
+    private static final long FLAME = 4L << 56;
+    private static final long AGENT = 5L << 56;
+    private static final long TICK = 6L << 56;
+
+    /**
+     * Key of a tile type on a cell of the board.
+     * @param cell index of the cell.
+     * @param type key of the tile type (Types.TILETYPE.getKey()).
+     */
+    public static long tile(int cell, int type) {
+        return mix(TILE | (long) cell << 8 | type);
+    }
+
+    /**
+     * Key of a tile on a cell of the board, 0 for null (cells not filled yet).
+     */
+    public static long tile(int cell, Types.TILETYPE type) {
+        return type == null ? 0 : tile(cell, type.getKey());
+    }
+
+    /**
+     * Key of a power-up hidden on a cell.
+     * @param cell index of the cell.
+     * @param type key of the power-up type.
+     */
+    public static long powerUp(int cell, int type) {
+        return mix(POWERUP | (long) cell << 8 | type);
+    }
+
+    /**
+     * Key of a power-up hidden on a cell, 0 for no power-up.
+     */
+    public static long powerUp(int cell, Types.TILETYPE type) {
+        return type == null ? 0 : powerUp(cell, type.getKey());
+    }
+
+    /**
+     * Key of a bomb.
+     * @param cell index of the cell the bomb is on.
+     * @param life ticks left until it explodes.
+     * @param blastStrength blast strength of the bomb.
+     */
+    public static long bomb(int cell, int life, int blastStrength) {
+        return mix(BOMB | (long) cell << 24 | (life & 0xFFF) << 12 | blastStrength & 0xFFF);
+    }
+
+    /**
+     * Key of a flame.
+     * @param cell index of the cell the flame is on.
+     * @param life ticks left until it disappears.
+     */
+    public static long flame(int cell, int life) {
+        return mix(FLAME | (long) cell << 12 | life & 0xFFF);
+    }
+
+    /**
+     * Key of the state of an agent.
+     * @param idx index of the agent (0 to NUM_PLAYERS - 1).
+     * @param cell index of the cell the agent is on, -1 if unknown.
+     * @param ammo bombs the agent can place.
+     * @param blastStrength blast strength of its bombs.
+     * @param canKick whether it can kick bombs.
+     * @param winner result of the agent so far.
+     */
+    public static long agent(int idx, int cell, int ammo, int blastStrength, boolean canKick, Types.RESULT winner) {
+        long features = (long) (cell + 1) << 32 | (ammo & 0xFF) << 20 | (blastStrength & 0xFF) << 12 |
+                (canKick ? 1 : 0) << 8 | winner.getKey() << 4 | idx;
+        return mix(AGENT | features);
+    }
+
+    /**
+     * Key of a game tick.
+     */
+    public static long tick(int tick) {
+        return mix(TICK | tick);
+    }
+
+    /**
+     * SplitMix64 finaliser: spreads every bit of the input over the 64 bits of the key.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}